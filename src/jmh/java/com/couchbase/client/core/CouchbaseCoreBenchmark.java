@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.CompletionMode;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.WaitStrategyType;
+import com.couchbase.client.core.message.cluster.DisconnectRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketRequest;
+import com.couchbase.client.core.message.cluster.SeedNodesRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.mock.MockCluster;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full round trips through {@link CouchbaseCore}: request ring buffer, locator, endpoint, the
+ * network stack against an in-process {@link MockCluster} and back through the response path.
+ *
+ * Run with more threads (for example {@code -t 8}) to put concurrent pressure on the ring buffers.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CouchbaseCoreBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final String KEY = "user::1234567890";
+
+    /**
+     * The size of the document body in bytes.
+     */
+    @Param({"32", "1024"})
+    public int valueSize;
+
+    /**
+     * The number of nodes in the mock cluster.
+     */
+    @Param({"1", "4"})
+    public int numNodes;
+
+    /**
+     * The simulated server latency in microseconds.
+     */
+    @Param({"0"})
+    public long latencyMicros;
+
+    /**
+     * The wait strategy of the request and response RingBuffers.
+     */
+    @Param({"BLOCKING", "YIELDING"})
+    public WaitStrategyType waitStrategy;
+
+    /**
+     * The number of request RingBuffers and dispatch threads.
+     */
+    @Param({"1"})
+    public int requestShards;
+
+    /**
+     * On which thread responses are completed.
+     */
+    @Param({"SCHEDULED", "DIRECT", "BATCHED"})
+    public CompletionMode completionMode;
+
+    private MockCluster mock;
+    private CoreEnvironment env;
+    private ClusterFacade core;
+    private byte[] value;
+
+    @Setup
+    public void setup() throws Exception {
+        mock = MockCluster
+            .builder()
+            .nodes(numNodes)
+            .bucket(BUCKET, "")
+            .latency(latencyMicros, TimeUnit.MICROSECONDS)
+            .build()
+            .start();
+
+        env = mock
+            .environmentBuilder()
+            .bootstrapHttpEnabled(false)
+            .requestWaitStrategy(waitStrategy)
+            .responseWaitStrategy(waitStrategy)
+            .requestShards(requestShards)
+            .kvEndpoints(requestShards)
+            .completionMode(completionMode)
+            .build();
+        core = new CouchbaseCore(env);
+        core.send(new SeedNodesRequest(mock.seedNode())).toBlocking().single();
+        core.send(new OpenBucketRequest(BUCKET, "")).toBlocking().single();
+
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+        core.send(new UpsertRequest(KEY, Unpooled.wrappedBuffer(value), BUCKET)).toBlocking().single();
+    }
+
+    @TearDown
+    public void teardown() {
+        core.send(new DisconnectRequest()).toBlocking().single();
+        env.shutdown().toBlocking().single();
+        mock.stop();
+    }
+
+    @Benchmark
+    public GetResponse get() {
+        GetResponse response = core.<GetResponse>send(new GetRequest(KEY, BUCKET)).toBlocking().single();
+        response.content().release();
+        return response;
+    }
+
+    @Benchmark
+    public UpsertResponse upsert() {
+        UpsertResponse response = core.<UpsertResponse>send(
+            new UpsertRequest(KEY, Unpooled.wrappedBuffer(value), BUCKET)
+        ).toBlocking().single();
+        response.content().release();
+        return response;
+    }
+}
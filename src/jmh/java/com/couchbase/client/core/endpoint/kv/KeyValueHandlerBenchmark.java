@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.ResponseEvent;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.RingBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the key/value encode and decode paths over an {@link EmbeddedChannel} with the same pipeline as a
+ * {@link KeyValueEndpoint}: the {@link KeyValueFrameDecoder}, the {@link KeyValueFrameEncoder} and the
+ * {@link KeyValueHandler} matching responses through an {@link OpaqueRequestQueue}.
+ *
+ * Requests are encoded down to the bytes written to the socket, responses are fed in as raw frames. The decode
+ * benchmarks include the handoff of the response onto the request observable, since this is part of the cost
+ * every response pays before it reaches the caller.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyValueHandlerBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final String KEY = "user::1234567890";
+
+    /**
+     * Every binary memcache message has a 24 bytes header.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The offset of the opaque in the header.
+     */
+    private static final int OPAQUE_OFFSET = 12;
+
+    /**
+     * The size of the document body in bytes.
+     */
+    @Param({"32", "1024", "16384"})
+    public int valueSize;
+
+    private CoreEnvironment env;
+    private EmbeddedChannel channel;
+    private OpaqueRequestQueue inFlight;
+    private byte[] value;
+    private byte[] getFrame;
+    private byte[] upsertFrame;
+
+    @Setup
+    public void setup() {
+        env = DefaultCoreEnvironment.create();
+        RingBuffer<ResponseEvent> responseBuffer = RingBuffer.createSingleProducer(new EventFactory<ResponseEvent>() {
+            @Override
+            public ResponseEvent newInstance() {
+                return new ResponseEvent();
+            }
+        }, 1024);
+        inFlight = new OpaqueRequestQueue();
+        KeyValueEndpoint endpoint = new KeyValueEndpoint("127.0.0.1", BUCKET, "", 11210, env, responseBuffer);
+        channel = new EmbeddedChannel(
+            new KeyValueFrameDecoder(env.maxValueSize()),
+            new KeyValueFrameEncoder(),
+            new KeyValueHandler(endpoint, responseBuffer, inFlight, false)
+        );
+
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+        getFrame = responseFrame(KeyValueHandler.OP_GET, new byte[4], value);
+        upsertFrame = responseFrame(KeyValueHandler.OP_UPSERT, new byte[0], new byte[0]);
+    }
+
+    @TearDown
+    public void teardown() {
+        channel.finish();
+        env.shutdown().toBlocking().single();
+    }
+
+    @Benchmark
+    public Object encodeGet() {
+        GetRequest request = new GetRequest(KEY, BUCKET);
+        request.partition((short) 512);
+        return writeAndDiscard(request);
+    }
+
+    @Benchmark
+    public Object encodeUpsert() {
+        UpsertRequest request = new UpsertRequest(KEY, Unpooled.wrappedBuffer(value), BUCKET);
+        request.partition((short) 512);
+        return writeAndDiscard(request);
+    }
+
+    @Benchmark
+    public CouchbaseResponse decodeGet() {
+        GetRequest request = new GetRequest(KEY, BUCKET);
+        inFlight.add(request);
+        channel.writeInbound(frame(getFrame, request.opaque()));
+
+        GetResponse result = (GetResponse) request.observable().toBlocking().single();
+        result.content().release();
+        return result;
+    }
+
+    @Benchmark
+    public CouchbaseResponse decodeUpsert() {
+        UpsertRequest request = new UpsertRequest(KEY, Unpooled.wrappedBuffer(value), BUCKET);
+        inFlight.add(request);
+        channel.writeInbound(frame(upsertFrame, request.opaque()));
+
+        UpsertResponse result = (UpsertResponse) request.observable().toBlocking().single();
+        result.content().release();
+        return result;
+    }
+
+    /**
+     * Writes the request through the encoders and throws away the written bytes as well as the in-flight
+     * request, so that the in-flight requests do not grow.
+     */
+    private Object writeAndDiscard(final BinaryRequest request) {
+        channel.writeOutbound(request);
+        Object encoded;
+        Object last = null;
+        while ((encoded = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(encoded);
+            last = encoded;
+        }
+        inFlight.poll(request.opaque());
+        if (request instanceof UpsertRequest) {
+            ByteBuf content = ((UpsertRequest) request).content();
+            if (content.refCnt() > 0) {
+                content.release();
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Returns a buffer holding the raw response frame with the given opaque.
+     */
+    private static ByteBuf frame(final byte[] frame, final int opaque) {
+        return Unpooled.copiedBuffer(frame).setInt(OPAQUE_OFFSET, opaque);
+    }
+
+    /**
+     * Creates a raw successful response frame without key.
+     */
+    private static byte[] responseFrame(final byte opcode, final byte[] extras, final byte[] content) {
+        ByteBuf frame = Unpooled.buffer(HEADER_SIZE + extras.length + content.length);
+        frame
+            .writeByte(0x81) // magic
+            .writeByte(opcode)
+            .writeShort(0) // key length
+            .writeByte(extras.length)
+            .writeByte(0) // data type
+            .writeShort(0) // status
+            .writeInt(extras.length + content.length) // total body length
+            .writeInt(0) // opaque
+            .writeLong(1234L) // cas
+            .writeBytes(extras)
+            .writeBytes(content);
+        byte[] bytes = new byte[frame.readableBytes()];
+        frame.readBytes(bytes);
+        return bytes;
+    }
+}
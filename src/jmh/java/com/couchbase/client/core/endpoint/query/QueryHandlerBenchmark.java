@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.query;
+
+import com.couchbase.client.core.ResponseEvent;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.query.GenericQueryRequest;
+import com.couchbase.client.core.message.query.GenericQueryResponse;
+import com.couchbase.client.core.message.query.QueryRequest;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.RingBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.Observable;
+import rx.functions.Action1;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how fast the {@link QueryHandler} splits a N1QL response into rows, depending on the number of rows
+ * and on how the response body is chunked on the wire.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryHandlerBenchmark {
+
+    /**
+     * The number of rows in the result.
+     */
+    @Param({"10", "1000"})
+    public int numRows;
+
+    /**
+     * The size of each http chunk, 0 means the whole body arrives in one chunk.
+     */
+    @Param({"0", "1460"})
+    public int chunkSize;
+
+    /**
+     * If rows are sliced out of the received chunks instead of being copied.
+     */
+    @Param({"false", "true"})
+    public boolean zeroCopyRows;
+
+    private CoreEnvironment env;
+    private EmbeddedChannel channel;
+    private Queue<QueryRequest> requestQueue;
+    private List<ByteBuf> chunks;
+
+    @Setup
+    public void setup() {
+        env = DefaultCoreEnvironment.builder().queryEnabled(true).zeroCopyRowsEnabled(zeroCopyRows).build();
+        RingBuffer<ResponseEvent> responseBuffer = RingBuffer.createSingleProducer(new EventFactory<ResponseEvent>() {
+            @Override
+            public ResponseEvent newInstance() {
+                return new ResponseEvent();
+            }
+        }, 1024);
+        requestQueue = new ArrayDeque<QueryRequest>();
+        QueryEndpoint endpoint = new QueryEndpoint("127.0.0.1", "default", "", 8093, env, responseBuffer);
+        channel = new EmbeddedChannel(new QueryHandler(endpoint, responseBuffer, requestQueue, false));
+        chunks = split(Unpooled.copiedBuffer(response(numRows), CharsetUtil.UTF_8), chunkSize);
+    }
+
+    @TearDown
+    public void teardown() {
+        channel.finish();
+        for (ByteBuf chunk : chunks) {
+            chunk.release();
+        }
+        env.shutdown().toBlocking().single();
+    }
+
+    @Benchmark
+    public int parseRows() {
+        GenericQueryRequest request = GenericQueryRequest.simpleStatement("select * from default", "default", "");
+        requestQueue.add(request);
+
+        channel.writeInbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuf chunk = chunks.get(i).duplicate().retain();
+            channel.writeInbound(i == chunks.size() - 1 ? new DefaultLastHttpContent(chunk)
+                : new DefaultHttpContent(chunk));
+        }
+
+        GenericQueryResponse response = (GenericQueryResponse) request.observable().toBlocking().single();
+        int rows = drain(response.rows());
+        drain(response.errors());
+        drain(response.signature());
+        drain(response.info());
+        response.queryStatus().toBlocking().single();
+        return rows;
+    }
+
+    /**
+     * Consumes and releases all buffers of the given observable.
+     */
+    static int drain(final Observable<ByteBuf> observable) {
+        final AtomicInteger count = new AtomicInteger();
+        observable.toBlocking().forEach(new Action1<ByteBuf>() {
+            @Override
+            public void call(ByteBuf buf) {
+                count.incrementAndGet();
+                buf.release();
+            }
+        });
+        return count.get();
+    }
+
+    /**
+     * Splits the full body into slices of the given size, each of them holding its own reference.
+     */
+    static List<ByteBuf> split(final ByteBuf body, final int chunkSize) {
+        List<ByteBuf> chunks = new ArrayList<ByteBuf>();
+        if (chunkSize <= 0) {
+            chunks.add(body);
+            return chunks;
+        }
+        for (int i = 0; i < body.readableBytes(); i += chunkSize) {
+            chunks.add(body.slice(i, Math.min(chunkSize, body.readableBytes() - i)).retain());
+        }
+        body.release();
+        return chunks;
+    }
+
+    private static String response(final int numRows) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n    \"requestID\": \"1234test-7802-4fc2-acd6-dfcd1c05a288\",\n")
+            .append("    \"signature\": {\n      \"*\": \"*\"\n    },\n")
+            .append("    \"results\": [\n");
+        for (int i = 0; i < numRows; i++) {
+            sb.append(i == 0 ? "" : ",\n")
+                .append("        {\"abv\": 7.2, \"brewery_id\": \"21st_amendment_brewery_cafe\", ")
+                .append("\"category\": \"North American Ale\", \"description\": \"Deep golden color. ")
+                .append("Citrus and piney {hop} aromas, some call it \\\"Nectar of the Gods\\\".\", ")
+                .append("\"name\": \"21A IPA ").append(i).append("\", \"style\": \"American-Style IPA\", ")
+                .append("\"type\": \"beer\", \"tags\": [\"ipa\", \"hoppy\"], \"updated\": \"2010-07-22 20:00:20\"}");
+        }
+        sb.append("\n    ],\n    \"status\": \"success\",\n")
+            .append("    \"metrics\": {\n        \"elapsedTime\": \"118.636318ms\",\n")
+            .append("        \"executionTime\": \"108.213835ms\",\n")
+            .append("        \"resultCount\": ").append(numRows).append(",\n")
+            .append("        \"resultSize\": 500,\n        \"errorCount\": 0\n    }\n}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the end of a single large row which arrives in many chunks, once by rescanning from the
+ * readerIndex on every chunk and once with the resumable {@link JsonRowScanner}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonRowScannerBenchmark {
+
+    /**
+     * The approximate size of the row in bytes.
+     */
+    @Param({"1048576", "4194304"})
+    public int rowSize;
+
+    /**
+     * The size of each chunk the row arrives in.
+     */
+    @Param({"8192"})
+    public int chunkSize;
+
+    private ByteBuf row;
+    private ByteBuf content;
+    private final JsonRowScanner scanner = new JsonRowScanner();
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"values\": [");
+        for (int i = 0; sb.length() < rowSize; i++) {
+            sb.append(i == 0 ? "" : ", ").append("{\"id\": ").append(i)
+                .append(", \"text\": \"with {braces} and \\\"quotes\\\"\"}");
+        }
+        sb.append("]}");
+        row = Unpooled.copiedBuffer(sb.toString(), CharsetUtil.UTF_8);
+        content = Unpooled.buffer(row.readableBytes());
+    }
+
+    @TearDown
+    public void teardown() {
+        row.release();
+        content.release();
+    }
+
+    @Benchmark
+    public int rescanEveryChunk() {
+        content.clear();
+        int closing = -1;
+        for (int i = 0; i < row.readableBytes(); i += chunkSize) {
+            content.writeBytes(row, i, Math.min(chunkSize, row.readableBytes() - i));
+            closing = ByteBufJsonHelper.findSectionClosingPosition(content, '{', '}');
+        }
+        return closing;
+    }
+
+    @Benchmark
+    public int resumeScanner() {
+        content.clear();
+        scanner.reset();
+        int closing = -1;
+        for (int i = 0; i < row.readableBytes(); i += chunkSize) {
+            content.writeBytes(row, i, Math.min(chunkSize, row.readableBytes() - i));
+            closing = scanner.scan(content);
+        }
+        return closing;
+    }
+}
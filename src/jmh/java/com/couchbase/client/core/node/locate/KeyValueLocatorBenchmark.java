@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.BucketConfig;
+import com.couchbase.client.core.config.DefaultClusterConfig;
+import com.couchbase.client.core.config.parser.BucketConfigParser;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.node.CouchbaseNode;
+import com.couchbase.client.core.node.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link KeyValueLocator#locate} for couchbase (vbucket) and memcached (ketama) buckets.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyValueLocatorBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final int NUM_KEYS = 1024;
+
+    /**
+     * The number of nodes in the simulated cluster.
+     */
+    @Param({"1", "4", "16"})
+    public int numNodes;
+
+    /**
+     * The type of bucket the locator is hashing against.
+     */
+    @Param({"vbucket", "ketama"})
+    public String bucketType;
+
+    private CoreEnvironment env;
+    private KeyValueLocator locator;
+    private DefaultClusterConfig clusterConfig;
+    private Set<Node> nodes;
+    private String[] keys;
+    private int keyIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        env = DefaultCoreEnvironment.create();
+        locator = new KeyValueLocator();
+
+        nodes = new HashSet<Node>();
+        for (int i = 0; i < numNodes; i++) {
+            nodes.add(new CouchbaseNode(InetAddress.getByName(nodeAddress(i)), env, null));
+        }
+
+        String raw = "vbucket".equals(bucketType) ? couchbaseConfig(numNodes, 1024) : memcachedConfig(numNodes);
+        BucketConfig bucketConfig = BucketConfigParser.parse(raw);
+        clusterConfig = new DefaultClusterConfig();
+        clusterConfig.setBucketConfig(BUCKET, bucketConfig);
+        locator.updateRoutingTables(clusterConfig, nodes);
+
+        keys = new String[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = "user::" + i;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        env.shutdown().toBlocking().single();
+    }
+
+    @Benchmark
+    public Node[] locateGet() {
+        String key = keys[keyIndex++ & (NUM_KEYS - 1)];
+        return locator.locate(new GetRequest(key, BUCKET), nodes, clusterConfig);
+    }
+
+    private static String nodeAddress(int index) {
+        return "127.0.0." + (index + 1);
+    }
+
+    /**
+     * Builds a terse couchbase bucket config with the partitions evenly spread and one replica.
+     */
+    private static String couchbaseConfig(int numNodes, int numPartitions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"name\":\"").append(BUCKET).append("\",\"nodeLocator\":\"vbucket\",\"rev\":1,");
+        sb.append("\"uri\":\"/pools/default/buckets/").append(BUCKET).append("\",");
+        sb.append("\"streamingUri\":\"/pools/default/bucketsStreaming/").append(BUCKET).append("\",");
+        appendNodes(sb, numNodes);
+        sb.append(",\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":1,\"serverList\":[");
+        for (int i = 0; i < numNodes; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"").append(nodeAddress(i)).append(":11210\"");
+        }
+        sb.append("],\"vBucketMap\":[");
+        for (int p = 0; p < numPartitions; p++) {
+            int master = p % numNodes;
+            int replica = numNodes > 1 ? (p + 1) % numNodes : -1;
+            sb.append(p == 0 ? "" : ",").append("[").append(master).append(",").append(replica).append("]");
+        }
+        sb.append("]}}");
+        return sb.toString();
+    }
+
+    /**
+     * Builds a memcached bucket config, the ketama ring is computed from the node list.
+     */
+    private static String memcachedConfig(int numNodes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"name\":\"").append(BUCKET).append("\",\"nodeLocator\":\"ketama\",\"rev\":1,");
+        sb.append("\"uri\":\"/pools/default/buckets/").append(BUCKET).append("\",");
+        sb.append("\"streamingUri\":\"/pools/default/bucketsStreaming/").append(BUCKET).append("\",");
+        appendNodes(sb, numNodes);
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static void appendNodes(StringBuilder sb, int numNodes) {
+        sb.append("\"nodes\":[");
+        for (int i = 0; i < numNodes; i++) {
+            sb.append(i == 0 ? "" : ",")
+                .append("{\"hostname\":\"").append(nodeAddress(i)).append(":8091\",")
+                .append("\"ports\":{\"direct\":11210}}");
+        }
+        sb.append("]");
+    }
+}
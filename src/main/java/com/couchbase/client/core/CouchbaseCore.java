@@ -54,13 +54,13 @@ import com.couchbase.client.core.message.internal.RemoveNodeRequest;
 import com.couchbase.client.core.message.internal.RemoveNodeResponse;
 import com.couchbase.client.core.message.internal.RemoveServiceRequest;
 import com.couchbase.client.core.message.internal.RemoveServiceResponse;
+import com.couchbase.client.core.message.kv.BinaryRequest;
 import com.couchbase.client.core.service.Service;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
-import io.netty.util.concurrent.DefaultThreadFactory;
 import rx.Observable;
 import rx.functions.Func1;
 
@@ -97,12 +97,12 @@ public class CouchbaseCore implements ClusterFacade {
     private static final BackpressureException BACKPRESSURE_EXCEPTION = new BackpressureException();
 
     /**
-     * The {@link RequestEvent} {@link RingBuffer}.
+     * The {@link RequestEvent} {@link RingBuffer}s, see {@link #requestRingBuffer(CouchbaseRequest)}.
      */
-    private final RingBuffer<RequestEvent> requestRingBuffer;
+    private final RingBuffer<RequestEvent>[] requestRingBuffers;
 
     /**
-     * The handler for all cluster nodes.
+     * The handler for all cluster nodes, which also consumes the first request {@link RingBuffer}.
      */
     private final RequestHandler requestHandler;
 
@@ -113,9 +113,10 @@ public class CouchbaseCore implements ClusterFacade {
 
     private final CoreEnvironment environment;
 
-    private final Disruptor<RequestEvent> requestDisruptor;
+    private final Disruptor<RequestEvent>[] requestDisruptors;
     private final Disruptor<ResponseEvent> responseDisruptor;
-    private final ExecutorService disruptorExecutor;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService responseExecutor;
 
     private volatile boolean sharedEnvironment = true;
 
@@ -137,18 +138,23 @@ public class CouchbaseCore implements ClusterFacade {
     /**
      * Creates a new {@link CouchbaseCore}.
      */
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public CouchbaseCore(final CoreEnvironment environment) {
         LOGGER.info(environment.toString());
         LOGGER.debug(Diagnostics.collectAndFormat());
 
         this.environment = environment;
         configProvider = new DefaultConfigurationProvider(this, environment);
-        disruptorExecutor = Executors.newFixedThreadPool(2, new DefaultThreadFactory("cb-core", true));
+        requestExecutor = Executors.newFixedThreadPool(environment.requestShards(),
+            environment.requestThreadFactory());
+        responseExecutor = Executors.newSingleThreadExecutor(environment.responseThreadFactory());
 
         responseDisruptor = new Disruptor<ResponseEvent>(
             new ResponseEventFactory(),
             environment.responseBufferSize(),
-            disruptorExecutor
+            responseExecutor,
+            environment.responseProducerType().toDisruptor(),
+            environment.responseWaitStrategy().newWaitStrategy()
         );
         responseDisruptor.handleExceptionsWith(new ExceptionHandler() {
             @Override
@@ -170,31 +176,40 @@ public class CouchbaseCore implements ClusterFacade {
         responseDisruptor.start();
         RingBuffer<ResponseEvent> responseRingBuffer = responseDisruptor.getRingBuffer();
 
-        requestDisruptor = new Disruptor<RequestEvent>(
-            new RequestEventFactory(),
-            environment.requestBufferSize(),
-            disruptorExecutor
-        );
         requestHandler = new RequestHandler(environment, configProvider.configs(), responseRingBuffer);
-        requestDisruptor.handleExceptionsWith(new ExceptionHandler() {
-            @Override
-            public void handleEventException(Throwable ex, long sequence, Object event) {
-                LOGGER.warn("Exception while Handling Request Events {}, {}", event, ex);
-            }
+        int shards = environment.requestShards();
+        requestDisruptors = new Disruptor[shards];
+        requestRingBuffers = new RingBuffer[shards];
+        for (int i = 0; i < shards; i++) {
+            Disruptor<RequestEvent> requestDisruptor = new Disruptor<RequestEvent>(
+                new RequestEventFactory(),
+                environment.requestBufferSize(),
+                requestExecutor,
+                environment.requestProducerType().toDisruptor(),
+                environment.requestWaitStrategy().newWaitStrategy()
+            );
+            requestDisruptor.handleExceptionsWith(new ExceptionHandler() {
+                @Override
+                public void handleEventException(Throwable ex, long sequence, Object event) {
+                    LOGGER.warn("Exception while Handling Request Events {}, {}", event, ex);
+                }
 
-            @Override
-            public void handleOnStartException(Throwable ex) {
-                LOGGER.warn("Exception while Starting Request RingBuffer {}", ex);
-            }
+                @Override
+                public void handleOnStartException(Throwable ex) {
+                    LOGGER.warn("Exception while Starting Request RingBuffer {}", ex);
+                }
 
-            @Override
-            public void handleOnShutdownException(Throwable ex) {
-                LOGGER.info("Exception while shutting down Request RingBuffer {}", ex);
-            }
-        });
-        requestDisruptor.handleEventsWith(requestHandler);
-        requestDisruptor.start();
-        requestRingBuffer = requestDisruptor.getRingBuffer();
+                @Override
+                public void handleOnShutdownException(Throwable ex) {
+                    LOGGER.info("Exception while shutting down Request RingBuffer {}", ex);
+                }
+            });
+            requestDisruptor.handleEventsWith(i == 0
+                ? requestHandler : new RequestHandler(requestHandler, i, configProvider.configs()));
+            requestDisruptor.start();
+            requestDisruptors[i] = requestDisruptor;
+            requestRingBuffers[i] = requestDisruptor.getRingBuffer();
+        }
     }
 
     @Override
@@ -207,7 +222,7 @@ public class CouchbaseCore implements ClusterFacade {
             handleClusterRequest(request);
             return (Observable<R>) request.observable().observeOn(environment.scheduler());
         } else {
-            boolean published = requestRingBuffer.tryPublishEvent(REQUEST_TRANSLATOR, request);
+            boolean published = requestRingBuffer(request).tryPublishEvent(REQUEST_TRANSLATOR, request);
             if (!published) {
                 request.observable().onError(BACKPRESSURE_EXCEPTION);
             }
@@ -215,6 +230,32 @@ public class CouchbaseCore implements ClusterFacade {
         }
     }
 
+    /**
+     * Selects the request {@link RingBuffer} to dispatch the request through.
+     *
+     * Key based requests are spread by their key, so that all requests for the same document pass through the same
+     * dispatch thread and keep their order. Everything else is spread by the calling thread, which keeps the
+     * order of requests issued from one thread intact.
+     *
+     * @param request the request to dispatch.
+     * @return the ring buffer to publish the request into.
+     */
+    private RingBuffer<RequestEvent> requestRingBuffer(final CouchbaseRequest request) {
+        int shards = requestRingBuffers.length;
+        if (shards == 1) {
+            return requestRingBuffers[0];
+        }
+
+        int hash;
+        if (request instanceof BinaryRequest && ((BinaryRequest) request).key() != null) {
+            hash = ((BinaryRequest) request).key().hashCode();
+        } else {
+            hash = (int) Thread.currentThread().getId();
+        }
+        hash ^= hash >>> 16;
+        return requestRingBuffers[(hash & Integer.MAX_VALUE) % shards];
+    }
+
     /**
      * Helper method to handle the cluster requests.
      *
@@ -275,9 +316,12 @@ public class CouchbaseCore implements ClusterFacade {
                 }).map(new Func1<Boolean, Boolean>() {
                     @Override
                     public Boolean call(Boolean success) {
-                        requestDisruptor.shutdown();
+                        for (Disruptor<RequestEvent> requestDisruptor : requestDisruptors) {
+                            requestDisruptor.shutdown();
+                        }
                         responseDisruptor.shutdown();
-                        disruptorExecutor.shutdownNow();
+                        requestExecutor.shutdownNow();
+                        responseExecutor.shutdownNow();
                         return success;
                     }
                 })
@@ -34,7 +34,12 @@ import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.internal.AddServiceRequest;
 import com.couchbase.client.core.message.internal.RemoveServiceRequest;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.message.kv.AppendRequest;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.BinaryStoreRequest;
+import com.couchbase.client.core.message.kv.BulkRequest;
+import com.couchbase.client.core.message.kv.PrependRequest;
 import com.couchbase.client.core.message.query.QueryRequest;
 import com.couchbase.client.core.message.view.ViewRequest;
 import com.couchbase.client.core.node.CouchbaseNode;
@@ -57,16 +62,25 @@ import rx.functions.Func1;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The {@link RequestHandler} handles the overall concept of {@link Node}s and manages them concurrently.
  *
+ * If more than one request RingBuffer is configured, each of them is consumed by its own handler. The first one
+ * manages the nodes, while the others are created for it through
+ * {@link #RequestHandler(RequestHandler, int, Observable)} and dispatch over the same nodes. Every handler keeps its
+ * own locator state and pins its key/value requests to the endpoint of its shard, so the dispatch threads do not
+ * contend with each other.
+ *
  * @author Michael Nitschinger
  * @since 1.0
  */
@@ -85,7 +99,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
     /**
      * The node locator for the binary service.
      */
-    private final Locator binaryLocator = new KeyValueLocator();
+    private final KeyValueLocator binaryLocator = new KeyValueLocator();
 
     /**
      * The node locator for the view service.
@@ -127,6 +141,41 @@ public class RequestHandler implements EventHandler<RequestEvent> {
      */
     private final RingBuffer<ResponseEvent> responseBuffer;
 
+    /**
+     * The maximum number of writes after which the written nodes are flushed, even if the batch is not done yet.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The timeout in milliseconds applied to requests without their own, 0 if disabled.
+     */
+    private final long requestTimeout;
+
+    /**
+     * The nodes written to in the current batch.
+     */
+    private final WrittenNodes writtenNodes = new WrittenNodes();
+
+    /**
+     * The index of the request RingBuffer this handler consumes.
+     */
+    private final int shard;
+
+    /**
+     * True if key/value requests are pinned to the endpoint of the shard, which is the case if sharded.
+     */
+    private final boolean pinEndpoints;
+
+    /**
+     * The handler managing the nodes, null if this is the one.
+     */
+    private final RequestHandler manager;
+
+    /**
+     * The handlers of the other shards, whose routing tables need to follow the node changes.
+     */
+    private final List<RequestHandler> shards = new CopyOnWriteArrayList<RequestHandler>();
+
     /**
      * Create a new {@link RequestHandler}.
      */
@@ -143,9 +192,32 @@ public class RequestHandler implements EventHandler<RequestEvent> {
      */
     RequestHandler(Set<Node> nodes, CoreEnvironment environment, Observable<ClusterConfig> configObservable,
         RingBuffer<ResponseEvent> responseBuffer) {
+        this(null, 0, nodes, environment, configObservable, responseBuffer);
+    }
+
+    /**
+     * Create a new {@link RequestHandler} for another request RingBuffer, which dispatches over the nodes managed
+     * by the given handler.
+     *
+     * @param manager the handler managing the nodes.
+     * @param shard the index of the request RingBuffer consumed.
+     * @param configObservable the stream of cluster configurations.
+     */
+    RequestHandler(RequestHandler manager, int shard, Observable<ClusterConfig> configObservable) {
+        this(manager, shard, manager.nodes, manager.environment, configObservable, manager.responseBuffer);
+        manager.shards.add(this);
+    }
+
+    private RequestHandler(RequestHandler manager, int shard, Set<Node> nodes, CoreEnvironment environment,
+        Observable<ClusterConfig> configObservable, RingBuffer<ResponseEvent> responseBuffer) {
+        this.manager = manager;
+        this.shard = shard;
         this.nodes = nodes;
         this.environment = environment;
         this.responseBuffer = responseBuffer;
+        this.maxBatchSize = environment.maxRequestBatchSize();
+        this.requestTimeout = environment.requestTimeout();
+        this.pinEndpoints = environment.requestShards() > 1;
         configuration = new AtomicReference<ClusterConfig>();
 
         configObservable.subscribe(new Action1<ClusterConfig>() {
@@ -154,7 +226,10 @@ public class RequestHandler implements EventHandler<RequestEvent> {
                 try {
                     LOGGER.debug("Got notified of a new configuration arriving.");
                     configuration.set(config);
-                    reconfigure(config).subscribe();
+                    updateRoutingTables();
+                    if (RequestHandler.this.manager == null) {
+                        reconfigure(config).subscribe();
+                    }
                 } catch (Exception ex) {
                     ex.printStackTrace();
                 }
@@ -165,9 +240,20 @@ public class RequestHandler implements EventHandler<RequestEvent> {
 
     @Override
     public void onEvent(final RequestEvent event, long sequence, final boolean endOfBatch) throws Exception {
+        WrittenNodes written = writtenNodes;
         try {
             final CouchbaseRequest request = event.getRequest();
 
+            long deadline = request.deadline();
+            if (deadline == 0 && requestTimeout > 0) {
+                request.timeout(requestTimeout, TimeUnit.MILLISECONDS);
+            } else if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                releaseContent(request);
+                request.observable().onError(new RequestTimeoutException("Request timed out before it could "
+                    + "be dispatched."));
+                return;
+            }
+
             ClusterConfig config = configuration.get();
             //prevent non-bootstrap requests to go through if bucket not part of config
             if (!(request instanceof BootstrapMessage)) {
@@ -185,6 +271,11 @@ public class RequestHandler implements EventHandler<RequestEvent> {
                 }
             }
 
+            if (request instanceof BulkRequest) {
+                dispatchBulk((BulkRequest) request, config, written);
+                return;
+            }
+
             Node[] found = locator(request).locate(request, nodes, config);
 
             if (found == null) {
@@ -193,20 +284,150 @@ public class RequestHandler implements EventHandler<RequestEvent> {
             if (found.length == 0) {
                 RetryHelper.retryOrCancel(environment, request, responseBuffer);
             }
+            if (pinEndpoints && request instanceof BinaryRequest) {
+                ((BinaryRequest) request).endpointAffinity(shard + 1);
+            }
             for (int i = 0; i < found.length; i++) {
                 try {
                     found[i].send(request);
+                    written.add(found[i]);
                 } catch (Exception ex) {
                     request.observable().onError(ex);
                 }
             }
-            if (endOfBatch) {
-                for (Node node : nodes) {
-                    node.send(SignalFlush.INSTANCE);
-                }
-            }
         } finally {
             event.setRequest(null);
+            if (endOfBatch || written.writes >= maxBatchSize) {
+                written.flush();
+            }
+        }
+    }
+
+    /**
+     * Locates all requests of the {@link BulkRequest} in one pass and sends them as one {@link BinaryBatchRequest}
+     * per node and endpoint, so each endpoint gets its part written as a single burst.
+     *
+     * The endpoint is derived from the shard or the partition the same way the endpoint selection strategy of the
+     * service does it, which keeps the ordering guarantees for each key the same as if the requests were sent one
+     * by one.
+     * A batch holds at most the maximum request batch size, so quiet batches are fenced periodically.
+     *
+     * @param bulk the bulk request.
+     * @param config the current cluster config.
+     * @param written the nodes written to in the current batch.
+     */
+    private void dispatchBulk(final BulkRequest bulk, final ClusterConfig config, final WrittenNodes written) {
+        int endpoints = Math.max(environment.kvEndpoints(), 1);
+        List<NodeBatch> batches = new ArrayList<NodeBatch>();
+        for (BinaryRequest request : bulk.requests()) {
+            Node[] found = locator(request).locate(request, nodes, config);
+            if (found == null) {
+                continue;
+            }
+            if (found.length == 0) {
+                RetryHelper.retryOrCancel(environment, request, responseBuffer);
+                continue;
+            }
+
+            Node node = found[0];
+            int slot = pinEndpoints ? shard % endpoints : request.partition() % endpoints;
+            NodeBatch batch = null;
+            for (int i = 0; i < batches.size(); i++) {
+                NodeBatch candidate = batches.get(i);
+                if (candidate.node == node && candidate.slot == slot
+                    && candidate.request.requests().size() < maxBatchSize) {
+                    batch = candidate;
+                    break;
+                }
+            }
+            if (batch == null) {
+                batch = new NodeBatch(node, slot, new BinaryBatchRequest(bulk.bucket(), bulk.quiet()));
+                if (pinEndpoints) {
+                    batch.request.endpointAffinity(shard + 1);
+                }
+                batches.add(batch);
+            }
+            batch.request.add(request);
+        }
+
+        for (int i = 0; i < batches.size(); i++) {
+            NodeBatch batch = batches.get(i);
+            try {
+                batch.node.send(batch.request);
+                written.add(batch.node);
+            } catch (Exception ex) {
+                batch.request.observable().onError(ex);
+            }
+        }
+    }
+
+    /**
+     * Releases the content of a request which is failed before it could be written, including the parts of a bulk.
+     *
+     * @param request the request to release.
+     */
+    private static void releaseContent(final CouchbaseRequest request) {
+        if (request instanceof BulkRequest) {
+            for (BinaryRequest part : ((BulkRequest) request).requests()) {
+                releaseContent(part);
+            }
+        } else if (request instanceof BinaryStoreRequest) {
+            ((BinaryStoreRequest) request).content().release();
+        } else if (request instanceof AppendRequest) {
+            ((AppendRequest) request).content().release();
+        } else if (request instanceof PrependRequest) {
+            ((PrependRequest) request).content().release();
+        }
+    }
+
+    /**
+     * The requests of a bulk going to one endpoint of a node.
+     */
+    private static final class NodeBatch {
+
+        private final Node node;
+        private final int slot;
+        private final BinaryBatchRequest request;
+
+        NodeBatch(final Node node, final int slot, final BinaryBatchRequest request) {
+            this.node = node;
+            this.slot = slot;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Keeps track of the nodes the dispatch thread has written to since its last flush, so that only those
+     * need to be sent a {@link SignalFlush}.
+     *
+     * The number of nodes written to in one batch is small, so a linear scan is cheaper than hashing.
+     */
+    private static final class WrittenNodes {
+
+        private Node[] nodes = new Node[8];
+        private int size;
+        private int writes;
+
+        void add(final Node node) {
+            writes++;
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    return;
+                }
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size << 1);
+            }
+            nodes[size++] = node;
+        }
+
+        void flush() {
+            for (int i = 0; i < size; i++) {
+                nodes[i].send(SignalFlush.INSTANCE);
+                nodes[i] = null;
+            }
+            size = 0;
+            writes = 0;
         }
     }
 
@@ -218,7 +439,8 @@ public class RequestHandler implements EventHandler<RequestEvent> {
      * @throws UnsupportedOperationException if the request type needs a particular feature which isn't activated.
      */
     protected void checkFeaturesForRequest(CouchbaseRequest request, BucketConfig config) {
-        if (request instanceof BinaryRequest && !config.serviceEnabled(ServiceType.BINARY)) {
+        if ((request instanceof BinaryRequest || request instanceof BulkRequest)
+            && !config.serviceEnabled(ServiceType.BINARY)) {
             throw new ServiceNotAvailableException("The KeyValue service is not enabled or no node in the cluster supports it.");
         } else if (request instanceof ViewRequest && !config.serviceEnabled(ServiceType.VIEW)) {
             throw new ServiceNotAvailableException("The View service is not enabled or no node in the cluster supports it.");
@@ -264,6 +486,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
             public LifecycleState call(LifecycleState lifecycleState) {
                 LOGGER.debug("Connect finished, registering for use.");
                 nodes.add(node);
+                nodesChanged();
                 return lifecycleState;
             }
         });
@@ -288,6 +511,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
     Observable<LifecycleState> removeNode(final Node node) {
         LOGGER.debug("Got instructed to remove Node {}", node.hostname());
         nodes.remove(node);
+        nodesChanged();
         return node.disconnect();
     }
 
@@ -413,6 +637,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
                             node.disconnect().subscribe();
                         }
                     }
+                    nodesChanged();
                 }
             })
             .map(new Func1<Boolean, ClusterConfig>() {
@@ -423,6 +648,25 @@ public class RequestHandler implements EventHandler<RequestEvent> {
             });
     }
 
+    /**
+     * Rebuilds the routing tables of the binary locator from the current config and nodes.
+     *
+     * Called whenever one of the two changes, so that locating a key is a plain array lookup on the hot path.
+     */
+    private synchronized void updateRoutingTables() {
+        binaryLocator.updateRoutingTables(configuration.get(), nodes);
+    }
+
+    /**
+     * Rebuilds the routing tables of this handler and of the handlers of the other shards after the nodes changed.
+     */
+    private void nodesChanged() {
+        updateRoutingTables();
+        for (RequestHandler handler : shards) {
+            handler.updateRoutingTables();
+        }
+    }
+
     /**
      * For every bucket that is open, apply the reconfiguration.
      *
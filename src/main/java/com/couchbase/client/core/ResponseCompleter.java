@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.CompletionMode;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.subjects.Subject;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Completes the observables of requests with their responses, according to the configured {@link CompletionMode}.
+ *
+ * An instance must only be used from a single thread, like the response RingBuffer consumer or the event loop
+ * of a channel. In {@link CompletionMode#BATCHED} the completions are collected in a reusable buffer until
+ * {@link #flush()} hands them to the scheduler at the end of a read, so that no allocation happens per response.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class ResponseCompleter {
+
+    /**
+     * The logger used.
+     */
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(ResponseCompleter.class);
+
+    private final CompletionMode mode;
+    private final Scheduler scheduler;
+
+    /**
+     * The long-lived worker the batches are completed on in {@link CompletionMode#BATCHED}.
+     */
+    private final Scheduler.Worker worker;
+
+    /**
+     * Batches which have been completed by the worker and can be filled again.
+     */
+    private final Queue<Batch> recycled;
+
+    /**
+     * The batch currently filled by the owning thread in {@link CompletionMode#BATCHED}.
+     */
+    private Batch current;
+
+    /**
+     * Creates a new {@link ResponseCompleter}.
+     *
+     * @param environment the environment to get the completion mode and the scheduler from.
+     */
+    public ResponseCompleter(final CoreEnvironment environment) {
+        CompletionMode configured = environment.completionMode();
+        this.mode = configured == null ? CompletionMode.SCHEDULED : configured;
+        this.scheduler = environment.scheduler();
+        if (mode == CompletionMode.BATCHED) {
+            worker = scheduler.createWorker();
+            recycled = new ConcurrentLinkedQueue<Batch>();
+            current = new Batch();
+        } else {
+            worker = null;
+            recycled = null;
+        }
+    }
+
+    /**
+     * Pushes the response into the observable and completes it.
+     *
+     * @param response the response.
+     * @param observable the observable of the request.
+     */
+    public void complete(final CouchbaseResponse response,
+        final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+        complete(response, null, observable);
+    }
+
+    /**
+     * Fails the observable with the error, in the same way as responses are completed.
+     *
+     * @param error the error to fail the request with.
+     * @param observable the observable of the request.
+     */
+    public void fail(final Throwable error, final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+        complete(null, error, observable);
+    }
+
+    private void complete(final CouchbaseResponse response, final Throwable error,
+        final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+        switch (mode) {
+            case DIRECT:
+                completeNow(response, error, observable);
+                break;
+            case BATCHED:
+                current.add(response, error, observable);
+                break;
+            default:
+                final Scheduler.Worker scheduled = scheduler.createWorker();
+                scheduled.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        try {
+                            completeNow(response, error, observable);
+                        } finally {
+                            scheduled.unsubscribe();
+                        }
+                    }
+                });
+        }
+    }
+
+    /**
+     * Hands the completions collected since the last flush to the scheduler in {@link CompletionMode#BATCHED}.
+     *
+     * Needs to be called once a burst of responses has been decoded, other modes complete right away.
+     */
+    public void flush() {
+        if (worker == null || current.size == 0) {
+            return;
+        }
+        worker.schedule(current);
+        Batch next = recycled.poll();
+        current = next == null ? new Batch() : next;
+    }
+
+    /**
+     * Releases the worker of {@link CompletionMode#BATCHED} once the completions handed in so far are done.
+     *
+     * Needs to be called when the completer is not used anymore, no responses must be completed afterwards.
+     */
+    public void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        flush();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                worker.unsubscribe();
+            }
+        });
+    }
+
+    private static void completeNow(final CouchbaseResponse response, final Throwable error,
+        final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+        if (error != null) {
+            observable.onError(error);
+            return;
+        }
+        try {
+            observable.onNext(response);
+            observable.onCompleted();
+        } catch (Exception ex) {
+            LOGGER.warn("Caught exception while onNext on observable", ex);
+            observable.onError(ex);
+        }
+    }
+
+    /**
+     * The completions of one flush in {@link CompletionMode#BATCHED}, completed in order on the worker and then
+     * recycled.
+     */
+    private final class Batch implements Action0 {
+
+        private CouchbaseResponse[] responses = new CouchbaseResponse[16];
+        private Throwable[] errors = new Throwable[16];
+        private Subject<CouchbaseResponse, CouchbaseResponse>[] observables = newObservables(16);
+        private int size;
+
+        void add(final CouchbaseResponse response, final Throwable error,
+            final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+            if (size == responses.length) {
+                responses = Arrays.copyOf(responses, size << 1);
+                errors = Arrays.copyOf(errors, size << 1);
+                observables = Arrays.copyOf(observables, size << 1);
+            }
+            responses[size] = response;
+            errors[size] = error;
+            observables[size] = observable;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Subject<CouchbaseResponse, CouchbaseResponse>[] newObservables(final int length) {
+            return (Subject<CouchbaseResponse, CouchbaseResponse>[]) new Subject<?, ?>[length];
+        }
+
+        @Override
+        public void call() {
+            for (int i = 0; i < size; i++) {
+                completeNow(responses[i], errors[i], observables[i]);
+                responses[i] = null;
+                errors[i] = null;
+                observables[i] = null;
+            }
+            size = 0;
+            recycled.offer(this);
+        }
+    }
+}
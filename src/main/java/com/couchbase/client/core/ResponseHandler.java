@@ -32,17 +32,23 @@ import com.couchbase.client.core.message.kv.BinaryResponse;
 import com.couchbase.client.core.time.Delay;
 import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.LifecycleAware;
 import io.netty.util.CharsetUtil;
 import rx.Scheduler;
 import rx.functions.Action0;
 import rx.subjects.Subject;
 
-public class ResponseHandler implements EventHandler<ResponseEvent> {
+public class ResponseHandler implements EventHandler<ResponseEvent>, LifecycleAware {
 
     private final ClusterFacade cluster;
     private final ConfigurationProvider configurationProvider;
     private final CoreEnvironment environment;
 
+    /**
+     * Completes the observables with their responses, only used from the response RingBuffer thread.
+     */
+    private final ResponseCompleter completer;
+
     /**
      * Creates a new {@link ResponseHandler}.
      *
@@ -54,6 +60,7 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
         this.cluster = cluster;
         this.configurationProvider = provider;
         this.environment = environment;
+        this.completer = new ResponseCompleter(environment);
     }
 
     /**
@@ -95,21 +102,7 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
                 if (status == ResponseStatus.RETRY) {
                     retry(event);
                 } else {
-                    final Scheduler.Worker worker = environment.scheduler().createWorker();
-                    final Subject<CouchbaseResponse, CouchbaseResponse> obs = event.getObservable();
-                    worker.schedule(new Action0() {
-                        @Override
-                        public void call() {
-                            try {
-                                obs.onNext(response);
-                                obs.onCompleted();
-                            } catch(Exception ex) {
-                                obs.onError(ex);
-                            } finally {
-                                worker.unsubscribe();
-                            }
-                        }
-                    });
+                    completer.complete(response, event.getObservable());
                 }
             } else if (message instanceof CouchbaseRequest) {
                 retry(event);
@@ -119,9 +112,24 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
         } finally {
            event.setMessage(null);
            event.setObservable(null);
+           if (endOfBatch) {
+               completer.flush();
+           }
         }
     }
 
+    @Override
+    public void onStart() {
+    }
+
+    /**
+     * Releases the completer once the response RingBuffer is shut down.
+     */
+    @Override
+    public void onShutdown() {
+        completer.shutdown();
+    }
+
     private void retry(final ResponseEvent event) {
         final CouchbaseMessage message = event.getMessage();
         if (message instanceof CouchbaseRequest) {
@@ -8,7 +8,9 @@ import io.netty.util.CharsetUtil;
 import java.net.InetAddress;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -18,6 +20,13 @@ public class DefaultMemcachedBucketConfig extends AbstractBucketConfig implement
     private final long rev;
     private final TreeMap<Long, NodeInfo> ketamaNodes;
 
+    /**
+     * The ketama continuum as sorted points with the node at each point, so that it can be searched
+     * without boxing.
+     */
+    private final long[] ketamaPoints;
+    private final NodeInfo[] ketamaPointNodes;
+
     /**
      * Creates a new {@link MemcachedBucketConfig}.
      *
@@ -42,6 +51,15 @@ public class DefaultMemcachedBucketConfig extends AbstractBucketConfig implement
         this.rev = rev;
         this.ketamaNodes = new TreeMap<Long, NodeInfo>();
         populateKetamaNodes();
+
+        this.ketamaPoints = new long[ketamaNodes.size()];
+        this.ketamaPointNodes = new NodeInfo[ketamaNodes.size()];
+        int i = 0;
+        for (Map.Entry<Long, NodeInfo> entry : ketamaNodes.entrySet()) {
+            ketamaPoints[i] = entry.getKey();
+            ketamaPointNodes[i] = entry.getValue();
+            i++;
+        }
     }
 
     @Override
@@ -64,6 +82,25 @@ public class DefaultMemcachedBucketConfig extends AbstractBucketConfig implement
         return ketamaNodes;
     }
 
+    @Override
+    public int ketamaIndex(final long hash) {
+        int index = Arrays.binarySearch(ketamaPoints, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == ketamaPoints.length ? 0 : index;
+    }
+
+    @Override
+    public NodeInfo ketamaNodeAt(final int index) {
+        return ketamaPointNodes[index];
+    }
+
+    @Override
+    public int numberOfKetamaPoints() {
+        return ketamaPoints.length;
+    }
+
     private void populateKetamaNodes() {
         for (NodeInfo node : nodes()) {
             for (int i = 0; i < 40; i++) {
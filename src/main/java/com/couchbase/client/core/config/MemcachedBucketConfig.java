@@ -33,4 +33,27 @@ public interface MemcachedBucketConfig extends BucketConfig {
 
     SortedMap<Long, NodeInfo> ketamaNodes();
 
+    /**
+     * Returns the index of the point on the ketama continuum which is responsible for the given hash.
+     *
+     * @param hash the ketama hash of the key.
+     * @return the index of the point, between 0 and {@link #numberOfKetamaPoints()} (exclusive).
+     */
+    int ketamaIndex(long hash);
+
+    /**
+     * Returns information for the node at the given point on the ketama continuum.
+     *
+     * @param index the index of the point.
+     * @return the node info.
+     */
+    NodeInfo ketamaNodeAt(int index);
+
+    /**
+     * Returns the total number of points on the ketama continuum.
+     *
+     * @return the number of points.
+     */
+    int numberOfKetamaPoints();
+
 }
@@ -30,6 +30,7 @@ import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.internal.SignalConfigReload;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
 import com.couchbase.client.core.state.AbstractStateMachine;
 import com.couchbase.client.core.state.LifecycleState;
 import com.couchbase.client.core.state.NotConnectedException;
@@ -43,6 +44,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultChannelPromise;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.oio.OioEventLoopGroup;
@@ -61,6 +63,7 @@ import javax.net.ssl.SSLEngine;
 import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The common parent implementation for all {@link Endpoint}s.
@@ -143,6 +146,16 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
      */
     private volatile long reconnectAttempt = 1;
 
+    /**
+     * Number of requests written to the channel which have not been completed yet.
+     */
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+    /**
+     * The time of the last request written or completed, in nanoseconds.
+     */
+    private volatile long lastActivity = System.nanoTime();
+
     /**
      * Preset the stack trace for the static exceptions.
      */
@@ -338,12 +351,15 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
         if (state() == LifecycleState.CONNECTED) {
             if (request instanceof SignalFlush) {
                 if (hasWritten) {
-                    channel.flush();
+                    // reset before flushing, so a concurrent write from another dispatcher is never left unflushed
                     hasWritten = false;
+                    channel.flush();
                 }
             } else {
                 if (channel.isActive() && channel.isWritable()) {
-                    channel.write(request).addListener(WRITE_LOG_LISTENER);
+                    int count = inFlightCount(request);
+                    requestWritten(count);
+                    channel.write(request, new RequestWritePromise(channel, request, count));
                     hasWritten = true;
                 } else {
                     responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
@@ -357,6 +373,68 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
         }
     }
 
+    @Override
+    public int outstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    @Override
+    public long lastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Marks a request as written to the channel and therefore in-flight.
+     */
+    void requestWritten() {
+        requestWritten(1);
+    }
+
+    /**
+     * Marks a number of requests as written to the channel and therefore in-flight.
+     *
+     * @param count the number of requests written.
+     */
+    void requestWritten(final int count) {
+        outstandingRequests.addAndGet(count);
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of requests a write puts in-flight, so that it matches the number of completions.
+     *
+     * A {@link BinaryBatchRequest} completes each of its requests on its own and, if quiet, itself as the
+     * terminating NOOP.
+     *
+     * @param request the request to write.
+     * @return the number of requests it puts in-flight.
+     */
+    private static int inFlightCount(final CouchbaseRequest request) {
+        if (request instanceof BinaryBatchRequest) {
+            BinaryBatchRequest batch = (BinaryBatchRequest) request;
+            return batch.requests().size() + (batch.quiet() ? 1 : 0);
+        }
+        return 1;
+    }
+
+    /**
+     * Marks an in-flight request as completed, either because its response has been fully decoded or because
+     * it has been failed while on the wire.
+     */
+    void requestCompleted() {
+        requestCompleted(1);
+    }
+
+    /**
+     * Marks a number of in-flight requests as completed.
+     *
+     * @param count the number of requests completed.
+     */
+    void requestCompleted(final int count) {
+        outstandingRequests.addAndGet(-count);
+        lastActivity = System.nanoTime();
+    }
+
     /**
      * Helper method that is called from inside the event loop to notify the upper {@link Endpoint} of a disconnect.
      *
@@ -426,6 +504,43 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
         return "[" + addr + "][" + endpoint.getClass().getSimpleName() + "]: ";
     }
 
+    /**
+     * The promise of a request written through {@link #send(CouchbaseRequest)}.
+     *
+     * From the moment the {@link AbstractGenericHandler} accepts the request, it completes it as outstanding. If
+     * the write fails before, for example because the channel closed in the meantime, no response will ever
+     * arrive for it, so it is completed here and handed back to be retried.
+     */
+    final class RequestWritePromise extends DefaultChannelPromise implements ChannelFutureListener {
+
+        private final CouchbaseRequest request;
+        private final int count;
+        private volatile boolean accepted;
+
+        RequestWritePromise(final Channel channel, final CouchbaseRequest request, final int count) {
+            super(channel);
+            this.request = request;
+            this.count = count;
+            addListener(WRITE_LOG_LISTENER);
+            addListener(this);
+        }
+
+        /**
+         * Marks the request as accepted by the handler, which completes it from then on.
+         */
+        void accept() {
+            accepted = true;
+        }
+
+        @Override
+        public void operationComplete(final ChannelFuture future) {
+            if (!future.isSuccess() && !accepted) {
+                requestCompleted(count);
+                responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
+            }
+        }
+    }
+
     /**
      * A generic future listener which logs unsuccessful writes.
      *
@@ -23,6 +23,8 @@ package com.couchbase.client.core.endpoint;
 
 import com.couchbase.client.core.CouchbaseException;
 import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.core.RequestTimeoutException;
+import com.couchbase.client.core.ResponseCompleter;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.ResponseHandler;
 import com.couchbase.client.core.env.CoreEnvironment;
@@ -31,22 +33,30 @@ import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.BinaryResponse;
 import com.lmax.disruptor.EventSink;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToMessageCodec;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.CharsetUtil;
-import rx.Scheduler;
-import rx.functions.Action0;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import rx.functions.Action1;
 import rx.subjects.Subject;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Generic handler which acts as the common base type for all implementing handlers.
@@ -82,6 +92,16 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
      */
     private final Queue<REQUEST> sentRequestQueue;
 
+    /**
+     * The pending timeouts of the outstanding requests, cancelled once they complete.
+     */
+    private final Map<REQUEST, Timeout> timeouts = new IdentityHashMap<REQUEST, Timeout>();
+
+    /**
+     * Requests which timed out while responses are matched in order, their responses are discarded on arrival.
+     */
+    private final Set<REQUEST> timedOut = Collections.newSetFromMap(new IdentityHashMap<REQUEST, Boolean>());
+
     private final boolean isTransient;
 
     /**
@@ -91,6 +111,11 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
 
     private DecodingState currentDecodingState;
 
+    /**
+     * Completes the observables with their responses, created on first use from the event loop.
+     */
+    private ResponseCompleter completer;
+
     /**
      * Creates a new {@link AbstractGenericHandler} with the default queue.
      *
@@ -143,17 +168,52 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
      */
     protected abstract CouchbaseResponse decodeResponse(ChannelHandlerContext ctx, RESPONSE msg) throws Exception;
 
+    /**
+     * Accepts a request written by the endpoint before encoding it, from here on this handler completes it.
+     */
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        if (promise instanceof AbstractEndpoint.RequestWritePromise) {
+            ((AbstractEndpoint.RequestWritePromise) promise).accept();
+        }
+        super.write(ctx, msg, promise);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, REQUEST msg, List<Object> out) throws Exception {
-        ENCODED request = encodeRequest(ctx, msg);
-        sentRequestQueue.offer(msg);
+        ENCODED request;
+        try {
+            request = encodeRequest(ctx, msg);
+        } catch (Exception e) {
+            endpoint.requestCompleted();
+            throw e;
+        }
+        if (!sentRequestQueue.offer(msg)) {
+            ReferenceCountUtil.release(request);
+            endpoint.requestCompleted();
+            CouchbaseException duplicate = new CouchbaseException("A request with the same opaque is already "
+                + "in-flight: " + msg);
+            msg.observable().onError(duplicate);
+            throw duplicate;
+        }
         out.add(request);
+
+        long deadline = msg.deadline();
+        if (deadline != 0) {
+            timeouts.put(msg, env().timer().newTimeout(new RequestTimeoutTask(ctx, msg),
+                deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+        }
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, RESPONSE msg, List<Object> out) throws Exception {
         if (currentDecodingState == DecodingState.INITIAL) {
-            currentRequest = sentRequestQueue.poll();
+            currentRequest = pollSentRequest(msg);
+            if (currentRequest == null) {
+                LOGGER.debug(logIdent(ctx, endpoint) + "No outstanding request found for response, discarding.");
+                return;
+            }
             currentDecodingState = DecodingState.STARTED;
             if (LOGGER.isTraceEnabled()) {
                 LOGGER.trace(logIdent(ctx, endpoint) + "Started decoding of " + currentRequest);
@@ -163,7 +223,11 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
         try {
             CouchbaseResponse response = decodeResponse(ctx, msg);
             if (response != null) {
-                publishResponse(response, currentRequest.observable());
+                if (timedOut.contains(currentRequest)) {
+                    discardResponse(response);
+                } else {
+                    publishResponse(response, currentRequest.observable());
+                }
             }
         } catch (CouchbaseException e) {
             currentRequest.observable().onError(e);
@@ -175,11 +239,76 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
             if (LOGGER.isTraceEnabled()) {
                 LOGGER.trace(logIdent(ctx, endpoint) + "Finished decoding of " + currentRequest);
             }
+            requestCompleted(currentRequest);
+            timedOut.remove(currentRequest);
             currentRequest = null;
             currentDecodingState = DecodingState.INITIAL;
         }
     }
 
+    /**
+     * Removes and returns the outstanding request the incoming response belongs to.
+     *
+     * By default responses are matched in the order the requests have been written, protocols which can identify
+     * the request from the response may override it to allow out of order responses.
+     *
+     * @param msg the incoming response.
+     * @return the request or null if there is no matching one outstanding.
+     */
+    protected REQUEST pollSentRequest(final RESPONSE msg) {
+        return sentRequestQueue.poll();
+    }
+
+    /**
+     * Returns true if responses are matched in the order the requests have been written.
+     *
+     * Protocols which override {@link #pollSentRequest(Object)} to identify the request from the response need
+     * to return false, so that requests which time out can be dropped from the outstanding ones.
+     *
+     * @return true if responses arrive in order of the requests.
+     */
+    protected boolean respondsInOrder() {
+        return true;
+    }
+
+    /**
+     * Marks an outstanding request as completed without a response being decoded for it, for example because
+     * it has been acknowledged implicitly.
+     *
+     * @param request the completed request.
+     */
+    protected void requestCompleted(final REQUEST request) {
+        cancelTimeout(request);
+        endpoint.requestCompleted();
+    }
+
+    /**
+     * Cancels the pending timeout of a request once it completed.
+     *
+     * @param request the completed request.
+     */
+    private void cancelTimeout(final REQUEST request) {
+        Timeout timeout = timeouts.remove(request);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Discards the late response of a request which already timed out.
+     *
+     * @param response the response to discard.
+     */
+    private void discardResponse(final CouchbaseResponse response) {
+        LOGGER.debug("Discarding response of timed out request: " + response.request());
+        if (response instanceof BinaryResponse) {
+            BinaryResponse binaryResponse = (BinaryResponse) response;
+            if (binaryResponse.content() != null && binaryResponse.content().refCnt() > 0) {
+                binaryResponse.content().release();
+            }
+        }
+    }
+
     /**
      * Publishes a response with the attached observable.
      *
@@ -189,26 +318,33 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
     protected void publishResponse(final CouchbaseResponse response,
         final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
         if (response.status() != ResponseStatus.RETRY && observable != null) {
-            final Scheduler.Worker worker = env().scheduler().createWorker();
-            worker.schedule(new Action0() {
-                @Override
-                public void call() {
-                    try {
-                        observable.onNext(response);
-                        observable.onCompleted();
-                    } catch(Exception ex) {
-                        LOGGER.warn("Caught exception while onNext on observable", ex);
-                        observable.onError(ex);
-                    } finally {
-                        worker.unsubscribe();
-                    }
-                }
-            });
+            if (completer == null) {
+                completer = new ResponseCompleter(env());
+            }
+            completer.complete(response, observable);
         } else {
             responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, response, observable);
         }
     }
 
+    /**
+     * Fails the request currently decoded with the error through the same completion path as responses, unless
+     * it already timed out.
+     *
+     * The request is marked as completed and its timeout cancelled once decoding {@link #finishedDecoding()}.
+     *
+     * @param error the error to fail the request with.
+     */
+    protected void publishError(final Throwable error) {
+        if (currentRequest == null || timedOut.contains(currentRequest)) {
+            return;
+        }
+        if (completer == null) {
+            completer = new ResponseCompleter(env());
+        }
+        completer.fail(error, currentRequest.observable());
+    }
+
     /**
      * Notify that decoding is finished. This needs to be called by the child handlers in order to
      * signal that operations are done.
@@ -220,6 +356,17 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
         }
     }
 
+    /**
+     * Hands the responses completed during this read over at once, if completions are batched.
+     */
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+        if (completer != null) {
+            completer.flush();
+        }
+        super.channelReadComplete(ctx);
+    }
+
     @Override
     public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
         LOGGER.debug(logIdent(ctx, endpoint) + "Channel Inactive.");
@@ -259,6 +406,14 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         handleOutstandingOperations(ctx);
+        if (currentRequest != null) {
+            requestCompleted(currentRequest);
+            timedOut.remove(currentRequest);
+        }
+        if (completer != null) {
+            completer.shutdown();
+            completer = null;
+        }
     }
 
     /**
@@ -275,6 +430,10 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
         LOGGER.debug(logIdent(ctx, endpoint) + "Cancelling " + sentRequestQueue.size() + " outstanding requests.");
         while (!sentRequestQueue.isEmpty()) {
             REQUEST req = sentRequestQueue.poll();
+            requestCompleted(req);
+            if (timedOut.remove(req)) {
+                continue;
+            }
             try {
                 sideEffectRequestToCancel(req);
                 req.observable().onError(new RequestCancelledException("Request cancelled in-flight."));
@@ -285,6 +444,63 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
     }
 
 
+    /**
+     * Fails the request with a {@link RequestTimeoutException} if it is still in-flight on this channel.
+     *
+     * If responses are matched out of order, the request is removed from the outstanding requests. Otherwise
+     * it keeps its place so that the responses of the following requests still line up, and its late response
+     * is consumed and discarded once it arrives.
+     *
+     * @param ctx the handler context.
+     * @param request the request which reached its deadline.
+     */
+    private void timeoutRequest(final ChannelHandlerContext ctx, final REQUEST request) {
+        if (timeouts.remove(request) == null) {
+            return;
+        }
+
+        if (respondsInOrder()) {
+            timedOut.add(request);
+        } else if (sentRequestQueue.remove(request)) {
+            endpoint.requestCompleted();
+        } else {
+            return;
+        }
+
+        LOGGER.debug(logIdent(ctx, endpoint) + "Request timed out in-flight: " + request);
+        try {
+            sideEffectRequestToCancel(request);
+            request.observable().onError(new RequestTimeoutException("Request timed out in-flight."));
+        } catch (Exception ex) {
+            LOGGER.info("Exception thrown while timing out operation: " + request, ex);
+        }
+    }
+
+    /**
+     * Fired by the shared timer once the deadline of an in-flight request is reached, and then moves over to
+     * the event loop of the channel, which owns the outstanding requests.
+     */
+    private final class RequestTimeoutTask implements TimerTask, Runnable {
+
+        private final ChannelHandlerContext ctx;
+        private final REQUEST request;
+
+        RequestTimeoutTask(final ChannelHandlerContext ctx, final REQUEST request) {
+            this.ctx = ctx;
+            this.request = request;
+        }
+
+        @Override
+        public void run(final Timeout timeout) {
+            ctx.executor().execute(this);
+        }
+
+        @Override
+        public void run() {
+            timeoutRequest(ctx, request);
+        }
+    }
+
     /**
      * This method can be overridden as it is called every time an operation is cancelled.
      *
@@ -306,7 +522,7 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
                 if (keepAlive != null) {
                     keepAlive.observable().subscribe(new KeepAliveResponseAction(ctx));
                     onKeepAliveFired(ctx, keepAlive);
-                    ctx.pipeline().writeAndFlush(keepAlive);
+                    writeAndFlushInternal(ctx, keepAlive);
                 }
                 return;
             }
@@ -315,6 +531,18 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
         }
     }
 
+    /**
+     * Writes a request the handler issues on its own instead of receiving it from the endpoint, so it is tracked
+     * as outstanding until its response has been decoded.
+     *
+     * @param ctx the channel context.
+     * @param request the request to write through the whole pipeline.
+     */
+    protected void writeAndFlushInternal(final ChannelHandlerContext ctx, final CouchbaseRequest request) {
+        endpoint.requestWritten();
+        ctx.pipeline().writeAndFlush(request);
+    }
+
     /**
      * Override to return a non-null request to be fired in the pipeline in case a keep alive is triggered.
      *
@@ -56,4 +56,19 @@ public interface Endpoint extends Stateful<LifecycleState> {
      */
     void send(CouchbaseRequest request);
 
+    /**
+     * Returns the number of requests written to the {@link Endpoint} which have not been completed yet.
+     *
+     * @return the number of requests in-flight.
+     */
+    int outstandingRequests();
+
+    /**
+     * Returns the time (in {@link System#nanoTime()}) at which a request has last been written to or completed
+     * on the {@link Endpoint}.
+     *
+     * @return the time of the last activity.
+     */
+    long lastActivity();
+
 }
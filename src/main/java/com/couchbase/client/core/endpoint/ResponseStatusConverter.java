@@ -44,6 +44,7 @@ public class ResponseStatusConverter {
     public static final short BINARY_ERR_NOT_STORED = 0x05;
     public static final short BINARY_ERR_DELTA_BADVAL = 0x06;
     public static final short BINARY_ERR_NOT_MY_VBUCKET = 0x07;
+    public static final short BINARY_ERR_ROLLBACK = 0x23;
     public static final short BINARY_ERR_UNKNOWN_COMMAND = 0x81;
     public static final short BINARY_ERR_NO_MEM = 0x82;
     public static final short BINARY_ERR_NOT_SUPPORTED = 0x83;
@@ -87,6 +88,8 @@ public class ResponseStatusConverter {
                 return ResponseStatus.INVALID_ARGUMENTS;
             case BINARY_ERR_DELTA_BADVAL:
                 return ResponseStatus.INVALID_ARGUMENTS;
+            case BINARY_ERR_ROLLBACK:
+                return ResponseStatus.ROLLBACK;
             default:
                 return ResponseStatus.FAILURE;
         }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.dcp;
+
+import com.couchbase.client.core.CouchbaseException;
+
+/**
+ * Signals that the DCP connection a stream was open on has been closed before the stream ended.
+ *
+ * The endpoint reconnects on its own, so the stream can be requested again from where it stopped.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class DCPConnectionClosedException extends CouchbaseException {
+
+    public DCPConnectionClosedException() {
+    }
+
+    public DCPConnectionClosedException(String message) {
+        super(message);
+    }
+
+    public DCPConnectionClosedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DCPConnectionClosedException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -25,32 +25,69 @@ package com.couchbase.client.core.endpoint.dcp;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.kv.KeyValueAuthHandler;
+import com.couchbase.client.core.endpoint.kv.KeyValueFrameDecoder;
 import com.couchbase.client.core.env.CoreEnvironment;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import com.couchbase.client.core.message.dcp.OpenConnectionRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequestEncoder;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * This endpoint defines the pipeline for DCP requests and responses.
  *
+ * The endpoint is persistent, since the DCP connection and all streams opened on it live as long as the channel.
+ * Once a connection has been opened, it is opened again with the same name whenever the endpoint reconnects.
+ * If noops are enabled, a channel on which nothing has been read for twice the noop interval is closed as dead,
+ * which triggers the reconnect.
+ *
  * @author Sergey Avseyev
  * @since 1.1.0
  */
 public class DCPEndpoint extends AbstractEndpoint {
 
+    /**
+     * The name of the DCP connection opened on this endpoint, null until one has been opened.
+     */
+    private volatile String connectionName;
+
     public DCPEndpoint(String hostname, String bucket, String password, int port,
                        CoreEnvironment environment, RingBuffer<ResponseEvent> responseBuffer) {
-        super(hostname, bucket, password, port, environment, responseBuffer, true);
+        super(hostname, bucket, password, port, environment, responseBuffer, false);
     }
 
     @Override
     protected void customEndpointHandlers(ChannelPipeline pipeline) {
+        long noopInterval = environment().dcpNoopInterval();
+        if (noopInterval > 0) {
+            pipeline.addLast(new IdleStateHandler(2 * noopInterval, 0, 0, TimeUnit.MILLISECONDS));
+        }
         pipeline
-                .addLast(new BinaryMemcacheClientCodec())
-                .addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE))
+                .addLast(new KeyValueFrameDecoder())
+                .addLast(new BinaryMemcacheRequestEncoder())
                 .addLast(new KeyValueAuthHandler(bucket(), password()))
-                .addLast(new DCPHandler(this, responseBuffer(), true));
+                .addLast(new DCPHandler(this, responseBuffer(), false));
+
+    }
+
+    /**
+     * Remembers the name of the DCP connection opened on the current channel.
+     *
+     * @param connectionName the name of the connection.
+     */
+    void connectionOpened(final String connectionName) {
+        this.connectionName = connectionName;
+    }
 
+    /**
+     * Creates the request to open the DCP connection again on a new channel.
+     *
+     * @return the request, or null if no connection has been opened on this endpoint yet.
+     */
+    OpenConnectionRequest reopenRequest() {
+        String name = connectionName;
+        return name == null ? null : new OpenConnectionRequest(name, bucket(), password());
     }
 }
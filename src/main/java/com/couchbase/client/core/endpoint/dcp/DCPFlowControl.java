@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.dcp;
+
+import com.couchbase.client.core.message.dcp.AbstractDCPMessage;
+import com.couchbase.client.core.message.dcp.DCPRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Acknowledges the bytes of consumed DCP messages to the server, once flow control has been negotiated on the
+ * connection.
+ *
+ * The server stops sending once the unacknowledged bytes reach the negotiated connection buffer size, so what the
+ * client buffers for a slow consumer stays bounded by it. As an operator it is placed after the consumer's scheduler,
+ * which means a batch of messages only counts as consumed once the subscriber's {@code onNext} has returned.
+ * Messages which are not handed to a consumer at all are acknowledged right away through {@link #acknowledge(int)}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class DCPFlowControl implements Observable.Operator<List<DCPRequest>, List<DCPRequest>> {
+
+    /**
+     * The channel the acknowledgements are written to.
+     */
+    private final Channel channel;
+
+    /**
+     * The number of consumed bytes after which they are acknowledged.
+     */
+    private final int ackThreshold;
+
+    /**
+     * The number of consumed bytes not acknowledged yet.
+     */
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+
+    /**
+     * Creates a new {@link DCPFlowControl}.
+     *
+     * @param channel the channel the acknowledgements are written to.
+     * @param bufferSize the negotiated connection buffer size in bytes.
+     * @param ackThreshold the percentage of the buffer which is consumed before it is acknowledged.
+     */
+    public DCPFlowControl(final Channel channel, final int bufferSize, final int ackThreshold) {
+        this.channel = channel;
+        this.ackThreshold = (int) ((long) bufferSize * ackThreshold / 100);
+    }
+
+    @Override
+    public Subscriber<? super List<DCPRequest>> call(final Subscriber<? super List<DCPRequest>> child) {
+        return new Subscriber<List<DCPRequest>>(child) {
+            @Override
+            public void onNext(final List<DCPRequest> messages) {
+                child.onNext(messages);
+                int consumed = 0;
+                for (DCPRequest message : messages) {
+                    if (message instanceof AbstractDCPMessage) {
+                        consumed += ((AbstractDCPMessage) message).messageLength();
+                    }
+                }
+                acknowledge(consumed);
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                child.onError(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                child.onCompleted();
+            }
+        };
+    }
+
+    /**
+     * Marks the given number of bytes as consumed and acknowledges them once the threshold is reached.
+     *
+     * @param bytes the number of consumed bytes.
+     */
+    public void acknowledge(final int bytes) {
+        if (bytes <= 0 || unacknowledged.addAndGet(bytes) < ackThreshold) {
+            return;
+        }
+
+        int acknowledged = unacknowledged.getAndSet(0);
+        if (acknowledged > 0) {
+            channel.writeAndFlush(bufferAcknowledgement(channel, acknowledged));
+        }
+    }
+
+    /**
+     * Returns the number of consumed bytes which have not been acknowledged yet.
+     *
+     * @return the unacknowledged bytes.
+     */
+    public int unacknowledged() {
+        return unacknowledged.get();
+    }
+
+    /**
+     * Creates a DCP Buffer Acknowledgement, which carries the number of acknowledged bytes in its extras.
+     *
+     * @param channel the channel to allocate the extras from.
+     * @param bytes the number of bytes to acknowledge.
+     * @return the request to write.
+     */
+    private static BinaryMemcacheRequest bufferAcknowledgement(final Channel channel, final int bytes) {
+        ByteBuf extras = channel.alloc().buffer(4);
+        extras.writeInt(bytes);
+
+        BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(extras);
+        request.setOpcode(DCPHandler.OP_BUFFER_ACKNOWLEDGEMENT);
+        request.setExtrasLength((byte) extras.readableBytes());
+        request.setTotalBodyLength(extras.readableBytes());
+        return request;
+    }
+}
@@ -22,15 +22,16 @@
 
 package com.couchbase.client.core.endpoint.dcp;
 
+import com.couchbase.client.core.CouchbaseException;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
 import com.couchbase.client.core.endpoint.ResponseStatusConverter;
+import com.couchbase.client.core.endpoint.util.ReleaseOnUnsubscribe;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
-import com.couchbase.client.core.message.dcp.AbstractDCPRequest;
 import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.dcp.FailoverLogEntry;
 import com.couchbase.client.core.message.dcp.MutationMessage;
@@ -38,23 +39,36 @@ import com.couchbase.client.core.message.dcp.OpenConnectionRequest;
 import com.couchbase.client.core.message.dcp.OpenConnectionResponse;
 import com.couchbase.client.core.message.dcp.RemoveMessage;
 import com.couchbase.client.core.message.dcp.SnapshotMarkerMessage;
+import com.couchbase.client.core.message.dcp.StreamEndMessage;
 import com.couchbase.client.core.message.dcp.StreamRequestRequest;
 import com.couchbase.client.core.message.dcp.StreamRequestResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
 import com.lmax.disruptor.EventSink;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.CharsetUtil;
+import rx.Observable;
 import rx.Scheduler;
-import rx.functions.Action1;
+import rx.functions.Func1;
 
+import java.net.SocketAddress;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Sergey Avseyev
@@ -69,9 +83,34 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
 
     public static final byte OP_OPEN_CONNECTION = 0x50;
     public static final byte OP_STREAM_REQUEST = 0x53;
+    public static final byte OP_STREAM_END = 0x55;
     public static final byte OP_SNAPSHOT_MARKER = 0x56;
     public static final byte OP_MUTATION = 0x57;
     public static final byte OP_REMOVE = 0x58;
+    public static final byte OP_NOOP = 0x5c;
+    public static final byte OP_BUFFER_ACKNOWLEDGEMENT = 0x5d;
+    public static final byte OP_CONTROL = 0x5e;
+
+    /**
+     * Every binary memcache message has a 24 bytes header, which counts against the connection buffer.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The DCP control key to negotiate flow control with.
+     */
+    private static final String CONNECTION_BUFFER_SIZE = "connection_buffer_size";
+
+    /**
+     * The DCP control keys to make the server send noops on an idle connection.
+     */
+    private static final String ENABLE_NOOP = "enable_noop";
+    private static final String SET_NOOP_INTERVAL = "set_noop_interval";
+
+    /**
+     * The magic byte of a binary memcache response.
+     */
+    private static final byte MAGIC_RESPONSE = (byte) 0x81;
 
     /**
      * Maps stream identifiers to {@link DCPStream}. The identifiers put into
@@ -79,11 +118,47 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
      */
     private final Map<Integer, DCPStream> streams;
 
+    /**
+     * Flattens a batch of messages into single messages.
+     */
+    private static final Func1<List<DCPRequest>, Observable<DCPRequest>> FLATTEN_BATCH =
+        new Func1<List<DCPRequest>, Observable<DCPRequest>>() {
+            @Override
+            public Observable<DCPRequest> call(final List<DCPRequest> batch) {
+                return Observable.from(batch);
+            }
+        };
+
+    /**
+     * The streams which collected messages during the current read, delivered once the read is complete.
+     */
+    private final List<DCPStream> batching;
+
     /**
      * Counter for stream identifiers.
      */
     private int nextStreamId = 0;
 
+    /**
+     * Acknowledges consumed bytes to the server, null until flow control has been negotiated.
+     */
+    private DCPFlowControl flowControl;
+
+    /**
+     * The keys of the control messages sent, in the order their responses arrive.
+     */
+    private final Queue<String> pendingControls;
+
+    /**
+     * Set once the server has been asked to send noops, which makes a silent connection a dead one.
+     */
+    private boolean noopEnabled;
+
+    /**
+     * The endpoint to reopen the DCP connection through after a reconnect, null if not a {@link DCPEndpoint}.
+     */
+    private final DCPEndpoint dcpEndpoint;
+
     /**
      * Creates a new {@link DCPHandler} with the default queue for requests.
      *
@@ -104,6 +179,9 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
     public DCPHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<DCPRequest> queue, boolean isTransient) {
         super(endpoint, responseBuffer, queue, isTransient);
         streams = new HashMap<Integer, DCPStream>();
+        batching = new ArrayList<DCPStream>();
+        pendingControls = new ArrayDeque<String>();
+        dcpEndpoint = endpoint instanceof DCPEndpoint ? (DCPEndpoint) endpoint : null;
     }
 
     @Override
@@ -125,6 +203,38 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
         return request;
     }
 
+    /**
+     * Only responses to requests sent by the client are matched against the outstanding requests, everything the
+     * producer sends on its own is dispatched to the stream it belongs to.
+     */
+    @Override
+    protected void decode(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg, List<Object> out)
+            throws Exception {
+        switch (msg.getOpcode()) {
+            case OP_OPEN_CONNECTION:
+            case OP_STREAM_REQUEST:
+                super.decode(ctx, msg, out);
+                break;
+            case OP_CONTROL:
+            case OP_BUFFER_ACKNOWLEDGEMENT:
+                handleControlResponse(ctx, msg);
+                break;
+            case OP_NOOP:
+                handleNoop(ctx, msg);
+                break;
+            default:
+                DCPStream stream = streams.get(msg.getOpaque());
+                try {
+                    handleDCPRequest(ctx, msg);
+                } catch (Exception e) {
+                    if (stream == null) {
+                        throw e;
+                    }
+                    stream.subject().onError(e instanceof CouchbaseException ? e : new CouchbaseException(e));
+                }
+        }
+    }
+
     @Override
     protected CouchbaseResponse decodeResponse(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg)
             throws Exception {
@@ -135,84 +245,93 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
 
         if (msg.getOpcode() == OP_OPEN_CONNECTION && request instanceof OpenConnectionRequest) {
             response = new OpenConnectionResponse(status, request);
+            if (status.isSuccess()) {
+                negotiateFlowControl(ctx);
+                negotiateNoop(ctx);
+                if (dcpEndpoint != null) {
+                    dcpEndpoint.connectionOpened(((OpenConnectionRequest) request).connectionName());
+                }
+            }
+        } else if (msg.getOpcode() == OP_STREAM_REQUEST && request instanceof StreamRequestRequest
+            && !status.isSuccess()) {
+            streams.remove(msg.getOpaque());
+            long rollbackSequenceNumber = 0;
+            if (status == ResponseStatus.ROLLBACK && msg.content().readableBytes() >= 8) {
+                rollbackSequenceNumber = msg.content().readLong();
+            }
+            response = new StreamRequestResponse(status, null, Collections.<FailoverLogEntry>emptyList(),
+                rollbackSequenceNumber, request);
         } else if (msg.getOpcode() == OP_STREAM_REQUEST && request instanceof StreamRequestRequest) {
             ByteBuf content = msg.content();
             Scheduler scheduler = env().scheduler();
-            DCPStream stream = streams.get(msg.getOpaque());
+            final DCPStream stream = streams.get(msg.getOpaque());
             List<FailoverLogEntry> failoverLog = new ArrayList<FailoverLogEntry>(content.readableBytes() / 16);
             while (content.readableBytes() >= 16) {
                 FailoverLogEntry entry = new FailoverLogEntry(content.readLong(), content.readLong());
                 failoverLog.add(entry);
             }
-            response = new StreamRequestResponse(status, stream.subject().onBackpressureBuffer().observeOn(scheduler),
-                    failoverLog, request);
-        } else {
-            /**
-             * FIXME
-             * There are two cases:
-             *
-             * 1) Queue is empty:
-             *    In this case outer method {@link AbstractGenericHandler#decode} picks 'null'
-             *    as a current request, and it will might lead to NPEs because it does not cover
-             *    scenario when we receive some packet without request in the queue.
-             *
-             * 2) Queue is not empty:
-             *    In this case we might notify about errors wrong observable in the outer method,
-             *    so we have to substitute it as soon as we detected that incoming message is not
-             *    relevant to 'current request'
-             */
-            final DCPRequest oldRequest = currentRequest();
-            final DCPStream stream = streams.get(msg.getOpaque());
-            final DCPRequest dummy = new AbstractDCPRequest(stream.bucket(), null) {
-            };
-            dummy.observable().subscribe(new Action1<CouchbaseResponse>() {
+            stream.expireAfter(env().autoreleaseAfter(), TimeUnit.MILLISECONDS, flowControl);
+            Observable<List<DCPRequest>> batches = stream.batches().onBackpressureBuffer().observeOn(scheduler);
+            if (flowControl != null) {
+                batches = batches.lift(flowControl);
+            }
+            batches = batches.lift(new ReleaseOnUnsubscribe<List<DCPRequest>>() {
                 @Override
-                public void call(CouchbaseResponse couchbaseResponse) {
-                    // skip
+                protected void unsubscribed() {
+                    stream.close();
                 }
-            }, new Action1<Throwable>() {
+
                 @Override
-                public void call(Throwable throwable) {
-                    stream.subject().onError(throwable);
+                protected void release(final List<DCPRequest> messages) {
+                    DCPStream.release(messages, null);
                 }
             });
-            try {
-                currentRequest(dummy);
-                handleDCPRequest(ctx, msg);
-            } finally {
-                currentRequest(oldRequest);
-            }
-        }
-
-        if (response != null || request == null) {
+            Observable<DCPRequest> messages = batches.concatMap(FLATTEN_BATCH);
+            response = new StreamRequestResponse(status, messages, batches, failoverLog, 0, request);
+        } else {
             finishedDecoding();
+            throw new IllegalStateException("Unexpected DCP response " + msg.getOpcode() + " for " + request);
         }
+
+        finishedDecoding();
         return response;
     }
 
     /**
      * Handles incoming stream of DCP messages.
+     *
+     * Messages are queued in their stream until it is subscribed to and only acknowledged once consumed, so they
+     * count against the connection buffer until then. Only messages of unknown or closed streams are released and
+     * acknowledged right away, so they neither leak nor hold up the connection buffer.
      */
     private void handleDCPRequest(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg) {
         final DCPStream stream = streams.get(msg.getOpaque());
+        int messageLength = HEADER_SIZE + msg.getTotalBodyLength();
+        boolean closed = stream != null && stream.isClosed();
+        if (stream == null) {
+            LOGGER.info("Discarding DCP message for unknown stream: {}, {}", msg.getOpcode(), msg);
+            acknowledge(messageLength);
+            return;
+        }
+
         DCPRequest request = null;
         int flags = 0;
+        long bySequenceNumber = 0;
+        long revisionSequenceNumber = 0;
 
         switch (msg.getOpcode()) {
             case OP_SNAPSHOT_MARKER:
                 long startSequenceNumber = 0;
                 long endSequenceNumber = 0;
                 if (msg.getExtrasLength() > 0) {
-                    final ByteBuf extrasReleased = msg.getExtras();
-                    final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                    extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                    startSequenceNumber = extras.readLong();
-                    endSequenceNumber = extras.readLong();
-                    flags = extras.readInt();
-                    extras.release();
+                    ByteBuf extras = msg.getExtras();
+                    int offset = extras.readerIndex();
+                    startSequenceNumber = extras.getLong(offset);
+                    endSequenceNumber = extras.getLong(offset + 8);
+                    flags = extras.getInt(offset + 16);
                 }
-                request = new SnapshotMarkerMessage(msg.getStatus(), startSequenceNumber, endSequenceNumber,
-                        flags, stream.bucket());
+                request = new SnapshotMarkerMessage(messageLength, msg.getStatus(), startSequenceNumber,
+                        endSequenceNumber, flags, stream.bucket(), null);
                 break;
 
             case OP_MUTATION:
@@ -220,27 +339,240 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
                 int lockTime = 0;
 
                 if (msg.getExtrasLength() > 0) {
-                    final ByteBuf extrasReleased = msg.getExtras();
-                    final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                    extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                    extras.skipBytes(16); /* by_seqno, rev_seqno */
-                    flags = extras.readInt();
-                    expiration = extras.readInt();
-                    lockTime = extras.readInt();
-                    extras.release();
+                    ByteBuf extras = msg.getExtras();
+                    int offset = extras.readerIndex();
+                    bySequenceNumber = extras.getLong(offset);
+                    revisionSequenceNumber = extras.getLong(offset + 8);
+                    flags = extras.getInt(offset + 16);
+                    expiration = extras.getInt(offset + 20);
+                    lockTime = extras.getInt(offset + 24);
                 }
-                request = new MutationMessage(msg.getStatus(), msg.getKey(), msg.content().retain(),
-                        expiration, flags, lockTime, msg.getCAS(), stream.bucket());
-                // TODO: release message content if nobody consumed it
+                if (closed) {
+                    break;
+                }
+                request = new MutationMessage(messageLength, msg.getStatus(), bySequenceNumber,
+                        revisionSequenceNumber, msg.getKey(), msg.content().retain(), expiration, flags, lockTime,
+                        msg.getCAS(), stream.bucket(), null);
                 break;
             case OP_REMOVE:
-                request = new RemoveMessage(msg.getStatus(), msg.getKey(), msg.getCAS(), stream.bucket());
+                if (msg.getExtrasLength() > 0) {
+                    ByteBuf extras = msg.getExtras();
+                    int offset = extras.readerIndex();
+                    bySequenceNumber = extras.getLong(offset);
+                    revisionSequenceNumber = extras.getLong(offset + 8);
+                }
+                request = new RemoveMessage(messageLength, msg.getStatus(), bySequenceNumber,
+                        revisionSequenceNumber, msg.getKey(), msg.getCAS(), stream.bucket(), null);
+                break;
+            case OP_STREAM_END:
+                if (msg.getExtrasLength() > 0) {
+                    ByteBuf extras = msg.getExtras();
+                    flags = extras.getInt(extras.readerIndex());
+                }
+                streams.remove(msg.getOpaque());
+                request = new StreamEndMessage(messageLength, msg.getStatus(), flags, stream.bucket(), null);
                 break;
             default:
                 LOGGER.info("Unhandled DCP message: {}, {}", msg.getOpcode(), msg);
         }
-        if (request != null) {
-            stream.subject().onNext(request);
+        if (request != null && !closed) {
+            batch(stream, request);
+        } else {
+            acknowledge(messageLength);
+        }
+        if (request instanceof StreamEndMessage) {
+            stream.flush();
+            stream.subject().onCompleted();
+        }
+    }
+
+    /**
+     * Adds a message to the next batch of its stream.
+     *
+     * A batch is delivered once the current read is complete, it reached the configured size, or before a snapshot
+     * marker, so every batch belongs to a single snapshot.
+     *
+     * @param stream the stream the message belongs to.
+     * @param message the message.
+     */
+    private void batch(final DCPStream stream, final DCPRequest message) {
+        if (message instanceof SnapshotMarkerMessage) {
+            stream.flush();
+        }
+        int size = stream.add(message);
+        if (size >= env().dcpBatchSize()) {
+            stream.flush();
+        } else if (size == 1) {
+            // may add a stream more than once per read, which is fine since flushing an empty batch does nothing
+            batching.add(stream);
+        }
+    }
+
+    /**
+     * Delivers the batches collected during the current read.
+     */
+    private void flushBatches() {
+        for (int i = 0; i < batching.size(); i++) {
+            batching.get(i).flush();
+        }
+        batching.clear();
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+        flushBatches();
+        super.channelReadComplete(ctx);
+    }
+
+    /**
+     * Fails all open streams, since they end with the connection and need to be requested again once it is back.
+     */
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        flushBatches();
+        if (!streams.isEmpty()) {
+            LOGGER.info("DCP connection closed with {} open streams.", streams.size());
+            CouchbaseException cause = new DCPConnectionClosedException(
+                "DCP connection closed before the stream ended.");
+            for (DCPStream stream : new ArrayList<DCPStream>(streams.values())) {
+                stream.subject().onError(cause);
+            }
+            streams.clear();
+        }
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Handles the response to a control message or buffer acknowledgement, which is only sent on failure.
+     */
+    private void handleControlResponse(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg) {
+        ResponseStatus status = ResponseStatusConverter.fromBinary(msg.getStatus());
+        String key = msg.getOpcode() == OP_CONTROL ? pendingControls.poll() : null;
+        if (status.isSuccess()) {
+            return;
+        }
+
+        if (CONNECTION_BUFFER_SIZE.equals(key)) {
+            LOGGER.warn("DCP flow control not supported by the server, disabling it: {}", status);
+            flowControl = null;
+        } else if ((ENABLE_NOOP.equals(key) || SET_NOOP_INTERVAL.equals(key)) && noopEnabled) {
+            LOGGER.warn("DCP noops not supported by the server, dead connections are not detected: {}", status);
+            noopEnabled = false;
+        } else {
+            LOGGER.warn("DCP control message failed: {}, {}, {}", msg.getOpcode(), key, status);
+        }
+    }
+
+    /**
+     * Answers a noop of the server, which closes the connection if it does not get an answer in time.
+     *
+     * The encoder only writes requests, whose header just differs from a response in the magic and in carrying the
+     * partition where a response has its status, which is left at 0 for success.
+     */
+    private void handleNoop(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg) {
+        BinaryMemcacheRequest response = new DefaultBinaryMemcacheRequest();
+        response.setMagic(MAGIC_RESPONSE);
+        response.setOpcode(OP_NOOP);
+        response.setOpaque(msg.getOpaque());
+        ctx.writeAndFlush(response);
+    }
+
+    /**
+     * Closes a connection on which nothing has been read for twice the noop interval, since the server would have
+     * sent a noop on a healthy one. Closing fails the open streams and makes the endpoint reconnect.
+     */
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+            if (noopEnabled) {
+                LOGGER.warn("Nothing read on the DCP connection for twice the noop interval, closing it as dead.");
+                ctx.close();
+            }
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    /**
+     * Opens the DCP connection again once the channel of a reconnecting endpoint is connected, before any stream
+     * is requested on it.
+     */
+    @Override
+    public void connect(final ChannelHandlerContext ctx, final SocketAddress remoteAddress,
+        final SocketAddress localAddress, final ChannelPromise promise) throws Exception {
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+                OpenConnectionRequest reopen = dcpEndpoint == null ? null : dcpEndpoint.reopenRequest();
+                if (future.isSuccess() && reopen != null) {
+                    LOGGER.info("Reopening DCP connection {} after reconnect.", reopen.connectionName());
+                    writeAndFlushInternal(ctx, reopen);
+                }
+            }
+        });
+        super.connect(ctx, remoteAddress, localAddress, promise);
+    }
+
+    /**
+     * Asks the server to limit the unacknowledged bytes on the connection to the configured buffer size and starts
+     * acknowledging consumed messages.
+     *
+     * @param ctx the channel handler context.
+     */
+    private void negotiateFlowControl(final ChannelHandlerContext ctx) {
+        int bufferSize = env().dcpConnectionBufferSize();
+        if (bufferSize <= 0 || flowControl != null) {
+            return;
+        }
+
+        flowControl = new DCPFlowControl(ctx.channel(), bufferSize, env().dcpConnectionBufferAckThreshold());
+        control(ctx, CONNECTION_BUFFER_SIZE, Integer.toString(bufferSize));
+    }
+
+    /**
+     * Asks the server to send a noop whenever the connection has been idle for the configured interval, which
+     * allows to detect a dead connection.
+     *
+     * @param ctx the channel handler context.
+     */
+    private void negotiateNoop(final ChannelHandlerContext ctx) {
+        long interval = env().dcpNoopInterval();
+        if (interval <= 0 || noopEnabled) {
+            return;
+        }
+
+        noopEnabled = true;
+        control(ctx, ENABLE_NOOP, "true");
+        control(ctx, SET_NOOP_INTERVAL, Long.toString(Math.max(1, (interval + 999) / 1000)));
+    }
+
+    /**
+     * Writes a DCP control message, whose response is matched by the order in which they are sent.
+     *
+     * @param ctx the channel handler context.
+     * @param key the control key.
+     * @param value the value to set.
+     */
+    private void control(final ChannelHandlerContext ctx, final String key, final String value) {
+        ByteBuf content = Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+        short keyLength = (short) key.length();
+
+        BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, Unpooled.EMPTY_BUFFER, content);
+        request.setOpcode(OP_CONTROL);
+        request.setKeyLength(keyLength);
+        request.setTotalBodyLength(keyLength + content.readableBytes());
+        pendingControls.add(key);
+        ctx.writeAndFlush(request);
+    }
+
+    /**
+     * Acknowledges the bytes of a message which has not been handed to a consumer, if flow control is enabled.
+     *
+     * @param messageLength the length of the message.
+     */
+    private void acknowledge(final int messageLength) {
+        if (flowControl != null) {
+            flowControl.acknowledge(messageLength);
         }
     }
 
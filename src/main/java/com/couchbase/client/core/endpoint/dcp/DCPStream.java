@@ -22,20 +22,73 @@
 
 package com.couchbase.client.core.endpoint.dcp;
 
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
+import com.couchbase.client.core.message.dcp.AbstractDCPMessage;
 import com.couchbase.client.core.message.dcp.DCPRequest;
-import rx.subjects.PublishSubject;
-import rx.subjects.ReplaySubject;
+import com.couchbase.client.core.message.dcp.MutationMessage;
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.internal.operators.BufferUntilSubscriber;
+import rx.schedulers.Schedulers;
+import rx.subjects.Subject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents stream of incoming DCP messages.
  *
+ * Messages are collected into batches which are delivered as a whole, so the cost of passing them on to the
+ * consumer is paid per batch instead of per message.
+ *
+ * The server starts sending right after the response to the stream request, usually long before the consumer
+ * got the response and subscribed. Until then the batches are buffered, which holds their bytes against the
+ * connection buffer since they are only acknowledged once consumed. If nobody subscribes in time, the stream is
+ * closed and the buffered messages are released and acknowledged, so they cannot stall the connection. The same
+ * happens once the subscriber {@link #close() closed} the stream by unsubscribing.
+ *
  * @author Sergey Avseyev
  * @since 1.1.0
  */
 public class DCPStream {
+
+    /**
+     * The logger used.
+     */
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(DCPStream.class);
+
+    private static final int UNSUBSCRIBED = 0;
+    private static final int SUBSCRIBED = 1;
+    private static final int CLOSED = 2;
+
     public final int id;
     public final String bucket;
-    public final PublishSubject<DCPRequest> subject;
+    public final Subject<List<DCPRequest>, List<DCPRequest>> subject;
+
+    /**
+     * Moves from unsubscribed to either subscribed or closed.
+     */
+    private final AtomicInteger state = new AtomicInteger(UNSUBSCRIBED);
+
+    /**
+     * Closes the stream if nobody subscribed in time, null if not scheduled.
+     */
+    private volatile Subscription expiration;
+
+    /**
+     * The messages collected for the next batch, null if there are none.
+     */
+    private List<DCPRequest> batch;
+
+    /**
+     * Acknowledges the messages released by the stream itself, null if flow control is disabled.
+     */
+    private volatile DCPFlowControl flowControl;
 
     /**
      * Creates new {@link DCPStream} instance.
@@ -46,14 +99,143 @@ public class DCPStream {
     public DCPStream(int id, String bucket) {
         this.id = id;
         this.bucket = bucket;
-        subject = PublishSubject.create();
+        subject = BufferUntilSubscriber.create();
     }
 
-    public PublishSubject<DCPRequest> subject() {
+    public Subject<List<DCPRequest>, List<DCPRequest>> subject() {
         return subject;
     }
 
+    /**
+     * Returns the batches of the stream, including those buffered before subscribing. Only one subscriber is
+     * allowed.
+     *
+     * @return an {@link Observable} emitting the batches of the stream.
+     */
+    public Observable<List<DCPRequest>> batches() {
+        return Observable.create(new Observable.OnSubscribe<List<DCPRequest>>() {
+            @Override
+            public void call(final Subscriber<? super List<DCPRequest>> subscriber) {
+                if (!state.compareAndSet(UNSUBSCRIBED, SUBSCRIBED)) {
+                    subscriber.onError(new IllegalStateException(state.get() == SUBSCRIBED
+                        ? "The DCP stream can only have one subscription."
+                        : "The DCP stream has been closed. Subscribe earlier or tune the "
+                            + "CouchbaseEnvironment#autoreleaseAfter() setting."));
+                    return;
+                }
+                Subscription pending = expiration;
+                if (pending != null) {
+                    pending.unsubscribe();
+                }
+                subject.unsafeSubscribe(subscriber);
+            }
+        });
+    }
+
+    /**
+     * Closes the stream if nobody subscribed after the given time, releasing and acknowledging everything buffered
+     * and yet to arrive.
+     *
+     * @param timeout the time to wait for a subscriber.
+     * @param timeUnit the unit of the timeout.
+     * @param flowControl acknowledges the released messages, null if flow control is disabled.
+     */
+    public void expireAfter(final long timeout, final TimeUnit timeUnit, final DCPFlowControl flowControl) {
+        this.flowControl = flowControl;
+        expiration = Observable.timer(timeout, timeUnit, Schedulers.computation()).subscribe(new Action1<Long>() {
+            @Override
+            public void call(final Long ignored) {
+                if (state.compareAndSet(UNSUBSCRIBED, CLOSED)) {
+                    LOGGER.warn("Nobody subscribed to DCP stream {} in time, releasing its messages.", id);
+                    subject.subscribe(new Subscriber<List<DCPRequest>>() {
+                        @Override
+                        public void onNext(final List<DCPRequest> messages) {
+                            release(messages, flowControl);
+                        }
+
+                        @Override
+                        public void onError(final Throwable e) {
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the stream, after which its messages are released and acknowledged as they arrive.
+     *
+     * Safe to call from any thread, the batch collected so far is released on its next {@link #flush()}.
+     */
+    public void close() {
+        state.set(CLOSED);
+    }
+
+    /**
+     * Returns true if messages of this stream are no longer delivered to anybody.
+     *
+     * @return true if closed.
+     */
+    public boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    /**
+     * Adds a message to the next batch.
+     *
+     * @param message the message to add.
+     * @return the number of messages in the batch.
+     */
+    public int add(final DCPRequest message) {
+        if (batch == null) {
+            batch = new ArrayList<DCPRequest>();
+        }
+        batch.add(message);
+        return batch.size();
+    }
+
+    /**
+     * Delivers the collected messages as one batch, if there are any, or releases and acknowledges them if the
+     * stream has been closed meanwhile.
+     */
+    public void flush() {
+        if (batch != null) {
+            List<DCPRequest> messages = batch;
+            batch = null;
+            if (isClosed()) {
+                release(messages, flowControl);
+            } else {
+                subject.onNext(messages);
+            }
+        }
+    }
+
     public String bucket() {
         return bucket;
     }
+
+    /**
+     * Releases the content of messages nobody consumes and acknowledges their bytes.
+     *
+     * @param messages the messages to release.
+     * @param flowControl acknowledges the messages, null if flow control is disabled.
+     */
+    static void release(final List<DCPRequest> messages, final DCPFlowControl flowControl) {
+        int length = 0;
+        for (DCPRequest message : messages) {
+            if (message instanceof MutationMessage) {
+                ((MutationMessage) message).content().release();
+            }
+            if (message instanceof AbstractDCPMessage) {
+                length += ((AbstractDCPMessage) message).messageLength();
+            }
+        }
+        if (flowControl != null) {
+            flowControl.acknowledge(length);
+        }
+    }
 }
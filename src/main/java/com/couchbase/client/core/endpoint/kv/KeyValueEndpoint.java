@@ -26,8 +26,6 @@ import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.channel.ChannelPipeline;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
 import io.netty.handler.timeout.IdleStateHandler;
 
 import java.util.concurrent.TimeUnit;
@@ -58,8 +56,8 @@ public class KeyValueEndpoint extends AbstractEndpoint {
             pipeline.addLast(new IdleStateHandler(0, 0, environment().keepAliveInterval(), TimeUnit.MILLISECONDS));
         }
         pipeline
-            .addLast(new BinaryMemcacheClientCodec())
-            .addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE))
+            .addLast(new KeyValueFrameDecoder(environment().maxValueSize()))
+            .addLast(new KeyValueFrameEncoder())
             .addLast(new KeyValueAuthHandler(bucket(), password()))
             .addLast(new KeyValueHandler(this, responseBuffer(), false));
     }
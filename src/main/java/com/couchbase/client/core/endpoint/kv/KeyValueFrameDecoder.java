@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.DefaultLastMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.DefaultMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.LastMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+
+/**
+ * Decodes complete binary memcache frames into {@link FullBinaryMemcacheResponse}s in a single stage.
+ *
+ * The decoder waits until the 24 bytes header and the full body are readable, and then hands out retained
+ * slices of the inbound buffer as extras and content instead of copying them into new buffers and
+ * aggregating the chunks afterwards.
+ *
+ * Since the slices share the inbound buffer, it stays allocated as long as one of them is retained. The
+ * cumulation is copied before new data is appended if it is still referenced, so slices handed out are
+ * never overwritten.
+ *
+ * If a streaming threshold is set, frames with a larger body are not buffered until complete. Instead, a
+ * {@link BinaryMemcacheResponse} with the header, extras and key is emitted first, followed by the value in
+ * chunks as it arrives, the last one being a {@link LastMemcacheContent}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class KeyValueFrameDecoder extends ByteToMessageDecoder {
+
+    /**
+     * Every binary memcache message has a 24 bytes header.
+     */
+    static final int HEADER_SIZE = 24;
+
+    /**
+     * The offset of the total body length in the header.
+     */
+    private static final int BODY_LENGTH_OFFSET = 8;
+
+    /**
+     * Bodies larger than this are handed out in chunks as they arrive instead of waiting for the full frame.
+     */
+    private final int streamingThreshold;
+
+    /**
+     * The number of value bytes still to come for the frame currently streamed, 0 if none.
+     */
+    private int streamRemaining;
+
+    /**
+     * Creates a new {@link KeyValueFrameDecoder} which only emits complete frames.
+     */
+    public KeyValueFrameDecoder() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new {@link KeyValueFrameDecoder} which streams the values of large frames.
+     *
+     * @param streamingThreshold the body size above which values are streamed in chunks.
+     */
+    public KeyValueFrameDecoder(final int streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out)
+        throws Exception {
+        while (true) {
+            if (streamRemaining > 0) {
+                int length = Math.min(in.readableBytes(), streamRemaining);
+                if (length == 0) {
+                    return;
+                }
+                ByteBuf chunk = in.readSlice(length).retain();
+                streamRemaining -= length;
+                out.add(streamRemaining == 0
+                    ? new DefaultLastMemcacheContent(chunk) : new DefaultMemcacheContent(chunk));
+                continue;
+            }
+
+            if (in.readableBytes() < HEADER_SIZE) {
+                return;
+            }
+            int start = in.readerIndex();
+            int bodyLength = in.getInt(start + BODY_LENGTH_OFFSET);
+            if (bodyLength > streamingThreshold) {
+                int prefixLength = in.getShort(start + 2) + in.getByte(start + 4);
+                if (in.readableBytes() < HEADER_SIZE + prefixLength) {
+                    return;
+                }
+                out.add(decodeHead(in, start));
+                in.skipBytes(HEADER_SIZE + prefixLength);
+                streamRemaining = bodyLength - prefixLength;
+                if (streamRemaining == 0) {
+                    out.add(LastMemcacheContent.EMPTY_LAST_CONTENT);
+                }
+                continue;
+            }
+
+            if (in.readableBytes() < HEADER_SIZE + bodyLength) {
+                return;
+            }
+            out.add(decodeFrame(in, start, bodyLength));
+            in.skipBytes(HEADER_SIZE + bodyLength);
+        }
+    }
+
+    /**
+     * Decodes the header, extras and key of a frame whose value is streamed, without moving the reader index.
+     *
+     * @param in the inbound buffer.
+     * @param start the index of the header.
+     * @return the decoded response head.
+     */
+    private static BinaryMemcacheResponse decodeHead(final ByteBuf in, final int start) {
+        short keyLength = in.getShort(start + 2);
+        byte extrasLength = in.getByte(start + 4);
+        int extrasStart = start + HEADER_SIZE;
+
+        String key = keyLength > 0 ? in.toString(extrasStart + extrasLength, keyLength, CharsetUtil.UTF_8) : "";
+        ByteBuf extras = extrasLength > 0 ? in.slice(extrasStart, extrasLength).retain() : Unpooled.EMPTY_BUFFER;
+        return decodeHeader(in, start, new DefaultBinaryMemcacheResponse(key, extras));
+    }
+
+    /**
+     * Decodes the complete frame starting at the given index, without moving the reader index.
+     *
+     * @param in the inbound buffer.
+     * @param start the index of the header.
+     * @param bodyLength the total length of the body.
+     * @return the decoded response.
+     */
+    private static FullBinaryMemcacheResponse decodeFrame(final ByteBuf in, final int start, final int bodyLength) {
+        short keyLength = in.getShort(start + 2);
+        byte extrasLength = in.getByte(start + 4);
+        int extrasStart = start + HEADER_SIZE;
+        int keyStart = extrasStart + extrasLength;
+        int contentStart = keyStart + keyLength;
+        int contentLength = bodyLength - keyLength - extrasLength;
+
+        String key = keyLength > 0 ? in.toString(keyStart, keyLength, CharsetUtil.UTF_8) : "";
+        ByteBuf extras = extrasLength > 0 ? in.slice(extrasStart, extrasLength).retain() : Unpooled.EMPTY_BUFFER;
+        ByteBuf content = contentLength > 0 ? in.slice(contentStart, contentLength).retain() : Unpooled.EMPTY_BUFFER;
+
+        return decodeHeader(in, start, new DefaultFullBinaryMemcacheResponse(key, extras, content));
+    }
+
+    /**
+     * Sets the header fields of the frame starting at the given index on the response.
+     *
+     * @param in the inbound buffer.
+     * @param start the index of the header.
+     * @param response the response to fill.
+     * @return the response.
+     */
+    private static <R extends BinaryMemcacheResponse> R decodeHeader(final ByteBuf in, final int start,
+        final R response) {
+        response.setStatus(in.getShort(start + 6));
+        response.setMagic(in.getByte(start));
+        response.setOpcode(in.getByte(start + 1));
+        response.setKeyLength(in.getShort(start + 2));
+        response.setExtrasLength(in.getByte(start + 4));
+        response.setDataType(in.getByte(start + 5));
+        response.setTotalBodyLength(in.getInt(start + BODY_LENGTH_OFFSET));
+        response.setOpaque(in.getInt(start + 12));
+        response.setCAS(in.getLong(start + 16));
+        return response;
+    }
+}
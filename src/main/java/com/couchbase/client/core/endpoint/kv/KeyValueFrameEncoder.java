@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.utils.Utf8;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes {@link BinaryMemcacheRequest}s straight into one pooled buffer per flush, instead of writing a
+ * header buffer and a content buffer for every request.
+ *
+ * Header, extras, key and small values of all requests written until the next flush are packed back to
+ * back, so the socket gets one large buffer instead of many small ones. Values of at least
+ * {@link #ZERO_COPY_THRESHOLD} bytes are not copied but written as they are right after their header.
+ * Once the pending buffer reaches {@link #MAX_PENDING_BYTES} it is written out, so a long batch does not
+ * grow it without bounds.
+ *
+ * The promises of the coalesced requests are completed once the buffer holding them has been written.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class KeyValueFrameEncoder extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * Every binary memcache request has a 24 bytes header.
+     */
+    static final int HEADER_SIZE = 24;
+
+    /**
+     * Values of at least this size are written without copying them into the pending buffer.
+     */
+    static final int ZERO_COPY_THRESHOLD = 4096;
+
+    /**
+     * The size after which the pending buffer is written, even if no flush has been issued yet.
+     */
+    static final int MAX_PENDING_BYTES = 64 * 1024;
+
+    /**
+     * The initial capacity of the pending buffer.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * The requests encoded since the last write, null if none.
+     */
+    private ByteBuf pending;
+
+    /**
+     * The promises of the requests in the pending buffer.
+     */
+    private final List<ChannelPromise> pendingPromises = new ArrayList<ChannelPromise>();
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        if (!(msg instanceof BinaryMemcacheRequest)) {
+            writePending(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+
+        BinaryMemcacheRequest request = (BinaryMemcacheRequest) msg;
+        try {
+            ByteBuf content = request instanceof FullBinaryMemcacheRequest
+                ? ((FullBinaryMemcacheRequest) request).content() : null;
+            int contentLength = content == null ? 0 : content.readableBytes();
+            boolean copyContent = contentLength < ZERO_COPY_THRESHOLD;
+
+            if (pending == null) {
+                int frameLength = HEADER_SIZE + request.getTotalBodyLength() - (copyContent ? 0 : contentLength);
+                pending = ctx.alloc().ioBuffer(Math.max(INITIAL_BUFFER_SIZE, frameLength));
+            }
+            encodeHeader(pending, request);
+            ByteBuf extras = request.getExtras();
+            if (extras != null && extras.isReadable()) {
+                pending.writeBytes(extras, extras.readerIndex(), extras.readableBytes());
+            }
+            encodeKey(pending, request);
+
+            if (copyContent) {
+                if (contentLength > 0) {
+                    pending.writeBytes(content, content.readerIndex(), contentLength);
+                }
+                pendingPromises.add(promise);
+                if (pending.readableBytes() >= MAX_PENDING_BYTES) {
+                    writePending(ctx);
+                }
+            } else {
+                writePending(ctx);
+                ctx.write(content.retain(), promise);
+            }
+        } finally {
+            ReferenceCountUtil.release(request);
+        }
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        writePending(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        if (pending != null) {
+            pending.release();
+            pending = null;
+            ClosedChannelException cause = new ClosedChannelException();
+            for (ChannelPromise promise : pendingPromises) {
+                promise.tryFailure(cause);
+            }
+            pendingPromises.clear();
+        }
+    }
+
+    /**
+     * Writes the pending buffer, if any, and completes the promises of its requests once written.
+     *
+     * @param ctx the handler context.
+     */
+    private void writePending(final ChannelHandlerContext ctx) {
+        if (pending == null) {
+            return;
+        }
+
+        ByteBuf buffer = pending;
+        pending = null;
+        if (pendingPromises.size() == 1) {
+            ctx.write(buffer, pendingPromises.get(0));
+        } else {
+            final ChannelPromise[] promises = pendingPromises.toArray(new ChannelPromise[pendingPromises.size()]);
+            ctx.write(buffer).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture future) throws Exception {
+                    for (ChannelPromise promise : promises) {
+                        if (future.isSuccess()) {
+                            promise.trySuccess();
+                        } else {
+                            promise.tryFailure(future.cause());
+                        }
+                    }
+                }
+            });
+        }
+        pendingPromises.clear();
+    }
+
+    private static void encodeHeader(final ByteBuf buf, final BinaryMemcacheRequest msg) {
+        buf.writeByte(msg.getMagic());
+        buf.writeByte(msg.getOpcode());
+        buf.writeShort(msg.getKeyLength());
+        buf.writeByte(msg.getExtrasLength());
+        buf.writeByte(msg.getDataType());
+        buf.writeShort(msg.getReserved());
+        buf.writeInt(msg.getTotalBodyLength());
+        buf.writeInt(msg.getOpaque());
+        buf.writeLong(msg.getCAS());
+    }
+
+    /**
+     * Writes the pre-encoded key if set, otherwise encodes the key straight into the buffer.
+     */
+    private static void encodeKey(final ByteBuf buf, final BinaryMemcacheRequest msg) {
+        byte[] keyBytes = msg.getKeyBytes();
+        if (keyBytes != null) {
+            buf.writeBytes(keyBytes);
+            return;
+        }
+
+        String key = msg.getKey();
+        if (key != null && !key.isEmpty()) {
+            Utf8.write(buf, key);
+        }
+    }
+}
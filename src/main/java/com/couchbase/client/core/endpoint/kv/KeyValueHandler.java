@@ -21,10 +21,16 @@
  */
 package com.couchbase.client.core.endpoint.kv;
 
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.core.RequestCancelledException;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
 import com.couchbase.client.core.endpoint.ResponseStatusConverter;
+import com.couchbase.client.core.endpoint.util.AutoReadThrottle;
+import com.couchbase.client.core.endpoint.util.ReleaseOnUnsubscribe;
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
@@ -32,6 +38,7 @@ import com.couchbase.client.core.message.kv.AbstractKeyValueRequest;
 import com.couchbase.client.core.message.kv.AbstractKeyValueResponse;
 import com.couchbase.client.core.message.kv.AppendRequest;
 import com.couchbase.client.core.message.kv.AppendResponse;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
 import com.couchbase.client.core.message.kv.BinaryStoreRequest;
 import com.couchbase.client.core.message.kv.CounterRequest;
@@ -51,41 +58,65 @@ import com.couchbase.client.core.message.kv.RemoveResponse;
 import com.couchbase.client.core.message.kv.ReplaceRequest;
 import com.couchbase.client.core.message.kv.ReplaceResponse;
 import com.couchbase.client.core.message.kv.ReplicaGetRequest;
+import com.couchbase.client.core.message.kv.StreamingGetRequest;
+import com.couchbase.client.core.message.kv.StreamingGetResponse;
 import com.couchbase.client.core.message.kv.TouchRequest;
 import com.couchbase.client.core.message.kv.TouchResponse;
 import com.couchbase.client.core.message.kv.UnlockRequest;
 import com.couchbase.client.core.message.kv.UnlockResponse;
 import com.couchbase.client.core.message.kv.UpsertRequest;
 import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.utils.UnicastAutoReleaseSubject;
+import com.couchbase.client.core.utils.Utf8;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.LastMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.MemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.MemcacheObject;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheOpcodes;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
 import com.lmax.disruptor.EventSink;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import rx.Observable;
+import rx.Scheduler;
 
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@link KeyValueHandler} is responsible for encoding {@link BinaryRequest}s into lower level
  * {@link BinaryMemcacheRequest}s as well as decoding {@link FullBinaryMemcacheResponse}s into
  * {@link CouchbaseResponse}s.
  *
+ * Large values arrive as a {@link BinaryMemcacheResponse} head followed by {@link MemcacheContent} chunks.
+ * For a {@link StreamingGetRequest} the chunks are handed out as they arrive, for every other request they are
+ * aggregated up to the maximum value size, and discarded beyond it.
+ *
  * @author Michael Nitschinger
  * @since 1.0
  */
 public class KeyValueHandler
-    extends AbstractGenericHandler<FullBinaryMemcacheResponse, BinaryMemcacheRequest, BinaryRequest> {
+    extends AbstractGenericHandler<MemcacheObject, BinaryMemcacheRequest, BinaryRequest> {
+
+    /**
+     * The Logger used in this handler.
+     */
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(KeyValueHandler.class);
 
     //Memcached OPCODES are defined on 1 byte. Some cbserver specific commands are casted
     // to byte to conform to this limitation and exploit the negative range.
     public static final byte OP_GET_BUCKET_CONFIG = (byte) 0xb5;
     public static final byte OP_GET = BinaryMemcacheOpcodes.GET;
+    public static final byte OP_GETQ = BinaryMemcacheOpcodes.GETQ;
     public static final byte OP_GET_AND_LOCK = (byte) 0x94;
     public static final byte OP_GET_AND_TOUCH = BinaryMemcacheOpcodes.GAT;
     public static final byte OP_GET_REPLICA = (byte) 0x83;
@@ -101,16 +132,53 @@ public class KeyValueHandler
     public static final byte OP_APPEND = BinaryMemcacheOpcodes.APPEND;
     public static final byte OP_PREPEND = BinaryMemcacheOpcodes.PREPEND;
     public static final byte OP_NOOP = BinaryMemcacheOpcodes.NOOP;
+    public static final byte OP_UPSERTQ = BinaryMemcacheOpcodes.SETQ;
+    public static final byte OP_INSERTQ = BinaryMemcacheOpcodes.ADDQ;
+    public static final byte OP_REMOVEQ = BinaryMemcacheOpcodes.DELETEQ;
+
+    /**
+     * Marks requests which have no quiet variant, an opcode the protocol does not use.
+     */
+    private static final byte NO_QUIET_OPCODE = (byte) 0xff;
+
+    /**
+     * The requests in-flight indexed by their opaque, or null if matched in order through a custom queue.
+     */
+    private final OpaqueRequestQueue inFlight;
+
+    /**
+     * The head of the response whose value is currently arriving in chunks, null if none.
+     */
+    private BinaryMemcacheResponse streamedHead;
+
+    /**
+     * The chunks of the value received so far, if they are aggregated for a regular request.
+     */
+    private CompositeByteBuf streamedContent;
+
+    /**
+     * The chunks handed out to the subscriber, if the value is streamed for a {@link StreamingGetRequest}.
+     */
+    private UnicastAutoReleaseSubject<ByteBuf> streamedChunks;
+
+    /**
+     * Pauses reading from the channel while the subscriber of the streamed chunks does not request more.
+     */
+    private AutoReadThrottle<ByteBuf> streamedThrottle;
 
+    /**
+     * The error the request fails with once its value has been discarded, if it exceeds the maximum value size.
+     */
+    private CouchbaseException streamedError;
 
     /**
-     * Creates a new {@link KeyValueHandler} with the default queue for requests.
+     * Creates a new {@link KeyValueHandler} which matches responses to requests through their opaque.
      *
      * @param endpoint the {@link AbstractEndpoint} to coordinate with.
      * @param responseBuffer the {@link RingBuffer} to push responses into.
      */
     public KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, boolean isTransient) {
-        super(endpoint, responseBuffer, isTransient);
+        this(endpoint, responseBuffer, new OpaqueRequestQueue(), isTransient);
     }
 
     /**
@@ -118,10 +186,121 @@ public class KeyValueHandler
      *
      * @param endpoint the {@link AbstractEndpoint} to coordinate with.
      * @param responseBuffer the {@link RingBuffer} to push responses into.
+     * If the queue is an {@link OpaqueRequestQueue}, responses are matched through their opaque, otherwise
+     * in the order the requests have been written.
+     *
      * @param queue the queue which holds all outstanding open requests.
      */
     KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<BinaryRequest> queue, boolean isTransient) {
         super(endpoint, responseBuffer, queue, isTransient);
+        this.inFlight = queue instanceof OpaqueRequestQueue ? (OpaqueRequestQueue) queue : null;
+    }
+
+    @Override
+    protected BinaryRequest pollSentRequest(final MemcacheObject msg) {
+        if (!(msg instanceof BinaryMemcacheResponse)) {
+            return null;
+        }
+        return inFlight == null ? super.pollSentRequest(msg) : inFlight.poll(((BinaryMemcacheResponse) msg).getOpaque());
+    }
+
+    @Override
+    protected boolean respondsInOrder() {
+        return inFlight == null;
+    }
+
+    /**
+     * Writes all requests of a {@link BinaryBatchRequest} in one go, every other request is encoded as usual.
+     *
+     * If the batch is quiet and responses are matched through their opaque, the requests which have a quiet
+     * variant are sent as such and the batch itself is written last as a NOOP, see
+     * {@link #completeQuietRequests(BinaryBatchRequest)}. The endpoint counts a quiet batch as one more request
+     * than it holds for the NOOP, which is completed right away if the batch cannot be sent quietly.
+     *
+     * A request of the batch which cannot be encoded fails on its own and is taken off the endpoint count, while
+     * the others are still sent. If the NOOP cannot be encoded, the requests are sent with their regular opcodes
+     * instead, since nothing would complete the quiet ones.
+     */
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final BinaryRequest msg, final List<Object> out)
+        throws Exception {
+        if (!(msg instanceof BinaryBatchRequest)) {
+            super.encode(ctx, msg, out);
+            return;
+        }
+
+        BinaryBatchRequest batch = (BinaryBatchRequest) msg;
+        boolean quiet = batch.quiet() && inFlight != null && inFlight.get(batch.opaque()) == null;
+        int first = out.size();
+        for (BinaryRequest request : batch.requests()) {
+            try {
+                super.encode(ctx, request, out);
+            } catch (Exception e) {
+                sideEffectRequestToCancel(request);
+                request.observable().onError(e instanceof CouchbaseException ? e : new CouchbaseException(e));
+                continue;
+            }
+            byte opcode = quiet ? quietOpcode(request) : NO_QUIET_OPCODE;
+            if (opcode != NO_QUIET_OPCODE) {
+                ((BinaryMemcacheRequest) out.get(out.size() - 1)).setOpcode(opcode);
+            }
+        }
+        if (quiet) {
+            try {
+                super.encode(ctx, batch, out);
+            } catch (Exception e) {
+                LOGGER.warn("Could not encode the NOOP of a quiet batch, sending it as usual.", e);
+                for (int i = first; i < out.size(); i++) {
+                    BinaryMemcacheRequest request = (BinaryMemcacheRequest) out.get(i);
+                    request.setOpcode(regularOpcode(request.getOpcode()));
+                }
+            }
+        } else if (batch.quiet()) {
+            requestCompleted(batch);
+        }
+    }
+
+    /**
+     * Returns the regular opcode of a quiet one.
+     *
+     * @param opcode the opcode the request has been encoded with.
+     * @return the regular opcode, or the given one if it is not quiet.
+     */
+    private static byte regularOpcode(final byte opcode) {
+        switch (opcode) {
+            case OP_GETQ:
+                return OP_GET;
+            case OP_UPSERTQ:
+                return OP_UPSERT;
+            case OP_INSERTQ:
+                return OP_INSERT;
+            case OP_REMOVEQ:
+                return OP_REMOVE;
+            default:
+                return opcode;
+        }
+    }
+
+    /**
+     * Returns the opcode the request is sent with as part of a quiet batch.
+     *
+     * Quiet gets only respond on a hit, quiet mutations only respond on a failure.
+     *
+     * @param request the request.
+     * @return the quiet opcode or {@link #NO_QUIET_OPCODE} if it is sent as usual.
+     */
+    private static byte quietOpcode(final BinaryRequest request) {
+        if (request instanceof GetRequest) {
+            GetRequest get = (GetRequest) request;
+            return get.lock() || get.touch() ? NO_QUIET_OPCODE : OP_GETQ;
+        } else if (request instanceof UpsertRequest) {
+            return OP_UPSERTQ;
+        } else if (request instanceof InsertRequest) {
+            return OP_INSERTQ;
+        } else if (request instanceof RemoveRequest) {
+            return OP_REMOVEQ;
+        }
+        return NO_QUIET_OPCODE;
     }
 
     @Override
@@ -153,6 +332,8 @@ public class KeyValueHandler
             request = handlePrependRequest((PrependRequest) msg);
         } else if (msg instanceof KeepAliveRequest) {
             request = handleKeepAliveRequest((KeepAliveRequest) msg);
+        } else if (msg instanceof BinaryBatchRequest) {
+            request = handleNoopRequest();
         } else {
             throw new IllegalArgumentException("Unknown incoming BinaryRequest type "
                 + msg.getClass());
@@ -162,6 +343,10 @@ public class KeyValueHandler
             request.setReserved(msg.partition());
         }
 
+        if (msg.keyBytes() != null && request.getKeyLength() > 0) {
+            request.setKeyBytes(msg.keyBytes());
+        }
+
         request.setOpaque(msg.opaque());
 
         // Retain just the content, since a response could be "Not my Vbucket".
@@ -200,7 +385,7 @@ public class KeyValueHandler
         }
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request
@@ -230,7 +415,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleReplicaGetRequest(final ReplicaGetRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
 
         request.setOpcode(OP_GET_REPLICA)
@@ -258,7 +443,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiration());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         byte extrasLength = (byte) extras.readableBytes();
         FullBinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, extras, msg.content());
 
@@ -287,7 +472,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleRemoveRequest(final RemoveRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
 
         request.setOpcode(OP_REMOVE);
@@ -313,7 +498,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiry());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key, extras);
         request.setOpcode(msg.delta() < 0 ? OP_COUNTER_DECR : OP_COUNTER_INCR);
@@ -330,7 +515,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleUnlockRequest(final UnlockRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request.setOpcode(OP_UNLOCK);
         request.setKeyLength(keyLength);
@@ -349,7 +534,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiry());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request.setExtras(extras);
@@ -370,8 +555,12 @@ public class KeyValueHandler
         String key = msg.key();
         ByteBuf content = ctx.alloc().buffer();
         content.writeShort(msg.partition());
-        content.writeShort(key.length());
-        content.writeBytes(key.getBytes(CHARSET));
+        content.writeShort(keyLength(msg));
+        if (msg.keyBytes() != null) {
+            content.writeBytes(msg.keyBytes());
+        } else {
+            Utf8.write(content, key);
+        }
 
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest("", Unpooled.EMPTY_BUFFER, content);
         request.setOpcode(OP_OBSERVE);
@@ -381,7 +570,7 @@ public class KeyValueHandler
 
     private static BinaryMemcacheRequest handleAppendRequest(final AppendRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, Unpooled.EMPTY_BUFFER, msg.content());
 
         request.setOpcode(OP_APPEND);
@@ -393,7 +582,7 @@ public class KeyValueHandler
 
     private static BinaryMemcacheRequest handlePrependRequest(final PrependRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = keyLength(msg);
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, Unpooled.EMPTY_BUFFER, msg.content());
 
         request.setOpcode(OP_PREPEND);
@@ -403,6 +592,17 @@ public class KeyValueHandler
         return request;
     }
 
+    /**
+     * Returns the length of the encoded key in bytes, which differs from the number of characters for non-ASCII keys.
+     *
+     * @param msg the request holding the key.
+     * @return the encoded key length.
+     */
+    private static short keyLength(final BinaryRequest msg) {
+        byte[] keyBytes = msg.keyBytes();
+        return (short) (keyBytes != null ? keyBytes.length : Utf8.encodedLength(msg.key()));
+    }
+
     /**
      * Encodes a {@link KeepAliveRequest} request into a NOOP operation.
      *
@@ -410,6 +610,15 @@ public class KeyValueHandler
      * @return a ready {@link BinaryMemcacheRequest}.
      */
     private static BinaryMemcacheRequest handleKeepAliveRequest(KeepAliveRequest msg) {
+        return handleNoopRequest();
+    }
+
+    /**
+     * Encodes a NOOP operation.
+     *
+     * @return a ready {@link BinaryMemcacheRequest}.
+     */
+    private static BinaryMemcacheRequest handleNoopRequest() {
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest();
         request
                 .setOpcode(OP_NOOP)
@@ -421,7 +630,193 @@ public class KeyValueHandler
     }
 
     @Override
-    protected CouchbaseResponse decodeResponse(final ChannelHandlerContext ctx, final FullBinaryMemcacheResponse msg)
+    protected CouchbaseResponse decodeResponse(final ChannelHandlerContext ctx, final MemcacheObject msg)
+        throws Exception {
+        if (msg instanceof FullBinaryMemcacheResponse) {
+            return decodeFullResponse(ctx, (FullBinaryMemcacheResponse) msg);
+        } else if (msg instanceof BinaryMemcacheResponse) {
+            return decodeStreamedHead(ctx, (BinaryMemcacheResponse) msg);
+        } else {
+            return decodeStreamedChunk(ctx, (MemcacheContent) msg);
+        }
+    }
+
+    /**
+     * Starts receiving a value in chunks, depending on the request by streaming, aggregating or discarding it.
+     *
+     * @param ctx the handler context.
+     * @param msg the head of the response.
+     * @return the response if the value is streamed, null otherwise.
+     */
+    private CouchbaseResponse decodeStreamedHead(final ChannelHandlerContext ctx, final BinaryMemcacheResponse msg) {
+        BinaryRequest request = currentRequest();
+        streamedHead = (BinaryMemcacheResponse) msg.retain();
+
+        if (request instanceof StreamingGetRequest) {
+            Scheduler scheduler = env().scheduler();
+            streamedChunks = UnicastAutoReleaseSubject.create(env().autoreleaseAfter(), TimeUnit.MILLISECONDS,
+                scheduler);
+            final AutoReadThrottle<ByteBuf> throttle = new AutoReadThrottle<ByteBuf>(ctx.channel());
+            streamedThrottle = throttle;
+            Observable<ByteBuf> chunks = streamedChunks
+                .onBackpressureBuffer()
+                .lift(throttle)
+                .observeOn(scheduler)
+                .lift(new ReleaseOnUnsubscribe<ByteBuf>() {
+                    @Override
+                    protected void unsubscribed() {
+                        throttle.release();
+                    }
+                });
+            scheduleStallCheck(ctx, throttle);
+            return new StreamingGetResponse(ResponseStatusConverter.fromBinary(msg.getStatus()), msg.getCAS(),
+                flags(msg), request.bucket(), chunks, request);
+        }
+
+        int valueLength = msg.getTotalBodyLength() - msg.getKeyLength() - msg.getExtrasLength();
+        int maxValueSize = env().maxValueSize();
+        if (maxValueSize > 0 && valueLength > maxValueSize) {
+            streamedError = new ValueTooLargeException("Value of " + valueLength
+                + " bytes exceeds the maximum value size of " + maxValueSize + " bytes.");
+        } else {
+            streamedContent = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the subscriber of a streamed value keeps the connection paused for too long and fails the
+     * stream if so.
+     *
+     * The connection is shared with all other key/value requests, which cannot complete while reading is paused.
+     * So once reading has been paused for longer than the autorelease time of the environment, the stream fails
+     * with a {@link RequestCancelledException}, reading resumes and the rest of the value is discarded.
+     *
+     * @param ctx the handler context to schedule the check on.
+     * @param throttle the throttle of the stream to check.
+     */
+    private void scheduleStallCheck(final ChannelHandlerContext ctx, final AutoReadThrottle<ByteBuf> throttle) {
+        final long timeout = env().autoreleaseAfter();
+        ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (streamedThrottle != throttle) {
+                    return;
+                }
+                if (throttle.pausedFor(System.nanoTime()) < TimeUnit.MILLISECONDS.toNanos(timeout)) {
+                    scheduleStallCheck(ctx, throttle);
+                    return;
+                }
+
+                LOGGER.warn("Streamed value not consumed within {}ms, failing it to resume reading.", timeout);
+                streamedChunks.onError(new RequestCancelledException("Streamed value not consumed within "
+                    + timeout + "ms, while it blocks all other operations on the connection."));
+                throttle.release();
+                streamedChunks = null;
+                streamedThrottle = null;
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands out, aggregates or discards a chunk of a value and completes the response on the last one.
+     *
+     * @param ctx the handler context.
+     * @param msg the chunk.
+     * @return the response if the last chunk of an aggregated value arrived, null otherwise.
+     */
+    private CouchbaseResponse decodeStreamedChunk(final ChannelHandlerContext ctx, final MemcacheContent msg)
+        throws Exception {
+        ByteBuf chunk = msg.content();
+        if (streamedChunks != null) {
+            streamedChunks.onNext(chunk.retain());
+        } else if (streamedContent != null) {
+            streamedContent.addComponent(chunk.retain());
+            streamedContent.writerIndex(streamedContent.writerIndex() + chunk.readableBytes());
+        }
+
+        if (!(msg instanceof LastMemcacheContent)) {
+            return null;
+        }
+
+        CouchbaseResponse response = null;
+        if (streamedChunks != null) {
+            streamedChunks.onCompleted();
+            streamedThrottle.release();
+            streamedHead.release();
+            finishedDecoding();
+        } else if (streamedContent != null) {
+            FullBinaryMemcacheResponse full = new DefaultFullBinaryMemcacheResponse(streamedHead.getKey(),
+                streamedHead.getExtras(), streamedContent);
+            full.setOpcode(streamedHead.getOpcode());
+            full.setStatus(streamedHead.getStatus());
+            full.setKeyLength(streamedHead.getKeyLength());
+            full.setExtrasLength(streamedHead.getExtrasLength());
+            full.setTotalBodyLength(streamedHead.getTotalBodyLength());
+            full.setOpaque(streamedHead.getOpaque());
+            full.setCAS(streamedHead.getCAS());
+            try {
+                response = decodeFullResponse(ctx, full);
+            } finally {
+                full.release();
+            }
+        } else {
+            streamedHead.release();
+            finishedDecoding();
+            if (streamedError != null) {
+                publishError(streamedError);
+            }
+        }
+        streamedHead = null;
+        streamedError = null;
+        streamedContent = null;
+        streamedChunks = null;
+        streamedThrottle = null;
+        return response;
+    }
+
+    /**
+     * Releases a value which is only partially received, failing its stream if there is one.
+     */
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        if (streamedHead != null) {
+            streamedHead.release();
+            if (streamedContent != null) {
+                streamedContent.release();
+            }
+            if (streamedChunks != null) {
+                streamedChunks.onError(new RequestCancelledException("Value stream cancelled in-flight."));
+                streamedThrottle.release();
+            }
+            streamedHead = null;
+            streamedContent = null;
+            streamedChunks = null;
+            streamedThrottle = null;
+            streamedError = null;
+        }
+        super.handlerRemoved(ctx);
+    }
+
+    /**
+     * Returns the flags stored in the extras of a get response.
+     */
+    private static int flags(final BinaryMemcacheResponse msg) {
+        if (msg.getExtrasLength() > 0) {
+            ByteBuf extras = msg.getExtras();
+            return extras.getInt(extras.readerIndex());
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes a response whose value is complete.
+     *
+     * @param ctx the handler context.
+     * @param msg the full response.
+     * @return the decoded response or null if there is nothing to publish.
+     */
+    private CouchbaseResponse decodeFullResponse(final ChannelHandlerContext ctx, final FullBinaryMemcacheResponse msg)
         throws Exception {
         BinaryRequest request = currentRequest();
 
@@ -429,37 +824,34 @@ public class KeyValueHandler
             throw new IllegalStateException("Opaque values for " + msg.getClass() + " do not match.");
         }
 
+        if (request instanceof BinaryBatchRequest) {
+            completeQuietRequests((BinaryBatchRequest) request);
+            finishedDecoding();
+            return null;
+        }
+
         ResponseStatus status = ResponseStatusConverter.fromBinary(msg.getStatus());
 
         // Release request content from external resources if not retried again.
         if (!status.equals(ResponseStatus.RETRY)) {
-            ByteBuf content = null;
-            if (request instanceof BinaryStoreRequest) {
-                content = ((BinaryStoreRequest) request).content();
-            } else if (request instanceof AppendRequest) {
-                content = ((AppendRequest) request).content();
-            } else if (request instanceof PrependRequest) {
-                content = ((PrependRequest) request).content();
-            }
-            if (content != null && content.refCnt() > 0) {
-                content.release();
-            }
+            releaseContent(request);
         }
 
         CouchbaseResponse response;
         ByteBuf content = msg.content().retain();
         long cas = msg.getCAS();
         String bucket = request.bucket();
-        if (request instanceof GetRequest || request instanceof ReplicaGetRequest) {
-            int flags = 0;
-            if (msg.getExtrasLength() > 0) {
-                final ByteBuf extrasReleased = msg.getExtras();
-                final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                flags = extras.getInt(0);
-                extras.release();
+        if (request instanceof StreamingGetRequest) {
+            Observable<ByteBuf> chunks;
+            if (status.isSuccess()) {
+                chunks = Observable.just(content);
+            } else {
+                content.release();
+                chunks = Observable.empty();
             }
-            response = new GetResponse(status, cas, flags, bucket, content, request);
+            response = new StreamingGetResponse(status, cas, flags(msg), bucket, chunks, request);
+        } else if (request instanceof GetRequest || request instanceof ReplicaGetRequest) {
+            response = new GetResponse(status, cas, flags(msg), bucket, content, request);
         } else if (request instanceof GetBucketConfigRequest) {
             response = new GetBucketConfigResponse(status, bucket, content,
                 ((GetBucketConfigRequest) request).hostname());
@@ -506,6 +898,60 @@ public class KeyValueHandler
         return response;
     }
 
+    /**
+     * Releases the content of the request from external resources, if it has any.
+     *
+     * @param request the request.
+     */
+    private static void releaseContent(final BinaryRequest request) {
+        ByteBuf content = null;
+        if (request instanceof BinaryStoreRequest) {
+            content = ((BinaryStoreRequest) request).content();
+        } else if (request instanceof AppendRequest) {
+            content = ((AppendRequest) request).content();
+        } else if (request instanceof PrependRequest) {
+            content = ((PrependRequest) request).content();
+        }
+        if (content != null && content.refCnt() > 0) {
+            content.release();
+        }
+    }
+
+    /**
+     * Completes the quiet requests of the batch which are still outstanding once its terminating NOOP returned.
+     *
+     * The server answers in order and stays silent for quiet misses and quiet successful mutations, so every
+     * get still in-flight at this point did not find its document and every mutation succeeded. Since there
+     * was no response, the mutations complete without a CAS.
+     *
+     * @param batch the batch whose NOOP returned.
+     */
+    private void completeQuietRequests(final BinaryBatchRequest batch) {
+        for (BinaryRequest request : batch.requests()) {
+            int opaque = request.opaque();
+            if (quietOpcode(request) == NO_QUIET_OPCODE || inFlight.get(opaque) != request) {
+                continue;
+            }
+
+            inFlight.poll(opaque);
+            requestCompleted(request);
+            String bucket = request.bucket();
+            CouchbaseResponse response;
+            if (request instanceof GetRequest) {
+                response = new GetResponse(ResponseStatus.NOT_EXISTS, 0, 0, bucket, Unpooled.EMPTY_BUFFER, request);
+            } else if (request instanceof UpsertRequest) {
+                releaseContent(request);
+                response = new UpsertResponse(ResponseStatus.SUCCESS, 0, bucket, Unpooled.EMPTY_BUFFER, request);
+            } else if (request instanceof InsertRequest) {
+                releaseContent(request);
+                response = new InsertResponse(ResponseStatus.SUCCESS, 0, bucket, Unpooled.EMPTY_BUFFER, request);
+            } else {
+                response = new RemoveResponse(ResponseStatus.SUCCESS, 0, bucket, Unpooled.EMPTY_BUFFER, request);
+            }
+            publishResponse(response, request.observable());
+        }
+    }
+
     /**
      * Releasing the content of requests that are to be cancelled.
      *
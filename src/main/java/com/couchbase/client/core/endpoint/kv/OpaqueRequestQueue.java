@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.message.kv.BinaryRequest;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds the requests in-flight on a binary connection, indexed by their opaque.
+ *
+ * Responses are matched through {@link #poll(int)} with the opaque they carry, so they can arrive in any order
+ * and single requests can be removed without affecting the others. The {@link java.util.Queue} view exists so
+ * that it can be plugged into the generic handler, but {@link #poll()} and {@link #iterator()} return the requests
+ * in no particular order.
+ *
+ * Internally this is an open addressing hash table with linear probing over primitive int keys, so neither
+ * insertion nor removal allocates or boxes. It is not thread safe and only meant to be used from the event loop.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+class OpaqueRequestQueue extends AbstractQueue<BinaryRequest> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] keys;
+    private BinaryRequest[] values;
+    private int mask;
+    private int size;
+
+    OpaqueRequestQueue() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new BinaryRequest[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Adds the request unless another one with the same opaque is still in-flight.
+     *
+     * @param request the request to add.
+     * @return false if the opaque is already taken, since the response could not be told apart.
+     */
+    @Override
+    public boolean offer(final BinaryRequest request) {
+        if (request == null) {
+            throw new NullPointerException("Request cannot be null.");
+        }
+        if ((size + 1) << 1 > values.length) {
+            resize(values.length << 1);
+        }
+        return insert(request.opaque(), request);
+    }
+
+    /**
+     * Returns the in-flight request with the given opaque without removing it.
+     *
+     * @param opaque the opaque of the request.
+     * @return the request or null if none is in-flight with this opaque.
+     */
+    BinaryRequest get(final int opaque) {
+        int index = indexOf(opaque);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Removes the in-flight request with the given opaque.
+     *
+     * @param opaque the opaque of the request.
+     * @return the request or null if none is in-flight with this opaque.
+     */
+    BinaryRequest poll(final int opaque) {
+        int index = indexOf(opaque);
+        if (index < 0) {
+            return null;
+        }
+        BinaryRequest removed = values[index];
+        removeAt(index);
+        return removed;
+    }
+
+    /**
+     * Removes the request if it is still in-flight, looked up through its opaque.
+     */
+    @Override
+    public boolean remove(final Object o) {
+        if (!(o instanceof BinaryRequest)) {
+            return false;
+        }
+        int index = indexOf(((BinaryRequest) o).opaque());
+        if (index < 0 || values[index] != o) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public BinaryRequest poll() {
+        if (size == 0) {
+            return null;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                BinaryRequest removed = values[i];
+                removeAt(i);
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public BinaryRequest peek() {
+        if (size == 0) {
+            return null;
+        }
+        for (BinaryRequest value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<BinaryRequest> iterator() {
+        return new Iterator<BinaryRequest>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < values.length && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public BinaryRequest next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BinaryRequest value = values[next];
+                next = advance(next + 1);
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Use poll(opaque) or poll() instead.");
+            }
+        };
+    }
+
+    private static int hash(final int opaque) {
+        int h = opaque * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(final int opaque) {
+        int index = hash(opaque) & mask;
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean insert(final int opaque, final BinaryRequest request) {
+        int index = hash(opaque) & mask;
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = opaque;
+        values[index] = request;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the entry at the index and shifts back following entries of the same probe sequence, so that
+     * lookups never need tombstones.
+     */
+    private void removeAt(final int index) {
+        values[index] = null;
+        size--;
+
+        int gap = index;
+        int current = (index + 1) & mask;
+        while (values[current] != null) {
+            int ideal = hash(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                values[current] = null;
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+    }
+
+    private void resize(final int capacity) {
+        int[] oldKeys = keys;
+        BinaryRequest[] oldValues = values;
+        keys = new int[capacity];
+        values = new BinaryRequest[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -25,6 +25,9 @@ import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
 import com.couchbase.client.core.endpoint.ResponseStatusConverter;
+import com.couchbase.client.core.endpoint.util.AutoReadThrottle;
+import com.couchbase.client.core.endpoint.util.ByteBufJsonHelper;
+import com.couchbase.client.core.endpoint.util.JsonRowScanner;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.AbstractCouchbaseRequest;
@@ -38,6 +41,7 @@ import com.couchbase.client.core.message.query.QueryRequest;
 import com.couchbase.client.core.utils.UnicastAutoReleaseSubject;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -57,7 +61,6 @@ import java.util.concurrent.TimeUnit;
 
 import static com.couchbase.client.core.endpoint.util.ByteBufJsonHelper.findNextChar;
 import static com.couchbase.client.core.endpoint.util.ByteBufJsonHelper.findNextCharNotPrefixedBy;
-import static com.couchbase.client.core.endpoint.util.ByteBufJsonHelper.findSectionClosingPosition;
 
 /**
  * The {@link QueryHandler} is responsible for encoding {@link QueryRequest}s into lower level
@@ -103,11 +106,21 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
      */
     private ByteBuf responseContent;
 
+    /**
+     * If the response content is a {@link CompositeByteBuf} of the received chunks and rows are sliced out of it.
+     */
+    private boolean zeroCopyRows;
+
     /**
      * Represents an observable that sends result chunks.
      */
     private UnicastAutoReleaseSubject<ByteBuf> queryRowObservable;
 
+    /**
+     * Pauses reading from the socket while the subscriber of the rows does not request more of them.
+     */
+    private AutoReadThrottle<ByteBuf> queryRowThrottle;
+
     /**
      * Represents an observable that has the signature of the N1QL results if there are any.
      */
@@ -134,6 +147,11 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
      */
     private byte queryParsingState = QUERY_STATE_INITIAL;
 
+    /**
+     * Finds the end of the current row, resuming where it left off when a row spans several chunks.
+     */
+    private final JsonRowScanner rowScanner = new JsonRowScanner();
+
     /**
      * In case of chunked processing, allows to detect we are still parsing a section.
      */
@@ -193,11 +211,7 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
 
         if (msg instanceof HttpResponse) {
             responseHeader = (HttpResponse) msg;
-            if (responseContent != null) {
-                responseContent.clear();
-            } else {
-                responseContent = ctx.alloc().buffer();
-            }
+            resetResponseContent(ctx);
         }
 
         if (currentRequest() instanceof KeepAliveRequest) {
@@ -208,13 +222,13 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
                 finishedDecoding();
             }
         } else if (msg instanceof HttpContent) {
-            responseContent.writeBytes(((HttpContent) msg).content());
+            appendResponseContent(((HttpContent) msg).content());
             boolean lastChunk = msg instanceof LastHttpContent;
 
             if (currentRequest() instanceof GenericQueryRequest) {
                 if (queryRowObservable == null) {
                     //still in initial parsing
-                    response = handleGenericQueryResponse(lastChunk);
+                    response = handleGenericQueryResponse(ctx, lastChunk);
                     //null response indicates need for more data before continuing parsing
                     if (response != null) {
                         parseQueryResponse(lastChunk);
@@ -248,9 +262,10 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
      * It waits for the first few bytes on the actual response to determine if an error is raised or if a successful
      * response can be expected. The actual error and/or chunk parsing is deferred to other parts of this handler.
      *
+     * @param ctx the handler context, whose channel is paused while the rows are not consumed.
      * @return a {@link CouchbaseResponse} if eligible.
      */
-    private CouchbaseResponse handleGenericQueryResponse(boolean lastChunk) {
+    private CouchbaseResponse handleGenericQueryResponse(final ChannelHandlerContext ctx, boolean lastChunk) {
         String requestId;
         String clientId = "";
 
@@ -318,10 +333,11 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
         queryStatusObservable = AsyncSubject.create();
         queryInfoObservable = UnicastAutoReleaseSubject.create(ttl, TimeUnit.MILLISECONDS, scheduler);
         querySignatureObservable = UnicastAutoReleaseSubject.create(ttl, TimeUnit.MILLISECONDS, scheduler);
+        queryRowThrottle = new AutoReadThrottle<ByteBuf>(ctx.channel());
 
         return new GenericQueryResponse(
                 queryErrorObservable.onBackpressureBuffer().observeOn(scheduler),
-                queryRowObservable.onBackpressureBuffer().observeOn(scheduler),
+                queryRowObservable.onBackpressureBuffer().lift(queryRowThrottle).observeOn(scheduler),
                 querySignatureObservable.onBackpressureBuffer().observeOn(scheduler),
                 queryStatusObservable.onBackpressureBuffer().observeOn(scheduler),
                 queryInfoObservable.onBackpressureBuffer().observeOn(scheduler),
@@ -413,6 +429,7 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
 
     private void sectionDone() {
         this.sectionDone = true;
+        rowScanner.reset();
         responseContent.discardReadBytes();
     }
 
@@ -422,12 +439,12 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
     private void parseQuerySignature(boolean lastChunk) {
         int openPos = findNextChar(responseContent, '{');
         if (!isEmptySection(openPos)) { //checks for empty signature
-            int closePos = findSectionClosingPosition(responseContent, '{', '}');
+            int closePos = rowScanner.scan(responseContent);
             if (closePos > 0) {
                 int length = closePos - openPos - responseContent.readerIndex() + 1;
                 responseContent.skipBytes(openPos);
-                ByteBuf signature = responseContent.readSlice(length);
-                querySignatureObservable.onNext(signature.copy());
+                querySignatureObservable.onNext(extractRow(responseContent.readerIndex(), length));
+                responseContent.skipBytes(length);
             } else {
                 //wait for more data
                 return;
@@ -451,15 +468,15 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
                 break;
             }
 
-            int closeBracketPos = findSectionClosingPosition(responseContent, '{', '}');
+            int closeBracketPos = rowScanner.scan(responseContent);
             if (closeBracketPos == -1) {
                 break;
             }
 
             int length = closeBracketPos - openBracketPos - responseContent.readerIndex() + 1;
             responseContent.skipBytes(openBracketPos);
-            ByteBuf resultSlice = responseContent.readSlice(length);
-            queryRowObservable.onNext(resultSlice.copy());
+            queryRowObservable.onNext(extractRow(responseContent.readerIndex(), length));
+            responseContent.skipBytes(length);
             responseContent.discardSomeReadBytes();
         }
     }
@@ -476,15 +493,15 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
                 break;
             }
 
-            int closeBracketPos = findSectionClosingPosition(responseContent, '{', '}');
+            int closeBracketPos = rowScanner.scan(responseContent);
             if (closeBracketPos == -1) {
                 break;
             }
 
             int length = closeBracketPos - openBracketPos - responseContent.readerIndex() + 1;
             responseContent.skipBytes(openBracketPos);
-            ByteBuf resultSlice = responseContent.readSlice(length);
-            queryErrorObservable.onNext(resultSlice.copy());
+            queryErrorObservable.onNext(extractRow(responseContent.readerIndex(), length));
+            responseContent.skipBytes(length);
         }
     }
 
@@ -523,7 +540,7 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
      */
     private void parseQueryInfo(boolean last) {
         int openBracketPos = findNextChar(responseContent, '{');
-        int closeBracketPos = findSectionClosingPosition(responseContent, '{', '}');
+        int closeBracketPos = rowScanner.scan(responseContent);
         if (closeBracketPos == -1) {
             if (last) {
                 throw new IllegalStateException("Could not find metrics closing in last chunk");
@@ -534,7 +551,7 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
 
         int from = responseContent.readerIndex() + openBracketPos;
         int to = closeBracketPos - openBracketPos - responseContent.readerIndex() + 1;
-        queryInfoObservable.onNext(responseContent.slice(from, to).copy());
+        queryInfoObservable.onNext(extractRow(from, to));
         responseContent.readerIndex(to + openBracketPos);
 
         queryInfoObservable.onCompleted();
@@ -547,12 +564,61 @@ public class QueryHandler extends AbstractGenericHandler<HttpObject, HttpRequest
      */
     private void cleanupQueryStates() {
         finishedDecoding();
+        if (queryRowThrottle != null) {
+            queryRowThrottle.release();
+            queryRowThrottle = null;
+        }
         queryInfoObservable = null;
         queryRowObservable = null;
         queryErrorObservable = null;
         queryStatusObservable = null;
         querySignatureObservable = null;
         queryParsingState = QUERY_STATE_INITIAL;
+        rowScanner.reset();
+    }
+
+    /**
+     * Prepares the response content buffer for a new response, which is a {@link CompositeByteBuf} of the received
+     * chunks if rows are emitted without copying them.
+     */
+    private void resetResponseContent(final ChannelHandlerContext ctx) {
+        zeroCopyRows = env().zeroCopyRowsEnabled();
+        if (!zeroCopyRows && responseContent != null && !(responseContent instanceof CompositeByteBuf)) {
+            responseContent.clear();
+            return;
+        }
+
+        if (responseContent != null) {
+            responseContent.release();
+        }
+        responseContent = zeroCopyRows ? ctx.alloc().compositeBuffer(Integer.MAX_VALUE) : ctx.alloc().buffer();
+    }
+
+    /**
+     * Adds a received chunk to the response content, by reference if rows are emitted without copying them.
+     */
+    private void appendResponseContent(final ByteBuf chunk) {
+        if (!zeroCopyRows) {
+            responseContent.writeBytes(chunk);
+        } else if (chunk.isReadable()) {
+            ((CompositeByteBuf) responseContent).addComponent(chunk.retain());
+            responseContent.writerIndex(responseContent.writerIndex() + chunk.readableBytes());
+        }
+    }
+
+    /**
+     * Extracts a row or section from the response content, as a retained slice of the received chunks if enabled
+     * and as a copy otherwise.
+     *
+     * @param index the absolute index of the row.
+     * @param length the length of the row.
+     * @return the row, to be released by its consumer.
+     */
+    private ByteBuf extractRow(final int index, final int length) {
+        if (zeroCopyRows) {
+            return ByteBufJsonHelper.retainedSlice((CompositeByteBuf) responseContent, index, length);
+        }
+        return responseContent.copy(index, length);
     }
 
     @Override
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.channel.Channel;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An operator which propagates the demand of a subscriber down to the socket, by turning off
+ * {@link io.netty.channel.ChannelConfig#setAutoRead(boolean) autoRead} of a {@link Channel} once everything the
+ * subscriber requested has been emitted and turning it back on when it requests more.
+ *
+ * It is meant to be placed between a buffering stage and a bounded consumer like
+ * {@link Observable#observeOn(rx.Scheduler)}, so it sees exactly what the consumer requested. Rows which have
+ * already been read from the socket when reading is paused are buffered upstream, which bounds the memory held for
+ * a slow consumer to what was read before pausing.
+ *
+ * Since the channel is shared with the next response, the handler needs to {@link #release()} the throttle once the
+ * response it belongs to is complete. Unsubscribing releases it as well, since nothing would ever request more.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class AutoReadThrottle<T> implements Observable.Operator<T, T> {
+
+    /**
+     * The channel whose reads are paused.
+     */
+    private final Channel channel;
+
+    /**
+     * The number of items requested and not emitted yet, {@link Long#MAX_VALUE} if unbounded.
+     */
+    private final AtomicLong demand = new AtomicLong();
+
+    /**
+     * Set once the throttle must no longer pause the channel.
+     */
+    private volatile boolean released;
+
+    /**
+     * The time in nanoseconds at which reading has been paused, 0 while reading.
+     */
+    private volatile long pausedAt;
+
+    /**
+     * Creates a new {@link AutoReadThrottle}.
+     *
+     * @param channel the channel whose reads are paused when the demand is exhausted.
+     */
+    public AutoReadThrottle(final Channel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public Subscriber<? super T> call(final Subscriber<? super T> child) {
+        final ThrottledSubscriber<T> parent = new ThrottledSubscriber<T>(this, child);
+        child.add(parent);
+        child.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                release();
+            }
+        }));
+        child.setProducer(new Producer() {
+            @Override
+            public void request(final long n) {
+                requested(n);
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    /**
+     * Stops controlling the channel and makes sure it reads again.
+     */
+    public void release() {
+        released = true;
+        pausedAt = 0;
+        channel.config().setAutoRead(true);
+    }
+
+    /**
+     * Returns for how long this throttle has kept the channel from reading.
+     *
+     * @param now the current time in nanoseconds.
+     * @return the time in nanoseconds since reading has been paused, 0 if it is not paused.
+     */
+    public long pausedFor(final long now) {
+        long at = pausedAt;
+        return at == 0 ? 0 : now - at;
+    }
+
+    /**
+     * Adds to the demand and resumes reading if it was exhausted.
+     */
+    private void requested(final long n) {
+        if (n <= 0) {
+            return;
+        }
+
+        long current;
+        long next;
+        do {
+            current = demand.get();
+            next = current + n < current || n == Long.MAX_VALUE ? Long.MAX_VALUE : current + n;
+        } while (!demand.compareAndSet(current, next));
+
+        if (current <= 0) {
+            pausedAt = 0;
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * Takes one emitted item off the demand and pauses reading if it is exhausted.
+     */
+    private void emitted() {
+        long current;
+        do {
+            current = demand.get();
+            if (current == Long.MAX_VALUE) {
+                return;
+            }
+        } while (!demand.compareAndSet(current, current - 1));
+
+        if (current - 1 <= 0 && !released) {
+            pausedAt = System.nanoTime();
+            channel.config().setAutoRead(false);
+            // a request or release racing with the pause must not leave the channel paused
+            if (released || demand.get() > 0) {
+                pausedAt = 0;
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * The subscriber placed upstream, which counts the emitted items and only requests what the child requested.
+     */
+    private static final class ThrottledSubscriber<T> extends Subscriber<T> {
+
+        private final AutoReadThrottle<T> throttle;
+        private final Subscriber<? super T> child;
+
+        ThrottledSubscriber(final AutoReadThrottle<T> throttle, final Subscriber<? super T> child) {
+            this.throttle = throttle;
+            this.child = child;
+        }
+
+        void requestMore(final long n) {
+            request(n);
+        }
+
+        @Override
+        public void onNext(final T t) {
+            throttle.emitted();
+            child.onNext(t);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            child.onCompleted();
+        }
+    }
+}
@@ -23,6 +23,7 @@
 package com.couchbase.client.core.endpoint.util;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 
 /**
  * An helper class providing utility methods to deal with parsing of structured
@@ -119,4 +120,37 @@ public class ByteBufJsonHelper {
         return buf.forEachByte(from, length,
                 new ClosingPositionBufProcessor(openingChar, closingChar, true));
     }
+
+    /**
+     * Returns a retained slice of a section of a {@link CompositeByteBuf} made of received network buffers,
+     * without copying it.
+     *
+     * If the section lies within a single component the slice shares that component's memory, if it spans
+     * components a new {@link CompositeByteBuf} stitches the slices of each of them together. Either way the
+     * returned buffer holds its own references and stays valid when the components are discarded from the source.
+     *
+     * @param buf the buffer to slice from.
+     * @param index the absolute index at which the section starts.
+     * @param length the length of the section.
+     * @return the retained slice, to be released by the caller.
+     */
+    public static ByteBuf retainedSlice(CompositeByteBuf buf, int index, int length) {
+        int first = buf.toComponentIndex(index);
+        int last = buf.toComponentIndex(index + length - 1);
+        int offset = index - buf.toByteIndex(first);
+        if (first == last) {
+            return buf.internalComponent(first).slice(offset, length).retain();
+        }
+
+        CompositeByteBuf stitched = buf.alloc().compositeBuffer(last - first + 1);
+        int remaining = length;
+        for (int i = first; i <= last; i++) {
+            ByteBuf component = buf.internalComponent(i);
+            int sliceLength = Math.min(component.capacity() - offset, remaining);
+            stitched.addComponent(component.slice(offset, sliceLength).retain());
+            remaining -= sliceLength;
+            offset = 0;
+        }
+        return stitched.writerIndex(length);
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+import io.netty.buffer.CompositeByteBuf;
+
+/**
+ * A resumable scanner which finds the closing brace of the next JSON object in a buffer that is filled up chunk by
+ * chunk.
+ *
+ * Unlike {@link ByteBufJsonHelper#findSectionClosingPosition(ByteBuf, char, char)}, which starts over from the
+ * readerIndex on every call, the scanner remembers how many bytes it already inspected as well as the nesting depth
+ * and the string and escape state at that point, so every byte of a row is looked at only once no matter how many
+ * chunks it is spread over. Braces inside JSON strings, including strings with escaped quotes and backslashes, are
+ * ignored.
+ *
+ * The bytes inspected so far are tracked relative to the readerIndex, so the buffer may be compacted in between
+ * calls, but its readerIndex must not be moved until the object has been found or the scanner has been
+ * {@link #reset()}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class JsonRowScanner implements ByteBufProcessor {
+
+    /**
+     * The number of bytes after the readerIndex which have already been inspected.
+     */
+    private int scanned;
+
+    /**
+     * The current nesting depth, 0 while the opening brace has not been seen.
+     */
+    private int depth;
+
+    /**
+     * If the last inspected byte is part of a JSON string.
+     */
+    private boolean inString;
+
+    /**
+     * If the last inspected byte is a backslash escaping the next one inside a JSON string.
+     */
+    private boolean escaped;
+
+    /**
+     * Continues scanning the readable bytes of the buffer for the closing brace of the next JSON object.
+     *
+     * Once found, the scanner is reset and can be used for the next object.
+     *
+     * @param buf the buffer to scan, starting at its readerIndex.
+     * @return the absolute index of the closing brace or -1 if more data is needed.
+     */
+    public int scan(final ByteBuf buf) {
+        int from = buf.readerIndex() + scanned;
+        int length = buf.writerIndex() - from;
+        if (length <= 0) {
+            return -1;
+        }
+
+        int closing = buf instanceof CompositeByteBuf
+            ? scanComponents((CompositeByteBuf) buf, from, length) : buf.forEachByte(from, length, this);
+        if (closing == -1) {
+            scanned += length;
+        } else {
+            reset();
+        }
+        return closing;
+    }
+
+    /**
+     * Scans a {@link CompositeByteBuf} component by component, which avoids looking up the component for every
+     * single byte.
+     */
+    private int scanComponents(final CompositeByteBuf buf, final int from, final int length) {
+        int end = from + length;
+        int index = from;
+        for (int i = buf.toComponentIndex(from); index < end; i++) {
+            int offset = buf.toByteIndex(i);
+            ByteBuf component = buf.internalComponent(i);
+            int chunk = Math.min(component.capacity() - (index - offset), end - index);
+            int found = component.forEachByte(index - offset, chunk, this);
+            if (found != -1) {
+                return offset + found;
+            }
+            index += chunk;
+        }
+        return -1;
+    }
+
+    /**
+     * Forgets everything scanned so far, to be called when the readerIndex moves or a new response starts.
+     */
+    public void reset() {
+        scanned = 0;
+        depth = 0;
+        inString = false;
+        escaped = false;
+    }
+
+    @Override
+    public boolean process(final byte value) throws Exception {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (value == '\\') {
+                escaped = true;
+            } else if (value == '"') {
+                inString = false;
+            }
+        } else if (value == '{') {
+            depth++;
+        } else if (depth > 0) {
+            if (value == '"') {
+                inString = true;
+            } else if (value == '}' && --depth == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.util.ReferenceCountUtil;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * An operator which releases reference counted items once its subscriber unsubscribed early.
+ *
+ * Unsubscribing does not travel upstream, instead everything still buffered or yet to arrive is requested and
+ * released. This covers the items held in the queues of operators like {@link Observable#onBackpressureBuffer()}
+ * or {@link Observable#observeOn(rx.Scheduler)}, which would otherwise be dropped without being released. It
+ * also lifts any pause an {@link AutoReadThrottle} placed upstream has put on the channel. Items which are not
+ * reference counted themselves can be released by overriding {@link #release(Object)}, and {@link #unsubscribed()}
+ * notifies right when the subscriber left.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class ReleaseOnUnsubscribe<T> implements Observable.Operator<T, T> {
+
+    @Override
+    public Subscriber<? super T> call(final Subscriber<? super T> child) {
+        final ReleasingSubscriber<T> parent = new ReleasingSubscriber<T>(this, child);
+        child.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                unsubscribed();
+                parent.releaseAll();
+            }
+        }));
+        child.setProducer(new Producer() {
+            @Override
+            public void request(final long n) {
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    /**
+     * Called synchronously on the unsubscribing thread, before anything still buffered is requested and released.
+     */
+    protected void unsubscribed() {
+    }
+
+    /**
+     * Releases an item which arrived after unsubscribing.
+     *
+     * @param item the item to release.
+     */
+    protected void release(final T item) {
+        ReferenceCountUtil.release(item);
+    }
+
+    /**
+     * The subscriber placed upstream, which is not unsubscribed together with its child.
+     */
+    private static final class ReleasingSubscriber<T> extends Subscriber<T> {
+
+        private final ReleaseOnUnsubscribe<T> operator;
+        private final Subscriber<? super T> child;
+        private volatile boolean releasing;
+
+        ReleasingSubscriber(final ReleaseOnUnsubscribe<T> operator, final Subscriber<? super T> child) {
+            this.operator = operator;
+            this.child = child;
+        }
+
+        void requestMore(final long n) {
+            if (!releasing) {
+                request(n);
+            }
+        }
+
+        void releaseAll() {
+            releasing = true;
+            request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(final T t) {
+            if (releasing) {
+                operator.release(t);
+            } else {
+                child.onNext(t);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            if (!releasing) {
+                child.onError(e);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (!releasing) {
+                child.onCompleted();
+            }
+        }
+    }
+}
@@ -25,7 +25,9 @@ import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
 import com.couchbase.client.core.endpoint.ResponseStatusConverter;
-import com.couchbase.client.core.endpoint.util.ClosingPositionBufProcessor;
+import com.couchbase.client.core.endpoint.util.AutoReadThrottle;
+import com.couchbase.client.core.endpoint.util.ByteBufJsonHelper;
+import com.couchbase.client.core.endpoint.util.JsonRowScanner;
 import com.couchbase.client.core.lang.Tuple;
 import com.couchbase.client.core.lang.Tuple2;
 import com.couchbase.client.core.message.AbstractCouchbaseRequest;
@@ -45,6 +47,7 @@ import com.couchbase.client.core.message.view.ViewRequest;
 import com.couchbase.client.core.utils.UnicastAutoReleaseSubject;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.ByteBufProcessor;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
@@ -92,11 +95,21 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
      */
     private ByteBuf responseContent;
 
+    /**
+     * If the response content is a {@link CompositeByteBuf} of the received chunks and rows are sliced out of it.
+     */
+    private boolean zeroCopyRows;
+
     /**
      * Represents a observable that sends config chunks if instructed.
      */
     private UnicastAutoReleaseSubject<ByteBuf> viewRowObservable;
 
+    /**
+     * Pauses reading from the socket while the subscriber of the rows does not request more of them.
+     */
+    private AutoReadThrottle<ByteBuf> viewRowThrottle;
+
     /**
      * Contains info-level data about the view response.
      */
@@ -107,6 +120,11 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
      */
     private byte viewParsingState = QUERY_STATE_INITIAL;
 
+    /**
+     * Finds the end of the current row, resuming where it left off when a row spans several chunks.
+     */
+    private final JsonRowScanner rowScanner = new JsonRowScanner();
+
     /**
      * Creates a new {@link ViewHandler} with the default queue for requests.
      *
@@ -242,12 +260,7 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
 
         if (msg instanceof HttpResponse) {
             responseHeader = (HttpResponse) msg;
-
-            if (responseContent != null) {
-                responseContent.clear();
-            } else {
-                responseContent = ctx.alloc().buffer();
-            }
+            resetResponseContent(ctx);
         }
 
         if (request instanceof KeepAliveRequest) {
@@ -255,11 +268,11 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
             responseContent.clear();
             responseContent.discardReadBytes();
         } else if (msg instanceof HttpContent) {
-            responseContent.writeBytes(((HttpContent) msg).content());
+            appendResponseContent(((HttpContent) msg).content());
 
             if (currentRequest() instanceof ViewQueryRequest) {
                 if (viewRowObservable == null) {
-                    response = handleViewQueryResponse();
+                    response = handleViewQueryResponse(ctx);
                 }
 
                 parseQueryResponse(msg instanceof LastHttpContent);
@@ -311,9 +324,10 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
      *
      * Note that observables are attached to this response which are completed later in the response cycle.
      *
+     * @param ctx the handler context, whose channel is paused while the rows are not consumed.
      * @return the initial response.
      */
-    private CouchbaseResponse handleViewQueryResponse() {
+    private CouchbaseResponse handleViewQueryResponse(final ChannelHandlerContext ctx) {
         int code = responseHeader.getStatus().code();
         String phrase = responseHeader.getStatus().reasonPhrase();
         ResponseStatus status = ResponseStatusConverter.fromHttp(responseHeader.getStatus().code());
@@ -321,8 +335,9 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
         long ttl = env().autoreleaseAfter();
         viewRowObservable = UnicastAutoReleaseSubject.create(ttl, TimeUnit.MILLISECONDS, scheduler);
         viewInfoObservable = UnicastAutoReleaseSubject.create(ttl, TimeUnit.MILLISECONDS, scheduler);
+        viewRowThrottle = new AutoReadThrottle<ByteBuf>(ctx.channel());
         return new ViewQueryResponse(
-            viewRowObservable.onBackpressureBuffer().observeOn(scheduler),
+            viewRowObservable.onBackpressureBuffer().lift(viewRowThrottle).observeOn(scheduler),
             viewInfoObservable.onBackpressureBuffer().observeOn(scheduler),
             code,
             phrase,
@@ -363,9 +378,14 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
      */
     private void cleanupViewStates() {
         finishedDecoding();
+        if (viewRowThrottle != null) {
+            viewRowThrottle.release();
+            viewRowThrottle = null;
+        }
         viewInfoObservable = null;
         viewRowObservable = null;
         viewParsingState = QUERY_STATE_INITIAL;
+        rowScanner.reset();
     }
 
     /**
@@ -445,14 +465,14 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
     private void parseViewRows(boolean last) {
         while (true) {
             int openBracketPos = responseContent.bytesBefore((byte) '{');
-            int closeBracketPos = findSectionClosingPosition(responseContent, '{', '}');
+            int closeBracketPos = rowScanner.scan(responseContent);
             if (closeBracketPos == -1) {
                 break;
             }
 
             int from = responseContent.readerIndex() + openBracketPos;
             int to = closeBracketPos - openBracketPos - responseContent.readerIndex() + 1;
-            viewRowObservable.onNext(responseContent.slice(from, to).copy());
+            viewRowObservable.onNext(extractRow(from, to));
             responseContent.readerIndex(closeBracketPos);
         }
 
@@ -486,6 +506,50 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
         raw.release();
     }
 
+    /**
+     * Prepares the response content buffer for a new response, which is a {@link CompositeByteBuf} of the received
+     * chunks if rows are emitted without copying them.
+     */
+    private void resetResponseContent(final ChannelHandlerContext ctx) {
+        zeroCopyRows = env().zeroCopyRowsEnabled();
+        if (!zeroCopyRows && responseContent != null && !(responseContent instanceof CompositeByteBuf)) {
+            responseContent.clear();
+            return;
+        }
+
+        if (responseContent != null) {
+            responseContent.release();
+        }
+        responseContent = zeroCopyRows ? ctx.alloc().compositeBuffer(Integer.MAX_VALUE) : ctx.alloc().buffer();
+    }
+
+    /**
+     * Adds a received chunk to the response content, by reference if rows are emitted without copying them.
+     */
+    private void appendResponseContent(final ByteBuf chunk) {
+        if (!zeroCopyRows) {
+            responseContent.writeBytes(chunk);
+        } else if (chunk.isReadable()) {
+            ((CompositeByteBuf) responseContent).addComponent(chunk.retain());
+            responseContent.writerIndex(responseContent.writerIndex() + chunk.readableBytes());
+        }
+    }
+
+    /**
+     * Extracts a row or section from the response content, as a retained slice of the received chunks if enabled
+     * and as a copy otherwise.
+     *
+     * @param index the absolute index of the row.
+     * @param length the length of the row.
+     * @return the row, to be released by its consumer.
+     */
+    private ByteBuf extractRow(final int index, final int length) {
+        if (zeroCopyRows) {
+            return ByteBufJsonHelper.retainedSlice((CompositeByteBuf) responseContent, index, length);
+        }
+        return responseContent.copy(index, length);
+    }
+
     @Override
     public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
         if (viewRowObservable != null) {
@@ -501,19 +565,6 @@ public class ViewHandler extends AbstractGenericHandler<HttpObject, HttpRequest,
         super.handlerRemoved(ctx);
     }
 
-    /**
-     * Finds the position of the correct closing character, taking into account the fact that before the correct one,
-     * other sub section with same opening and closing characters can be encountered.
-     *
-     * @param buf the {@link ByteBuf} where to search for the end of a section enclosed in openingChar and closingChar.
-     * @param openingChar the section opening char, used to detect a sub-section.
-     * @param closingChar the section closing char, used to detect the end of a sub-section / this section.
-     * @return
-     */
-    private static int findSectionClosingPosition(ByteBuf buf, char openingChar, char closingChar) {
-        return buf.forEachByte(new ClosingPositionBufProcessor(openingChar, closingChar));
-    }
-
     @Override
     protected CouchbaseRequest createKeepAliveRequest() {
         return new KeepAliveRequest();
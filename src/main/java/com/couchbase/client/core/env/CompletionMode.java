@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.env;
+
+/**
+ * Defines on which thread responses are completed towards the subscribers of the request observables.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public enum CompletionMode {
+
+    /**
+     * Every response is completed in its own task on the {@link CoreEnvironment#scheduler()}, the default.
+     *
+     * This isolates the I/O threads from slow subscribers, but costs a thread hop and a scheduled task per response.
+     */
+    SCHEDULED,
+
+    /**
+     * Responses are completed directly on the thread which decoded them, mostly the I/O event loop.
+     *
+     * This is the fastest mode, but subscribers must never block, since they stall all other operations
+     * handled by the same thread. Use observeOn to move heavy work off the I/O threads.
+     */
+    DIRECT,
+
+    /**
+     * Responses are collected in a reusable buffer per decoding thread, which is handed to the
+     * {@link CoreEnvironment#scheduler()} as one task once a burst of responses has been read.
+     *
+     * Subscribers are still isolated from the I/O threads, but the scheduling cost is shared by all responses
+     * arriving in a burst.
+     */
+    BATCHED
+}
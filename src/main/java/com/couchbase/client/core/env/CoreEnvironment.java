@@ -26,9 +26,12 @@ import com.couchbase.client.core.message.observe.Observe;
 import com.couchbase.client.core.retry.RetryStrategy;
 import com.couchbase.client.core.time.Delay;
 import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
 import rx.Observable;
 import rx.Scheduler;
 
+import java.util.concurrent.ThreadFactory;
+
 /**
  * A {@link CoreEnvironment} provides all the core building blocks like environment settings and thread pools so
  * that the application can work with it properly.
@@ -54,6 +57,13 @@ public interface CoreEnvironment {
      */
     EventLoopGroup ioPool();
 
+    /**
+     * Returns the timer shared by all requests to enforce their deadlines.
+     *
+     * @return the shared timer.
+     */
+    Timer timer();
+
     /**
      * Returns the scheduler which should be used for all core actions that need to happen
      * asynchronously.
@@ -69,6 +79,35 @@ public interface CoreEnvironment {
      */
     boolean dcpEnabled();
 
+    /**
+     * The number of bytes the server may send on a DCP connection before they have to be acknowledged.
+     *
+     * @return the DCP connection buffer size in bytes, or 0 if flow control is disabled.
+     */
+    int dcpConnectionBufferSize();
+
+    /**
+     * The percentage of the DCP connection buffer which is consumed before it is acknowledged to the server.
+     *
+     * @return the acknowledgement threshold in percent of the connection buffer size.
+     */
+    int dcpConnectionBufferAckThreshold();
+
+    /**
+     * The maximum number of DCP messages of a stream which are delivered together in one batch.
+     *
+     * @return the DCP batch size.
+     */
+    int dcpBatchSize();
+
+    /**
+     * The interval in which the server sends a noop on an idle DCP connection, which allows to detect a dead
+     * connection after twice the interval.
+     *
+     * @return the DCP noop interval in milliseconds, or 0 if disabled.
+     */
+    long dcpNoopInterval();
+
     /**
      * Identifies if SSL should be enabled.
      *
@@ -160,6 +199,85 @@ public interface CoreEnvironment {
      */
     int responseBufferSize();
 
+    /**
+     * Returns the number of request ringbuffers (each with its own dispatch thread) requests are spread across.
+     *
+     * @return the number of request ringbuffers.
+     */
+    int requestShards();
+
+    /**
+     * Returns the maximum number of requests a dispatch thread writes before it flushes the written endpoints,
+     * even if more requests are waiting in its batch.
+     *
+     * @return the maximum number of writes per flush.
+     */
+    int maxRequestBatchSize();
+
+    /**
+     * Returns the maximum size in bytes of a value received from the key/value service, larger ones fail their
+     * request unless it streams the value.
+     *
+     * @return the maximum value size.
+     */
+    int maxValueSize();
+
+    /**
+     * Returns true if query and view rows are emitted as slices of the received network buffers instead of copies.
+     *
+     * @return true if zero copy rows are enabled.
+     */
+    boolean zeroCopyRowsEnabled();
+
+    /**
+     * Returns on which thread responses are completed towards the subscribers.
+     *
+     * @return the completion mode.
+     */
+    CompletionMode completionMode();
+
+    /**
+     * Returns the strategy the consumer of the request ringbuffer uses to wait for new requests.
+     *
+     * @return the wait strategy of the request ringbuffer.
+     */
+    WaitStrategyType requestWaitStrategy();
+
+    /**
+     * Returns the strategy the consumer of the response ringbuffer uses to wait for new responses.
+     *
+     * @return the wait strategy of the response ringbuffer.
+     */
+    WaitStrategyType responseWaitStrategy();
+
+    /**
+     * Returns if one or many threads publish into the request ringbuffer.
+     *
+     * @return the producer type of the request ringbuffer.
+     */
+    ProducerType requestProducerType();
+
+    /**
+     * Returns if one or many threads publish into the response ringbuffer.
+     *
+     * @return the producer type of the response ringbuffer.
+     */
+    ProducerType responseProducerType();
+
+    /**
+     * Returns the factory for the thread consuming the request ringbuffer.
+     *
+     * @return the thread factory for the request ringbuffer.
+     */
+    ThreadFactory requestThreadFactory();
+
+    /**
+     * Returns the factory for the thread consuming the response ringbuffer.
+     *
+     * @return the thread factory for the response ringbuffer.
+     */
+    ThreadFactory responseThreadFactory();
+
     /**
      * The number of key/value service endpoints.
      *
@@ -181,6 +299,28 @@ public interface CoreEnvironment {
      */
     int queryEndpoints();
 
+    /**
+     * The maximum number of view service endpoints a node is allowed to grow to under concurrent load.
+     *
+     * @return maximum amount of endpoints per view service.
+     */
+    int maxViewEndpoints();
+
+    /**
+     * The maximum number of query service endpoints a node is allowed to grow to under concurrent load.
+     *
+     * @return maximum amount of endpoints per query service.
+     */
+    int maxQueryEndpoints();
+
+    /**
+     * The time in milliseconds after which an idle endpoint opened on top of the configured number of view or
+     * query endpoints is closed again.
+     *
+     * @return the idle time in milliseconds after which additional endpoints are closed.
+     */
+    long endpointIdleTime();
+
     /**
      * Library identification string, which can be used as User-Agent header in HTTP requests.
      *
@@ -213,6 +353,16 @@ public interface CoreEnvironment {
      */
     long maxRequestLifetime();
 
+    /**
+     * Returns the timeout in milliseconds applied to every request which has not been given one on its own.
+     *
+     * Once it is exceeded, the request is failed with a {@link com.couchbase.client.core.RequestTimeoutException}
+     * and removed from the connection it is in-flight on.
+     *
+     * @return the default request timeout, or 0 if requests only time out if they carry their own.
+     */
+    long requestTimeout();
+
     /**
      * The time in milliseconds after which a non-subscribed observable is going to be automatically released.
      *
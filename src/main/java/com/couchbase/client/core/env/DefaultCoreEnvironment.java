@@ -32,6 +32,8 @@ import com.couchbase.client.core.retry.RetryStrategy;
 import com.couchbase.client.core.time.Delay;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
@@ -40,6 +42,7 @@ import rx.Scheduler;
 import rx.Subscriber;
 
 import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 public class DefaultCoreEnvironment implements CoreEnvironment {
@@ -50,6 +53,10 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(CoreEnvironment.class);
 
     public static final boolean DCP_ENABLED = false;
+    public static final int DCP_CONNECTION_BUFFER_SIZE = 20 * 1024 * 1024;
+    public static final int DCP_CONNECTION_BUFFER_ACK_THRESHOLD = 20;
+    public static final int DCP_BATCH_SIZE = 256;
+    public static final long DCP_NOOP_INTERVAL = TimeUnit.SECONDS.toMillis(20);
     public static final boolean SSL_ENABLED = false;
     public static final String SSL_KEYSTORE_FILE = null;
     public static final String SSL_KEYSTORE_PASSWORD = null;
@@ -63,16 +70,29 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     public static final int BOOTSTRAP_CARRIER_SSL_PORT = 11207;
     public static final int REQUEST_BUFFER_SIZE = 16384;
     public static final int RESPONSE_BUFFER_SIZE = 16384;
+    public static final int REQUEST_SHARDS = 1;
+    public static final int MAX_REQUEST_BATCH_SIZE = 256;
+    public static final int MAX_VALUE_SIZE = 20 * 1024 * 1024;
+    public static final boolean ZERO_COPY_ROWS_ENABLED = false;
+    public static final CompletionMode COMPLETION_MODE = CompletionMode.SCHEDULED;
+    public static final WaitStrategyType REQUEST_WAIT_STRATEGY = WaitStrategyType.BLOCKING;
+    public static final WaitStrategyType RESPONSE_WAIT_STRATEGY = WaitStrategyType.BLOCKING;
+    public static final ProducerType REQUEST_PRODUCER_TYPE = ProducerType.MULTI;
+    public static final ProducerType RESPONSE_PRODUCER_TYPE = ProducerType.MULTI;
     public static final int IO_POOL_SIZE = Runtime.getRuntime().availableProcessors();
     public static final int COMPUTATION_POOL_SIZE =  Runtime.getRuntime().availableProcessors();
     public static final int KEYVALUE_ENDPOINTS = 1;
     public static final int VIEW_ENDPOINTS = 1;
     public static final int QUERY_ENDPOINTS = 1;
+    public static final int MAX_VIEW_ENDPOINTS = 12;
+    public static final int MAX_QUERY_ENDPOINTS = 12;
+    public static final long ENDPOINT_IDLE_TIME = TimeUnit.SECONDS.toMillis(300);
     public static final Delay OBSERVE_INTERVAL_DELAY = Delay.exponential(TimeUnit.MICROSECONDS, 100000, 10);
     public static final Delay RECONNECT_DELAY = Delay.exponential(TimeUnit.MILLISECONDS, 4096, 32);
     public static final Delay RETRY_DELAY = Delay.exponential(TimeUnit.MICROSECONDS, 100000, 100);
     public static final RetryStrategy RETRY_STRATEGY = BestEffortRetryStrategy.INSTANCE;
     public static final long MAX_REQUEST_LIFETIME = TimeUnit.SECONDS.toMillis(75);
+    public static final long REQUEST_TIMEOUT = 0;
     public static final long KEEPALIVEINTERVAL = TimeUnit.SECONDS.toMillis(30);
     public static final long AUTORELEASE_AFTER = TimeUnit.SECONDS.toMillis(2);
 
@@ -81,6 +101,11 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
 
     private static final String NAMESPACE = "com.couchbase.";
 
+    /**
+     * The tick duration of the request timer, which bounds how precise request timeouts are enforced.
+     */
+    private static final long TIMER_TICK_MILLIS = 10;
+
     private static final String VERSION_PROPERTIES = "com.couchbase.client.core.properties";
 
     /**
@@ -123,6 +148,10 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     }
 
     private final boolean dcpEnabled;
+    private final int dcpConnectionBufferSize;
+    private final int dcpConnectionBufferAckThreshold;
+    private final int dcpBatchSize;
+    private final long dcpNoopInterval;
     private final boolean sslEnabled;
     private final String sslKeystoreFile;
     private final String sslKeystorePassword;
@@ -138,9 +167,21 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     private final int computationPoolSize;
     private final int responseBufferSize;
     private final int requestBufferSize;
+    private final int requestShards;
+    private final int maxRequestBatchSize;
+    private final int maxValueSize;
+    private final boolean zeroCopyRowsEnabled;
+    private final CompletionMode completionMode;
+    private final WaitStrategyType requestWaitStrategy;
+    private final WaitStrategyType responseWaitStrategy;
+    private final ProducerType requestProducerType;
+    private final ProducerType responseProducerType;
     private final int kvServiceEndpoints;
     private final int viewServiceEndpoints;
     private final int queryServiceEndpoints;
+    private final int maxViewServiceEndpoints;
+    private final int maxQueryServiceEndpoints;
+    private final long endpointIdleTime;
     private final Delay observeIntervalDelay;
     private final Delay reconnectDelay;
     private final Delay retryDelay;
@@ -148,6 +189,7 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     private final String packageNameAndVersion;
     private final RetryStrategy retryStrategy;
     private final long maxRequestLifetime;
+    private final long requestTimeout;
     private final long keepAliveInterval;
     private final long autoreleaseAfter;
 
@@ -156,7 +198,10 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
 
     private final EventLoopGroup ioPool;
     private final Scheduler coreScheduler;
+    private final Timer timer;
     private final EventBus eventBus;
+    private final ThreadFactory requestThreadFactory;
+    private final ThreadFactory responseThreadFactory;
     private volatile boolean shutdown;
 
     protected DefaultCoreEnvironment(final Builder builder) {
@@ -165,6 +210,11 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
                 + "), this can have severe impact on performance and stability. Reuse environments!");
         }
         dcpEnabled = booleanPropertyOr("dcpEnabled", builder.dcpEnabled());
+        dcpConnectionBufferSize = intPropertyOr("dcpConnectionBufferSize", builder.dcpConnectionBufferSize());
+        dcpConnectionBufferAckThreshold = intPropertyOr("dcpConnectionBufferAckThreshold",
+            builder.dcpConnectionBufferAckThreshold());
+        dcpBatchSize = intPropertyOr("dcpBatchSize", builder.dcpBatchSize());
+        dcpNoopInterval = longPropertyOr("dcpNoopInterval", builder.dcpNoopInterval());
         sslEnabled = booleanPropertyOr("sslEnabled", builder.sslEnabled());
         sslKeystoreFile = stringPropertyOr("sslKeystoreFile", builder.sslKeystoreFile());
         sslKeystorePassword = stringPropertyOr("sslKeystorePassword", builder.sslKeystorePassword());
@@ -180,9 +230,25 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         computationPoolSize = intPropertyOr("computationPoolSize", builder.computationPoolSize());
         responseBufferSize = intPropertyOr("responseBufferSize", builder.responseBufferSize());
         requestBufferSize = intPropertyOr("requestBufferSize", builder.requestBufferSize());
+        requestShards = intPropertyOr("requestShards", builder.requestShards());
+        maxRequestBatchSize = intPropertyOr("maxRequestBatchSize", builder.maxRequestBatchSize());
+        maxValueSize = intPropertyOr("maxValueSize", builder.maxValueSize());
+        zeroCopyRowsEnabled = booleanPropertyOr("zeroCopyRowsEnabled", builder.zeroCopyRowsEnabled());
+        completionMode = CompletionMode.valueOf(stringPropertyOr("completionMode", builder.completionMode().name()));
+        requestWaitStrategy = WaitStrategyType.valueOf(
+            stringPropertyOr("requestWaitStrategy", builder.requestWaitStrategy().name()));
+        responseWaitStrategy = WaitStrategyType.valueOf(
+            stringPropertyOr("responseWaitStrategy", builder.responseWaitStrategy().name()));
+        requestProducerType = ProducerType.valueOf(
+            stringPropertyOr("requestProducerType", builder.requestProducerType().name()));
+        responseProducerType = ProducerType.valueOf(
+            stringPropertyOr("responseProducerType", builder.responseProducerType().name()));
         kvServiceEndpoints = intPropertyOr("kvEndpoints", builder.kvEndpoints());
         viewServiceEndpoints = intPropertyOr("viewEndpoints", builder.viewEndpoints());
         queryServiceEndpoints = intPropertyOr("queryEndpoints", builder.queryEndpoints());
+        maxViewServiceEndpoints = intPropertyOr("maxViewEndpoints", builder.maxViewEndpoints());
+        maxQueryServiceEndpoints = intPropertyOr("maxQueryEndpoints", builder.maxQueryEndpoints());
+        endpointIdleTime = longPropertyOr("endpointIdleTime", builder.endpointIdleTime());
         packageNameAndVersion = stringPropertyOr("packageNameAndVersion", builder.packageNameAndVersion());
         userAgent = stringPropertyOr("userAgent", builder.userAgent());
         observeIntervalDelay = builder.observeIntervalDelay();
@@ -190,6 +256,7 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         retryDelay = builder.retryDelay();
         retryStrategy = builder.retryStrategy();
         maxRequestLifetime = longPropertyOr("maxRequestLifetime", builder.maxRequestLifetime());
+        requestTimeout = longPropertyOr("requestTimeout", builder.requestTimeout());
         keepAliveInterval = longPropertyOr("keepAliveInterval", builder.keepAliveInterval());
         autoreleaseAfter = longPropertyOr("autoreleaseAfter", builder.autoreleaseAfter());
 
@@ -198,6 +265,12 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         this.coreScheduler = builder.scheduler() == null
             ? new CoreScheduler(computationPoolSize()) : builder.scheduler();
         this.eventBus = builder.eventBus == null ? new DefaultEventBus(coreScheduler) : builder.eventBus();
+        this.requestThreadFactory = builder.requestThreadFactory() == null
+            ? new DefaultThreadFactory("cb-core", true) : builder.requestThreadFactory();
+        this.responseThreadFactory = builder.responseThreadFactory() == null
+            ? new DefaultThreadFactory("cb-core", true) : builder.responseThreadFactory();
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("cb-timer", true), TIMER_TICK_MILLIS,
+            TimeUnit.MILLISECONDS);
         this.shutdown = false;
     }
 
@@ -243,6 +316,11 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return ioPool;
     }
 
+    @Override
+    public Timer timer() {
+        return timer;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Observable<Boolean> shutdown() {
@@ -258,6 +336,7 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
                     subscriber.onCompleted();
                 }
 
+                timer.stop();
                 ioPool.shutdownGracefully().addListener(new GenericFutureListener() {
                     @Override
                     public void operationComplete(final Future future) throws Exception {
@@ -290,6 +369,26 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return dcpEnabled;
     }
 
+    @Override
+    public int dcpConnectionBufferSize() {
+        return dcpConnectionBufferSize;
+    }
+
+    @Override
+    public int dcpConnectionBufferAckThreshold() {
+        return dcpConnectionBufferAckThreshold;
+    }
+
+    @Override
+    public int dcpBatchSize() {
+        return dcpBatchSize;
+    }
+
+    @Override
+    public long dcpNoopInterval() {
+        return dcpNoopInterval;
+    }
+
     @Override
     public String sslKeystoreFile() {
         return sslKeystoreFile;
@@ -360,6 +459,61 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return responseBufferSize;
     }
 
+    @Override
+    public int requestShards() {
+        return requestShards;
+    }
+
+    @Override
+    public int maxRequestBatchSize() {
+        return maxRequestBatchSize;
+    }
+
+    @Override
+    public int maxValueSize() {
+        return maxValueSize;
+    }
+
+    @Override
+    public boolean zeroCopyRowsEnabled() {
+        return zeroCopyRowsEnabled;
+    }
+
+    @Override
+    public CompletionMode completionMode() {
+        return completionMode;
+    }
+
+    @Override
+    public WaitStrategyType requestWaitStrategy() {
+        return requestWaitStrategy;
+    }
+
+    @Override
+    public WaitStrategyType responseWaitStrategy() {
+        return responseWaitStrategy;
+    }
+
+    @Override
+    public ProducerType requestProducerType() {
+        return requestProducerType;
+    }
+
+    @Override
+    public ProducerType responseProducerType() {
+        return responseProducerType;
+    }
+
+    @Override
+    public ThreadFactory requestThreadFactory() {
+        return requestThreadFactory;
+    }
+
+    @Override
+    public ThreadFactory responseThreadFactory() {
+        return responseThreadFactory;
+    }
+
     @Override
     public int kvEndpoints() {
         return kvServiceEndpoints;
@@ -375,6 +529,21 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return queryServiceEndpoints;
     }
 
+    @Override
+    public int maxViewEndpoints() {
+        return maxViewServiceEndpoints;
+    }
+
+    @Override
+    public int maxQueryEndpoints() {
+        return maxQueryServiceEndpoints;
+    }
+
+    @Override
+    public long endpointIdleTime() {
+        return endpointIdleTime;
+    }
+
     @Override
     public String userAgent() {
         return userAgent;
@@ -410,6 +579,11 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return maxRequestLifetime;
     }
 
+    @Override
+    public long requestTimeout() {
+        return requestTimeout;
+    }
+
     @Override
     public long keepAliveInterval() {
         return this.keepAliveInterval;
@@ -428,6 +602,10 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     public static class Builder implements CoreEnvironment {
 
         private boolean dcpEnabled = DCP_ENABLED;
+        private int dcpConnectionBufferSize = DCP_CONNECTION_BUFFER_SIZE;
+        private int dcpConnectionBufferAckThreshold = DCP_CONNECTION_BUFFER_ACK_THRESHOLD;
+        private int dcpBatchSize = DCP_BATCH_SIZE;
+        private long dcpNoopInterval = DCP_NOOP_INTERVAL;
         private boolean sslEnabled = SSL_ENABLED;
         private String sslKeystoreFile = SSL_KEYSTORE_FILE;
         private String sslKeystorePassword = SSL_KEYSTORE_PASSWORD;
@@ -445,9 +623,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         private int computationPoolSize = COMPUTATION_POOL_SIZE;
         private int responseBufferSize = RESPONSE_BUFFER_SIZE;
         private int requestBufferSize = REQUEST_BUFFER_SIZE;
+        private int requestShards = REQUEST_SHARDS;
+        private int maxRequestBatchSize = MAX_REQUEST_BATCH_SIZE;
+        private int maxValueSize = MAX_VALUE_SIZE;
+        private boolean zeroCopyRowsEnabled = ZERO_COPY_ROWS_ENABLED;
+        private CompletionMode completionMode = COMPLETION_MODE;
+        private WaitStrategyType requestWaitStrategy = REQUEST_WAIT_STRATEGY;
+        private WaitStrategyType responseWaitStrategy = RESPONSE_WAIT_STRATEGY;
+        private ProducerType requestProducerType = REQUEST_PRODUCER_TYPE;
+        private ProducerType responseProducerType = RESPONSE_PRODUCER_TYPE;
+        private ThreadFactory requestThreadFactory;
+        private ThreadFactory responseThreadFactory;
         private int kvServiceEndpoints = KEYVALUE_ENDPOINTS;
         private int viewServiceEndpoints = VIEW_ENDPOINTS;
         private int queryServiceEndpoints = QUERY_ENDPOINTS;
+        private int maxViewServiceEndpoints = MAX_VIEW_ENDPOINTS;
+        private int maxQueryServiceEndpoints = MAX_QUERY_ENDPOINTS;
+        private long endpointIdleTime = ENDPOINT_IDLE_TIME;
         private Delay observeIntervalDelay = OBSERVE_INTERVAL_DELAY;
         private Delay reconnectDelay = RECONNECT_DELAY;
         private Delay retryDelay = RETRY_DELAY;
@@ -456,6 +648,7 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         private Scheduler scheduler;
         private EventBus eventBus;
         private long maxRequestLifetime = MAX_REQUEST_LIFETIME;
+        private long requestTimeout = REQUEST_TIMEOUT;
         private long keepAliveInterval = KEEPALIVEINTERVAL;
         private long autoreleaseAfter = AUTORELEASE_AFTER;
 
@@ -475,6 +668,80 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return this;
         }
 
+        @Override
+        public int dcpConnectionBufferSize() {
+            return dcpConnectionBufferSize;
+        }
+
+        /**
+         * Sets the number of bytes the server is allowed to send on a DCP connection before the client has
+         * acknowledged them (default value {@value #DCP_CONNECTION_BUFFER_SIZE}).
+         *
+         * This bounds the memory used by slow DCP consumers. Setting it to 0 disables flow control.
+         */
+        public Builder dcpConnectionBufferSize(final int dcpConnectionBufferSize) {
+            this.dcpConnectionBufferSize = dcpConnectionBufferSize;
+            return this;
+        }
+
+        @Override
+        public int dcpConnectionBufferAckThreshold() {
+            return dcpConnectionBufferAckThreshold;
+        }
+
+        /**
+         * Sets the percentage of the DCP connection buffer which needs to be consumed before it is acknowledged
+         * to the server (default value {@value #DCP_CONNECTION_BUFFER_ACK_THRESHOLD}).
+         */
+        public Builder dcpConnectionBufferAckThreshold(final int dcpConnectionBufferAckThreshold) {
+            if (dcpConnectionBufferAckThreshold < 0 || dcpConnectionBufferAckThreshold > 100) {
+                throw new IllegalArgumentException("DCP connection buffer ack threshold must be between 0 and 100");
+            }
+            this.dcpConnectionBufferAckThreshold = dcpConnectionBufferAckThreshold;
+            return this;
+        }
+
+        @Override
+        public int dcpBatchSize() {
+            return dcpBatchSize;
+        }
+
+        /**
+         * Sets the maximum number of DCP messages of a stream which are delivered together in one batch
+         * (default value {@value #DCP_BATCH_SIZE}).
+         *
+         * Batches never span more than one socket read or snapshot. Setting it to 1 delivers every message
+         * on its own.
+         */
+        public Builder dcpBatchSize(final int dcpBatchSize) {
+            if (dcpBatchSize < 1) {
+                throw new IllegalArgumentException("DCP batch size must be at least 1");
+            }
+            this.dcpBatchSize = dcpBatchSize;
+            return this;
+        }
+
+        @Override
+        public long dcpNoopInterval() {
+            return dcpNoopInterval;
+        }
+
+        /**
+         * Sets the interval in milliseconds in which the server sends a noop on an idle DCP connection
+         * (default value {@value #DCP_NOOP_INTERVAL}).
+         *
+         * A connection on which nothing has been read for twice the interval is considered dead and reconnected.
+         * Older servers only accept multiples of 20 seconds. Setting it to 0 disables noops and dead connection
+         * detection.
+         */
+        public Builder dcpNoopInterval(final long dcpNoopIntervalMilliseconds) {
+            if (dcpNoopIntervalMilliseconds < 0) {
+                throw new IllegalArgumentException("DCP noop interval must not be negative");
+            }
+            this.dcpNoopInterval = dcpNoopIntervalMilliseconds;
+            return this;
+        }
+
         @Override
         public boolean sslEnabled() {
             return sslEnabled;
@@ -692,6 +959,204 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return this;
         }
 
+        @Override
+        public int requestShards() {
+            return requestShards;
+        }
+
+        /**
+         * Sets the number of request RingBuffers, each consumed by its own thread (default value
+         * {@value #REQUEST_SHARDS}).
+         *
+         * Key based requests are always dispatched through the same RingBuffer for the same key, so their ordering
+         * is preserved. Raise this only if the single dispatch thread has been identified as the bottleneck, and
+         * ideally set {@link #kvEndpoints(int)} to the same value so that every dispatch thread writes to its own
+         * endpoint.
+         */
+        public Builder requestShards(final int requestShards) {
+            if (requestShards < 1) {
+                throw new IllegalArgumentException("At least one request shard is needed.");
+            }
+            this.requestShards = requestShards;
+            return this;
+        }
+
+        @Override
+        public int maxRequestBatchSize() {
+            return maxRequestBatchSize;
+        }
+
+        /**
+         * Sets the maximum number of requests a dispatch thread writes before it flushes the written endpoints
+         * (default value {@value #MAX_REQUEST_BATCH_SIZE}).
+         *
+         * Requests are normally flushed at the end of each batch taken from the request RingBuffer. Under heavy
+         * load batches can grow very large, and this limit makes sure the first writes of a batch go out on the
+         * wire without waiting for the rest.
+         */
+        public Builder maxRequestBatchSize(final int maxRequestBatchSize) {
+            if (maxRequestBatchSize < 1) {
+                throw new IllegalArgumentException("The maximum request batch size must be at least 1.");
+            }
+            this.maxRequestBatchSize = maxRequestBatchSize;
+            return this;
+        }
+
+        @Override
+        public int maxValueSize() {
+            return maxValueSize;
+        }
+
+        /**
+         * Sets the maximum size in bytes of a value received from the key/value service
+         * (default value {@value #MAX_VALUE_SIZE}).
+         *
+         * Responses up to this size are aggregated into a single frame, larger values are discarded as they arrive
+         * and fail their request, so a single document can never hold more direct memory than this. Streaming gets
+         * are not limited, since the chunks of larger values are handed out as they arrive. Streaming them pauses the
+         * whole key/value connection while their subscriber does not request more, see
+         * {@link com.couchbase.client.core.message.kv.StreamingGetRequest}.
+         */
+        public Builder maxValueSize(final int maxValueSize) {
+            if (maxValueSize < 1) {
+                throw new IllegalArgumentException("The maximum value size must be at least 1.");
+            }
+            this.maxValueSize = maxValueSize;
+            return this;
+        }
+
+        @Override
+        public boolean zeroCopyRowsEnabled() {
+            return zeroCopyRowsEnabled;
+        }
+
+        /**
+         * If set to true, query and view rows are emitted as slices of the received network buffers instead of
+         * copies (default value {@value #ZERO_COPY_ROWS_ENABLED}).
+         *
+         * This saves a copy of every row, but a row which is held on to keeps the whole network buffer it was
+         * received in from being reused.
+         */
+        public Builder zeroCopyRowsEnabled(final boolean zeroCopyRowsEnabled) {
+            this.zeroCopyRowsEnabled = zeroCopyRowsEnabled;
+            return this;
+        }
+
+        @Override
+        public CompletionMode completionMode() {
+            return completionMode;
+        }
+
+        /**
+         * Sets on which thread responses are completed towards the subscribers
+         * (default value {@link CompletionMode#SCHEDULED}).
+         *
+         * {@link CompletionMode#DIRECT} avoids the thread hop and the scheduled task per response, but then
+         * subscribers must never block since they run on the I/O threads.
+         */
+        public Builder completionMode(final CompletionMode completionMode) {
+            if (completionMode == null) {
+                throw new IllegalArgumentException("The completion mode must not be null.");
+            }
+            this.completionMode = completionMode;
+            return this;
+        }
+
+        @Override
+        public WaitStrategyType requestWaitStrategy() {
+            return requestWaitStrategy;
+        }
+
+        /**
+         * Sets the strategy the request RingBuffer consumer uses to wait for new requests
+         * (default value {@link WaitStrategyType#BLOCKING}).
+         *
+         * The non-blocking strategies reduce dispatch latency at the cost of keeping a core busy, so only
+         * use them on hosts with dedicated cores.
+         */
+        public Builder requestWaitStrategy(final WaitStrategyType requestWaitStrategy) {
+            this.requestWaitStrategy = requestWaitStrategy;
+            return this;
+        }
+
+        @Override
+        public WaitStrategyType responseWaitStrategy() {
+            return responseWaitStrategy;
+        }
+
+        /**
+         * Sets the strategy the response RingBuffer consumer uses to wait for new responses
+         * (default value {@link WaitStrategyType#BLOCKING}).
+         *
+         * @see #requestWaitStrategy(WaitStrategyType)
+         */
+        public Builder responseWaitStrategy(final WaitStrategyType responseWaitStrategy) {
+            this.responseWaitStrategy = responseWaitStrategy;
+            return this;
+        }
+
+        @Override
+        public ProducerType requestProducerType() {
+            return requestProducerType;
+        }
+
+        /**
+         * Sets if one or many threads publish into the request RingBuffer (default value {@link ProducerType#MULTI}).
+         *
+         * Only set it to {@link ProducerType#SINGLE} if all requests are sent from the very same thread.
+         */
+        public Builder requestProducerType(final ProducerType requestProducerType) {
+            this.requestProducerType = requestProducerType;
+            return this;
+        }
+
+        @Override
+        public ProducerType responseProducerType() {
+            return responseProducerType;
+        }
+
+        /**
+         * Sets if one or many threads publish into the response RingBuffer (default value {@link ProducerType#MULTI}).
+         *
+         * Responses are published from the I/O threads, so {@link ProducerType#SINGLE} is only safe with an
+         * {@link #ioPoolSize(int)} of 1.
+         */
+        public Builder responseProducerType(final ProducerType responseProducerType) {
+            this.responseProducerType = responseProducerType;
+            return this;
+        }
+
+        @Override
+        public ThreadFactory requestThreadFactory() {
+            return requestThreadFactory;
+        }
+
+        /**
+         * Sets the factory for the thread consuming the request RingBuffer (default is a daemon thread named cb-core).
+         *
+         * This can be used to pin the thread to a dedicated CPU, for example together with a busy spinning
+         * {@link #requestWaitStrategy(WaitStrategyType)}.
+         */
+        public Builder requestThreadFactory(final ThreadFactory requestThreadFactory) {
+            this.requestThreadFactory = requestThreadFactory;
+            return this;
+        }
+
+        @Override
+        public ThreadFactory responseThreadFactory() {
+            return responseThreadFactory;
+        }
+
+        /**
+         * Sets the factory for the thread consuming the response RingBuffer (default is a daemon thread named cb-core).
+         *
+         * @see #requestThreadFactory(ThreadFactory)
+         */
+        public Builder responseThreadFactory(final ThreadFactory responseThreadFactory) {
+            this.responseThreadFactory = responseThreadFactory;
+            return this;
+        }
+
         @Override
         public int kvEndpoints() {
             return kvServiceEndpoints;
@@ -740,6 +1205,54 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return this;
         }
 
+        @Override
+        public int maxViewEndpoints() {
+            return maxViewServiceEndpoints;
+        }
+
+        /**
+         * Sets the maximum number of View endpoints a node in the cluster is allowed to grow to
+         * (default value {@value #MAX_VIEW_ENDPOINTS}).
+         *
+         * Additional endpoints are opened when all open ones have requests in-flight, so that slow view queries
+         * do not block others behind them. Values below {@link #viewEndpoints(int)} disable growing.
+         */
+        public Builder maxViewEndpoints(final int maxViewServiceEndpoints) {
+            this.maxViewServiceEndpoints = maxViewServiceEndpoints;
+            return this;
+        }
+
+        @Override
+        public int maxQueryEndpoints() {
+            return maxQueryServiceEndpoints;
+        }
+
+        /**
+         * Sets the maximum number of Query (N1QL) endpoints a node in the cluster is allowed to grow to
+         * (default value {@value #MAX_QUERY_ENDPOINTS}).
+         *
+         * Additional endpoints are opened when all open ones have requests in-flight, so that slow queries
+         * do not block others behind them. Values below {@link #queryEndpoints(int)} disable growing.
+         */
+        public Builder maxQueryEndpoints(final int maxQueryServiceEndpoints) {
+            this.maxQueryServiceEndpoints = maxQueryServiceEndpoints;
+            return this;
+        }
+
+        @Override
+        public long endpointIdleTime() {
+            return endpointIdleTime;
+        }
+
+        /**
+         * Sets the time in milliseconds after which an idle View or Query endpoint opened on top of the configured
+         * number of endpoints is closed again (default value {@value #ENDPOINT_IDLE_TIME}).
+         */
+        public Builder endpointIdleTime(final long endpointIdleTime) {
+            this.endpointIdleTime = endpointIdleTime;
+            return this;
+        }
+
         @Override
         public String userAgent() {
             return userAgent;
@@ -827,6 +1340,16 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return ioPool;
         }
 
+        /**
+         * This operation doesn't make sense on the Builder and will throw an {@link UnsupportedOperationException}.
+         * @return never.
+         * @throws UnsupportedOperationException when invoked.
+         */
+        @Override
+        public Timer timer() {
+            throw new UnsupportedOperationException("The timer is only available on the environment.");
+        }
+
         /**
          * Sets the I/O Pool implementation for the underlying IO framework.
          * This is an advanced configuration that should only be used if you know what you are doing.
@@ -883,6 +1406,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return this;
         }
 
+        @Override
+        public long requestTimeout() {
+            return requestTimeout;
+        }
+
+        /**
+         * Sets the timeout in milliseconds for every request which does not carry its own (default is 0, which
+         * disables it).
+         *
+         * Requests exceeding it are failed with a {@link com.couchbase.client.core.RequestTimeoutException}, even
+         * if they are stuck on a connection which never answers.
+         */
+        public Builder requestTimeout(final long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
         @Override
         public long keepAliveInterval() {
             return keepAliveInterval;
@@ -946,16 +1486,33 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         sb.append(", computationPoolSize=").append(computationPoolSize);
         sb.append(", responseBufferSize=").append(responseBufferSize);
         sb.append(", requestBufferSize=").append(requestBufferSize);
+        sb.append(", requestShards=").append(requestShards);
+        sb.append(", maxRequestBatchSize=").append(maxRequestBatchSize);
+        sb.append(", maxValueSize=").append(maxValueSize);
+        sb.append(", zeroCopyRowsEnabled=").append(zeroCopyRowsEnabled);
+        sb.append(", completionMode=").append(completionMode);
+        sb.append(", requestWaitStrategy=").append(requestWaitStrategy);
+        sb.append(", responseWaitStrategy=").append(responseWaitStrategy);
+        sb.append(", requestProducerType=").append(requestProducerType);
+        sb.append(", responseProducerType=").append(responseProducerType);
         sb.append(", kvServiceEndpoints=").append(kvServiceEndpoints);
         sb.append(", viewServiceEndpoints=").append(viewServiceEndpoints);
         sb.append(", queryServiceEndpoints=").append(queryServiceEndpoints);
+        sb.append(", maxViewServiceEndpoints=").append(maxViewServiceEndpoints);
+        sb.append(", maxQueryServiceEndpoints=").append(maxQueryServiceEndpoints);
+        sb.append(", endpointIdleTime=").append(endpointIdleTime);
         sb.append(", ioPool=").append(ioPool.getClass().getSimpleName());
         sb.append(", coreScheduler=").append(coreScheduler.getClass().getSimpleName());
         sb.append(", eventBus=").append(eventBus.getClass().getSimpleName());
         sb.append(", packageNameAndVersion=").append(packageNameAndVersion);
         sb.append(", dcpEnabled=").append(dcpEnabled);
+        sb.append(", dcpConnectionBufferSize=").append(dcpConnectionBufferSize);
+        sb.append(", dcpConnectionBufferAckThreshold=").append(dcpConnectionBufferAckThreshold);
+        sb.append(", dcpBatchSize=").append(dcpBatchSize);
+        sb.append(", dcpNoopInterval=").append(dcpNoopInterval);
         sb.append(", retryStrategy=").append(retryStrategy);
         sb.append(", maxRequestLifetime=").append(maxRequestLifetime);
+        sb.append(", requestTimeout=").append(requestTimeout);
         sb.append(", retryDelay=").append(retryDelay);
         sb.append(", reconnectDelay=").append(reconnectDelay);
         sb.append(", observeIntervalDelay=").append(observeIntervalDelay);
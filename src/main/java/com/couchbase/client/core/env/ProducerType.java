@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.env;
+
+/**
+ * Defines how many threads are allowed to publish into a RingBuffer.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public enum ProducerType {
+
+    /**
+     * Only a single thread publishes into the RingBuffer, which saves the CAS on the sequence claim.
+     *
+     * Only use this if it is guaranteed that a single thread is publishing, otherwise events will
+     * get lost or overwritten.
+     */
+    SINGLE,
+
+    /**
+     * Any number of threads can publish concurrently, the default.
+     */
+    MULTI;
+
+    /**
+     * Returns the corresponding disruptor producer type.
+     *
+     * @return the producer type to construct the disruptor with.
+     */
+    public com.lmax.disruptor.dsl.ProducerType toDisruptor() {
+        return this == SINGLE
+            ? com.lmax.disruptor.dsl.ProducerType.SINGLE
+            : com.lmax.disruptor.dsl.ProducerType.MULTI;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.env;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The strategies a consumer of the request or response RingBuffer can use to wait for new events.
+ *
+ * The strategies trade CPU usage for dispatch latency. Everything except the blocking variants keeps the
+ * consuming thread busy (or mostly busy) all the time, so they should only be used on hosts with
+ * enough dedicated cores.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public enum WaitStrategyType {
+
+    /**
+     * Parks the consumer on a lock and condition, lowest CPU usage and the default.
+     */
+    BLOCKING,
+
+    /**
+     * Like {@link #BLOCKING}, but only signals the condition if a consumer is actually waiting.
+     */
+    LITE_BLOCKING,
+
+    /**
+     * Spins, then yields and finally sleeps for a very short time. Good compromise if latency matters
+     * but the host is shared.
+     */
+    SLEEPING,
+
+    /**
+     * Spins and then yields the thread. Low latency, but burns a core while idle.
+     */
+    YIELDING,
+
+    /**
+     * Spins on the sequence. Lowest latency, but burns a core all the time.
+     */
+    BUSY_SPIN,
+
+    /**
+     * Spins for 10 microseconds, yields for another 100 and then falls back to {@link #LITE_BLOCKING}.
+     */
+    PHASED_BACKOFF;
+
+    /**
+     * Creates a new {@link WaitStrategy} instance, since they can not be shared across RingBuffers.
+     *
+     * @return the wait strategy for this type.
+     */
+    public WaitStrategy newWaitStrategy() {
+        switch (this) {
+            case BLOCKING:
+                return new BlockingWaitStrategy();
+            case LITE_BLOCKING:
+                return new LiteBlockingWaitStrategy();
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            case PHASED_BACKOFF:
+                return PhasedBackoffWaitStrategy.withLiteLock(10, 100, TimeUnit.MICROSECONDS);
+            default:
+                throw new IllegalStateException("Unsupported WaitStrategyType: " + this);
+        }
+    }
+}
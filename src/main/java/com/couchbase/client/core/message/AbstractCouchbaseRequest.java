@@ -24,6 +24,8 @@ package com.couchbase.client.core.message;
 import rx.subjects.AsyncSubject;
 import rx.subjects.Subject;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Default implementation for a {@link CouchbaseRequest}, should be extended by child messages.
  *
@@ -54,6 +56,11 @@ public abstract class AbstractCouchbaseRequest implements CouchbaseRequest {
 
     private volatile int retryCount;
 
+    /**
+     * The deadline in nanoseconds, 0 if none.
+     */
+    private volatile long deadline;
+
     /**
      * Create a new {@link AbstractCouchbaseRequest}.
      *
@@ -114,6 +121,21 @@ public abstract class AbstractCouchbaseRequest implements CouchbaseRequest {
         return retryCount++;
     }
 
+    @Override
+    public long deadline() {
+        return deadline;
+    }
+
+    @Override
+    public void timeout(final long timeout, final TimeUnit unit) {
+        if (timeout <= 0) {
+            deadline = 0;
+        } else {
+            long computed = creationTime + unit.toNanos(timeout);
+            deadline = computed == 0 ? 1 : computed;
+        }
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder(this.getClass().getSimpleName() + "{");
@@ -24,6 +24,7 @@ package com.couchbase.client.core.message;
 import rx.subjects.Subject;
 
 import java.util.Observable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * High-Level marker interface for all {@link CouchbaseRequest}s.
@@ -61,4 +62,20 @@ public interface CouchbaseRequest extends CouchbaseMessage {
      */
     int incrementRetryCount();
 
+    /**
+     * Returns the point in time (as in {@link System#nanoTime()}) after which the request is failed with a
+     * {@link com.couchbase.client.core.RequestTimeoutException}.
+     *
+     * @return the deadline, or 0 if the request has no timeout.
+     */
+    long deadline();
+
+    /**
+     * Sets the timeout of this request, counted from its creation.
+     *
+     * @param timeout the timeout, values <= 0 remove the deadline.
+     * @param unit the unit of the timeout.
+     */
+    void timeout(long timeout, TimeUnit unit);
+
 }
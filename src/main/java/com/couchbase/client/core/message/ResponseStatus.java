@@ -84,6 +84,12 @@ public enum ResponseStatus {
      */
     INTERNAL_ERROR,
 
+    /**
+     * The requested position in the history of a partition is not valid on the server, the consumer needs to roll
+     * back to an earlier one first.
+     */
+    ROLLBACK,
+
     /**
      * Generic failure status.
      */
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+/**
+ * Common parent of the messages a DCP producer sends on an open stream.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public abstract class AbstractDCPMessage extends AbstractDCPRequest {
+
+    /**
+     * The length of the message on the wire, header included.
+     */
+    private final int messageLength;
+
+    /**
+     * Creates a new {@link AbstractDCPMessage}.
+     *
+     * @param messageLength the length of the message on the wire, header included.
+     * @param partition the partition (vBucket) of the message.
+     * @param bucket the bucket of the message.
+     * @param password the optional password of the bucket.
+     */
+    protected AbstractDCPMessage(int messageLength, short partition, String bucket, String password) {
+        super(bucket, password);
+        this.partition(partition);
+        this.messageLength = messageLength;
+    }
+
+    /**
+     * Returns the length of the message on the wire, which is what counts against the connection buffer
+     * if flow control is enabled.
+     *
+     * @return the length of the message including its header, or 0 if unknown.
+     */
+    public int messageLength() {
+        return messageLength;
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.ClusterFacade;
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+import com.couchbase.client.core.config.BucketConfig;
+import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.endpoint.dcp.DCPConnectionClosedException;
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.cluster.GetClusterConfigRequest;
+import com.couchbase.client.core.message.cluster.GetClusterConfigResponse;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consumes the DCP streams of all partitions of a bucket.
+ *
+ * The DCP connection is opened on every node of the bucket, each of which keeps a single persistent connection.
+ * Then a stream is requested for every partition, which the core routes to the node currently master for it
+ * according to the partition map, so all nodes stream in parallel over their own connection.
+ *
+ * The streams are requested lazily as they are subscribed, the maximum number of concurrently open streams
+ * bounds how many partitions are streamed at the same time. Since streams only complete once their end sequence
+ * number is reached, a limit below the number of partitions only makes sense for bounded streams.
+ *
+ * The position reached in every partition is tracked in a {@link SessionState} as the messages are consumed.
+ * Streams are always requested from that position, so subscribing again after a disconnect resumes where the
+ * stream stopped instead of reading the whole partition again. If the history of a partition diverged in the
+ * meantime, the position is rolled back as the server requests and a {@link RollbackMessage} is emitted before
+ * the stream continues. With a {@link SessionStateStore}, the state is loaded when the consumer is created and
+ * saved on every {@link #checkpoint()}, which also allows to resume after a restart. If the connection of a node
+ * is lost, its endpoint reconnects and reopens the DCP connection, and the streams of the affected partitions are
+ * requested again from their position without the subscriber noticing.
+ *
+ * High rate consumers can receive the messages of each partition in batches instead, as they have been read from
+ * the socket, which amortizes the cost of handing them over.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class DCPConsumer {
+
+    /**
+     * By default all partitions are streamed at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS = Integer.MAX_VALUE;
+
+    /**
+     * The logger used.
+     */
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(DCPConsumer.class);
+
+    /**
+     * Flattens a batch of messages into single messages.
+     */
+    private static final Func1<List<DCPRequest>, Observable<DCPRequest>> FLATTEN_BATCH =
+        new Func1<List<DCPRequest>, Observable<DCPRequest>>() {
+            @Override
+            public Observable<DCPRequest> call(final List<DCPRequest> batch) {
+                return Observable.from(batch);
+            }
+        };
+
+    private final ClusterFacade core;
+    private final String connectionName;
+    private final String bucket;
+    private final String password;
+    private final int maxConcurrentStreams;
+    private final SessionStateStore store;
+    private final SessionState state;
+
+    /**
+     * Creates a new {@link DCPConsumer} which streams all partitions at the same time.
+     *
+     * @param core the core to send the requests through.
+     * @param connectionName the name of the DCP connection, unique per consumer.
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     */
+    public DCPConsumer(final ClusterFacade core, final String connectionName, final String bucket,
+        final String password) {
+        this(core, connectionName, bucket, password, DEFAULT_MAX_CONCURRENT_STREAMS);
+    }
+
+    /**
+     * Creates a new {@link DCPConsumer}.
+     *
+     * @param core the core to send the requests through.
+     * @param connectionName the name of the DCP connection, unique per consumer.
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     * @param maxConcurrentStreams the maximum number of partitions streamed at the same time.
+     */
+    public DCPConsumer(final ClusterFacade core, final String connectionName, final String bucket,
+        final String password, final int maxConcurrentStreams) {
+        this(core, connectionName, bucket, password, maxConcurrentStreams, null);
+    }
+
+    /**
+     * Creates a new {@link DCPConsumer} which resumes from the state saved in a store.
+     *
+     * @param core the core to send the requests through.
+     * @param connectionName the name of the DCP connection, unique per consumer.
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     * @param maxConcurrentStreams the maximum number of partitions streamed at the same time.
+     * @param store the store to load the state from and checkpoint it to, null to only keep it in memory.
+     */
+    public DCPConsumer(final ClusterFacade core, final String connectionName, final String bucket,
+        final String password, final int maxConcurrentStreams, final SessionStateStore store) {
+        if (maxConcurrentStreams < 1) {
+            throw new IllegalArgumentException("At least one concurrent stream is needed.");
+        }
+        this.core = core;
+        this.connectionName = connectionName;
+        this.bucket = bucket;
+        this.password = password;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.store = store;
+        this.state = store == null ? new SessionState() : store.load(bucket);
+    }
+
+    /**
+     * Returns the positions reached in the partitions streamed so far.
+     *
+     * @return the session state.
+     */
+    public SessionState state() {
+        return state;
+    }
+
+    /**
+     * Saves the current state to the store, so streaming resumes from here after a restart.
+     *
+     * Since the state advances before a message or batch is handed to the subscriber, checkpointing from the
+     * subscriber once it processed it includes what has been processed. Does nothing if the consumer has no store.
+     */
+    public void checkpoint() {
+        if (store != null) {
+            store.save(bucket, state);
+        }
+    }
+
+    /**
+     * Opens the DCP connection on all nodes of the bucket.
+     *
+     * @return an {@link Observable} emitting the response once the connection has been opened.
+     */
+    public Observable<OpenConnectionResponse> open() {
+        return core
+            .<OpenConnectionResponse>send(new OpenConnectionRequest(connectionName, bucket, password))
+            .map(new Func1<OpenConnectionResponse, OpenConnectionResponse>() {
+                @Override
+                public OpenConnectionResponse call(final OpenConnectionResponse response) {
+                    if (!response.status().isSuccess()) {
+                        throw new CouchbaseException("Could not open DCP connection: " + response.status());
+                    }
+                    return response;
+                }
+            });
+    }
+
+    /**
+     * Returns the partitions of the bucket, according to the current configuration.
+     *
+     * @return an {@link Observable} emitting every partition of the bucket.
+     */
+    public Observable<Short> partitions() {
+        return core
+            .<GetClusterConfigResponse>send(new GetClusterConfigRequest())
+            .flatMap(new Func1<GetClusterConfigResponse, Observable<Integer>>() {
+                @Override
+                public Observable<Integer> call(final GetClusterConfigResponse response) {
+                    BucketConfig config = response.config().bucketConfig(bucket);
+                    if (!(config instanceof CouchbaseBucketConfig)) {
+                        return Observable.error(new CouchbaseException("DCP is only supported on Couchbase "
+                            + "buckets, not on " + bucket));
+                    }
+                    return Observable.range(0, ((CouchbaseBucketConfig) config).numberOfPartitions());
+                }
+            })
+            .map(new Func1<Integer, Short>() {
+                @Override
+                public Short call(final Integer partition) {
+                    return partition.shortValue();
+                }
+            });
+    }
+
+    /**
+     * Requests the stream of a single partition on an opened connection, from the position reached so far.
+     *
+     * @param partition the partition to stream.
+     * @return an {@link Observable} emitting the messages of the partition.
+     */
+    public Observable<DCPRequest> stream(final short partition) {
+        final PartitionState partitionState = state.partition(partition);
+        return request(partitionState)
+            .concatMap(FLATTEN_BATCH)
+            .doOnNext(new Action1<DCPRequest>() {
+                @Override
+                public void call(final DCPRequest message) {
+                    partitionState.update(message);
+                }
+            })
+            .onErrorResumeNext(resumeOnDisconnect(new Func0<Observable<DCPRequest>>() {
+                @Override
+                public Observable<DCPRequest> call() {
+                    return stream(partition);
+                }
+            }));
+    }
+
+    /**
+     * Requests the stream of a single partition on an opened connection, from the position reached so far, and
+     * emits its messages in the batches they have been read in.
+     *
+     * @param partition the partition to stream.
+     * @return an {@link Observable} emitting the batches of messages of the partition.
+     */
+    public Observable<List<DCPRequest>> batches(final short partition) {
+        final PartitionState partitionState = state.partition(partition);
+        return request(partitionState)
+            .doOnNext(new Action1<List<DCPRequest>>() {
+                @Override
+                public void call(final List<DCPRequest> batch) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        partitionState.update(batch.get(i));
+                    }
+                }
+            })
+            .onErrorResumeNext(resumeOnDisconnect(new Func0<Observable<List<DCPRequest>>>() {
+                @Override
+                public Observable<List<DCPRequest>> call() {
+                    return batches(partition);
+                }
+            }));
+    }
+
+    /**
+     * Requests a stream again if it failed because its connection has been closed.
+     *
+     * Since the state only advanced with what has been handed to the subscriber, the stream resumes right after it.
+     * The request is retried by the core until the endpoint of the node reconnected.
+     *
+     * @param resume requests the stream again.
+     * @return the function to resume the stream with.
+     */
+    private static <T> Func1<Throwable, Observable<T>> resumeOnDisconnect(final Func0<Observable<T>> resume) {
+        return new Func1<Throwable, Observable<T>>() {
+            @Override
+            public Observable<T> call(final Throwable throwable) {
+                if (throwable instanceof DCPConnectionClosedException) {
+                    LOGGER.info("DCP connection closed, resuming stream: {}", throwable.getMessage());
+                    return resume.call();
+                }
+                return Observable.error(throwable);
+            }
+        };
+    }
+
+    /**
+     * Requests the stream of a partition from its current position.
+     *
+     * @param partitionState the state of the partition.
+     * @return an {@link Observable} emitting the batches of messages of the partition.
+     */
+    private Observable<List<DCPRequest>> request(final PartitionState partitionState) {
+        return core
+            .<StreamRequestResponse>send(partitionState.streamRequest(bucket, password))
+            .flatMap(new Func1<StreamRequestResponse, Observable<List<DCPRequest>>>() {
+                @Override
+                public Observable<List<DCPRequest>> call(final StreamRequestResponse response) {
+                    if (response.status() == ResponseStatus.ROLLBACK) {
+                        return rollback(partitionState, response.rollbackSequenceNumber());
+                    }
+                    if (!response.status().isSuccess()) {
+                        return Observable.error(new CouchbaseException("Could not open DCP stream for partition "
+                            + partitionState.partition() + ": " + response.status()));
+                    }
+                    partitionState.failoverLog(response.failoverLog());
+                    return response.batches();
+                }
+            });
+    }
+
+    /**
+     * Rolls the state of a partition back and requests its stream again from there.
+     *
+     * @param partitionState the state of the partition.
+     * @param sequenceNumber the sequence number to roll back to.
+     * @return an {@link Observable} emitting the rollback followed by the batches of the partition.
+     */
+    private Observable<List<DCPRequest>> rollback(final PartitionState partitionState, final long sequenceNumber) {
+        partitionState.rollback(sequenceNumber);
+        DCPRequest rollback = new RollbackMessage(partitionState.partition(), sequenceNumber, bucket, password);
+        return Observable.concat(
+            Observable.just(Collections.singletonList(rollback)),
+            Observable.defer(new Func0<Observable<List<DCPRequest>>>() {
+                @Override
+                public Observable<List<DCPRequest>> call() {
+                    return request(partitionState);
+                }
+            })
+        );
+    }
+
+    /**
+     * Opens the connection and returns the stream of every partition of the bucket.
+     *
+     * Each inner {@link Observable} requests the stream of its partition when subscribed to.
+     *
+     * @return an {@link Observable} emitting the stream of each partition.
+     */
+    public Observable<Observable<DCPRequest>> streams() {
+        return perPartition(new Func1<Short, Observable<DCPRequest>>() {
+            @Override
+            public Observable<DCPRequest> call(final Short partition) {
+                return stream(partition);
+            }
+        });
+    }
+
+    /**
+     * Opens the connection and merges the streams of all partitions of the bucket into one.
+     *
+     * @return an {@link Observable} emitting the messages of all partitions.
+     */
+    public Observable<DCPRequest> stream() {
+        return merge(streams());
+    }
+
+    /**
+     * Opens the connection and merges the streams of all partitions of the bucket into one, emitting the messages
+     * of each partition in the batches they have been read in.
+     *
+     * @return an {@link Observable} emitting the batches of messages of all partitions.
+     */
+    public Observable<List<DCPRequest>> batches() {
+        return merge(perPartition(new Func1<Short, Observable<List<DCPRequest>>>() {
+            @Override
+            public Observable<List<DCPRequest>> call(final Short partition) {
+                return batches(partition);
+            }
+        }));
+    }
+
+    /**
+     * Opens the connection and creates a lazily requested stream for every partition of the bucket.
+     *
+     * @param streamer requests the stream of a partition.
+     * @return an {@link Observable} emitting the stream of each partition.
+     */
+    private <T> Observable<Observable<T>> perPartition(final Func1<Short, Observable<T>> streamer) {
+        return open()
+            .last()
+            .flatMap(new Func1<OpenConnectionResponse, Observable<Short>>() {
+                @Override
+                public Observable<Short> call(final OpenConnectionResponse response) {
+                    return partitions();
+                }
+            })
+            .map(new Func1<Short, Observable<T>>() {
+                @Override
+                public Observable<T> call(final Short partition) {
+                    return Observable.defer(new Func0<Observable<T>>() {
+                        @Override
+                        public Observable<T> call() {
+                            return streamer.call(partition);
+                        }
+                    });
+                }
+            });
+    }
+
+    /**
+     * Merges the streams of the partitions, streaming at most the configured number of partitions at a time.
+     */
+    private <T> Observable<T> merge(final Observable<Observable<T>> streams) {
+        if (maxConcurrentStreams == DEFAULT_MAX_CONCURRENT_STREAMS) {
+            return Observable.merge(streams);
+        }
+        return Observable.merge(streams, maxConcurrentStreams);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link SessionStateStore} which keeps the state of every bucket in a file of a local directory.
+ *
+ * The state is first written to a temporary file which then replaces the previous one, so a crash while saving
+ * never leaves a partially written state behind.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class FileSessionStateStore implements SessionStateStore {
+
+    /**
+     * The version of the file format, increased on every incompatible change.
+     */
+    private static final int VERSION = 1;
+
+    private final File directory;
+
+    /**
+     * Creates a new {@link FileSessionStateStore}.
+     *
+     * @param directory the directory to keep the state files in, created if it does not exist.
+     */
+    public FileSessionStateStore(final File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public SessionState load(final String bucket) {
+        SessionState state = new SessionState();
+        File file = file(bucket);
+        if (!file.exists()) {
+            // a crash while replacing the state only leaves the completely written temporary file
+            file = temporary(file);
+            if (!file.exists()) {
+                return state;
+            }
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new CouchbaseException("Unsupported DCP session state version " + version + " in " + file);
+            }
+            int partitions = input.readInt();
+            for (int i = 0; i < partitions; i++) {
+                short partition = input.readShort();
+                long vbucketUUID = input.readLong();
+                long sequenceNumber = input.readLong();
+                long snapshotStart = input.readLong();
+                long snapshotEnd = input.readLong();
+                int entries = input.readInt();
+                List<FailoverLogEntry> failoverLog = new ArrayList<FailoverLogEntry>(entries);
+                for (int j = 0; j < entries; j++) {
+                    failoverLog.add(new FailoverLogEntry(input.readLong(), input.readLong()));
+                }
+                state.partition(new PartitionState(partition, vbucketUUID, sequenceNumber, snapshotStart,
+                    snapshotEnd, failoverLog));
+            }
+            return state;
+        } catch (IOException e) {
+            throw new CouchbaseException("Could not load DCP session state from " + file, e);
+        } finally {
+            close(input);
+        }
+    }
+
+    @Override
+    public void save(final String bucket, final SessionState state) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new CouchbaseException("Could not create DCP session state directory " + directory);
+        }
+
+        File file = file(bucket);
+        File temporary = temporary(file);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            List<PartitionState> partitions = new ArrayList<PartitionState>(state.partitions());
+            output.writeInt(VERSION);
+            output.writeInt(partitions.size());
+            for (PartitionState partition : partitions) {
+                // hold the lock of the partition so its position is written consistently
+                synchronized (partition) {
+                    output.writeShort(partition.partition());
+                    output.writeLong(partition.vbucketUUID());
+                    output.writeLong(partition.sequenceNumber());
+                    output.writeLong(partition.snapshotStartSequenceNumber());
+                    output.writeLong(partition.snapshotEndSequenceNumber());
+                    List<FailoverLogEntry> failoverLog = partition.failoverLog();
+                    output.writeInt(failoverLog.size());
+                    for (FailoverLogEntry entry : failoverLog) {
+                        output.writeLong(entry.vbucketUUID());
+                        output.writeLong(entry.sequenceNumber());
+                    }
+                }
+            }
+            output.close();
+            output = null;
+        } catch (IOException e) {
+            throw new CouchbaseException("Could not save DCP session state to " + temporary, e);
+        } finally {
+            close(output);
+        }
+
+        // renaming over the previous state is atomic where supported, otherwise it needs to be deleted first
+        if (!temporary.renameTo(file) && (file.exists() && !file.delete() || !temporary.renameTo(file))) {
+            throw new CouchbaseException("Could not replace DCP session state " + file);
+        }
+    }
+
+    /**
+     * Returns the file the state of a bucket is kept in.
+     */
+    private File file(final String bucket) {
+        return new File(directory, bucket + ".dcp");
+    }
+
+    /**
+     * Returns the file the state is written to before it replaces the previous one.
+     */
+    private File temporary(final File file) {
+        return new File(directory, file.getName() + ".tmp");
+    }
+
+    /**
+     * Closes a stream, ignoring failures since the outcome has already been decided.
+     */
+    private static void close(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignored, nothing left to do with the stream
+        }
+    }
+}
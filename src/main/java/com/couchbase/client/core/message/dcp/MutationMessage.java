@@ -34,9 +34,11 @@ import io.netty.buffer.ByteBuf;
  */
 @InterfaceStability.Experimental
 @InterfaceAudience.Private
-public class MutationMessage extends AbstractDCPRequest {
+public class MutationMessage extends AbstractDCPMessage {
     private final String key;
     private final ByteBuf content;
+    private final long bySequenceNumber;
+    private final long revisionSequenceNumber;
     private final int expiration;
     private final int flags;
     private final int lockTime;
@@ -49,8 +51,15 @@ public class MutationMessage extends AbstractDCPRequest {
 
     public MutationMessage(short partition, String key, ByteBuf content, int expiration,
                            int flags, int lockTime, long cas, String bucket, String password) {
-        super(bucket, password);
-        this.partition(partition);
+        this(0, partition, 0, 0, key, content, expiration, flags, lockTime, cas, bucket, password);
+    }
+
+    public MutationMessage(int messageLength, short partition, long bySequenceNumber, long revisionSequenceNumber,
+                           String key, ByteBuf content, int expiration, int flags, int lockTime, long cas,
+                           String bucket, String password) {
+        super(messageLength, partition, bucket, password);
+        this.bySequenceNumber = bySequenceNumber;
+        this.revisionSequenceNumber = revisionSequenceNumber;
         this.key = key;
         this.content = content;
         this.expiration = expiration;
@@ -67,6 +76,25 @@ public class MutationMessage extends AbstractDCPRequest {
         return content;
     }
 
+    /**
+     * Returns the sequence number of the mutation in its partition, which orders it against all other
+     * mutations and removals of the partition.
+     *
+     * @return the sequence number, or 0 if unknown.
+     */
+    public long bySequenceNumber() {
+        return bySequenceNumber;
+    }
+
+    /**
+     * Returns the revision of the document, which is increased on every mutation of the document.
+     *
+     * @return the revision sequence number, or 0 if unknown.
+     */
+    public long revisionSequenceNumber() {
+        return revisionSequenceNumber;
+    }
+
     public int expiration() {
         return expiration;
     }
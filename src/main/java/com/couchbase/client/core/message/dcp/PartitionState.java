@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The position a consumer reached in the stream of a single partition.
+ *
+ * The position is identified by the last sequence number seen, the snapshot it belongs to and the vBucket UUID of
+ * the history the sequence number is part of. Requesting the stream again from this position only sends what has
+ * not been seen yet, or asks for a rollback if the history diverged in the meantime.
+ *
+ * The state is updated from the thread consuming the stream and read when it is checkpointed, so all access is
+ * synchronized.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class PartitionState {
+
+    /**
+     * Streams opened from a state never end on their own.
+     */
+    private static final long NO_END_SEQUENCE_NUMBER = 0xffffffffffffffffL;
+
+    private final short partition;
+    private long vbucketUUID;
+    private long sequenceNumber;
+    private long snapshotStartSequenceNumber;
+    private long snapshotEndSequenceNumber;
+    private List<FailoverLogEntry> failoverLog;
+
+    /**
+     * Creates the state of a partition which has not been streamed yet.
+     *
+     * @param partition the partition.
+     */
+    public PartitionState(final short partition) {
+        this(partition, 0, 0, 0, 0, Collections.<FailoverLogEntry>emptyList());
+    }
+
+    /**
+     * Creates the state of a partition at a known position.
+     *
+     * @param partition the partition.
+     * @param vbucketUUID the vBucket UUID of the history the position belongs to.
+     * @param sequenceNumber the last sequence number seen.
+     * @param snapshotStartSequenceNumber the start of the snapshot the last sequence number belongs to.
+     * @param snapshotEndSequenceNumber the end of the snapshot the last sequence number belongs to.
+     * @param failoverLog the failover log of the partition, the most recent entry first.
+     */
+    public PartitionState(final short partition, final long vbucketUUID, final long sequenceNumber,
+        final long snapshotStartSequenceNumber, final long snapshotEndSequenceNumber,
+        final List<FailoverLogEntry> failoverLog) {
+        this.partition = partition;
+        this.vbucketUUID = vbucketUUID;
+        this.sequenceNumber = sequenceNumber;
+        this.snapshotStartSequenceNumber = snapshotStartSequenceNumber;
+        this.snapshotEndSequenceNumber = snapshotEndSequenceNumber;
+        this.failoverLog = failoverLog;
+    }
+
+    public short partition() {
+        return partition;
+    }
+
+    public synchronized long vbucketUUID() {
+        return vbucketUUID;
+    }
+
+    public synchronized long sequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public synchronized long snapshotStartSequenceNumber() {
+        return snapshotStartSequenceNumber;
+    }
+
+    public synchronized long snapshotEndSequenceNumber() {
+        return snapshotEndSequenceNumber;
+    }
+
+    public synchronized List<FailoverLogEntry> failoverLog() {
+        return failoverLog;
+    }
+
+    /**
+     * Advances the state with a message of the stream.
+     *
+     * @param message the message consumed.
+     */
+    public synchronized void update(final DCPRequest message) {
+        if (message instanceof SnapshotMarkerMessage) {
+            SnapshotMarkerMessage marker = (SnapshotMarkerMessage) message;
+            snapshotStartSequenceNumber = marker.startSequenceNumber();
+            snapshotEndSequenceNumber = marker.endSequenceNumber();
+        } else if (message instanceof MutationMessage) {
+            sequenceNumber = ((MutationMessage) message).bySequenceNumber();
+        } else if (message instanceof RemoveMessage) {
+            sequenceNumber = ((RemoveMessage) message).bySequenceNumber();
+        }
+    }
+
+    /**
+     * Stores the failover log the stream has been opened with.
+     *
+     * Since the stream continues from the current position on the most recent history, its vBucket UUID is the
+     * one to resume with from now on.
+     *
+     * @param failoverLog the failover log, the most recent entry first.
+     */
+    public synchronized void failoverLog(final List<FailoverLogEntry> failoverLog) {
+        this.failoverLog = new ArrayList<FailoverLogEntry>(failoverLog);
+        if (!failoverLog.isEmpty()) {
+            vbucketUUID = failoverLog.get(0).vbucketUUID();
+        }
+    }
+
+    /**
+     * Moves the state back to the given sequence number, as requested by the server.
+     *
+     * The vBucket UUID is taken from the most recent failover log entry which started at or before the sequence
+     * number, since that is the history the new position belongs to.
+     *
+     * @param rollbackSequenceNumber the sequence number to roll back to.
+     */
+    public synchronized void rollback(final long rollbackSequenceNumber) {
+        long uuid = 0;
+        for (FailoverLogEntry entry : failoverLog) {
+            if (entry.sequenceNumber() <= rollbackSequenceNumber) {
+                uuid = entry.vbucketUUID();
+                break;
+            }
+        }
+        vbucketUUID = rollbackSequenceNumber == 0 ? 0 : uuid;
+        sequenceNumber = rollbackSequenceNumber;
+        snapshotStartSequenceNumber = rollbackSequenceNumber;
+        snapshotEndSequenceNumber = rollbackSequenceNumber;
+    }
+
+    /**
+     * Creates the request which resumes the stream of the partition from the current position.
+     *
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     * @return the stream request.
+     */
+    public synchronized StreamRequestRequest streamRequest(final String bucket, final String password) {
+        long snapshotStart = snapshotStartSequenceNumber;
+        long snapshotEnd = snapshotEndSequenceNumber;
+        if (sequenceNumber < snapshotStart || sequenceNumber > snapshotEnd) {
+            // nothing of the last marked snapshot has been seen, so the previous one is complete
+            snapshotStart = sequenceNumber;
+            snapshotEnd = sequenceNumber;
+        }
+        return new StreamRequestRequest(partition, vbucketUUID, sequenceNumber, NO_END_SEQUENCE_NUMBER,
+            snapshotStart, snapshotEnd, bucket, password);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PartitionState{"
+            + "partition=" + partition
+            + ", vbucketUUID=" + vbucketUUID
+            + ", sequenceNumber=" + sequenceNumber
+            + ", snapshotStartSequenceNumber=" + snapshotStartSequenceNumber
+            + ", snapshotEndSequenceNumber=" + snapshotEndSequenceNumber
+            + ", failoverLog=" + failoverLog.size()
+            + '}';
+    }
+}
@@ -33,17 +33,25 @@ import com.couchbase.client.core.annotations.InterfaceStability;
  */
 @InterfaceStability.Experimental
 @InterfaceAudience.Private
-public class RemoveMessage extends AbstractDCPRequest {
+public class RemoveMessage extends AbstractDCPMessage {
     private final String key;
     private final long cas;
+    private final long bySequenceNumber;
+    private final long revisionSequenceNumber;
 
     public RemoveMessage(short partition, String key, long cas, String bucket) {
         this(partition, key, cas, bucket, null);
     }
 
     public RemoveMessage(short partition, String key, long cas, String bucket, String password) {
-        super(bucket, password);
-        this.partition(partition);
+        this(0, partition, 0, 0, key, cas, bucket, password);
+    }
+
+    public RemoveMessage(int messageLength, short partition, long bySequenceNumber, long revisionSequenceNumber,
+                         String key, long cas, String bucket, String password) {
+        super(messageLength, partition, bucket, password);
+        this.bySequenceNumber = bySequenceNumber;
+        this.revisionSequenceNumber = revisionSequenceNumber;
         this.key = key;
         this.cas = cas;
     }
@@ -55,4 +63,22 @@ public class RemoveMessage extends AbstractDCPRequest {
     public long cas() {
         return cas;
     }
+
+    /**
+     * Returns the sequence number of the removal in its partition.
+     *
+     * @return the sequence number, or 0 if unknown.
+     */
+    public long bySequenceNumber() {
+        return bySequenceNumber;
+    }
+
+    /**
+     * Returns the revision of the removed document.
+     *
+     * @return the revision sequence number, or 0 if unknown.
+     */
+    public long revisionSequenceNumber() {
+        return revisionSequenceNumber;
+    }
 }
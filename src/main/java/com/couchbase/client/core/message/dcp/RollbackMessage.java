@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+/**
+ * Signals that the history of a partition diverged from what has been consumed, for example after a failover.
+ *
+ * All mutations and removals of the partition with a sequence number above the one of this message must be
+ * discarded by the consumer, since the stream continues from there with the history of the new master.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class RollbackMessage extends AbstractDCPMessage {
+
+    /**
+     * The sequence number the partition has been rolled back to.
+     */
+    private final long sequenceNumber;
+
+    public RollbackMessage(short partition, long sequenceNumber, String bucket) {
+        this(partition, sequenceNumber, bucket, null);
+    }
+
+    public RollbackMessage(short partition, long sequenceNumber, String bucket, String password) {
+        super(0, partition, bucket, password);
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public long sequenceNumber() {
+        return sequenceNumber;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The positions a consumer reached in the streams of all partitions of a bucket.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class SessionState {
+
+    private final ConcurrentMap<Short, PartitionState> partitions;
+
+    /**
+     * Creates a new {@link SessionState} without any position.
+     */
+    public SessionState() {
+        partitions = new ConcurrentHashMap<Short, PartitionState>();
+    }
+
+    /**
+     * Returns the state of a partition, which is created if the partition has not been streamed yet.
+     *
+     * @param partition the partition.
+     * @return the state of the partition.
+     */
+    public PartitionState partition(final short partition) {
+        PartitionState state = partitions.get(partition);
+        if (state == null) {
+            PartitionState created = new PartitionState(partition);
+            state = partitions.putIfAbsent(partition, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Sets the state of a partition, for example when it is restored from a {@link SessionStateStore}.
+     *
+     * @param state the state of the partition.
+     */
+    public void partition(final PartitionState state) {
+        partitions.put(state.partition(), state);
+    }
+
+    /**
+     * Returns the states of all partitions known so far.
+     *
+     * @return the partition states.
+     */
+    public Collection<PartitionState> partitions() {
+        return new ArrayList<PartitionState>(partitions.values());
+    }
+
+    /**
+     * Advances the state of the partition the message belongs to.
+     *
+     * @param message the message consumed.
+     */
+    public void update(final DCPRequest message) {
+        partition(message.partition()).update(message);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionState{partitions=" + partitions.values() + '}';
+    }
+}
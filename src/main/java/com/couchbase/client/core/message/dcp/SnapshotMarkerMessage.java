@@ -37,7 +37,7 @@ import com.couchbase.client.core.annotations.InterfaceStability;
  */
 @InterfaceStability.Experimental
 @InterfaceAudience.Private
-public class SnapshotMarkerMessage extends AbstractDCPRequest {
+public class SnapshotMarkerMessage extends AbstractDCPMessage {
     public static final int MEMORY = 0x01;
     public static final int DISK = 0x02;
     public static final int CHECKPOINT = 0x04;
@@ -72,8 +72,12 @@ public class SnapshotMarkerMessage extends AbstractDCPRequest {
 
     public SnapshotMarkerMessage(short partition, long startSequenceNumber, long endSequenceNumber,
                                  int flags, String bucket, String password) {
-        super(bucket, password);
-        partition(partition);
+        this(0, partition, startSequenceNumber, endSequenceNumber, flags, bucket, password);
+    }
+
+    public SnapshotMarkerMessage(int messageLength, short partition, long startSequenceNumber,
+                                 long endSequenceNumber, int flags, String bucket, String password) {
+        super(messageLength, partition, bucket, password);
         this.startSequenceNumber = startSequenceNumber;
         this.endSequenceNumber = endSequenceNumber;
         this.memory = (flags & MEMORY) == MEMORY;
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.annotations.InterfaceAudience;
+import com.couchbase.client.core.annotations.InterfaceStability;
+
+/**
+ * Sent by the producer as the last message of a stream, after which the stream is closed.
+ *
+ * Only a stream which reached its end sequence number ended regularly, every other reason means the stream
+ * needs to be requested again (possibly from another node) to continue where it stopped.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+@InterfaceStability.Experimental
+@InterfaceAudience.Private
+public class StreamEndMessage extends AbstractDCPMessage {
+    public static final int OK = 0x00;
+    public static final int CLOSED = 0x01;
+    public static final int STATE_CHANGED = 0x02;
+    public static final int DISCONNECTED = 0x03;
+    public static final int TOO_SLOW = 0x04;
+
+    /**
+     * The reason why the stream has been closed.
+     */
+    private final int reason;
+
+    public StreamEndMessage(short partition, int reason, String bucket) {
+        this(0, partition, reason, bucket, null);
+    }
+
+    public StreamEndMessage(int messageLength, short partition, int reason, String bucket, String password) {
+        super(messageLength, partition, bucket, password);
+        this.reason = reason;
+    }
+
+    public int reason() {
+        return reason;
+    }
+
+    /**
+     * Returns true if the stream ended because all requested sequence numbers have been sent.
+     *
+     * @return true if the stream completed regularly.
+     */
+    public boolean completed() {
+        return reason == OK;
+    }
+}
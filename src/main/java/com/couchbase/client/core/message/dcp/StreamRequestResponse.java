@@ -27,7 +27,9 @@ import com.couchbase.client.core.annotations.InterfaceStability;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.ResponseStatus;
 import rx.Observable;
+import rx.functions.Func1;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -38,7 +40,9 @@ import java.util.List;
 @InterfaceAudience.Private
 public class StreamRequestResponse extends AbstractDCPResponse {
     private final Observable<DCPRequest> stream;
+    private final Observable<List<DCPRequest>> batches;
     private final List<FailoverLogEntry> failoverLog;
+    private final long rollbackSequenceNumber;
 
     /**
      * Sets the required properties for the response.
@@ -48,16 +52,77 @@ public class StreamRequestResponse extends AbstractDCPResponse {
      */
     public StreamRequestResponse(ResponseStatus status, Observable<DCPRequest> stream,
                                  List<FailoverLogEntry> failoverLog, CouchbaseRequest request) {
+        this(status, stream, failoverLog, 0, request);
+    }
+
+    /**
+     * Sets the required properties for the response.
+     *
+     * @param status the status of the response.
+     * @param stream the messages of the stream, if it has been opened.
+     * @param failoverLog the failover log of the partition, if the stream has been opened.
+     * @param rollbackSequenceNumber the sequence number to roll back to, if the status is
+     *                               {@link ResponseStatus#ROLLBACK}.
+     * @param request the request this response belongs to.
+     */
+    public StreamRequestResponse(ResponseStatus status, Observable<DCPRequest> stream,
+                                 List<FailoverLogEntry> failoverLog, long rollbackSequenceNumber,
+                                 CouchbaseRequest request) {
+        this(status, stream, stream == null ? null : stream.map(new Func1<DCPRequest, List<DCPRequest>>() {
+            @Override
+            public List<DCPRequest> call(final DCPRequest message) {
+                return Collections.singletonList(message);
+            }
+        }), failoverLog, rollbackSequenceNumber, request);
+    }
+
+    /**
+     * Sets the required properties for the response.
+     *
+     * @param status the status of the response.
+     * @param stream the messages of the stream, if it has been opened.
+     * @param batches the same messages of the stream in batches, if it has been opened.
+     * @param failoverLog the failover log of the partition, if the stream has been opened.
+     * @param rollbackSequenceNumber the sequence number to roll back to, if the status is
+     *                               {@link ResponseStatus#ROLLBACK}.
+     * @param request the request this response belongs to.
+     */
+    public StreamRequestResponse(ResponseStatus status, Observable<DCPRequest> stream,
+                                 Observable<List<DCPRequest>> batches, List<FailoverLogEntry> failoverLog,
+                                 long rollbackSequenceNumber, CouchbaseRequest request) {
         super(status, request);
         this.stream = stream;
+        this.batches = batches;
         this.failoverLog = failoverLog;
+        this.rollbackSequenceNumber = rollbackSequenceNumber;
     }
 
     public Observable<DCPRequest> stream() {
         return stream;
     }
 
+    /**
+     * Returns the messages of the stream in batches, as they have been read from the socket.
+     *
+     * Consuming batches amortizes the cost of handing messages over to the consumer for high rate streams. Only one
+     * of {@link #stream()} and the batches should be subscribed to, since both deliver the same messages.
+     *
+     * @return the batches of messages, never spanning more than one snapshot.
+     */
+    public Observable<List<DCPRequest>> batches() {
+        return batches;
+    }
+
     public List<FailoverLogEntry> failoverLog() {
         return failoverLog;
     }
+
+    /**
+     * Returns the sequence number the consumer has to roll back to before requesting the stream again.
+     *
+     * @return the rollback sequence number, only set if the status is {@link ResponseStatus#ROLLBACK}.
+     */
+    public long rollbackSequenceNumber() {
+        return rollbackSequenceNumber;
+    }
 }
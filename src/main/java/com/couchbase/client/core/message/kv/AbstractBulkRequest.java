@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.AbstractCouchbaseRequest;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import rx.Observer;
+import rx.subjects.ReplaySubject;
+import rx.subjects.Subject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default implementation of a {@link BulkRequest}.
+ *
+ * The observable emits the response of each individual request as it arrives, which may be in a different
+ * order than the keys, and completes once all of them are done. A request which fails is emitted as a response
+ * with {@link ResponseStatus#FAILURE} instead, so it does not end the bulk for the other keys. Since the
+ * individual requests are completed from different event loops, the observable is serialized.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public abstract class AbstractBulkRequest extends AbstractCouchbaseRequest implements BulkRequest {
+
+    private final List<BinaryRequest> requests;
+
+    private final boolean quiet;
+
+    /**
+     * Creates a new {@link AbstractBulkRequest}.
+     *
+     * @param bucket the bucket of the documents.
+     * @param requests the individual requests.
+     * @param quiet if quiet variants should be used where supported.
+     */
+    protected AbstractBulkRequest(final String bucket, final List<? extends BinaryRequest> requests,
+        final boolean quiet) {
+        super(bucket, null, ReplaySubject.<CouchbaseResponse>create().toSerialized());
+        this.requests = Collections.unmodifiableList(new ArrayList<BinaryRequest>(requests));
+        this.quiet = quiet;
+
+        Subject<CouchbaseResponse, CouchbaseResponse> observable = observable();
+        if (requests.isEmpty()) {
+            observable.onCompleted();
+        } else {
+            AtomicInteger remaining = new AtomicInteger(requests.size());
+            for (BinaryRequest request : requests) {
+                request.observable().subscribe(new PartObserver(this, request, remaining));
+            }
+        }
+    }
+
+    @Override
+    public List<BinaryRequest> requests() {
+        return requests;
+    }
+
+    @Override
+    public boolean quiet() {
+        return quiet;
+    }
+
+    /**
+     * Creates the response emitted for an individual request which failed.
+     *
+     * @param request the failed request.
+     * @return the response with {@link ResponseStatus#FAILURE}.
+     */
+    protected abstract CouchbaseResponse failedResponse(BinaryRequest request);
+
+    @Override
+    public void timeout(final long timeout, final TimeUnit unit) {
+        super.timeout(timeout, unit);
+        for (BinaryRequest request : requests) {
+            request.timeout(timeout, unit);
+        }
+    }
+
+    /**
+     * Forwards the response of an individual request and completes the bulk once the last one is done.
+     */
+    private static final class PartObserver implements Observer<CouchbaseResponse> {
+
+        private final AbstractBulkRequest bulk;
+        private final BinaryRequest request;
+        private final AtomicInteger remaining;
+
+        PartObserver(final AbstractBulkRequest bulk, final BinaryRequest request, final AtomicInteger remaining) {
+            this.bulk = bulk;
+            this.request = request;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void onNext(final CouchbaseResponse response) {
+            bulk.observable().onNext(response);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            bulk.observable().onNext(bulk.failedResponse(request));
+            onCompleted();
+        }
+
+        @Override
+        public void onCompleted() {
+            if (remaining.decrementAndGet() == 0) {
+                bulk.observable().onCompleted();
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ package com.couchbase.client.core.message.kv;
 
 import com.couchbase.client.core.message.AbstractCouchbaseRequest;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Default implementation of a {@link BinaryRequest}.
  *
@@ -36,7 +38,7 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
      *
      * No overflow control is applied, since once it overflows it starts with negative values again.
      */
-    private static volatile int GLOBAL_OPAQUE = 0;
+    private static final AtomicInteger GLOBAL_OPAQUE = new AtomicInteger();
 
     protected static final short DEFAULT_PARTITION = -1;
 
@@ -45,11 +47,21 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
      */
     private final String key;
 
+    /**
+     * The optional pre-encoded key.
+     */
+    private byte[] keyBytes;
+
     /**
      * The partition (vbucket) of the document.
      */
     private short partition = DEFAULT_PARTITION;
 
+    /**
+     * The endpoint the request is pinned to, one plus its index, 0 if derived from the partition.
+     */
+    private int endpointAffinity;
+
     private final int opaque;
 
     /**
@@ -62,7 +74,7 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
     protected AbstractKeyValueRequest(String key, String bucket, String password) {
         super(bucket, password);
         this.key = key;
-        opaque = GLOBAL_OPAQUE++;
+        opaque = GLOBAL_OPAQUE.getAndIncrement();
     }
 
     @Override
@@ -70,6 +82,17 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
         return key;
     }
 
+    @Override
+    public byte[] keyBytes() {
+        return keyBytes;
+    }
+
+    @Override
+    public BinaryRequest keyBytes(final byte[] keyBytes) {
+        this.keyBytes = keyBytes;
+        return this;
+    }
+
     @Override
     public short partition() {
         if (partition == -1) {
@@ -87,6 +110,17 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
         return this;
     }
 
+    @Override
+    public int endpointAffinity() {
+        return endpointAffinity;
+    }
+
+    @Override
+    public BinaryRequest endpointAffinity(final int endpoint) {
+        this.endpointAffinity = endpoint;
+        return this;
+    }
+
     @Override
     public int opaque() {
         return opaque;
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import rx.functions.Action1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The part of a {@link BulkRequest} going to a single endpoint of a node, written as one pipelined burst.
+ *
+ * The batch takes the partition of its first request, so it is pinned to the same endpoint as all of its
+ * requests. If quiet, the batch itself is written as the terminating NOOP. If the batch fails as a whole,
+ * for example because it could not be dispatched, all of its requests fail with it.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class BinaryBatchRequest extends AbstractKeyValueRequest implements BulkRequest {
+
+    private final List<BinaryRequest> requests = new ArrayList<BinaryRequest>();
+
+    private final boolean quiet;
+
+    public BinaryBatchRequest(final String bucket, final boolean quiet) {
+        super(null, bucket, null);
+        this.quiet = quiet;
+
+        observable().subscribe(new Action1<CouchbaseResponse>() {
+            @Override
+            public void call(final CouchbaseResponse response) {
+                // Responses are delivered to the individual requests.
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(final Throwable throwable) {
+                for (BinaryRequest request : requests) {
+                    request.observable().onError(throwable);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a request to the batch, which needs to have its partition set.
+     *
+     * @param request the request to add.
+     */
+    public void add(final BinaryRequest request) {
+        if (requests.isEmpty()) {
+            partition(request.partition());
+        }
+        requests.add(request);
+    }
+
+    @Override
+    public List<BinaryRequest> requests() {
+        return requests;
+    }
+
+    @Override
+    public boolean quiet() {
+        return quiet;
+    }
+}
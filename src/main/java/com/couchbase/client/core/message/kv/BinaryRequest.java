@@ -38,6 +38,26 @@ public interface BinaryRequest extends CouchbaseRequest {
      */
     String key();
 
+    /**
+     * The pre-encoded UTF-8 representation of the key, if supplied.
+     *
+     * If present, the same bytes are used to locate the partition and to encode the request, otherwise the key is
+     * hashed and encoded straight from its characters.
+     *
+     * @return the encoded key or null if not supplied.
+     */
+    byte[] keyBytes();
+
+    /**
+     * Sets the pre-encoded UTF-8 representation of the key.
+     *
+     * The bytes must not be modified afterwards and need to match the key.
+     *
+     * @param keyBytes the encoded key.
+     * @return the {@link BinaryRequest} for proper chaining.
+     */
+    BinaryRequest keyBytes(byte[] keyBytes);
+
     /**
      * The partition (vbucket) to use for this request.
      *
@@ -53,6 +73,21 @@ public interface BinaryRequest extends CouchbaseRequest {
      */
     BinaryRequest partition(short id);
 
+    /**
+     * The endpoint this request is pinned to, one plus its index, or 0 if the endpoint is derived from the partition.
+     *
+     * @return the endpoint affinity.
+     */
+    int endpointAffinity();
+
+    /**
+     * Pins the request to an endpoint, whose index is the affinity minus one, modulo the number of endpoints.
+     *
+     * @param endpoint the endpoint affinity, 0 to derive the endpoint from the partition.
+     * @return the {@link BinaryRequest} for proper chaining.
+     */
+    BinaryRequest endpointAffinity(int endpoint);
+
     /**
      * A opaque value representing this request.
      *
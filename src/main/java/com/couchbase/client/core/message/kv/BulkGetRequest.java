@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fetches many documents at once, emitting a {@link GetResponse} per key.
+ *
+ * If quiet, the gets are sent as GETQ terminated by a NOOP and misses are completed with
+ * {@link com.couchbase.client.core.message.ResponseStatus#NOT_EXISTS} when the NOOP returns.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class BulkGetRequest extends AbstractBulkRequest {
+
+    public BulkGetRequest(final List<String> keys, final String bucket) {
+        this(keys, bucket, false);
+    }
+
+    public BulkGetRequest(final List<String> keys, final String bucket, final boolean quiet) {
+        super(bucket, gets(keys, bucket), quiet);
+    }
+
+    private static List<GetRequest> gets(final List<String> keys, final String bucket) {
+        List<GetRequest> requests = new ArrayList<GetRequest>(keys.size());
+        for (String key : keys) {
+            requests.add(new GetRequest(key, bucket));
+        }
+        return requests;
+    }
+
+    @Override
+    protected CouchbaseResponse failedResponse(final BinaryRequest request) {
+        return new GetResponse(ResponseStatus.FAILURE, 0, 0, request.bucket(), Unpooled.EMPTY_BUFFER, request);
+    }
+}
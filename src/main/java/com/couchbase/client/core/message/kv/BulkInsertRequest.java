@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts many documents at once, emitting an {@link InsertResponse} per key.
+ *
+ * If quiet, the inserts are sent as ADDQ terminated by a NOOP, so only failures produce a response and the
+ * successful ones are completed without a CAS when the NOOP returns.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class BulkInsertRequest extends AbstractBulkRequest {
+
+    public BulkInsertRequest(final Map<String, ByteBuf> documents, final String bucket) {
+        this(documents, 0, 0, bucket);
+    }
+
+    public BulkInsertRequest(final Map<String, ByteBuf> documents, final int exp, final int flags,
+        final String bucket) {
+        this(documents, exp, flags, bucket, false);
+    }
+
+    public BulkInsertRequest(final Map<String, ByteBuf> documents, final int exp, final int flags,
+        final String bucket, final boolean quiet) {
+        super(bucket, inserts(documents, exp, flags, bucket), quiet);
+    }
+
+    private static List<InsertRequest> inserts(final Map<String, ByteBuf> documents, final int exp, final int flags,
+        final String bucket) {
+        List<InsertRequest> requests = new ArrayList<InsertRequest>(documents.size());
+        for (Map.Entry<String, ByteBuf> document : documents.entrySet()) {
+            requests.add(new InsertRequest(document.getKey(), document.getValue(), exp, flags, bucket));
+        }
+        return requests;
+    }
+
+    @Override
+    protected CouchbaseResponse failedResponse(final BinaryRequest request) {
+        return new InsertResponse(ResponseStatus.FAILURE, 0, request.bucket(), Unpooled.EMPTY_BUFFER, request);
+    }
+}
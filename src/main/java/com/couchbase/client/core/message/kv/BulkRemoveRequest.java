@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes many documents at once, emitting a {@link RemoveResponse} per key.
+ *
+ * If quiet, the removes are sent as DELETEQ terminated by a NOOP, so only failures produce a response and the
+ * successful ones are completed without a CAS when the NOOP returns.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class BulkRemoveRequest extends AbstractBulkRequest {
+
+    public BulkRemoveRequest(final List<String> keys, final String bucket) {
+        this(keys, bucket, false);
+    }
+
+    public BulkRemoveRequest(final List<String> keys, final String bucket, final boolean quiet) {
+        super(bucket, removes(keys, bucket), quiet);
+    }
+
+    private static List<RemoveRequest> removes(final List<String> keys, final String bucket) {
+        List<RemoveRequest> requests = new ArrayList<RemoveRequest>(keys.size());
+        for (String key : keys) {
+            requests.add(new RemoveRequest(key, bucket));
+        }
+        return requests;
+    }
+
+    @Override
+    protected CouchbaseResponse failedResponse(final BinaryRequest request) {
+        return new RemoveResponse(ResponseStatus.FAILURE, 0, request.bucket(), Unpooled.EMPTY_BUFFER, request);
+    }
+}
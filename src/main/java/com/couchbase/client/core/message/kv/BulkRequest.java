@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseRequest;
+
+import java.util.List;
+
+/**
+ * A request which carries many {@link BinaryRequest}s and is split up per node when dispatched.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public interface BulkRequest extends CouchbaseRequest {
+
+    /**
+     * The individual requests, one per key.
+     *
+     * @return the requests.
+     */
+    List<BinaryRequest> requests();
+
+    /**
+     * If the requests should be sent in their quiet variant where supported, followed by a NOOP which
+     * terminates them. Quiet gets do not get a response on a miss and quiet mutations only get one on a
+     * failure, saving bandwidth and decoding work on the way back.
+     *
+     * @return true if quiet.
+     */
+    boolean quiet();
+}
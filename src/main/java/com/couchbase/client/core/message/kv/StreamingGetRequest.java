@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+/**
+ * Fetches a document whose value is streamed as it arrives, see {@link StreamingGetResponse}.
+ *
+ * Use it for large values, since they are neither buffered as a whole in the event loop nor limited by the
+ * maximum value size.
+ *
+ * The chunks are read at the pace of the subscriber, which pauses reading for the whole key/value connection
+ * while it does not request more. All other operations on the same endpoint wait meanwhile, so subscribers
+ * need to keep consuming. If reading stays paused for longer than
+ * {@link com.couchbase.client.core.env.CoreEnvironment#autoreleaseAfter()}, the stream fails and the rest of
+ * the value is discarded.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class StreamingGetRequest extends GetRequest {
+
+    public StreamingGetRequest(final String key, final String bucket) {
+        super(key, bucket);
+    }
+}
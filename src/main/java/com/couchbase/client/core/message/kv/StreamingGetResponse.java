@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.Observable;
+
+/**
+ * Represents a response to a {@link StreamingGetRequest}.
+ *
+ * The response is completed as soon as the header arrived, while the value follows as chunks. Every chunk
+ * needs to be released by the subscriber once processed. The {@link #content()} is always empty.
+ *
+ * The chunks can only be subscribed to once. Reading from the connection pauses while the subscriber does not
+ * request more, and chunks which are not subscribed to in time or arrive after unsubscribing are released.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class StreamingGetResponse extends GetResponse {
+
+    private final Observable<ByteBuf> chunks;
+
+    public StreamingGetResponse(final ResponseStatus status, final long cas, final int flags, final String bucket,
+        final Observable<ByteBuf> chunks, final CouchbaseRequest request) {
+        super(status, cas, flags, bucket, Unpooled.EMPTY_BUFFER, request);
+        this.chunks = chunks;
+    }
+
+    /**
+     * The chunks of the value in order, completing after the last one.
+     *
+     * @return the chunks of the value.
+     */
+    public Observable<ByteBuf> chunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.MemcachedBucketConfig;
+import com.couchbase.client.core.node.Node;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable routing table from ketama continuum point to {@link Node} for one {@link MemcachedBucketConfig}.
+ *
+ * Every entry is a shared single element array, so that the {@link KeyValueLocator} can hand it out directly
+ * without allocating. Entries are null if the node is not (yet) connected.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+final class KetamaTable {
+
+    private final MemcachedBucketConfig config;
+    private final Node[][] points;
+
+    private KetamaTable(final MemcachedBucketConfig config, final Node[][] points) {
+        this.config = config;
+        this.points = points;
+    }
+
+    /**
+     * Builds the table for the config from the currently managed nodes.
+     *
+     * @param config the bucket config.
+     * @param nodes the managed nodes.
+     * @return the built table.
+     */
+    static KetamaTable build(final MemcachedBucketConfig config, final Set<Node> nodes) {
+        Map<InetAddress, Node[]> byHostname = new HashMap<InetAddress, Node[]>(nodes.size());
+        for (Node node : nodes) {
+            byHostname.put(node.hostname(), new Node[] { node });
+        }
+
+        Node[][] points = new Node[config.numberOfKetamaPoints()][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = byHostname.get(config.ketamaNodeAt(i).hostname());
+        }
+        return new KetamaTable(config, points);
+    }
+
+    /**
+     * The config this table has been built from.
+     */
+    MemcachedBucketConfig config() {
+        return config;
+    }
+
+    /**
+     * Returns the node at the point of the continuum.
+     *
+     * @param index the index of the point, see {@link MemcachedBucketConfig#ketamaIndex(long)}.
+     * @return the node as a single element array, or null if not available.
+     */
+    Node[] node(final int index) {
+        return points[index];
+    }
+}
@@ -36,13 +36,15 @@ import com.couchbase.client.core.message.kv.ObserveRequest;
 import com.couchbase.client.core.message.kv.ReplicaGetRequest;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.state.LifecycleState;
-import io.netty.util.CharsetUtil;
-import java.io.UnsupportedEncodingException;
+import com.couchbase.client.core.utils.Crc32;
+import com.couchbase.client.core.utils.Utf8;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.zip.CRC32;
 
 /**
  * This {@link Locator} finds the proper {@link Node}s for every incoming {@link CouchbaseRequest}.
@@ -54,6 +56,51 @@ public class KeyValueLocator implements Locator {
 
     private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(KeyValueLocator.class);
 
+    /**
+     * The MD5 digest used for ketama hashing, one per thread since the locator is shared across dispatchers.
+     */
+    private static final ThreadLocal<KetamaDigest> KETAMA_DIGEST = new ThreadLocal<KetamaDigest>() {
+        @Override
+        protected KetamaDigest initialValue() {
+            return new KetamaDigest();
+        }
+    };
+
+    /**
+     * The partition routing tables per couchbase bucket, see {@link #updateRoutingTables(ClusterConfig, Set)}.
+     */
+    private volatile Map<String, PartitionTable> partitionTables = Collections.emptyMap();
+
+    /**
+     * The ketama routing tables per memcached bucket, see {@link #updateRoutingTables(ClusterConfig, Set)}.
+     */
+    private volatile Map<String, KetamaTable> ketamaTables = Collections.emptyMap();
+
+    /**
+     * Rebuilds the routing tables for all buckets in the config.
+     *
+     * This needs to be called whenever the config or the set of managed nodes changes. Until then, requests
+     * are located without the table.
+     *
+     * @param cluster the current cluster config.
+     * @param nodes the currently managed nodes.
+     */
+    public void updateRoutingTables(final ClusterConfig cluster, final Set<Node> nodes) {
+        Map<String, PartitionTable> partitions = new HashMap<String, PartitionTable>();
+        Map<String, KetamaTable> ketamas = new HashMap<String, KetamaTable>();
+        if (cluster != null) {
+            for (BucketConfig bucket : cluster.bucketConfigs().values()) {
+                if (bucket instanceof CouchbaseBucketConfig) {
+                    partitions.put(bucket.name(), PartitionTable.build((CouchbaseBucketConfig) bucket, nodes));
+                } else if (bucket instanceof MemcachedBucketConfig) {
+                    ketamas.put(bucket.name(), KetamaTable.build((MemcachedBucketConfig) bucket, nodes));
+                }
+            }
+        }
+        partitionTables = partitions;
+        ketamaTables = ketamas;
+    }
+
     @Override
     public Node[] locate(final CouchbaseRequest request, final Set<Node> nodes, final ClusterConfig cluster) {
         if (request instanceof GetBucketConfigRequest) {
@@ -90,27 +137,32 @@ public class KeyValueLocator implements Locator {
      */
     private Node[] locateForCouchbaseBucket(final BinaryRequest request, final Set<Node> nodes,
         final CouchbaseBucketConfig config) {
-        String key = request.key();
-
-        CRC32 crc32 = new CRC32();
-        try {
-            crc32.update(key.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-        long rv = (crc32.getValue() >> 16) & 0x7fff;
+        byte[] keyBytes = request.keyBytes();
+        long crc = keyBytes != null ? Crc32.crc32(keyBytes) : Crc32.crc32(request.key());
+        long rv = (crc >> 16) & 0x7fff;
         int partitionId = (int) rv & config.numberOfPartitions() - 1;
         request.partition((short) partitionId);
 
-        int nodeId;
+        int replica = -1;
         if (request instanceof ReplicaGetRequest) {
-            nodeId = config.nodeIndexForReplica(partitionId, ((ReplicaGetRequest) request).replica() - 1);
-        } else if (request instanceof ObserveRequest && ((ObserveRequest) request).replica() > 0){
-            nodeId = config.nodeIndexForReplica(partitionId, ((ObserveRequest) request).replica() - 1);
-        } else {
-            nodeId = config.nodeIndexForMaster(partitionId);
+            replica = ((ReplicaGetRequest) request).replica() - 1;
+        } else if (request instanceof ObserveRequest && ((ObserveRequest) request).replica() > 0) {
+            replica = ((ObserveRequest) request).replica() - 1;
         }
 
+        PartitionTable table = partitionTables.get(config.name());
+        if (table != null && table.config() == config) {
+            Node[] found = table.node(partitionId, replica);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        // The table is stale or the partition is not available, take the slow path to find out why.
+        int nodeId = replica < 0
+            ? config.nodeIndexForMaster(partitionId)
+            : config.nodeIndexForReplica(partitionId, replica);
+
         if (nodeId == -2) {
             if (request instanceof ReplicaGetRequest) {
                 request.observable().onError(new ReplicaNotConfiguredException("Replica number "
@@ -162,18 +214,18 @@ public class KeyValueLocator implements Locator {
     private Node[] locateForMemcacheBucket(final BinaryRequest request, final Set<Node> nodes,
         final MemcachedBucketConfig config) {
 
-        long hash = ketamaHash(request.key());
-        if (!config.ketamaNodes().containsKey(hash)) {
-            SortedMap<Long, NodeInfo> tailMap = config.ketamaNodes().tailMap(hash);
-            if (tailMap.isEmpty()) {
-                hash = config.ketamaNodes().firstKey();
-            } else {
-                hash = tailMap.firstKey();
+        int index = config.ketamaIndex(ketamaHash(request));
+        request.partition((short) 0);
+
+        KetamaTable table = ketamaTables.get(config.name());
+        if (table != null && table.config() == config) {
+            Node[] node = table.node(index);
+            if (node != null) {
+                return node;
             }
         }
 
-        NodeInfo found = config.ketamaNodes().get(hash);
-        request.partition((short) 0);
+        NodeInfo found = config.ketamaNodeAt(index);
         for (Node node : nodes) {
             if (node.hostname().equals(found.hostname())) {
                 return new Node[] { node };
@@ -183,18 +235,51 @@ public class KeyValueLocator implements Locator {
         throw new IllegalStateException("Node not found for request" + request);
     }
 
-    private long ketamaHash(final String key) {
-        try {
-            MessageDigest md5 = MessageDigest.getInstance("MD5");
-            md5.update(key.getBytes(CharsetUtil.UTF_8));
-            byte[] digest = md5.digest();
-            long rv = ((long) (digest[3] & 0xFF) << 24)
-                | ((long) (digest[2] & 0xFF) << 16)
-                | ((long) (digest[1] & 0xFF) << 8)
-                | (digest[0] & 0xFF);
-            return rv & 0xffffffffL;
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("Could not encode ketama hash.", e);
+    private static long ketamaHash(final BinaryRequest request) {
+        byte[] digest = KETAMA_DIGEST.get().digest(request);
+        long rv = ((long) (digest[3] & 0xFF) << 24)
+            | ((long) (digest[2] & 0xFF) << 16)
+            | ((long) (digest[1] & 0xFF) << 8)
+            | (digest[0] & 0xFF);
+        return rv & 0xffffffffL;
+    }
+
+    /**
+     * A per-thread MD5 digest together with reusable input and output arrays, since creating a
+     * {@link MessageDigest} is expensive.
+     */
+    private static final class KetamaDigest {
+
+        private final MessageDigest md5;
+        private final byte[] digest = new byte[16];
+        private byte[] input = new byte[256];
+
+        KetamaDigest() {
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Could not encode ketama hash.", e);
+            }
+        }
+
+        byte[] digest(final BinaryRequest request) {
+            byte[] keyBytes = request.keyBytes();
+            if (keyBytes != null) {
+                md5.update(keyBytes);
+            } else {
+                String key = request.key();
+                if (key.length() * 3 > input.length) {
+                    input = new byte[key.length() * 3];
+                }
+                md5.update(input, 0, Utf8.write(key, input));
+            }
+
+            try {
+                md5.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException("Could not encode ketama hash.", e);
+            }
+            return digest;
         }
     }
 
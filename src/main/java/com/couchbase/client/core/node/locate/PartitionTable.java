@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.node.Node;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable routing table from partition to {@link Node} for one {@link CouchbaseBucketConfig}.
+ *
+ * Every entry is a shared single element array, so that the {@link KeyValueLocator} can hand it out directly
+ * without allocating. Entries are null if the partition has no node assigned or the node is not (yet) connected.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+final class PartitionTable {
+
+    private final CouchbaseBucketConfig config;
+    private final Node[][] masters;
+    private final Node[][][] replicas;
+
+    private PartitionTable(final CouchbaseBucketConfig config, final Node[][] masters, final Node[][][] replicas) {
+        this.config = config;
+        this.masters = masters;
+        this.replicas = replicas;
+    }
+
+    /**
+     * Builds the table for the config from the currently managed nodes.
+     *
+     * @param config the bucket config.
+     * @param nodes the managed nodes.
+     * @return the built table.
+     */
+    static PartitionTable build(final CouchbaseBucketConfig config, final Set<Node> nodes) {
+        Map<InetAddress, Node[]> byHostname = new HashMap<InetAddress, Node[]>(nodes.size());
+        for (Node node : nodes) {
+            byHostname.put(node.hostname(), new Node[] { node });
+        }
+
+        int numPartitions = config.numberOfPartitions();
+        int numReplicas = config.numberOfReplicas();
+        Node[][] masters = new Node[numPartitions][];
+        Node[][][] replicas = new Node[numReplicas][numPartitions][];
+        for (int partition = 0; partition < numPartitions; partition++) {
+            masters[partition] = lookup(config, byHostname, config.nodeIndexForMaster(partition));
+            for (int replica = 0; replica < numReplicas; replica++) {
+                replicas[replica][partition] = lookup(config, byHostname,
+                    config.nodeIndexForReplica(partition, replica));
+            }
+        }
+        return new PartitionTable(config, masters, replicas);
+    }
+
+    private static Node[] lookup(final CouchbaseBucketConfig config, final Map<InetAddress, Node[]> byHostname,
+        final int nodeIndex) {
+        if (nodeIndex < 0) {
+            return null;
+        }
+        return byHostname.get(config.nodeAtIndex(nodeIndex).hostname());
+    }
+
+    /**
+     * The config this table has been built from.
+     */
+    CouchbaseBucketConfig config() {
+        return config;
+    }
+
+    /**
+     * Returns the node hosting the partition.
+     *
+     * @param partition the partition id.
+     * @param replica the replica number starting at 0, or -1 for the master.
+     * @return the node as a single element array, or null if not available.
+     */
+    Node[] node(final int partition, final int replica) {
+        if (replica < 0) {
+            return masters[partition];
+        }
+        return replica < replicas.length ? replicas[replica][partition] : null;
+    }
+}
@@ -35,6 +35,10 @@ import rx.Observable;
 import rx.functions.Action1;
 import rx.functions.Func1;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Parent implementation of a dynamic {@link Service}.
  *
@@ -45,7 +49,7 @@ public abstract class AbstractDynamicService extends AbstractStateMachine<Lifecy
 
     private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(Service.class);
 
-    private final Endpoint[] endpoints;
+    private volatile Endpoint[] endpoints;
 
     private final String hostname;
     private final String bucket;
@@ -91,14 +95,18 @@ public abstract class AbstractDynamicService extends AbstractStateMachine<Lifecy
             return Observable.just(state());
         }
 
+        Endpoint[] initialEndpoints = new Endpoint[minEndpoints];
         for (int i = 0; i < minEndpoints; i++) {
             Endpoint endpoint = createEndpoint();
-            endpoints[i] = endpoint;
+            initialEndpoints[i] = endpoint;
             endpointStates.register(endpoint, endpoint);
         }
+        synchronized (this) {
+            endpoints = initialEndpoints;
+        }
 
         return Observable
-            .from(endpoints)
+            .from(initialEndpoints)
             .flatMap(new Func1<Endpoint, Observable<LifecycleState>>() {
                 @Override
                 public Observable<LifecycleState> call(final Endpoint endpoint) {
@@ -119,6 +127,7 @@ public abstract class AbstractDynamicService extends AbstractStateMachine<Lifecy
     @Override
     public void send(final CouchbaseRequest request) {
         if (request instanceof SignalFlush) {
+            Endpoint[] endpoints = this.endpoints;
             int length = endpoints.length;
             for (int i = 0; i < length; i++) {
                 endpoints[i].send(request);
@@ -191,6 +200,34 @@ public abstract class AbstractDynamicService extends AbstractStateMachine<Lifecy
         return endpoints;
     }
 
+    /**
+     * Adds an endpoint to the current list of endpoints.
+     *
+     * The list is copied on write, so readers of {@link #endpoints()} always see a consistent snapshot.
+     *
+     * @param endpoint the endpoint to add.
+     */
+    protected synchronized void addEndpoint(final Endpoint endpoint) {
+        Endpoint[] updated = Arrays.copyOf(endpoints, endpoints.length + 1);
+        updated[endpoints.length] = endpoint;
+        endpoints = updated;
+    }
+
+    /**
+     * Removes an endpoint from the current list of endpoints.
+     *
+     * @param endpoint the endpoint to remove.
+     * @return true if the endpoint has been part of the list.
+     */
+    protected synchronized boolean removeEndpoint(final Endpoint endpoint) {
+        List<Endpoint> updated = new ArrayList<Endpoint>(Arrays.asList(endpoints));
+        if (!updated.remove(endpoint)) {
+            return false;
+        }
+        endpoints = updated.toArray(new Endpoint[updated.size()]);
+        return true;
+    }
+
     /**
      * Returns the underlying endpoint state zipper.
      *
@@ -24,46 +24,196 @@ package com.couchbase.client.core.service;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.Endpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.internal.SignalFlush;
 import com.couchbase.client.core.retry.RetryHelper;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
+import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.RingBuffer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Abstract implementation of a (fixed size) pooling Service.
+ * Abstract implementation of a pooling Service.
+ *
+ * The pool starts with the minimum number of endpoints. If the maximum is higher, an additional endpoint is
+ * opened whenever the selected one has requests in-flight, and endpoints above the minimum are closed again once
+ * they have been idle for {@link CoreEnvironment#endpointIdleTime()}.
  *
  * @author Michael Nitschinger
  * @since 1.1.0
  */
 public abstract class AbstractPoolingService extends AbstractDynamicService {
 
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(Service.class);
+
+    private final int minEndpoints;
     private final int maxEndpoints;
     private final RingBuffer<ResponseEvent> responseBuffer;
     private final SelectionStrategy strategy;
     private final CoreEnvironment env;
+    private final String hostname;
+
+    /**
+     * Set while an additional endpoint is connecting, so that only one is opened at a time.
+     */
+    private final AtomicBoolean growing = new AtomicBoolean();
+
+    /**
+     * Set while a check for idle endpoints is scheduled.
+     */
+    private final AtomicBoolean idleCheckScheduled = new AtomicBoolean();
 
     protected AbstractPoolingService(String hostname, String bucket, String password, int port,
         CoreEnvironment env, int minEndpoints, int maxEndpoints, SelectionStrategy strategy,
         RingBuffer<ResponseEvent> responseBuffer, EndpointFactory endpointFactory) {
         super(hostname, bucket, password, port, env, minEndpoints, responseBuffer, endpointFactory);
-        this.maxEndpoints = maxEndpoints;
+        this.minEndpoints = minEndpoints;
+        this.maxEndpoints = Math.max(minEndpoints, maxEndpoints);
         this.responseBuffer = responseBuffer;
         this.strategy = strategy;
         this.env = env;
+        this.hostname = hostname;
     }
 
     @Override
     protected void dispatch(final CouchbaseRequest request) {
-        if (endpoints().length == maxEndpoints) {
-            Endpoint endpoint = strategy.select(request, endpoints());
-            if (endpoint == null) {
-                RetryHelper.retryOrCancel(env, request, responseBuffer);
+        Endpoint[] endpoints = endpoints();
+        Endpoint endpoint = strategy.select(request, endpoints);
+        if (endpoint == null) {
+            RetryHelper.retryOrCancel(env, request, responseBuffer);
+        } else if (endpoint.outstandingRequests() > 0 && endpoints.length < maxEndpoints
+            && growing.compareAndSet(false, true)) {
+            grow(request);
+        } else {
+            endpoint.send(request);
+        }
+    }
+
+    /**
+     * Opens an additional endpoint and adds it to the pool once connected, sending the request to it.
+     *
+     * Until it is connected, the endpoint is not part of the pool, so it is never selected for other requests.
+     * If it does not connect, it is disconnected again and the request is retried.
+     *
+     * @param request the request which found all endpoints busy.
+     */
+    private void grow(final CouchbaseRequest request) {
+        LOGGER.debug(logIdent(hostname, this) + "All endpoints busy, opening an additional one.");
+        final Endpoint endpoint = createEndpoint();
+        endpointStates().register(endpoint, endpoint);
+        endpoint
+            .connect()
+            .subscribe(new Subscriber<LifecycleState>() {
+                @Override
+                public void onCompleted() {
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    growing.set(false);
+                    discard(endpoint);
+                    RetryHelper.retryOrCancel(env, request, responseBuffer);
+                }
+
+                @Override
+                public void onNext(LifecycleState lifecycleState) {
+                    growing.set(false);
+                    if (lifecycleState == LifecycleState.CONNECTED) {
+                        addEndpoint(endpoint);
+                        endpoint.send(request);
+                        endpoint.send(SignalFlush.INSTANCE);
+                        scheduleIdleCheck();
+                    } else {
+                        discard(endpoint);
+                        RetryHelper.retryOrCancel(env, request, responseBuffer);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Disconnects an endpoint which did not make it into the pool.
+     *
+     * @param endpoint the endpoint to discard.
+     */
+    private void discard(final Endpoint endpoint) {
+        endpoint.disconnect();
+        endpointStates().deregister(endpoint);
+    }
+
+    /**
+     * Removes the endpoint from the pool and disconnects it, unless a request has been written to it meanwhile.
+     *
+     * The endpoint is removed before its outstanding requests are checked, so that no request can be dispatched
+     * to it afterwards. If one has been dispatched in between, the endpoint is put back into the pool.
+     *
+     * @param endpoint the endpoint to close.
+     * @return true if the endpoint has been closed.
+     */
+    private boolean closeIdle(final Endpoint endpoint) {
+        if (!removeEndpoint(endpoint)) {
+            return false;
+        }
+        if (endpoint.outstandingRequests() > 0) {
+            addEndpoint(endpoint);
+            return false;
+        }
+        endpoint.disconnect();
+        endpointStates().deregister(endpoint);
+        return true;
+    }
+
+    /**
+     * Schedules a check for idle endpoints, unless one is already pending.
+     */
+    private void scheduleIdleCheck() {
+        if (idleCheckScheduled.compareAndSet(false, true)) {
+            env.timer().newTimeout(new IdleEndpointsCheck(), env.endpointIdleTime(), TimeUnit.MILLISECONDS);
+        }
+    }
 
-            } else {
-                endpoint.send(request);
+    /**
+     * Closes endpoints which have no requests in-flight and have been idle for longer than the configured idle
+     * time, as long as more than the minimum number of endpoints are open.
+     *
+     * @param now the current time in nanoseconds.
+     */
+    void closeIdleEndpoints(final long now) {
+        long idleTime = TimeUnit.MILLISECONDS.toNanos(env.endpointIdleTime());
+        for (Endpoint endpoint : endpoints()) {
+            if (endpoints().length <= minEndpoints) {
+                return;
+            }
+            if (endpoint.outstandingRequests() <= 0 && now - endpoint.lastActivity() >= idleTime
+                && closeIdle(endpoint)) {
+                LOGGER.debug(logIdent(hostname, this) + "Closed idle endpoint.");
+            }
+        }
+    }
+
+    /**
+     * Checks for idle endpoints on the shared timer and reschedules itself while the pool is above the minimum.
+     */
+    private final class IdleEndpointsCheck implements TimerTask {
+
+        @Override
+        public void run(final Timeout timeout) {
+            idleCheckScheduled.set(false);
+            if (state() == LifecycleState.DISCONNECTING || state() == LifecycleState.DISCONNECTED) {
+                return;
+            }
+
+            closeIdleEndpoints(System.nanoTime());
+            if (endpoints().length > minEndpoints) {
+                scheduleIdleCheck();
             }
-        } else {
-            throw new UnsupportedOperationException("Dynamic endpoint scaling is currently not supported.");
         }
     }
 
@@ -26,9 +26,22 @@ import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.Endpoint;
 import com.couchbase.client.core.endpoint.dcp.DCPEndpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.service.strategies.RandomSelectionStrategy;
+import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.lmax.disruptor.RingBuffer;
 
-public class DCPService extends AbstractOnDemandService {
+public class DCPService extends AbstractPoolingService {
+
+    /**
+     * The number of persistent endpoints per node. The DCP connection is opened once per endpoint and the streams
+     * of all partitions the node is master for are multiplexed over it, so it cannot be spread over more than one.
+     */
+    private static final int ENDPOINTS = 1;
+
+    /**
+     * The endpoint selection strategy.
+     */
+    private static final SelectionStrategy STRATEGY = new RandomSelectionStrategy();
 
     /**
      * The endpoint factory.
@@ -37,7 +50,7 @@ public class DCPService extends AbstractOnDemandService {
 
     public DCPService(String hostname, String bucket, String password, int port, CoreEnvironment env,
                       RingBuffer<ResponseEvent> responseBuffer) {
-        super(hostname, bucket, password, port, env, responseBuffer, FACTORY);
+        super(hostname, bucket, password, port, env, ENDPOINTS, ENDPOINTS, STRATEGY, responseBuffer, FACTORY);
     }
 
     @Override
@@ -25,7 +25,7 @@ import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.Endpoint;
 import com.couchbase.client.core.endpoint.view.ViewEndpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
-import com.couchbase.client.core.service.strategies.RandomSelectionStrategy;
+import com.couchbase.client.core.service.strategies.LeastOutstandingSelectionStrategy;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.lmax.disruptor.RingBuffer;
 
@@ -40,7 +40,7 @@ public class ViewService extends AbstractPoolingService {
     /**
      * The endpoint selection strategy.
      */
-    private static final SelectionStrategy STRATEGY = new RandomSelectionStrategy();
+    private static final SelectionStrategy STRATEGY = new LeastOutstandingSelectionStrategy();
 
     /**
      * The endpoint factory.
@@ -59,8 +59,8 @@ public class ViewService extends AbstractPoolingService {
      */
     public ViewService(final String hostname, final String bucket, final String password, final int port,
         final CoreEnvironment env, final RingBuffer<ResponseEvent> responseBuffer) {
-        super(hostname, bucket, password, port, env, env.viewEndpoints(), env.viewEndpoints(), STRATEGY, responseBuffer,
-            FACTORY);
+        super(hostname, bucket, password, port, env, env.viewEndpoints(), env.maxViewEndpoints(), STRATEGY,
+            responseBuffer, FACTORY);
     }
 
     @Override
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.service.strategies;
+
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.state.LifecycleState;
+
+/**
+ * Selects the connected {@link Endpoint} with the least requests in-flight.
+ *
+ * Endpoints without outstanding requests are preferred, so that a long running request does not block others
+ * queued behind it on the same connection. The scan starts at a rotating offset, which spreads requests across
+ * equally loaded endpoints.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class LeastOutstandingSelectionStrategy implements SelectionStrategy {
+
+    /**
+     * The offset to start the next scan at, racy on purpose since it only serves to spread the load.
+     */
+    private int offset;
+
+    @Override
+    public Endpoint select(final CouchbaseRequest request, final Endpoint[] endpoints) {
+        int numEndpoints = endpoints.length;
+        if (numEndpoints == 0) {
+            return null;
+        }
+
+        int start = (offset++ & Integer.MAX_VALUE) % numEndpoints;
+        Endpoint selected = null;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < numEndpoints; i++) {
+            Endpoint endpoint = endpoints[(start + i) % numEndpoints];
+            if (!endpoint.isState(LifecycleState.CONNECTED)) {
+                continue;
+            }
+
+            int outstanding = endpoint.outstandingRequests();
+            if (outstanding <= 0) {
+                return endpoint;
+            } else if (outstanding < selectedOutstanding) {
+                selected = endpoint;
+                selectedOutstanding = outstanding;
+            }
+        }
+        return selected;
+    }
+}
@@ -32,7 +32,8 @@ import com.couchbase.client.core.state.LifecycleState;
  *
  * This strategy can be used to "pin" certain requests to specific endpoints based on the supplied information. The
  * current implementation uses this technique to tie ID-based {@link BinaryRequest}s to the same endpoint to enforce
- * at least some amount of ordering guarantees.
+ * at least some amount of ordering guarantees. Requests with an endpoint affinity, set when dispatching through
+ * multiple request RingBuffers, are tied to the endpoint of their RingBuffer instead.
  *
  * @author Michael Nitschinger
  * @since 1.0
@@ -51,9 +52,10 @@ public class PartitionSelectionStrategy implements SelectionStrategy {
                 return selectFirstConnected(endpoints);
             } else {
                 BinaryRequest binaryRequest = (BinaryRequest) request;
+                int affinity = binaryRequest.endpointAffinity();
                 short partition = binaryRequest.partition();
-                if (partition > 0) {
-                    int id = partition % numEndpoints;
+                if (affinity > 0 || partition > 0) {
+                    int id = (affinity > 0 ? affinity - 1 : partition) % numEndpoints;
                     Endpoint endpoint = endpoints[id];
                     if (endpoint != null && endpoint.isState(LifecycleState.CONNECTED)) {
                         return endpoint;
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.utils;
+
+/**
+ * Table driven CRC32 (IEEE 802.3, same as {@link java.util.zip.CRC32}) which does not need any allocations.
+ *
+ * Character sequences are hashed over their UTF-8 representation. The common case of pure ASCII keys is hashed
+ * straight from the chars, others are encoded by {@link Utf8} into a reusable per-thread array.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public final class Crc32 {
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xedb88320 : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private Crc32() {
+    }
+
+    /**
+     * Calculates the CRC32 over the given bytes.
+     *
+     * @param bytes the bytes to hash.
+     * @return the checksum as an unsigned 32 bit value.
+     */
+    public static long crc32(final byte[] bytes) {
+        int crc = 0xffffffff;
+        for (int i = 0; i < bytes.length; i++) {
+            crc = TABLE[(crc ^ bytes[i]) & 0xff] ^ (crc >>> 8);
+        }
+        return ~crc & 0xffffffffL;
+    }
+
+    /**
+     * Calculates the CRC32 over the UTF-8 representation of the given sequence.
+     *
+     * @param sequence the sequence to hash.
+     * @return the checksum as an unsigned 32 bit value.
+     */
+    public static long crc32(final CharSequence sequence) {
+        int length = sequence.length();
+        int crc = 0xffffffff;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            crc = TABLE[(crc ^ c) & 0xff] ^ (crc >>> 8);
+        }
+        if (i < length) {
+            crc = updateUtf8(crc, sequence, i, length);
+        }
+        return ~crc & 0xffffffffL;
+    }
+
+    /**
+     * Slow path for {@link #crc32(CharSequence)} once a non-ASCII character is found, hashing the rest of the
+     * sequence as encoded by {@link Utf8}.
+     */
+    private static int updateUtf8(int crc, final CharSequence sequence, final int start, final int length) {
+        byte[] bytes = Utf8.scratch((length - start) * 3);
+        int encoded = Utf8.write(sequence, start, bytes, 0);
+        for (int i = 0; i < encoded; i++) {
+            crc = update(crc, bytes[i]);
+        }
+        return crc;
+    }
+
+    private static int update(final int crc, final int b) {
+        return TABLE[(crc ^ b) & 0xff] ^ (crc >>> 8);
+    }
+}
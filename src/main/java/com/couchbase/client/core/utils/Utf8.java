@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.utils;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Allocation free UTF-8 encoding helpers for document keys.
+ *
+ * The encoding is identical to {@link String#getBytes(java.nio.charset.Charset)} with UTF-8, including the
+ * replacement of unpaired surrogates with a question mark, so that hashing and encoding always agree with
+ * keys encoded elsewhere.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public final class Utf8 {
+
+    /**
+     * The replacement for malformed input, same as the JDK encoder uses.
+     */
+    static final byte REPLACEMENT = '?';
+
+    /**
+     * Reusable per-thread arrays to encode into when the target cannot be written to directly.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
+    private Utf8() {
+    }
+
+    /**
+     * Returns the number of bytes the UTF-8 encoded sequence would occupy.
+     *
+     * @param sequence the sequence to measure.
+     * @return the encoded length in bytes.
+     */
+    public static int encodedLength(final CharSequence sequence) {
+        int length = sequence.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                // four bytes for two chars
+                bytes += 2;
+                i++;
+            } else if (!isSurrogate(c)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the UTF-8 encoded sequence into the buffer.
+     *
+     * Heap buffers are encoded into directly, others through a reusable per-thread array.
+     *
+     * @param buf the buffer to write into.
+     * @param sequence the sequence to encode.
+     */
+    public static void write(final ByteBuf buf, final CharSequence sequence) {
+        int maxLength = sequence.length() * 3;
+        buf.ensureWritable(maxLength);
+        if (buf.hasArray()) {
+            int writerIndex = buf.writerIndex();
+            int written = write(sequence, 0, buf.array(), buf.arrayOffset() + writerIndex);
+            buf.writerIndex(writerIndex + written);
+        } else {
+            byte[] bytes = scratch(maxLength);
+            buf.writeBytes(bytes, 0, write(sequence, 0, bytes, 0));
+        }
+    }
+
+    /**
+     * Writes the UTF-8 encoded sequence into the array, which needs to be at least
+     * {@link #encodedLength(CharSequence)} bytes long.
+     *
+     * @param sequence the sequence to encode.
+     * @param target the array to write into.
+     * @return the number of bytes written.
+     */
+    public static int write(final CharSequence sequence, final byte[] target) {
+        return write(sequence, 0, target, 0);
+    }
+
+    /**
+     * Writes the UTF-8 encoded sequence from the given char on into the array at the given offset.
+     *
+     * This is the only encoding loop, all other helpers delegate to it so that they never disagree.
+     *
+     * @param sequence the sequence to encode.
+     * @param start the index of the first char to encode.
+     * @param target the array to write into.
+     * @param offset the index in the array to write the first byte to.
+     * @return the number of bytes written.
+     */
+    static int write(final CharSequence sequence, final int start, final byte[] target, final int offset) {
+        int length = sequence.length();
+        int pos = offset;
+        for (int i = start; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c < 0x80) {
+                target[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                target[pos++] = (byte) (0xc0 | (c >> 6));
+                target[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, sequence.charAt(++i));
+                target[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                target[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                target[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                target[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (isSurrogate(c)) {
+                target[pos++] = REPLACEMENT;
+            } else {
+                target[pos++] = (byte) (0xe0 | (c >> 12));
+                target[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                target[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Returns a per-thread array of at least the given size, only to be used until the next call on the same
+     * thread.
+     *
+     * @param size the minimum size.
+     * @return the reusable array.
+     */
+    static byte[] scratch(final int size) {
+        byte[] bytes = SCRATCH.get();
+        if (bytes.length < size) {
+            bytes = new byte[size];
+            SCRATCH.set(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns true if the char is a high or low surrogate, the same as {@code Character.isSurrogate} which is
+     * not available on Java 6.
+     *
+     * @param c the char to check.
+     * @return true if it is a surrogate.
+     */
+    static boolean isSurrogate(final char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+}
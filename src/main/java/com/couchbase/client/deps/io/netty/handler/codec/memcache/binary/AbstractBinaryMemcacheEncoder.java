@@ -19,7 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.AbstractMemcacheObjectEncoder;
-import io.netty.util.CharsetUtil;
+import com.couchbase.client.core.utils.Utf8;
 
 /**
  * A {@link MessageToByteEncoder} that encodes binary memache messages into bytes.
@@ -38,7 +38,7 @@ public abstract class AbstractBinaryMemcacheEncoder<M extends BinaryMemcacheMess
 
         encodeHeader(buf, msg);
         encodeExtras(buf, msg.getExtras());
-        encodeKey(buf, msg.getKey());
+        encodeKey(buf, msg);
 
         return buf;
     }
@@ -60,15 +60,24 @@ public abstract class AbstractBinaryMemcacheEncoder<M extends BinaryMemcacheMess
     /**
      * Encode the key.
      *
+     * The pre-encoded key is used if set, otherwise the key is encoded straight into the buffer.
+     *
      * @param buf the {@link ByteBuf} to write into.
-     * @param key the key to encode.
+     * @param msg the message holding the key to encode.
      */
-    private static void encodeKey(ByteBuf buf, String key) {
+    private static void encodeKey(ByteBuf buf, BinaryMemcacheMessage msg) {
+        byte[] keyBytes = msg.getKeyBytes();
+        if (keyBytes != null) {
+            buf.writeBytes(keyBytes);
+            return;
+        }
+
+        String key = msg.getKey();
         if (key == null || key.isEmpty()) {
             return;
         }
 
-        buf.writeBytes(key.getBytes(CharsetUtil.UTF_8));
+        Utf8.write(buf, key);
     }
 
     /**
@@ -30,6 +30,11 @@ public abstract class AbstractBinaryMemcacheMessage
      */
     private String key;
 
+    /**
+     * Contains the optional pre-encoded key.
+     */
+    private byte[] keyBytes;
+
     /**
      * Contains the optional extras.
      */
@@ -71,6 +76,17 @@ public abstract class AbstractBinaryMemcacheMessage
         return this;
     }
 
+    @Override
+    public byte[] getKeyBytes() {
+        return keyBytes;
+    }
+
+    @Override
+    public BinaryMemcacheMessage setKeyBytes(byte[] keyBytes) {
+        this.keyBytes = keyBytes;
+        return this;
+    }
+
     @Override
     public BinaryMemcacheMessage setExtras(ByteBuf extras) {
         this.extras = extras;
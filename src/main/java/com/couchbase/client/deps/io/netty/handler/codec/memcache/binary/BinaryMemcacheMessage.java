@@ -169,6 +169,20 @@ public interface BinaryMemcacheMessage extends MemcacheMessage {
      */
     BinaryMemcacheMessage setKey(String key);
 
+    /**
+     * Returns the pre-encoded key of the message, if set.
+     *
+     * @return the encoded key, or null.
+     */
+    byte[] getKeyBytes();
+
+    /**
+     * Sets the pre-encoded key of the message, which takes precedence over the String key during encoding.
+     *
+     * @param keyBytes the encoded key.
+     */
+    BinaryMemcacheMessage setKeyBytes(byte[] keyBytes);
+
     /**
      * Returns a {@link ByteBuf} representation of the optional extras.
      *
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.cluster.DisconnectRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketRequest;
+import com.couchbase.client.core.message.cluster.SeedNodesRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.mock.MockCluster;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies the request dispatching of the {@link CouchbaseCore} against a {@link MockCluster}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class CouchbaseCoreTest {
+
+    private static MockCluster mock;
+    private static CoreEnvironment env;
+    private static ClusterFacade core;
+
+    @BeforeClass
+    public static void connect() throws Exception {
+        mock = MockCluster.builder().nodes(2).partitions(64).build().start();
+        env = mock.environmentBuilder().requestShards(4).kvEndpoints(2).build();
+        core = new CouchbaseCore(env);
+        core.send(new SeedNodesRequest(mock.seedNode())).toBlocking().single();
+        core.send(new OpenBucketRequest(mock.bucket().name(), "")).toBlocking().single();
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        core.send(new DisconnectRequest()).toBlocking().single();
+        env.shutdown().toBlocking().single();
+        mock.stop();
+    }
+
+    @Test
+    public void shouldPreserveOrderPerKeyWhenSharded() {
+        String bucket = mock.bucket().name();
+        for (int k = 0; k < 8; k++) {
+            String key = "sharded-" + k;
+            // make sure the target endpoint is connected, otherwise retries could legitimately reorder
+            core.<UpsertResponse>send(new UpsertRequest(key, Unpooled.copiedBuffer("-", CharsetUtil.UTF_8), bucket))
+                .toBlocking().single().content().release();
+
+            List<Observable<UpsertResponse>> responses = new ArrayList<Observable<UpsertResponse>>();
+            for (int i = 0; i < 100; i++) {
+                responses.add(core.<UpsertResponse>send(
+                    new UpsertRequest(key, Unpooled.copiedBuffer(Integer.toString(i), CharsetUtil.UTF_8), bucket)));
+            }
+            for (UpsertResponse response : Observable.merge(responses).toList().toBlocking().single()) {
+                assertEquals(ResponseStatus.SUCCESS, response.status());
+                response.content().release();
+            }
+
+            GetResponse get = core.<GetResponse>send(new GetRequest(key, bucket)).toBlocking().single();
+            assertEquals("99", get.content().toString(CharsetUtil.UTF_8));
+            get.content().release();
+        }
+    }
+}
@@ -29,19 +29,29 @@ import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
+import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.BulkGetRequest;
 import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.UpsertRequest;
 import com.couchbase.client.core.message.query.QueryRequest;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.node.locate.Locator;
 import com.couchbase.client.core.retry.FailFastRetryStrategy;
 import com.couchbase.client.core.service.ServiceType;
 import com.couchbase.client.core.state.LifecycleState;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
 import org.junit.Test;
 import rx.Observable;
+import org.mockito.ArgumentCaptor;
 import rx.subjects.AsyncSubject;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -158,6 +168,46 @@ public class RequestHandlerTest {
         verify(mockEvent).setRequest(null);
     }
 
+    @Test
+    public void shouldDispatchShardOverNodesOfManagerPinnedToItsEndpoint() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        BucketConfig mockBucketConfig = mock(BucketConfig.class);
+        when(mockBucketConfig.serviceEnabled(ServiceType.BINARY)).thenReturn(true);
+        when(mockClusterConfig.bucketConfig("bucket")).thenReturn(mockBucketConfig);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+
+        CoreEnvironment shardedEnvironment = DefaultCoreEnvironment.builder().requestShards(2).build();
+        try {
+            RequestHandler manager = new RequestHandler(shardedEnvironment, mockConfigObservable, null);
+            RequestHandler shard = new RequestHandler(manager, 1, mockConfigObservable) {
+                @Override
+                protected Locator locator(CouchbaseRequest request) {
+                    return new Locator() {
+                        @Override
+                        public Node[] locate(CouchbaseRequest request, Set<Node> nodes, ClusterConfig config) {
+                            return nodes.toArray(new Node[nodes.size()]);
+                        }
+                    };
+                }
+            };
+            Node mockNode = mock(Node.class);
+            when(mockNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+            manager.addNode(mockNode).toBlocking().single();
+
+            GetRequest request = new GetRequest("key", "bucket");
+            RequestEvent event = new RequestEvent();
+            event.setRequest(request);
+            shard.onEvent(event, 0, true);
+
+            verify(mockNode).send(request);
+            verify(mockNode).send(SignalFlush.INSTANCE);
+            assertEquals(2, request.endpointAffinity());
+        } finally {
+            shardedEnvironment.shutdown().toBlocking().single();
+        }
+    }
+
     private void assertFeatureForRequest(RequestHandler handler, CouchbaseRequest request, boolean expectedOk) {
         BucketConfig mockConfig = mock(BucketConfig.class);
         when(mockConfig.serviceEnabled(ServiceType.BINARY)).thenReturn(true);
@@ -249,6 +299,193 @@ public class RequestHandlerTest {
         assertFeatureForRequest(handler, mockKeyValueRequest, true);
     }
 
+    @Test
+    public void shouldOnlyFlushWrittenNodes() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+
+        RequestHandler handler = new DummyLocatorClusterNodeHandler(environment, mockConfigObservable);
+        Node writtenNode = mock(Node.class);
+        when(writtenNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(writtenNode.state()).thenReturn(LifecycleState.CONNECTED);
+        Node idleNode = mock(Node.class);
+        when(idleNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(idleNode.state()).thenReturn(LifecycleState.CONNECTING);
+        handler.addNode(writtenNode).toBlocking().single();
+        handler.addNode(idleNode).toBlocking().single();
+
+        RequestEvent mockEvent = mock(RequestEvent.class);
+        when(mockEvent.getRequest()).thenReturn(mock(CouchbaseRequest.class));
+        handler.onEvent(mockEvent, 0, false);
+        handler.onEvent(mockEvent, 1, true);
+
+        verify(writtenNode, times(1)).send(SignalFlush.INSTANCE);
+        verify(idleNode, never()).send(SignalFlush.INSTANCE);
+    }
+
+    @Test
+    public void shouldFlushWhenMaxBatchSizeReached() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+        CoreEnvironment env = DefaultCoreEnvironment.builder().maxRequestBatchSize(2).build();
+
+        RequestHandler handler = new DummyLocatorClusterNodeHandler(env, mockConfigObservable);
+        Node mockNode = mock(Node.class);
+        when(mockNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(mockNode.state()).thenReturn(LifecycleState.CONNECTED);
+        handler.addNode(mockNode).toBlocking().single();
+
+        RequestEvent mockEvent = mock(RequestEvent.class);
+        when(mockEvent.getRequest()).thenReturn(mock(CouchbaseRequest.class));
+        handler.onEvent(mockEvent, 0, false);
+        verify(mockNode, never()).send(SignalFlush.INSTANCE);
+        handler.onEvent(mockEvent, 1, false);
+        verify(mockNode, times(1)).send(SignalFlush.INSTANCE);
+        handler.onEvent(mockEvent, 2, false);
+        verify(mockNode, times(1)).send(SignalFlush.INSTANCE);
+
+        env.shutdown().toBlocking().single();
+    }
+
+    @Test
+    public void shouldFailExpiredRequestOnDispatch() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+
+        RequestHandler handler = new DummyLocatorClusterNodeHandler(environment, mockConfigObservable);
+        Node mockNode = mock(Node.class);
+        when(mockNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(mockNode.state()).thenReturn(LifecycleState.CONNECTED);
+        handler.addNode(mockNode).toBlocking().single();
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        UpsertRequest request = new UpsertRequest("key", content, "bucket");
+        request.timeout(1, TimeUnit.NANOSECONDS);
+        RequestEvent event = new RequestEvent();
+        event.setRequest(request);
+        handler.onEvent(event, 0, true);
+
+        verify(mockNode, never()).send(request);
+        assertEquals(0, content.refCnt());
+        try {
+            request.observable().toBlocking().single();
+            fail();
+        } catch (RequestTimeoutException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldApplyDefaultRequestTimeout() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        BucketConfig mockBucketConfig = mock(BucketConfig.class);
+        when(mockBucketConfig.serviceEnabled(ServiceType.BINARY)).thenReturn(true);
+        when(mockClusterConfig.bucketConfig("bucket")).thenReturn(mockBucketConfig);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+        CoreEnvironment env = DefaultCoreEnvironment.builder().requestTimeout(2500).build();
+
+        RequestHandler handler = new DummyLocatorClusterNodeHandler(env, mockConfigObservable);
+        Node mockNode = mock(Node.class);
+        when(mockNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(mockNode.state()).thenReturn(LifecycleState.CONNECTED);
+        handler.addNode(mockNode).toBlocking().single();
+
+        GetRequest request = new GetRequest("key", "bucket");
+        RequestEvent event = new RequestEvent();
+        event.setRequest(request);
+        handler.onEvent(event, 0, true);
+
+        verify(mockNode).send(request);
+        assertEquals(request.creationTime() + TimeUnit.MILLISECONDS.toNanos(2500), request.deadline());
+
+        env.shutdown().toBlocking().single();
+    }
+
+    @Test
+    public void shouldSplitBulkRequestPerNode() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        BucketConfig mockBucketConfig = mock(BucketConfig.class);
+        when(mockBucketConfig.serviceEnabled(ServiceType.BINARY)).thenReturn(true);
+        when(mockClusterConfig.bucketConfig("bucket")).thenReturn(mockBucketConfig);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+
+        final Node first = mock(Node.class);
+        when(first.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(first.state()).thenReturn(LifecycleState.CONNECTED);
+        final Node second = mock(Node.class);
+        when(second.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(second.state()).thenReturn(LifecycleState.CONNECTED);
+
+        RequestHandler handler = new RequestHandler(environment, mockConfigObservable, null) {
+            @Override
+            protected Locator locator(CouchbaseRequest request) {
+                return new Locator() {
+                    @Override
+                    public Node[] locate(CouchbaseRequest request, Set<Node> nodes, ClusterConfig config) {
+                        BinaryRequest binaryRequest = (BinaryRequest) request;
+                        binaryRequest.partition((short) 1);
+                        return new Node[] { binaryRequest.key().startsWith("a") ? first : second };
+                    }
+                };
+            }
+        };
+        handler.addNode(first).toBlocking().single();
+        handler.addNode(second).toBlocking().single();
+
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("a1", "b1", "a2"), "bucket");
+        RequestEvent event = new RequestEvent();
+        event.setRequest(bulk);
+        handler.onEvent(event, 0, true);
+
+        ArgumentCaptor<BinaryBatchRequest> firstBatch = ArgumentCaptor.forClass(BinaryBatchRequest.class);
+        verify(first, times(2)).send(firstBatch.capture());
+        assertEquals(Arrays.asList(bulk.requests().get(0), bulk.requests().get(2)),
+            firstBatch.getAllValues().get(0).requests());
+        ArgumentCaptor<BinaryBatchRequest> secondBatch = ArgumentCaptor.forClass(BinaryBatchRequest.class);
+        verify(second, times(2)).send(secondBatch.capture());
+        assertEquals(Arrays.asList(bulk.requests().get(1)), secondBatch.getAllValues().get(0).requests());
+        verify(first).send(SignalFlush.INSTANCE);
+        verify(second).send(SignalFlush.INSTANCE);
+    }
+
+    @Test
+    public void shouldCapBulkBatchesAtMaxBatchSize() throws Exception {
+        ClusterConfig mockClusterConfig = mock(ClusterConfig.class);
+        when(mockClusterConfig.hasBucket(anyString())).thenReturn(Boolean.TRUE);
+        BucketConfig mockBucketConfig = mock(BucketConfig.class);
+        when(mockBucketConfig.serviceEnabled(ServiceType.BINARY)).thenReturn(true);
+        when(mockClusterConfig.bucketConfig("bucket")).thenReturn(mockBucketConfig);
+        Observable<ClusterConfig> mockConfigObservable = Observable.just(mockClusterConfig);
+        CoreEnvironment env = DefaultCoreEnvironment.builder().maxRequestBatchSize(2).build();
+
+        RequestHandler handler = new DummyLocatorClusterNodeHandler(env, mockConfigObservable);
+        Node mockNode = mock(Node.class);
+        when(mockNode.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(mockNode.state()).thenReturn(LifecycleState.CONNECTED);
+        handler.addNode(mockNode).toBlocking().single();
+
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("a", "b", "c"), "bucket", true);
+        for (BinaryRequest request : bulk.requests()) {
+            request.partition((short) 1);
+        }
+        RequestEvent event = new RequestEvent();
+        event.setRequest(bulk);
+        handler.onEvent(event, 0, true);
+
+        ArgumentCaptor<CouchbaseRequest> sent = ArgumentCaptor.forClass(CouchbaseRequest.class);
+        verify(mockNode, times(3)).send(sent.capture());
+        assertEquals(bulk.requests().subList(0, 2), ((BinaryBatchRequest) sent.getAllValues().get(0)).requests());
+        assertEquals(bulk.requests().subList(2, 3), ((BinaryBatchRequest) sent.getAllValues().get(1)).requests());
+        assertEquals(SignalFlush.INSTANCE, sent.getAllValues().get(2));
+
+        env.shutdown().toBlocking().single();
+    }
+
     @Test(expected = RequestCancelledException.class)
     public void shouldCancelOnRetryPolicyFailFast() throws Exception {
         CoreEnvironment env = mock(CoreEnvironment.class);
@@ -270,7 +507,7 @@ public class RequestHandlerTest {
         when(mockRequest.observable()).thenReturn(response);
         handler.onEvent(mockEvent, 0, true);
 
-        verify(mockNode, times(1)).send(SignalFlush.INSTANCE);
+        verify(mockNode, never()).send(SignalFlush.INSTANCE);
         verify(mockNode, never()).send(mockRequest);
         verify(mockEvent).setRequest(null);
 
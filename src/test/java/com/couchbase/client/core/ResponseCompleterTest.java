@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.CompletionMode;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.RemoveResponse;
+import org.junit.Test;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+import rx.subjects.AsyncSubject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verifies the functionality of the {@link ResponseCompleter} in all {@link CompletionMode}s.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class ResponseCompleterTest {
+
+    @Test
+    public void shouldCompleteOnScheduler() throws Exception {
+        assertNotSame(Thread.currentThread(), completeAll(CompletionMode.SCHEDULED, 1).get(0));
+    }
+
+    @Test
+    public void shouldCompleteDirectly() throws Exception {
+        List<Thread> threads = completeAll(CompletionMode.DIRECT, 10);
+        for (Thread thread : threads) {
+            assertSame(Thread.currentThread(), thread);
+        }
+    }
+
+    @Test
+    public void shouldCompleteBatchedInOrder() throws Exception {
+        List<Thread> threads = completeAll(CompletionMode.BATCHED, 10000);
+        for (Thread thread : threads) {
+            assertNotSame(Thread.currentThread(), thread);
+        }
+    }
+
+    @Test
+    public void shouldCompletePendingBeforeShutdown() throws Exception {
+        CoreEnvironment env = DefaultCoreEnvironment.builder().completionMode(CompletionMode.BATCHED).build();
+        try {
+            ResponseCompleter completer = new ResponseCompleter(env);
+            List<AsyncSubject<CouchbaseResponse>> observables = new ArrayList<AsyncSubject<CouchbaseResponse>>();
+            for (int i = 0; i < 100; i++) {
+                AsyncSubject<CouchbaseResponse> observable = AsyncSubject.create();
+                observables.add(observable);
+                completer.complete(new RemoveResponse(ResponseStatus.SUCCESS, i, "bucket", null, null), observable);
+            }
+            completer.shutdown();
+
+            for (int i = 0; i < 100; i++) {
+                CouchbaseResponse response = observables.get(i).timeout(10, TimeUnit.SECONDS).toBlocking().single();
+                assertEquals(i, ((RemoveResponse) response).cas());
+            }
+        } finally {
+            env.shutdown().toBlocking().single();
+        }
+    }
+
+    @Test
+    public void shouldCompleteBatchedOnlyOnceFlushed() throws Exception {
+        CoreEnvironment env = DefaultCoreEnvironment.builder().completionMode(CompletionMode.BATCHED).build();
+        try {
+            ResponseCompleter completer = new ResponseCompleter(env);
+            AsyncSubject<CouchbaseResponse> observable = AsyncSubject.create();
+            TestSubscriber<CouchbaseResponse> subscriber = new TestSubscriber<CouchbaseResponse>();
+            observable.subscribe(subscriber);
+            completer.complete(new RemoveResponse(ResponseStatus.SUCCESS, 1, "bucket", null, null), observable);
+            AsyncSubject<CouchbaseResponse> failed = AsyncSubject.create();
+            completer.fail(new CouchbaseException("failed"), failed);
+
+            Thread.sleep(100);
+            assertTrue(subscriber.getOnNextEvents().isEmpty());
+            assertTrue(subscriber.getOnCompletedEvents().isEmpty());
+
+            completer.flush();
+            assertEquals(1, ((RemoveResponse) observable.timeout(10, TimeUnit.SECONDS).toBlocking().single()).cas());
+            try {
+                failed.timeout(10, TimeUnit.SECONDS).toBlocking().single();
+                fail("Expected CouchbaseException");
+            } catch (CouchbaseException ex) {
+                assertEquals("failed", ex.getMessage());
+            }
+            completer.shutdown();
+        } finally {
+            env.shutdown().toBlocking().single();
+        }
+    }
+
+    /**
+     * Completes the given number of responses and returns the threads they have been completed on.
+     *
+     * Also verifies that responses are completed in the order they have been passed in.
+     */
+    private static List<Thread> completeAll(final CompletionMode mode, final int num) throws Exception {
+        CoreEnvironment env = DefaultCoreEnvironment.builder().completionMode(mode).build();
+        try {
+            ResponseCompleter completer = new ResponseCompleter(env);
+            final List<Thread> threads = new ArrayList<Thread>(num);
+            final List<Long> completed = new ArrayList<Long>(num);
+            final CountDownLatch latch = new CountDownLatch(num);
+            for (int i = 0; i < num; i++) {
+                AsyncSubject<CouchbaseResponse> observable = AsyncSubject.create();
+                observable.subscribe(new Action1<CouchbaseResponse>() {
+                    @Override
+                    public void call(CouchbaseResponse response) {
+                        synchronized (threads) {
+                            threads.add(Thread.currentThread());
+                            completed.add(((RemoveResponse) response).cas());
+                        }
+                        latch.countDown();
+                    }
+                });
+                completer.complete(new RemoveResponse(ResponseStatus.SUCCESS, i, "bucket", null, null), observable);
+                if (i % 100 == 99) {
+                    completer.flush();
+                }
+            }
+            completer.flush();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            if (mode != CompletionMode.SCHEDULED) {
+                for (int i = 0; i < num; i++) {
+                    assertEquals(i, (long) completed.get(i));
+                }
+            }
+            return threads;
+        } finally {
+            env.shutdown().toBlocking().single();
+        }
+    }
+}
@@ -25,6 +25,8 @@ import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.env.DefaultCoreEnvironment;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
 import com.couchbase.client.core.state.LifecycleState;
 import com.couchbase.client.core.state.NotConnectedException;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -38,6 +40,7 @@ import rx.subjects.AsyncSubject;
 import rx.subjects.Subject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -173,6 +176,48 @@ public class AbstractEndpointTest {
         assertTrue(channel.readOutbound() instanceof CouchbaseRequest);
     }
 
+    @Test
+    public void shouldTrackOutstandingRequests() {
+        BootstrapAdapter bootstrap = mock(BootstrapAdapter.class);
+        when(bootstrap.connect()).thenReturn(channel.newSucceededFuture());
+        DummyEndpoint endpoint = new DummyEndpoint(bootstrap);
+        assertEquals(LifecycleState.CONNECTED, endpoint.connect().toBlocking().single());
+        assertEquals(0, endpoint.outstandingRequests());
+
+        long before = endpoint.lastActivity();
+        endpoint.send(mock(CouchbaseRequest.class));
+        endpoint.send(mock(CouchbaseRequest.class));
+        assertEquals(2, endpoint.outstandingRequests());
+        assertTrue(endpoint.lastActivity() >= before);
+
+        endpoint.requestCompleted();
+        assertEquals(1, endpoint.outstandingRequests());
+    }
+
+    @Test
+    public void shouldTrackEveryRequestOfBatchAsOutstanding() {
+        BootstrapAdapter bootstrap = mock(BootstrapAdapter.class);
+        when(bootstrap.connect()).thenReturn(channel.newSucceededFuture());
+        DummyEndpoint endpoint = new DummyEndpoint(bootstrap);
+        assertEquals(LifecycleState.CONNECTED, endpoint.connect().toBlocking().single());
+
+        BinaryBatchRequest batch = new BinaryBatchRequest("bucket", false);
+        for (String key : Arrays.asList("key1", "key2")) {
+            GetRequest request = new GetRequest(key, "bucket");
+            request.partition((short) 1);
+            batch.add(request);
+        }
+        endpoint.send(batch);
+        assertEquals(2, endpoint.outstandingRequests());
+
+        BinaryBatchRequest quiet = new BinaryBatchRequest("bucket", true);
+        GetRequest request = new GetRequest("key3", "bucket");
+        request.partition((short) 1);
+        quiet.add(request);
+        endpoint.send(quiet);
+        assertEquals(4, endpoint.outstandingRequests());
+    }
+
     @Test(expected = NotConnectedException.class)
     public void shouldRejectMessageIfNotConnected() {
         BootstrapAdapter bootstrap = mock(BootstrapAdapter.class);
@@ -23,21 +23,48 @@
 package com.couchbase.client.core.endpoint.dcp;
 
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
+import com.couchbase.client.core.env.CompletionMode;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.ResponseStatus;
 import com.couchbase.client.core.message.dcp.ConnectionType;
 import com.couchbase.client.core.message.dcp.DCPRequest;
+import com.couchbase.client.core.message.dcp.MutationMessage;
 import com.couchbase.client.core.message.dcp.OpenConnectionRequest;
+import com.couchbase.client.core.message.dcp.SnapshotMarkerMessage;
+import com.couchbase.client.core.message.dcp.StreamEndMessage;
+import com.couchbase.client.core.message.dcp.StreamRequestRequest;
+import com.couchbase.client.core.message.dcp.StreamRequestResponse;
 import com.couchbase.client.core.util.CollectingResponseEventSink;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import org.junit.Before;
 import org.junit.Test;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 /**
@@ -94,4 +121,354 @@ public class DCPHandlerTest {
         assertEquals(1, outbound.getExtras().readInt());
     }
 
+    @Test
+    public void shouldNegotiateFlowControlOnOpenConnection() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(1000, 50));
+        OpenConnectionRequest request = new OpenConnectionRequest("foobar", BUCKET);
+        channel.writeOutbound(request);
+        ReferenceCountUtil.release(channel.readOutbound());
+
+        channel.writeInbound(response(DCPHandler.OP_OPEN_CONNECTION, 0, 0));
+        assertEquals(ResponseStatus.SUCCESS, request.observable().toBlocking().single().status());
+
+        FullBinaryMemcacheRequest control = (FullBinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(DCPHandler.OP_CONTROL, control.getOpcode());
+        assertEquals("connection_buffer_size", control.getKey());
+        assertEquals("1000", control.content().toString(CharsetUtil.UTF_8));
+        assertEquals(control.getKeyLength() + 4, control.getTotalBodyLength());
+        ReferenceCountUtil.release(control);
+    }
+
+    @Test
+    public void shouldAcknowledgeConsumedBytes() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(1000, 50));
+        Observable<DCPRequest> stream = openStream();
+
+        final List<DCPRequest> consumed = new ArrayList<DCPRequest>();
+        stream.subscribe(new Action1<DCPRequest>() {
+            @Override
+            public void call(DCPRequest message) {
+                consumed.add(message);
+            }
+        });
+
+        channel.writeInbound(mutation(0, 200));
+        assertEquals(1, consumed.size());
+        assertNull(channel.readOutbound());
+
+        channel.writeInbound(mutation(0, 300));
+        assertEquals(2, consumed.size());
+        BinaryMemcacheRequest ack = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(DCPHandler.OP_BUFFER_ACKNOWLEDGEMENT, ack.getOpcode());
+        assertEquals(4, ack.getExtrasLength());
+        int expected = ((MutationMessage) consumed.get(0)).messageLength()
+            + ((MutationMessage) consumed.get(1)).messageLength();
+        assertEquals(expected, ack.getExtras().readInt());
+        ReferenceCountUtil.release(ack);
+
+        for (DCPRequest message : consumed) {
+            ReferenceCountUtil.release(((MutationMessage) message).content());
+        }
+    }
+
+    @Test
+    public void shouldReleaseAndAcknowledgeMessagesOfUnknownStreams() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(100, 10));
+        openStream();
+
+        FullBinaryMemcacheResponse mutation = mutation(5, 200);
+        ByteBuf content = mutation.content();
+        channel.writeInbound(mutation);
+
+        assertEquals(0, content.refCnt());
+        BinaryMemcacheRequest ack = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(DCPHandler.OP_BUFFER_ACKNOWLEDGEMENT, ack.getOpcode());
+        ReferenceCountUtil.release(ack);
+    }
+
+    @Test
+    public void shouldReleaseAndAcknowledgeMessagesOfClosedStreams() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(100, 10));
+        openStream().subscribe().unsubscribe();
+
+        for (int i = 0; i < 2; i++) {
+            FullBinaryMemcacheResponse mutation = mutation(0, 200);
+            ByteBuf content = mutation.content();
+            channel.writeInbound(mutation);
+
+            assertEquals(0, content.refCnt());
+            BinaryMemcacheRequest ack = (BinaryMemcacheRequest) channel.readOutbound();
+            assertEquals(DCPHandler.OP_BUFFER_ACKNOWLEDGEMENT, ack.getOpcode());
+            assertEquals(24 + 31 + 3 + 200, ack.getExtras().readInt());
+            ReferenceCountUtil.release(ack);
+        }
+    }
+
+    @Test
+    public void shouldBufferMessagesReadWithTheStreamResponseUntilSubscribed() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(1000, 50));
+        channel.writeOutbound(new OpenConnectionRequest("foobar", BUCKET));
+        channel.writeInbound(response(DCPHandler.OP_OPEN_CONNECTION, 0, 0));
+        StreamRequestRequest request = new StreamRequestRequest((short) 0, BUCKET);
+        channel.writeOutbound(request);
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(outbound);
+        }
+
+        FullBinaryMemcacheResponse mutation = mutation(0, 10, 2);
+        ByteBuf content = mutation.content();
+        channel.writeInbound(response(DCPHandler.OP_STREAM_REQUEST, 0, 0), snapshotMarker(0, 1, 3),
+            mutation(0, 10, 1), mutation);
+        assertEquals(1, content.refCnt());
+        assertNull(channel.readOutbound());
+
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        ((StreamRequestResponse) request.observable().toBlocking().single()).stream().subscribe(subscriber);
+
+        List<DCPRequest> messages = subscriber.getOnNextEvents();
+        assertEquals(3, messages.size());
+        assertTrue(messages.get(0) instanceof SnapshotMarkerMessage);
+        assertEquals(1, ((MutationMessage) messages.get(1)).bySequenceNumber());
+        assertEquals(2, ((MutationMessage) messages.get(2)).bySequenceNumber());
+        for (DCPRequest message : messages) {
+            if (message instanceof MutationMessage) {
+                ReferenceCountUtil.release(((MutationMessage) message).content());
+            }
+        }
+    }
+
+    @Test
+    public void shouldCompleteStreamOnStreamEnd() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(0, 0));
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        openStream().subscribe(subscriber);
+
+        channel.writeInbound(mutation(0, 10, 42));
+        FullBinaryMemcacheResponse streamEnd = new DefaultFullBinaryMemcacheResponse("",
+            Unpooled.buffer(4).writeInt(StreamEndMessage.STATE_CHANGED), Unpooled.EMPTY_BUFFER);
+        streamEnd.setOpcode(DCPHandler.OP_STREAM_END);
+        streamEnd.setExtrasLength((byte) 4);
+        streamEnd.setTotalBodyLength(4);
+        channel.writeInbound(streamEnd);
+
+        subscriber.assertTerminalEvent();
+        assertEquals(0, subscriber.getOnErrorEvents().size());
+        List<DCPRequest> messages = subscriber.getOnNextEvents();
+        assertEquals(2, messages.size());
+        MutationMessage mutation = (MutationMessage) messages.get(0);
+        assertEquals(42, mutation.bySequenceNumber());
+        ReferenceCountUtil.release(mutation.content());
+        StreamEndMessage end = (StreamEndMessage) messages.get(1);
+        assertEquals(StreamEndMessage.STATE_CHANGED, end.reason());
+        assertFalse(end.completed());
+    }
+
+    @Test
+    public void shouldReturnRollbackSequenceNumber() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(0, 0));
+        StreamRequestRequest request = new StreamRequestRequest((short) 0, BUCKET);
+        channel.writeOutbound(request);
+        ReferenceCountUtil.release(channel.readOutbound());
+
+        FullBinaryMemcacheResponse rollback = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.buffer(8).writeLong(1234));
+        rollback.setOpcode(DCPHandler.OP_STREAM_REQUEST);
+        rollback.setStatus((short) 0x23);
+        rollback.setTotalBodyLength(8);
+        channel.writeInbound(rollback);
+
+        StreamRequestResponse response = (StreamRequestResponse) request.observable().toBlocking().single();
+        assertEquals(ResponseStatus.ROLLBACK, response.status());
+        assertEquals(1234, response.rollbackSequenceNumber());
+        assertNull(response.stream());
+    }
+
+    @Test
+    public void shouldFailOpenStreamsWhenChannelCloses() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(0, 0));
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        openStream().subscribe(subscriber);
+
+        channel.close();
+        channel.runPendingTasks();
+
+        subscriber.assertTerminalEvent();
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+    }
+
+    @Test
+    public void shouldDeliverMessagesOfOneReadInBatches() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(0, 0, 2));
+        TestSubscriber<List<DCPRequest>> subscriber = new TestSubscriber<List<DCPRequest>>();
+        openStreamResponse().batches().subscribe(subscriber);
+
+        channel.writeInbound(mutation(0, 10, 1), mutation(0, 10, 2), mutation(0, 10, 3), snapshotMarker(0, 4, 5),
+            mutation(0, 10, 4));
+        channel.writeInbound(mutation(0, 10, 5));
+
+        List<List<DCPRequest>> batches = subscriber.getOnNextEvents();
+        assertEquals(4, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
+        assertEquals(2, batches.get(2).size());
+        assertTrue(batches.get(2).get(0) instanceof SnapshotMarkerMessage);
+        assertEquals(1, batches.get(3).size());
+        for (List<DCPRequest> batch : batches) {
+            for (DCPRequest message : batch) {
+                if (message instanceof MutationMessage) {
+                    ReferenceCountUtil.release(((MutationMessage) message).content());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldNegotiateNoopOnOpenConnection() {
+        channel = new EmbeddedChannel(handler(0, 0, DefaultCoreEnvironment.DCP_BATCH_SIZE, 20000));
+        OpenConnectionRequest request = new OpenConnectionRequest("foobar", BUCKET);
+        channel.writeOutbound(request);
+        ReferenceCountUtil.release(channel.readOutbound());
+        channel.writeInbound(response(DCPHandler.OP_OPEN_CONNECTION, 0, 0));
+
+        FullBinaryMemcacheRequest enable = (FullBinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(DCPHandler.OP_CONTROL, enable.getOpcode());
+        assertEquals("enable_noop", enable.getKey());
+        assertEquals("true", enable.content().toString(CharsetUtil.UTF_8));
+        ReferenceCountUtil.release(enable);
+        FullBinaryMemcacheRequest interval = (FullBinaryMemcacheRequest) channel.readOutbound();
+        assertEquals("set_noop_interval", interval.getKey());
+        assertEquals("20", interval.content().toString(CharsetUtil.UTF_8));
+        ReferenceCountUtil.release(interval);
+    }
+
+    @Test
+    public void shouldAnswerNoop() {
+        channel = new EmbeddedChannel(handler(0, 0, DefaultCoreEnvironment.DCP_BATCH_SIZE, 20000));
+        openStream();
+
+        channel.writeInbound(response(DCPHandler.OP_NOOP, 42, 0));
+
+        BinaryMemcacheRequest answer = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals((byte) 0x81, answer.getMagic());
+        assertEquals(DCPHandler.OP_NOOP, answer.getOpcode());
+        assertEquals(42, answer.getOpaque());
+        ReferenceCountUtil.release(answer);
+    }
+
+    @Test
+    public void shouldCloseSilentConnectionOnlyWithNoops() {
+        channel = new EmbeddedChannel(handlerWithBufferSize(0, 0));
+        openStream();
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+
+        channel = new EmbeddedChannel(handler(0, 0, DefaultCoreEnvironment.DCP_BATCH_SIZE, 20000));
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        openStream().subscribe(subscriber);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        channel.runPendingTasks();
+
+        assertFalse(channel.isOpen());
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertTrue(subscriber.getOnErrorEvents().get(0) instanceof DCPConnectionClosedException);
+    }
+
+    /**
+     * Creates a handler which sees the given flow control settings in its environment.
+     */
+    private DCPHandler handlerWithBufferSize(final int bufferSize, final int ackThreshold) {
+        return handlerWithBufferSize(bufferSize, ackThreshold, DefaultCoreEnvironment.DCP_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a handler which sees the given flow control and batch settings in its environment.
+     */
+    private DCPHandler handlerWithBufferSize(final int bufferSize, final int ackThreshold, final int batchSize) {
+        return handler(bufferSize, ackThreshold, batchSize, 0);
+    }
+
+    /**
+     * Creates a handler which sees the given DCP settings in its environment.
+     */
+    private DCPHandler handler(final int bufferSize, final int ackThreshold, final int batchSize,
+        final long noopInterval) {
+        final CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.dcpNoopInterval()).thenReturn(noopInterval);
+        when(environment.dcpConnectionBufferSize()).thenReturn(bufferSize);
+        when(environment.dcpConnectionBufferAckThreshold()).thenReturn(ackThreshold);
+        when(environment.dcpBatchSize()).thenReturn(batchSize);
+        when(environment.completionMode()).thenReturn(CompletionMode.DIRECT);
+        when(environment.scheduler()).thenReturn(Schedulers.immediate());
+        when(environment.autoreleaseAfter()).thenReturn(2000L);
+        return new DCPHandler(mock(AbstractEndpoint.class), eventSink, requestQueue, true) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        };
+    }
+
+    /**
+     * Opens the connection and the first stream on the channel and returns the messages of the stream.
+     */
+    private Observable<DCPRequest> openStream() {
+        return openStreamResponse().stream();
+    }
+
+    /**
+     * Opens the connection and the first stream on the channel and returns the response to the stream request.
+     */
+    private StreamRequestResponse openStreamResponse() {
+        channel.writeOutbound(new OpenConnectionRequest("foobar", BUCKET));
+        channel.writeInbound(response(DCPHandler.OP_OPEN_CONNECTION, 0, 0));
+
+        StreamRequestRequest request = new StreamRequestRequest((short) 0, BUCKET);
+        channel.writeOutbound(request);
+        channel.writeInbound(response(DCPHandler.OP_STREAM_REQUEST, 0, 0));
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(outbound);
+        }
+        return (StreamRequestResponse) request.observable().toBlocking().single();
+    }
+
+    private static FullBinaryMemcacheResponse response(final byte opcode, final int opaque, final int bodyLength) {
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.buffer(bodyLength).writeZero(bodyLength));
+        response.setOpcode(opcode);
+        response.setOpaque(opaque);
+        response.setTotalBodyLength(bodyLength);
+        return response;
+    }
+
+    private static FullBinaryMemcacheResponse snapshotMarker(final int opaque, final long start, final long end) {
+        ByteBuf extras = Unpooled.buffer(20).writeLong(start).writeLong(end).writeInt(SnapshotMarkerMessage.MEMORY);
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("", extras,
+            Unpooled.EMPTY_BUFFER);
+        response.setOpcode(DCPHandler.OP_SNAPSHOT_MARKER);
+        response.setOpaque(opaque);
+        response.setExtrasLength((byte) 20);
+        response.setTotalBodyLength(20);
+        return response;
+    }
+
+    private static FullBinaryMemcacheResponse mutation(final int opaque, final int valueLength) {
+        return mutation(opaque, valueLength, 0);
+    }
+
+    private static FullBinaryMemcacheResponse mutation(final int opaque, final int valueLength,
+        final long bySequenceNumber) {
+        String key = "key";
+        ByteBuf extras = Unpooled.buffer(31).writeLong(bySequenceNumber).writeZero(23);
+        ByteBuf content = Unpooled.buffer(valueLength).writeZero(valueLength);
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse(key, extras, content);
+        response.setOpcode(DCPHandler.OP_MUTATION);
+        response.setOpaque(opaque);
+        response.setKeyLength((short) key.length());
+        response.setExtrasLength((byte) 31);
+        response.setTotalBodyLength(31 + key.length() + valueLength);
+        return response;
+    }
+
 }
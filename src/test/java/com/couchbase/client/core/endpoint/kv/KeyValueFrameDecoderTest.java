@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.LastMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.MemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link KeyValueFrameDecoder}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class KeyValueFrameDecoderTest {
+
+    @Test
+    public void shouldDecodeFramesAcrossReads() {
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueFrameDecoder());
+
+        ByteBuf frames = Unpooled.buffer();
+        writeFrame(frames, 1, "key", 0x0000abcd, "value");
+        writeFrame(frames, 2, "", 0, "");
+
+        channel.writeInbound(frames.readSlice(30).retain());
+        assertNull(channel.readInbound());
+        channel.writeInbound(frames);
+
+        FullBinaryMemcacheResponse first = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals(1, first.getOpaque());
+        assertEquals((short) 7, first.getStatus());
+        assertEquals(42, first.getCAS());
+        assertEquals("key", first.getKey());
+        assertEquals(0xabcd, first.getExtras().getInt(first.getExtras().readerIndex()));
+        assertEquals("value", first.content().toString(CharsetUtil.UTF_8));
+        assertNotNull(first.content().unwrap());
+
+        FullBinaryMemcacheResponse second = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals(2, second.getOpaque());
+        assertEquals(0, second.content().readableBytes());
+        assertNull(channel.readInbound());
+
+        ByteBuf inbound = first.content().unwrap();
+        first.release();
+        second.release();
+        assertEquals(0, inbound.refCnt());
+    }
+
+    @Test
+    public void shouldStreamValuesAboveThresholdInChunks() {
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueFrameDecoder(8));
+
+        ByteBuf frames = Unpooled.buffer();
+        writeFrame(frames, 1, "key", 0x0000abcd, "content123");
+        writeFrame(frames, 2, "", 0, "small");
+
+        channel.writeInbound(frames.readSlice(36).retain());
+        BinaryMemcacheResponse head = (BinaryMemcacheResponse) channel.readInbound();
+        assertTrue(!(head instanceof FullBinaryMemcacheResponse));
+        assertEquals(1, head.getOpaque());
+        assertEquals("key", head.getKey());
+        assertEquals(17, head.getTotalBodyLength());
+        assertEquals(0xabcd, head.getExtras().getInt(head.getExtras().readerIndex()));
+        head.release();
+
+        MemcacheContent first = (MemcacheContent) channel.readInbound();
+        assertTrue(!(first instanceof LastMemcacheContent));
+        assertEquals("conte", first.content().toString(CharsetUtil.UTF_8));
+        first.release();
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(frames);
+        MemcacheContent last = (MemcacheContent) channel.readInbound();
+        assertTrue(last instanceof LastMemcacheContent);
+        assertEquals("nt123", last.content().toString(CharsetUtil.UTF_8));
+        last.release();
+
+        FullBinaryMemcacheResponse small = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals(2, small.getOpaque());
+        assertEquals("small", small.content().toString(CharsetUtil.UTF_8));
+        small.release();
+        assertNull(channel.readInbound());
+    }
+
+    private static void writeFrame(final ByteBuf buf, final int opaque, final String key, final int extras,
+        final String content) {
+        byte extrasLength = (byte) (extras != 0 ? 4 : 0);
+        buf.writeByte(0x81);
+        buf.writeByte(KeyValueHandler.OP_GET);
+        buf.writeShort(key.length());
+        buf.writeByte(extrasLength);
+        buf.writeByte(0);
+        buf.writeShort(7);
+        buf.writeInt(extrasLength + key.length() + content.length());
+        buf.writeInt(opaque);
+        buf.writeLong(42);
+        if (extras != 0) {
+            buf.writeInt(extras);
+        }
+        buf.writeBytes(key.getBytes(CharsetUtil.UTF_8));
+        buf.writeBytes(content.getBytes(CharsetUtil.UTF_8));
+    }
+}
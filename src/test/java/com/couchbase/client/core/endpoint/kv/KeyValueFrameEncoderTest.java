@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link KeyValueFrameEncoder}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class KeyValueFrameEncoderTest {
+
+    @Test
+    public void shouldCoalesceRequestsUntilFlush() {
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueFrameEncoder());
+
+        BinaryMemcacheRequest get = new DefaultBinaryMemcacheRequest("key");
+        get.setOpcode(KeyValueHandler.OP_GET).setKeyLength((short) 3).setTotalBodyLength(3).setOpaque(1);
+        ByteBuf extras = Unpooled.buffer().writeInt(0xdeadbeef);
+        ByteBuf content = Unpooled.copiedBuffer("value", CharsetUtil.UTF_8);
+        BinaryMemcacheRequest upsert = new DefaultFullBinaryMemcacheRequest("key", extras, content);
+        upsert.setOpcode(KeyValueHandler.OP_UPSERT).setKeyLength((short) 3).setExtrasLength((byte) 4)
+            .setTotalBodyLength(12).setOpaque(2).setCAS(3);
+
+        ChannelFuture first = channel.write(get);
+        ChannelFuture second = channel.write(upsert);
+        channel.flush();
+
+        ByteBuf written = (ByteBuf) channel.readOutbound();
+        assertNull(channel.readOutbound());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(0, content.refCnt());
+        assertEquals(0, extras.refCnt());
+
+        assertEquals(2 * KeyValueFrameEncoder.HEADER_SIZE + 15, written.readableBytes());
+        assertEquals((byte) 0x80, written.readByte());
+        assertEquals(KeyValueHandler.OP_GET, written.readByte());
+        assertEquals(3, written.readShort());
+        written.skipBytes(4);
+        assertEquals(3, written.readInt());
+        assertEquals(1, written.readInt());
+        assertEquals(0, written.readLong());
+        assertEquals("key", written.readBytes(3).toString(CharsetUtil.UTF_8));
+
+        assertEquals((byte) 0x80, written.readByte());
+        assertEquals(KeyValueHandler.OP_UPSERT, written.readByte());
+        assertEquals(3, written.readShort());
+        assertEquals(4, written.readByte());
+        written.skipBytes(3);
+        assertEquals(12, written.readInt());
+        assertEquals(2, written.readInt());
+        assertEquals(3, written.readLong());
+        assertEquals(0xdeadbeef, written.readInt());
+        assertEquals("keyvalue", written.readBytes(8).toString(CharsetUtil.UTF_8));
+        written.release();
+    }
+
+    @Test
+    public void shouldWriteLargeValuesWithoutCopy() {
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueFrameEncoder());
+
+        ByteBuf content = Unpooled.buffer().writeZero(KeyValueFrameEncoder.ZERO_COPY_THRESHOLD);
+        BinaryMemcacheRequest upsert = new DefaultFullBinaryMemcacheRequest("key", Unpooled.EMPTY_BUFFER, content);
+        upsert.setOpcode(KeyValueHandler.OP_UPSERT).setKeyLength((short) 3)
+            .setTotalBodyLength(3 + content.readableBytes());
+        content.retain();
+
+        channel.writeOutbound(upsert);
+
+        ByteBuf header = (ByteBuf) channel.readOutbound();
+        assertEquals(KeyValueFrameEncoder.HEADER_SIZE + 3, header.readableBytes());
+        header.release();
+        assertSame(content, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertEquals(2, content.refCnt());
+        content.release(2);
+    }
+}
@@ -22,15 +22,21 @@
 package com.couchbase.client.core.endpoint.kv;
 
 import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.core.RequestTimeoutException;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.ResponseStatusConverter;
+import com.couchbase.client.core.env.CompletionMode;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.env.DefaultCoreEnvironment;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
 import com.couchbase.client.core.message.kv.AppendRequest;
+import com.couchbase.client.core.message.kv.BinaryBatchRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.BulkGetRequest;
+import com.couchbase.client.core.message.kv.BulkRemoveRequest;
+import com.couchbase.client.core.message.kv.BulkUpsertRequest;
 import com.couchbase.client.core.message.kv.CounterRequest;
 import com.couchbase.client.core.message.kv.CounterResponse;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
@@ -44,12 +50,18 @@ import com.couchbase.client.core.message.kv.PrependRequest;
 import com.couchbase.client.core.message.kv.RemoveRequest;
 import com.couchbase.client.core.message.kv.ReplaceRequest;
 import com.couchbase.client.core.message.kv.ReplicaGetRequest;
+import com.couchbase.client.core.message.kv.StreamingGetRequest;
+import com.couchbase.client.core.message.kv.StreamingGetResponse;
 import com.couchbase.client.core.message.kv.TouchRequest;
 import com.couchbase.client.core.message.kv.UnlockRequest;
 import com.couchbase.client.core.message.kv.UpsertRequest;
 import com.couchbase.client.core.util.CollectingResponseEventSink;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.DefaultLastMemcacheContent;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.DefaultMemcacheContent;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseStatus;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultBinaryMemcacheResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
@@ -62,19 +74,32 @@ import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import org.junit.Before;
 import org.junit.Test;
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
 import rx.subjects.AsyncSubject;
 
 import java.net.InetAddress;
 import java.nio.charset.Charset;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -136,6 +161,31 @@ public class KeyValueHandlerTest {
         assertEquals(request.opaque(), outbound.getOpaque());
     }
 
+    @Test
+    public void shouldEncodeNonAsciiKeyLength() {
+        String id = "grüße";
+        GetRequest request = new GetRequest(id, BUCKET);
+        request.partition((short) 1);
+
+        channel.writeOutbound(request);
+        BinaryMemcacheRequest outbound = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(id.getBytes(CHARSET).length, outbound.getKeyLength());
+        assertEquals(id.getBytes(CHARSET).length, outbound.getTotalBodyLength());
+    }
+
+    @Test
+    public void shouldReusePreEncodedKey() {
+        byte[] keyBytes = "key".getBytes(CHARSET);
+        GetRequest request = new GetRequest("key", BUCKET);
+        request.keyBytes(keyBytes);
+        request.partition((short) 1);
+
+        channel.writeOutbound(request);
+        BinaryMemcacheRequest outbound = (BinaryMemcacheRequest) channel.readOutbound();
+        assertSame(keyBytes, outbound.getKeyBytes());
+        assertEquals(keyBytes.length, outbound.getKeyLength());
+    }
+
     @Test
     public void shouldDecodeSuccessfulGet() {
         ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
@@ -158,6 +208,475 @@ public class KeyValueHandlerTest {
         assertEquals(BUCKET, event.bucket());
     }
 
+    @Test
+    public void shouldStreamLargeGetInChunks() {
+        channel = new EmbeddedChannel(handlerWithMaxValueSize(1024));
+        StreamingGetRequest request = new StreamingGetRequest("key", BUCKET);
+        requestQueue.add(request);
+
+        channel.writeInbound(streamedHead(request, 10));
+        StreamingGetResponse response = (StreamingGetResponse) request.observable().toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertEquals(123, response.flags());
+
+        channel.writeInbound(new DefaultMemcacheContent(Unpooled.copiedBuffer("conte", CHARSET)));
+        channel.writeInbound(new DefaultLastMemcacheContent(Unpooled.copiedBuffer("nt123", CHARSET)));
+
+        List<ByteBuf> chunks = response.chunks().toList().toBlocking().single();
+        assertEquals(2, chunks.size());
+        assertEquals("conte", chunks.get(0).toString(CHARSET));
+        assertEquals("nt123", chunks.get(1).toString(CHARSET));
+    }
+
+    @Test
+    public void shouldPauseReadingWhileStreamedChunksAreNotRequested() throws Exception {
+        channel = new EmbeddedChannel(handlerWithMaxValueSize(0));
+        StreamingGetRequest request = new StreamingGetRequest("key", BUCKET);
+        requestQueue.add(request);
+
+        channel.writeInbound(streamedHead(request, 100000));
+        StreamingGetResponse response = (StreamingGetResponse) request.observable().toBlocking().single();
+        final BlockingQueue<ByteBuf> received = new LinkedBlockingQueue<ByteBuf>();
+        final AtomicReference<Subscriber<? super ByteBuf>> consumer = new AtomicReference<Subscriber<? super ByteBuf>>();
+        response.chunks().subscribe(new Subscriber<ByteBuf>() {
+            @Override
+            public void onStart() {
+                consumer.set(this);
+                request(1);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(ByteBuf chunk) {
+                received.add(chunk);
+            }
+        });
+
+        List<ByteBuf> written = new ArrayList<ByteBuf>();
+        while (channel.config().isAutoRead() && written.size() < 10000) {
+            ByteBuf chunk = Unpooled.copiedBuffer("c", CHARSET);
+            written.add(chunk);
+            channel.writeInbound(new DefaultMemcacheContent(chunk));
+        }
+        assertFalse(channel.config().isAutoRead());
+        assertTrue(written.size() < 10000);
+
+        ByteBuf first = received.poll(1, TimeUnit.SECONDS);
+        assertSame(written.get(0), first);
+        first.release();
+
+        consumer.get().unsubscribe();
+        assertTrue(channel.config().isAutoRead());
+        ByteBuf last = Unpooled.copiedBuffer("c", CHARSET);
+        written.add(last);
+        channel.writeInbound(new DefaultLastMemcacheContent(last));
+
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5) && !allReleased(written)) {
+            Thread.sleep(10);
+        }
+        assertTrue(allReleased(written));
+        assertTrue(received.isEmpty());
+    }
+
+    private static boolean allReleased(final List<ByteBuf> buffers) {
+        for (ByteBuf buffer : buffers) {
+            if (buffer.refCnt() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void shouldAggregateLargeGetChunks() {
+        channel = new EmbeddedChannel(handlerWithMaxValueSize(1024));
+        GetRequest request = new GetRequest("key", BUCKET);
+        requestQueue.add(request);
+
+        channel.writeInbound(streamedHead(request, 10));
+        channel.writeInbound(new DefaultMemcacheContent(Unpooled.copiedBuffer("conte", CHARSET)));
+        channel.writeInbound(new DefaultLastMemcacheContent(Unpooled.copiedBuffer("nt123", CHARSET)));
+
+        GetResponse response = (GetResponse) request.observable().toBlocking().single();
+        assertEquals(123, response.flags());
+        assertEquals(987654321L, response.cas());
+        assertEquals("content123", response.content().toString(CHARSET));
+    }
+
+    @Test
+    public void shouldFailGetExceedingMaxValueSize() {
+        channel = new EmbeddedChannel(handlerWithMaxValueSize(8));
+        GetRequest request = new GetRequest("key", BUCKET);
+        requestQueue.add(request);
+        GetRequest next = mock(GetRequest.class);
+        when(next.bucket()).thenReturn(BUCKET);
+        requestQueue.add(next);
+
+        TestSubscriber<CouchbaseResponse> subscriber = new TestSubscriber<CouchbaseResponse>();
+        request.observable().subscribe(subscriber);
+
+        channel.writeInbound(streamedHead(request, 10));
+        ByteBuf first = Unpooled.copiedBuffer("conte", CHARSET);
+        channel.writeInbound(new DefaultMemcacheContent(first));
+        assertEquals(0, first.refCnt());
+        assertTrue(subscriber.getOnErrorEvents().isEmpty());
+
+        ByteBuf chunk = Unpooled.copiedBuffer("nt123", CHARSET);
+        channel.writeInbound(new DefaultLastMemcacheContent(chunk));
+        assertEquals(0, chunk.refCnt());
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertEquals(0, eventSink.responseEvents().size());
+
+        try {
+            request.observable().toBlocking().single();
+            fail("Expected ValueTooLargeException");
+        } catch (ValueTooLargeException ex) {
+            assertTrue(ex.getMessage().contains("10 bytes"));
+        }
+
+        channel.writeInbound(new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER));
+        assertEquals(1, eventSink.responseEvents().size());
+        assertSame(next, ((CouchbaseResponse) eventSink.responseEvents().get(0).getMessage()).request());
+    }
+
+    /**
+     * Creates a handler which sees the given maximum value size in its environment.
+     */
+    private KeyValueHandler handlerWithMaxValueSize(final int maxValueSize) {
+        final CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.maxValueSize()).thenReturn(maxValueSize);
+        when(environment.completionMode()).thenReturn(CompletionMode.DIRECT);
+        when(environment.scheduler()).thenReturn(Schedulers.computation());
+        when(environment.autoreleaseAfter()).thenReturn(2000L);
+        return new KeyValueHandler(mock(AbstractEndpoint.class), eventSink, requestQueue, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        };
+    }
+
+    /**
+     * Creates the head of a get response whose value of the given length follows in chunks.
+     */
+    private static BinaryMemcacheResponse streamedHead(final BinaryRequest request, final int valueLength) {
+        BinaryMemcacheResponse head = new DefaultBinaryMemcacheResponse("", Unpooled.buffer().writeInt(123));
+        head.setExtrasLength((byte) 4);
+        head.setTotalBodyLength(4 + valueLength);
+        head.setCAS(987654321L);
+        head.setOpaque(request.opaque());
+        return head;
+    }
+
+    @Test
+    public void shouldMatchOutOfOrderResponsesByOpaque() {
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false));
+
+        GetRequest first = mock(GetRequest.class);
+        when(first.bucket()).thenReturn(BUCKET);
+        when(first.opaque()).thenReturn(1);
+        GetRequest second = mock(GetRequest.class);
+        when(second.bucket()).thenReturn(BUCKET);
+        when(second.opaque()).thenReturn(2);
+        inFlight.add(first);
+        inFlight.add(second);
+
+        FullBinaryMemcacheResponse unknown = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER);
+        unknown.setOpaque(3);
+        channel.writeInbound(unknown);
+        assertEquals(0, eventSink.responseEvents().size());
+
+        for (int opaque = 2; opaque > 0; opaque--) {
+            FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER);
+            response.setOpaque(opaque);
+            response.setCAS(opaque);
+            channel.writeInbound(response);
+        }
+
+        assertEquals(2, eventSink.responseEvents().size());
+        GetResponse secondResponse = (GetResponse) eventSink.responseEvents().get(0).getMessage();
+        assertSame(second, secondResponse.request());
+        assertEquals(2, secondResponse.cas());
+        GetResponse firstResponse = (GetResponse) eventSink.responseEvents().get(1).getMessage();
+        assertSame(first, firstResponse.request());
+        assertEquals(1, firstResponse.cas());
+        assertTrue(inFlight.isEmpty());
+    }
+
+    @Test
+    public void shouldWriteBatchAsPipelinedBurst() {
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false));
+
+        BinaryBatchRequest batch = new BinaryBatchRequest(BUCKET, false);
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("a", "b"), BUCKET);
+        for (BinaryRequest request : bulk.requests()) {
+            request.partition((short) 1);
+            batch.add(request);
+        }
+        channel.writeOutbound(batch);
+
+        for (BinaryRequest request : bulk.requests()) {
+            BinaryMemcacheRequest written = (BinaryMemcacheRequest) channel.readOutbound();
+            assertEquals(KeyValueHandler.OP_GET, written.getOpcode());
+            assertEquals(request.opaque(), written.getOpaque());
+            ReferenceCountUtil.release(written);
+        }
+        assertNull(channel.readOutbound());
+        assertEquals(2, inFlight.size());
+    }
+
+    @Test
+    public void shouldCompleteQuietMissesOnNoop() {
+        final CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.completionMode()).thenReturn(CompletionMode.DIRECT);
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        });
+
+        BinaryBatchRequest batch = new BinaryBatchRequest(BUCKET, true);
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("hit", "miss"), BUCKET, true);
+        for (BinaryRequest request : bulk.requests()) {
+            request.partition((short) 1);
+            batch.add(request);
+        }
+        channel.writeOutbound(batch);
+
+        for (int i = 0; i < 2; i++) {
+            BinaryMemcacheRequest written = (BinaryMemcacheRequest) channel.readOutbound();
+            assertEquals(KeyValueHandler.OP_GETQ, written.getOpcode());
+            ReferenceCountUtil.release(written);
+        }
+        BinaryMemcacheRequest noop = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(KeyValueHandler.OP_NOOP, noop.getOpcode());
+        assertEquals(batch.opaque(), noop.getOpaque());
+        assertEquals(3, inFlight.size());
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        FullBinaryMemcacheResponse hit = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER, content);
+        hit.setOpaque(bulk.requests().get(0).opaque());
+        channel.writeInbound(hit);
+        FullBinaryMemcacheResponse noopResponse = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER);
+        noopResponse.setOpaque(batch.opaque());
+        channel.writeInbound(noopResponse);
+
+        List<CouchbaseResponse> responses = bulk.observable().toList().toBlocking().single();
+        assertEquals(2, responses.size());
+        assertEquals(ResponseStatus.SUCCESS, responses.get(0).status());
+        assertEquals("content", ((GetResponse) responses.get(0)).content().toString(CharsetUtil.UTF_8));
+        assertEquals(ResponseStatus.NOT_EXISTS, responses.get(1).status());
+        assertSame(bulk.requests().get(1), responses.get(1).request());
+        assertTrue(inFlight.isEmpty());
+    }
+
+    @Test
+    public void shouldFailOnlyDuplicatePartAndStillFenceQuietBatch() {
+        final CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.completionMode()).thenReturn(CompletionMode.DIRECT);
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        });
+
+        BinaryBatchRequest batch = new BinaryBatchRequest(BUCKET, true);
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("a", "b", "c"), BUCKET, true);
+        for (BinaryRequest request : bulk.requests()) {
+            request.partition((short) 1);
+            batch.add(request);
+        }
+        GetRequest occupying = mock(GetRequest.class);
+        when(occupying.opaque()).thenReturn(bulk.requests().get(1).opaque());
+        inFlight.add(occupying);
+        channel.writeOutbound(batch);
+
+        byte[] opcodes = new byte[] { KeyValueHandler.OP_GETQ, KeyValueHandler.OP_GETQ, KeyValueHandler.OP_NOOP };
+        for (byte opcode : opcodes) {
+            BinaryMemcacheRequest written = (BinaryMemcacheRequest) channel.readOutbound();
+            assertEquals(opcode, written.getOpcode());
+            ReferenceCountUtil.release(written);
+        }
+        assertNull(channel.readOutbound());
+        assertEquals(4, inFlight.size());
+
+        TestSubscriber<CouchbaseResponse> duplicate = new TestSubscriber<CouchbaseResponse>();
+        bulk.requests().get(1).observable().subscribe(duplicate);
+        duplicate.assertTerminalEvent();
+        assertEquals(1, duplicate.getOnErrorEvents().size());
+        assertSame(occupying, inFlight.get(bulk.requests().get(1).opaque()));
+    }
+
+    @Test
+    public void shouldAcknowledgeQuietMutationsOnNoop() {
+        final CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.completionMode()).thenReturn(CompletionMode.DIRECT);
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        });
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        BulkUpsertRequest upserts = new BulkUpsertRequest(Collections.singletonMap("upsert", content), 0, 0,
+            BUCKET, true);
+        BulkRemoveRequest removes = new BulkRemoveRequest(Collections.singletonList("remove"), BUCKET, true);
+        BinaryBatchRequest batch = new BinaryBatchRequest(BUCKET, true);
+        for (BinaryRequest request : Arrays.asList(upserts.requests().get(0), removes.requests().get(0))) {
+            request.partition((short) 1);
+            batch.add(request);
+        }
+        channel.writeOutbound(batch);
+
+        byte[] opcodes = new byte[] { KeyValueHandler.OP_UPSERTQ, KeyValueHandler.OP_REMOVEQ, KeyValueHandler.OP_NOOP };
+        for (byte opcode : opcodes) {
+            BinaryMemcacheRequest written = (BinaryMemcacheRequest) channel.readOutbound();
+            assertEquals(opcode, written.getOpcode());
+            ReferenceCountUtil.release(written);
+        }
+
+        FullBinaryMemcacheResponse failure = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER);
+        failure.setOpaque(removes.requests().get(0).opaque());
+        failure.setStatus(BinaryMemcacheResponseStatus.KEY_ENOENT);
+        channel.writeInbound(failure);
+        FullBinaryMemcacheResponse noopResponse = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER);
+        noopResponse.setOpaque(batch.opaque());
+        channel.writeInbound(noopResponse);
+
+        CouchbaseResponse upserted = upserts.observable().toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, upserted.status());
+        assertSame(upserts.requests().get(0), upserted.request());
+        assertEquals(0, content.refCnt());
+        assertEquals(ResponseStatus.NOT_EXISTS, removes.observable().toBlocking().single().status());
+        assertTrue(inFlight.isEmpty());
+    }
+
+    @Test
+    public void shouldTimeoutInFlightRequest() throws Exception {
+        final CoreEnvironment environment = DefaultCoreEnvironment.create();
+        OpaqueRequestQueue inFlight = new OpaqueRequestQueue();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            inFlight, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        });
+
+        try {
+            ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+            UpsertRequest expiring = new UpsertRequest("key", content, BUCKET);
+            expiring.timeout(10, TimeUnit.MILLISECONDS);
+            expiring.partition((short) 1);
+            GetRequest waiting = new GetRequest("key", BUCKET);
+            waiting.partition((short) 1);
+            channel.writeOutbound(expiring, waiting);
+            ReferenceCountUtil.release(channel.readOutbound());
+            ReferenceCountUtil.release(channel.readOutbound());
+            assertEquals(2, inFlight.size());
+
+            long start = System.nanoTime();
+            while (inFlight.size() > 1 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(10);
+                channel.runPendingTasks();
+            }
+
+            assertEquals(1, inFlight.size());
+            assertSame(waiting, inFlight.peek());
+            assertEquals(0, content.refCnt());
+            try {
+                expiring.observable().toBlocking().single();
+                fail();
+            } catch (RequestTimeoutException ex) {
+                assertEquals("Request timed out in-flight.", ex.getMessage());
+            }
+
+            FullBinaryMemcacheResponse late = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER);
+            late.setOpaque(expiring.opaque());
+            channel.writeInbound(late);
+            assertEquals(0, eventSink.responseEvents().size());
+            assertEquals(1, inFlight.size());
+        } finally {
+            environment.shutdown().toBlocking().single();
+        }
+    }
+
+    @Test
+    public void shouldKeepTimedOutRequestInOrderUntilItsResponseArrives() throws Exception {
+        final CoreEnvironment environment = DefaultCoreEnvironment.create();
+        Queue<BinaryRequest> sent = new ArrayDeque<BinaryRequest>();
+        EmbeddedChannel channel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink,
+            sent, false) {
+            @Override
+            protected CoreEnvironment env() {
+                return environment;
+            }
+        });
+
+        try {
+            GetRequest expiring = new GetRequest("key", BUCKET);
+            expiring.timeout(10, TimeUnit.MILLISECONDS);
+            expiring.partition((short) 1);
+            GetRequest waiting = new GetRequest("key", BUCKET);
+            waiting.partition((short) 1);
+            channel.writeOutbound(expiring, waiting);
+            ReferenceCountUtil.release(channel.readOutbound());
+            ReferenceCountUtil.release(channel.readOutbound());
+
+            TestSubscriber<CouchbaseResponse> expired = new TestSubscriber<CouchbaseResponse>();
+            expiring.observable().subscribe(expired);
+            long start = System.nanoTime();
+            while (expired.getOnErrorEvents().isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(10);
+                channel.runPendingTasks();
+            }
+
+            assertEquals(1, expired.getOnErrorEvents().size());
+            assertTrue(expired.getOnErrorEvents().get(0) instanceof RequestTimeoutException);
+            assertEquals(2, sent.size());
+
+            ByteBuf lateContent = Unpooled.copiedBuffer("late", CharsetUtil.UTF_8);
+            FullBinaryMemcacheResponse late = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER,
+                lateContent);
+            late.setOpaque(expiring.opaque());
+            channel.writeInbound(late);
+            assertEquals(0, lateContent.refCnt());
+            assertEquals(1, sent.size());
+
+            FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER,
+                Unpooled.copiedBuffer("content", CharsetUtil.UTF_8));
+            response.setOpaque(waiting.opaque());
+            channel.writeInbound(response);
+            GetResponse get = (GetResponse) waiting.observable().timeout(1, TimeUnit.SECONDS).toBlocking().single();
+            assertEquals("content", get.content().toString(CharsetUtil.UTF_8));
+            get.content().release();
+            assertTrue(sent.isEmpty());
+        } finally {
+            environment.shutdown().toBlocking().single();
+        }
+    }
+
     @Test
     public void shouldDecodeNotFoundGet() {
         ByteBuf content = Unpooled.copiedBuffer("Not Found", CharsetUtil.UTF_8);
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link OpaqueRequestQueue}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class OpaqueRequestQueueTest {
+
+    @Test
+    public void shouldRemoveByOpaque() {
+        OpaqueRequestQueue queue = new OpaqueRequestQueue();
+        GetRequest first = new GetRequest("key1", "bucket");
+        GetRequest second = new GetRequest("key2", "bucket");
+        queue.offer(first);
+        queue.offer(second);
+
+        assertEquals(2, queue.size());
+        assertSame(second, queue.get(second.opaque()));
+        assertSame(second, queue.poll(second.opaque()));
+        assertNull(queue.poll(second.opaque()));
+        assertSame(first, queue.poll(first.opaque()));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void shouldRejectDuplicateOpaque() {
+        OpaqueRequestQueue queue = new OpaqueRequestQueue();
+        BinaryRequest inFlight = mock(BinaryRequest.class);
+        when(inFlight.opaque()).thenReturn(42);
+        BinaryRequest duplicate = mock(BinaryRequest.class);
+        when(duplicate.opaque()).thenReturn(42);
+
+        assertTrue(queue.offer(inFlight));
+        assertFalse(queue.offer(duplicate));
+        assertEquals(1, queue.size());
+        assertSame(inFlight, queue.poll(42));
+    }
+
+    @Test
+    public void shouldMatchReferenceMapUnderRandomOperations() {
+        OpaqueRequestQueue queue = new OpaqueRequestQueue();
+        Map<Integer, BinaryRequest> reference = new HashMap<Integer, BinaryRequest>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            if (reference.size() < 2000 && random.nextBoolean()) {
+                GetRequest request = new GetRequest("key", "bucket");
+                queue.offer(request);
+                reference.put(request.opaque(), request);
+            } else if (!reference.isEmpty()) {
+                Integer opaque = reference.keySet().iterator().next();
+                assertSame(reference.remove(opaque), queue.poll((int) opaque));
+            }
+            assertEquals(reference.size(), queue.size());
+        }
+
+        for (Map.Entry<Integer, BinaryRequest> entry : reference.entrySet()) {
+            assertSame(entry.getValue(), queue.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void shouldDrainAllThroughPoll() {
+        OpaqueRequestQueue queue = new OpaqueRequestQueue();
+        Set<BinaryRequest> offered = new HashSet<BinaryRequest>();
+        for (int i = 0; i < 500; i++) {
+            GetRequest request = new GetRequest("key", "bucket");
+            queue.offer(request);
+            offered.add(request);
+        }
+
+        Set<BinaryRequest> iterated = new HashSet<BinaryRequest>();
+        for (BinaryRequest request : queue) {
+            iterated.add(request);
+        }
+        assertEquals(offered, iterated);
+
+        BinaryRequest polled;
+        while ((polled = queue.poll()) != null) {
+            assertTrue(offered.remove(polled));
+        }
+        assertTrue(offered.isEmpty());
+        assertTrue(queue.isEmpty());
+    }
+}
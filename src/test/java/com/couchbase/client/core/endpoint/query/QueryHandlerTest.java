@@ -63,6 +63,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
 import rx.schedulers.Schedulers;
 import rx.subjects.AsyncSubject;
 import rx.subjects.Subject;
@@ -810,6 +812,49 @@ public class QueryHandlerTest {
         }
     }
 
+    @Test
+    public void shouldPauseReadingWhileRowsAreNotConsumed() throws Exception {
+        StringBuilder rows = new StringBuilder("{\"requestID\": \"" + FAKE_REQUESTID + "\", ")
+            .append("\"signature\": {\"*\":\"*\"}, \"results\": [");
+        for (int i = 0; i < 200; i++) {
+            rows.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append("}");
+        }
+        String end = "], \"status\": \"success\", \"metrics\": {\"resultCount\": 200, \"errorCount\": 0}}";
+        TestScheduler scheduler = new TestScheduler();
+        when(endpoint.environment().scheduler()).thenReturn(scheduler);
+
+        GenericQueryRequest requestMock = mock(GenericQueryRequest.class);
+        queue.add(requestMock);
+        channel.writeInbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK),
+            new DefaultHttpContent(Unpooled.copiedBuffer(rows.toString(), CharsetUtil.UTF_8)));
+        latch.await(1, TimeUnit.SECONDS);
+        GenericQueryResponse inbound = (GenericQueryResponse) firedEvents.get(0);
+
+        TestSubscriber<ByteBuf> subscriber = new TestSubscriber<ByteBuf>() {
+            @Override
+            public void onStart() {
+                requestMore(1);
+            }
+        };
+        inbound.rows().subscribe(subscriber);
+        scheduler.triggerActions();
+        assertEquals(1, subscriber.getOnNextEvents().size());
+        assertFalse(channel.config().isAutoRead());
+
+        channel.writeInbound(new DefaultLastHttpContent(Unpooled.copiedBuffer(end, CharsetUtil.UTF_8)));
+        assertTrue(channel.config().isAutoRead());
+        subscriber.unsubscribe();
+    }
+
+    @Test
+    public void shouldDecodeChunkedResponseSplitAtEveryPositionWithZeroCopyRows() throws Exception {
+        when(endpoint.environment().zeroCopyRowsEnabled()).thenReturn(true);
+        String response = Resources.read("chunked.json", this.getClass());
+        for (int i = 1; i < response.length() - 1; i++) {
+            shouldDecodeChunked(response.substring(0, i), response.substring(i));
+        }
+    }
+
     private void shouldDecodeChunked(String... chunks) throws Exception {
         HttpResponse responseHeader = new DefaultHttpResponse(HttpVersion.HTTP_1_1, new HttpResponseStatus(200, "OK"));
         Object[] httpChunks = new Object[chunks.length + 1];
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link AutoReadThrottle}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class AutoReadThrottleTest {
+
+    private EmbeddedChannel channel;
+    private AutoReadThrottle<Integer> throttle;
+    private PublishSubject<Integer> source;
+
+    @Before
+    public void setup() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        throttle = new AutoReadThrottle<Integer>(channel);
+        source = PublishSubject.create();
+    }
+
+    @Test
+    public void shouldPauseWhenDemandIsExhaustedAndResumeOnRequest() {
+        TestSubscriber<Integer> subscriber = boundedSubscriber(2);
+        source.onBackpressureBuffer().lift(throttle).subscribe(subscriber);
+
+        source.onNext(1);
+        assertTrue(channel.config().isAutoRead());
+        source.onNext(2);
+        assertFalse(channel.config().isAutoRead());
+        source.onNext(3);
+        assertEquals(2, subscriber.getOnNextEvents().size());
+
+        subscriber.requestMore(5);
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(3, subscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void shouldNeverPauseForUnboundedSubscriber() {
+        TestSubscriber<Integer> subscriber = new TestSubscriber<Integer>();
+        source.onBackpressureBuffer().lift(throttle).subscribe(subscriber);
+
+        for (int i = 0; i < 1000; i++) {
+            source.onNext(i);
+        }
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(1000, subscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void shouldResumeAndStopPausingOnceReleased() {
+        TestSubscriber<Integer> subscriber = boundedSubscriber(1);
+        source.onBackpressureBuffer().lift(throttle).subscribe(subscriber);
+
+        source.onNext(1);
+        assertFalse(channel.config().isAutoRead());
+        throttle.release();
+        assertTrue(channel.config().isAutoRead());
+
+        source.onNext(2);
+        subscriber.requestMore(1);
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(2, subscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void shouldResumeOnUnsubscribe() {
+        TestSubscriber<Integer> subscriber = boundedSubscriber(1);
+        source.onBackpressureBuffer().lift(throttle).subscribe(subscriber);
+
+        source.onNext(1);
+        assertFalse(channel.config().isAutoRead());
+        subscriber.unsubscribe();
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    /**
+     * Creates a subscriber which initially requests only the given number of items.
+     */
+    private static TestSubscriber<Integer> boundedSubscriber(final long initial) {
+        return new TestSubscriber<Integer>() {
+            @Override
+            public void onStart() {
+                requestMore(initial);
+            }
+        };
+    }
+}
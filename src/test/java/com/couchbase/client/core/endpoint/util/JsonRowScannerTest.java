@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.client.core.endpoint.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies the functionality of the {@link JsonRowScanner}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class JsonRowScannerTest {
+
+    @Test
+    public void shouldFindClosingInSingleChunk() {
+        ByteBuf source = Unpooled.copiedBuffer(",\n{ \"a\": { \"b\": 1 } }, {", CharsetUtil.UTF_8);
+        assertEquals(20, new JsonRowScanner().scan(source));
+        assertEquals(0, source.readerIndex());
+    }
+
+    @Test
+    public void shouldResumeAcrossChunks() {
+        JsonRowScanner scanner = new JsonRowScanner();
+        ByteBuf source = Unpooled.buffer();
+
+        source.writeBytes("{ \"a\": \"str }".getBytes(CharsetUtil.UTF_8));
+        assertEquals(-1, scanner.scan(source));
+        source.writeBytes("ing\\\\\", \"b\": {".getBytes(CharsetUtil.UTF_8));
+        assertEquals(-1, scanner.scan(source));
+        source.writeBytes("} }, {\"c\": 2}".getBytes(CharsetUtil.UTF_8));
+        assertEquals(29, scanner.scan(source));
+
+        source.readerIndex(30);
+        assertEquals(39, scanner.scan(source));
+    }
+
+    @Test
+    public void shouldIgnoreEscapedQuotesSplitAcrossChunks() {
+        JsonRowScanner scanner = new JsonRowScanner();
+        ByteBuf source = Unpooled.buffer();
+
+        source.writeBytes("{\"a\": \"x\\".getBytes(CharsetUtil.UTF_8));
+        assertEquals(-1, scanner.scan(source));
+        source.writeBytes("\"}\"}".getBytes(CharsetUtil.UTF_8));
+        assertEquals(12, scanner.scan(source));
+    }
+
+    @Test
+    public void shouldSurviveCompactionWhileScanning() {
+        JsonRowScanner scanner = new JsonRowScanner();
+        ByteBuf source = Unpooled.buffer();
+
+        source.writeBytes("xx{\"a\": {".getBytes(CharsetUtil.UTF_8));
+        source.readerIndex(2);
+        assertEquals(-1, scanner.scan(source));
+        source.discardReadBytes();
+        source.writeBytes("}}".getBytes(CharsetUtil.UTF_8));
+        assertEquals(8, scanner.scan(source));
+    }
+
+    @Test
+    public void shouldStartOverAfterReset() {
+        JsonRowScanner scanner = new JsonRowScanner();
+        ByteBuf source = Unpooled.copiedBuffer("{\"a\": \"", CharsetUtil.UTF_8);
+        assertEquals(-1, scanner.scan(source));
+
+        scanner.reset();
+        source.clear();
+        source.writeBytes("{}".getBytes(CharsetUtil.UTF_8));
+        assertEquals(1, scanner.scan(source));
+    }
+}
@@ -345,6 +345,46 @@ public class ViewHandlerTest {
         assertEquals(1, called.get());
     }
 
+    @Test
+    public void shouldDecodeManyViewQueryResponseWithZeroCopyRows() throws Exception {
+        when(endpoint.environment().zeroCopyRowsEnabled()).thenReturn(true);
+        String response = Resources.read("query_many.json", this.getClass());
+        ByteBuf chunk1 = Unpooled.copiedBuffer(response.substring(0, 500), CharsetUtil.UTF_8);
+        ByteBuf chunk2 = Unpooled.copiedBuffer(response.substring(500, 1234), CharsetUtil.UTF_8);
+        ByteBuf chunk3 = Unpooled.copiedBuffer(response.substring(1234), CharsetUtil.UTF_8);
+        HttpResponse responseHeader = new DefaultHttpResponse(HttpVersion.HTTP_1_1, new HttpResponseStatus(200, "OK"));
+
+        ViewQueryRequest requestMock = mock(ViewQueryRequest.class);
+        queue.add(requestMock);
+        channel.writeInbound(responseHeader, new DefaultHttpContent(chunk1), new DefaultHttpContent(chunk2),
+            new DefaultLastHttpContent(chunk3));
+        latch.await(1, TimeUnit.SECONDS);
+        assertEquals(1, firedEvents.size());
+        ViewQueryResponse inbound = (ViewQueryResponse) firedEvents.get(0);
+
+        final AtomicInteger calledRow = new AtomicInteger();
+        inbound.rows().toBlocking().forEach(new Action1<ByteBuf>() {
+            @Override
+            public void call(ByteBuf byteBuf) {
+                calledRow.incrementAndGet();
+                try {
+                    Map found = mapper.readValue(byteBuf.toString(CharsetUtil.UTF_8), Map.class);
+                    assertEquals(3, found.size());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    assertFalse(true);
+                } finally {
+                    byteBuf.release();
+                }
+            }
+        });
+        assertEquals(500, calledRow.get());
+        inbound.info().toBlocking().single().release();
+
+        assertEquals(0, chunk1.refCnt());
+        assertEquals(0, chunk2.refCnt());
+    }
+
     @Test
     public void shouldFireKeepAlive() throws Exception {
         final AtomicInteger keepAliveEventCounter = new AtomicInteger();
@@ -21,10 +21,14 @@
  */
 package com.couchbase.client.core.env;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.junit.Test;
 
+import java.util.concurrent.ThreadFactory;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class DefaultCoreEnvironmentTest {
@@ -44,11 +48,23 @@ public class DefaultCoreEnvironmentTest {
         CoreEnvironment env = DefaultCoreEnvironment
             .builder()
             .kvEndpoints(3)
+            .maxQueryEndpoints(5)
+            .endpointIdleTime(1000)
+            .dcpConnectionBufferSize(1024)
+            .dcpBatchSize(16)
+            .dcpNoopInterval(40000)
             .build();
         assertNotNull(env.ioPool());
         assertNotNull(env.scheduler());
 
         assertEquals(3, env.kvEndpoints());
+        assertEquals(5, env.maxQueryEndpoints());
+        assertEquals(DefaultCoreEnvironment.MAX_VIEW_ENDPOINTS, env.maxViewEndpoints());
+        assertEquals(1000, env.endpointIdleTime());
+        assertEquals(1024, env.dcpConnectionBufferSize());
+        assertEquals(DefaultCoreEnvironment.DCP_CONNECTION_BUFFER_ACK_THRESHOLD, env.dcpConnectionBufferAckThreshold());
+        assertEquals(16, env.dcpBatchSize());
+        assertEquals(40000, env.dcpNoopInterval());
         assertTrue(env.shutdown().toBlocking().single());
     }
 
@@ -70,4 +86,34 @@ public class DefaultCoreEnvironmentTest {
         System.clearProperty("com.couchbase.kvEndpoints");
     }
 
+    @Test
+    public void shouldConfigureRingBuffers() throws Exception {
+        ThreadFactory factory = new DefaultThreadFactory("custom");
+        System.setProperty("com.couchbase.responseWaitStrategy", "YIELDING");
+
+        CoreEnvironment env = DefaultCoreEnvironment
+            .builder()
+            .requestWaitStrategy(WaitStrategyType.BUSY_SPIN)
+            .responseWaitStrategy(WaitStrategyType.SLEEPING)
+            .requestProducerType(ProducerType.SINGLE)
+            .maxRequestBatchSize(32)
+            .maxValueSize(1024)
+            .zeroCopyRowsEnabled(true)
+            .requestThreadFactory(factory)
+            .build();
+
+        assertEquals(WaitStrategyType.BUSY_SPIN, env.requestWaitStrategy());
+        assertEquals(WaitStrategyType.YIELDING, env.responseWaitStrategy());
+        assertEquals(ProducerType.SINGLE, env.requestProducerType());
+        assertEquals(ProducerType.MULTI, env.responseProducerType());
+        assertEquals(32, env.maxRequestBatchSize());
+        assertEquals(1024, env.maxValueSize());
+        assertTrue(env.zeroCopyRowsEnabled());
+        assertSame(factory, env.requestThreadFactory());
+        assertNotNull(env.responseThreadFactory());
+        assertTrue(env.shutdown().toBlocking().single());
+
+        System.clearProperty("com.couchbase.responseWaitStrategy");
+    }
+
 }
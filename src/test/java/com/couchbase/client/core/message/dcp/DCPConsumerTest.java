@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import com.couchbase.client.core.ClusterFacade;
+import com.couchbase.client.core.config.ClusterConfig;
+import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.endpoint.dcp.DCPConnectionClosedException;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.cluster.GetClusterConfigRequest;
+import com.couchbase.client.core.message.cluster.GetClusterConfigResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of {@link DCPConsumer}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class DCPConsumerTest {
+
+    private ClusterFacade cluster;
+    private List<StreamRequestRequest> streamRequests;
+
+    @Before
+    public void setup() {
+        cluster = mock(ClusterFacade.class);
+        streamRequests = new ArrayList<StreamRequestRequest>();
+
+        CouchbaseBucketConfig bucketConfig = mock(CouchbaseBucketConfig.class);
+        when(bucketConfig.numberOfPartitions()).thenReturn(4);
+        ClusterConfig clusterConfig = mock(ClusterConfig.class);
+        when(clusterConfig.bucketConfig("bucket")).thenReturn(bucketConfig);
+        when(cluster.send(isA(GetClusterConfigRequest.class))).thenReturn(
+            Observable.just((CouchbaseResponse) new GetClusterConfigResponse(clusterConfig, ResponseStatus.SUCCESS))
+        );
+        when(cluster.send(isA(OpenConnectionRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                OpenConnectionRequest request = (OpenConnectionRequest) invocation.getArguments()[0];
+                return Observable.just((CouchbaseResponse) new OpenConnectionResponse(ResponseStatus.SUCCESS,
+                    request));
+            }
+        });
+    }
+
+    @Test
+    public void shouldMergeStreamsOfAllPartitions() {
+        streamWithMessages();
+
+        DCPConsumer consumer = new DCPConsumer(cluster, "connection", "bucket", "");
+        List<DCPRequest> messages = consumer.stream().toList().toBlocking().single();
+
+        assertEquals(4, messages.size());
+        Set<Short> partitions = new HashSet<Short>();
+        for (DCPRequest message : messages) {
+            partitions.add(message.partition());
+        }
+        assertEquals(4, partitions.size());
+    }
+
+    @Test
+    public void shouldLimitConcurrentStreams() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                streamRequests.add(request);
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    Observable.<DCPRequest>never(), new ArrayList<FailoverLogEntry>(), request));
+            }
+        });
+
+        DCPConsumer consumer = new DCPConsumer(cluster, "connection", "bucket", "", 2);
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        consumer.stream().subscribe(subscriber);
+
+        assertEquals(2, streamRequests.size());
+        subscriber.unsubscribe();
+    }
+
+    @Test
+    public void shouldFailIfStreamCannotBeOpened() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.FAILURE,
+                    null, new ArrayList<FailoverLogEntry>(), request));
+            }
+        });
+
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        new DCPConsumer(cluster, "connection", "bucket", "").stream((short) 1).subscribe(subscriber);
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+    }
+
+    @Test
+    public void shouldResumeFromLastPosition() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                streamRequests.add(request);
+                Observable<DCPRequest> messages = Observable.<DCPRequest>just(
+                    new SnapshotMarkerMessage((short) 1, 1, 10, SnapshotMarkerMessage.MEMORY, "bucket"),
+                    new RemoveMessage(0, (short) 1, 5, 1, "key", 0, "bucket", null)
+                );
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    messages, Arrays.asList(new FailoverLogEntry(99, 0)), request));
+            }
+        });
+
+        DCPConsumer consumer = new DCPConsumer(cluster, "connection", "bucket", "");
+        consumer.stream((short) 1).toList().toBlocking().single();
+        consumer.stream((short) 1).toList().toBlocking().single();
+
+        assertEquals(2, streamRequests.size());
+        assertEquals(0, streamRequests.get(0).startSequenceNumber());
+        StreamRequestRequest resumed = streamRequests.get(1);
+        assertEquals(99, resumed.vbucketUUID());
+        assertEquals(5, resumed.startSequenceNumber());
+        assertEquals(1, resumed.snapshotStartSequenceNumber());
+        assertEquals(10, resumed.snapshotEndSequenceNumber());
+    }
+
+    @Test
+    public void shouldRollbackAndRequestStreamAgain() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                streamRequests.add(request);
+                if (request.startSequenceNumber() > 15) {
+                    return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.ROLLBACK,
+                        null, new ArrayList<FailoverLogEntry>(), 15, request));
+                }
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    Observable.<DCPRequest>empty(), new ArrayList<FailoverLogEntry>(), request));
+            }
+        });
+
+        DCPConsumer consumer = new DCPConsumer(cluster, "connection", "bucket", "");
+        consumer.state().partition(new PartitionState((short) 1, 77, 20, 20, 20,
+            Arrays.asList(new FailoverLogEntry(77, 18), new FailoverLogEntry(99, 0))));
+        List<DCPRequest> messages = consumer.stream((short) 1).toList().toBlocking().single();
+
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0) instanceof RollbackMessage);
+        assertEquals(15, ((RollbackMessage) messages.get(0)).sequenceNumber());
+        assertEquals(2, streamRequests.size());
+        StreamRequestRequest resumed = streamRequests.get(1);
+        assertEquals(99, resumed.vbucketUUID());
+        assertEquals(15, resumed.startSequenceNumber());
+        assertEquals(15, resumed.snapshotStartSequenceNumber());
+        assertEquals(15, resumed.snapshotEndSequenceNumber());
+    }
+
+    @Test
+    public void shouldEmitBatchesAndTrackPosition() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                List<DCPRequest> batch = Arrays.<DCPRequest>asList(
+                    new RemoveMessage(0, (short) 1, 3, 1, "a", 0, "bucket", null),
+                    new RemoveMessage(0, (short) 1, 4, 1, "b", 0, "bucket", null)
+                );
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    Observable.from(batch), Observable.just(batch), new ArrayList<FailoverLogEntry>(), 0, request));
+            }
+        });
+
+        DCPConsumer consumer = new DCPConsumer(cluster, "connection", "bucket", "");
+        List<List<DCPRequest>> batches = consumer.batches((short) 1).toList().toBlocking().single();
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(4, consumer.state().partition((short) 1).sequenceNumber());
+    }
+
+    @Test
+    public void shouldResumeStreamAfterDisconnect() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                streamRequests.add(request);
+                Observable<DCPRequest> messages = Observable.<DCPRequest>just(
+                    new RemoveMessage(0, (short) 1, streamRequests.size() * 5, 1, "key", 0, "bucket", null));
+                if (streamRequests.size() == 1) {
+                    messages = messages.concatWith(Observable.<DCPRequest>error(
+                        new DCPConnectionClosedException("closed")));
+                }
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    messages, new ArrayList<FailoverLogEntry>(), request));
+            }
+        });
+
+        TestSubscriber<DCPRequest> subscriber = new TestSubscriber<DCPRequest>();
+        new DCPConsumer(cluster, "connection", "bucket", "").stream((short) 1).subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        subscriber.assertTerminalEvent();
+        assertEquals(2, subscriber.getOnNextEvents().size());
+        assertEquals(2, streamRequests.size());
+        assertEquals(5, streamRequests.get(1).startSequenceNumber());
+    }
+
+    /**
+     * Answers every stream request with a stream of a single removal for the requested partition.
+     */
+    private void streamWithMessages() {
+        when(cluster.send(isA(StreamRequestRequest.class))).thenAnswer(new Answer<Observable<CouchbaseResponse>>() {
+            @Override
+            public Observable<CouchbaseResponse> answer(InvocationOnMock invocation) throws Throwable {
+                StreamRequestRequest request = (StreamRequestRequest) invocation.getArguments()[0];
+                DCPRequest message = new RemoveMessage(request.partition(), "key", 0, "bucket");
+                return Observable.just((CouchbaseResponse) new StreamRequestResponse(ResponseStatus.SUCCESS,
+                    Observable.just(message), new ArrayList<FailoverLogEntry>(), request));
+            }
+        });
+    }
+}
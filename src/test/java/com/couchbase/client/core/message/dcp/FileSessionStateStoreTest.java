@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.dcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of {@link FileSessionStateStore}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class FileSessionStateStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = File.createTempFile("dcp", "state");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void shouldLoadEmptyStateIfNoneSaved() {
+        SessionState state = new FileSessionStateStore(directory).load("bucket");
+        assertTrue(state.partitions().isEmpty());
+    }
+
+    @Test
+    public void shouldLoadSavedState() {
+        SessionState state = new SessionState();
+        state.partition(new PartitionState((short) 3, 99, 20, 10, 30,
+            Arrays.asList(new FailoverLogEntry(99, 15), new FailoverLogEntry(77, 0))));
+        state.partition((short) 5);
+
+        FileSessionStateStore store = new FileSessionStateStore(directory);
+        store.save("bucket", state);
+        store.save("bucket", state);
+        SessionState loaded = store.load("bucket");
+
+        assertEquals(2, loaded.partitions().size());
+        PartitionState partition = loaded.partition((short) 3);
+        assertEquals(99, partition.vbucketUUID());
+        assertEquals(20, partition.sequenceNumber());
+        assertEquals(10, partition.snapshotStartSequenceNumber());
+        assertEquals(30, partition.snapshotEndSequenceNumber());
+        assertEquals(2, partition.failoverLog().size());
+        assertEquals(77, partition.failoverLog().get(1).vbucketUUID());
+        assertEquals(0, loaded.partition((short) 5).sequenceNumber());
+        assertTrue(store.load("other").partitions().isEmpty());
+    }
+
+    @Test
+    public void shouldRecoverStateFromTemporaryFile() {
+        SessionState state = new SessionState();
+        state.partition(new PartitionState((short) 3, 99, 20, 10, 30, Arrays.asList(new FailoverLogEntry(99, 15))));
+
+        FileSessionStateStore store = new FileSessionStateStore(directory);
+        store.save("bucket", state);
+        File file = new File(directory, "bucket.dcp");
+        File temporary = new File(directory, "bucket.dcp.tmp");
+        assertFalse(temporary.exists());
+        assertTrue(file.renameTo(temporary));
+
+        SessionState loaded = store.load("bucket");
+        assertEquals(20, loaded.partition((short) 3).sequenceNumber());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.RequestTimeoutException;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Verifies the functionality of the {@link BulkGetRequest}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class BulkGetRequestTest {
+
+    @Test
+    public void shouldEmitFailedKeyAsResponseAndCompleteAfterLastKey() {
+        BulkGetRequest bulk = new BulkGetRequest(Arrays.asList("failed", "found"), "bucket");
+        BinaryRequest failed = bulk.requests().get(0);
+        BinaryRequest found = bulk.requests().get(1);
+        TestSubscriber<CouchbaseResponse> subscriber = new TestSubscriber<CouchbaseResponse>();
+        bulk.observable().subscribe(subscriber);
+
+        failed.observable().onError(new RequestTimeoutException("Request timed out in-flight."));
+        assertEquals(0, subscriber.getOnCompletedEvents().size());
+
+        found.observable().onNext(new GetResponse(ResponseStatus.SUCCESS, 1, 0, "bucket", Unpooled.EMPTY_BUFFER,
+            found));
+        found.observable().onCompleted();
+
+        subscriber.assertNoErrors();
+        subscriber.assertTerminalEvent();
+        List<CouchbaseResponse> responses = subscriber.getOnNextEvents();
+        assertEquals(2, responses.size());
+        assertEquals(ResponseStatus.FAILURE, responses.get(0).status());
+        assertSame(failed, responses.get(0).request());
+        assertEquals(ResponseStatus.SUCCESS, responses.get(1).status());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the config and query HTTP endpoints of a {@link MockNode}.
+ *
+ * The streaming config connection is kept open, but only the config at the time of connect is sent over it.
+ * Queries are not parsed at all, every statement returns the configured number of generated rows.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class HttpMockHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final String TERSE_PATH = "/pools/default/b/";
+    private static final String VERBOSE_PATH = "/pools/default/buckets/";
+    private static final String TERSE_STREAMING_PATH = "/pools/default/bs/";
+    private static final String VERBOSE_STREAMING_PATH = "/pools/default/bucketsStreaming/";
+
+    private final MockCluster cluster;
+
+    HttpMockHandler(final MockCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest msg) throws Exception {
+        String path = msg.getUri();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+
+        String bucket = cluster.bucket().name();
+        if (path.equals(TERSE_PATH + bucket) || path.equals(VERBOSE_PATH + bucket)) {
+            respond(ctx, HttpResponseStatus.OK, cluster.config());
+        } else if (path.equals(TERSE_STREAMING_PATH + bucket) || path.equals(VERBOSE_STREAMING_PATH + bucket)) {
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            HttpHeaders.setTransferEncodingChunked(response);
+            ctx.write(response);
+            ctx.writeAndFlush(new DefaultHttpContent(
+                Unpooled.copiedBuffer(cluster.config() + "\n\n\n\n", CharsetUtil.UTF_8)));
+        } else if (path.equals("/query") && msg.getMethod() == HttpMethod.POST) {
+            respond(ctx, HttpResponseStatus.OK, queryResult(cluster.queryRows()));
+        } else if (path.equals("/admin/ping")) {
+            respond(ctx, HttpResponseStatus.OK, "");
+        } else {
+            respond(ctx, HttpResponseStatus.NOT_FOUND, "Not found.");
+        }
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+        ctx.close();
+    }
+
+    /**
+     * Renders a successful N1QL response with the given number of rows.
+     */
+    static String queryResult(final int rows) {
+        StringBuilder sb = new StringBuilder(64 + rows * 48);
+        sb.append("{\n\"requestID\": \"").append(UUID.randomUUID()).append("\",\n");
+        sb.append("\"signature\": {\"*\":\"*\"},\n\"results\": [");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"row-").append(i).append("\"}");
+        }
+        sb.append("],\n\"status\": \"success\",\n");
+        sb.append("\"metrics\": {\"elapsedTime\": \"1ms\",\"executionTime\": \"1ms\",\"resultCount\": ")
+            .append(rows).append(",\"resultSize\": 0}\n}");
+        return sb.toString();
+    }
+
+    private void respond(final ChannelHandlerContext ctx, final HttpResponseStatus status, final String body) {
+        ByteBuf content = Unpooled.copiedBuffer(body, CharsetUtil.UTF_8);
+        final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+        HttpHeaders.setContentLength(response, content.readableBytes());
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+
+        long latency = cluster.latency(TimeUnit.NANOSECONDS);
+        if (latency > 0) {
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.writeAndFlush(response);
+                }
+            }, latency, TimeUnit.NANOSECONDS);
+        } else {
+            ctx.writeAndFlush(response);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import com.couchbase.client.core.endpoint.dcp.DCPHandler;
+import com.couchbase.client.core.endpoint.kv.KeyValueAuthHandler;
+import com.couchbase.client.core.endpoint.kv.KeyValueHandler;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseStatus;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the memcached binary protocol for one connection to a {@link MockNode}.
+ *
+ * Responses are written without a flush and flushed once the current read is complete, so pipelined requests
+ * get answered in batches just like the real server does.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class KeyValueMockHandler extends SimpleChannelInboundHandler<FullBinaryMemcacheRequest> {
+
+    static final byte OP_SASL_AUTH = 0x21;
+    static final byte OP_SASL_STEP = 0x22;
+    static final byte OP_DCP_STREAM_END = 0x55;
+
+    static final short STATUS_NOT_MY_VBUCKET = 0x07;
+
+    private static final int DCP_SNAPSHOT_FLAG_MEMORY = 0x01;
+
+    private final MockCluster cluster;
+    private final MockBucket bucket;
+    private final MockNode node;
+    private final Random random;
+    private final List<MockBucket.MutationListener> streams;
+    private boolean needsFlush;
+
+    KeyValueMockHandler(final MockCluster cluster, final MockNode node) {
+        this.cluster = cluster;
+        this.bucket = cluster.bucket();
+        this.node = node;
+        this.random = new Random();
+        this.streams = new ArrayList<MockBucket.MutationListener>();
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg)
+        throws Exception {
+        byte opcode = msg.getOpcode();
+
+        if (isKeyBased(opcode) && !ownsPartition(msg.getReserved())) {
+            respond(ctx, response(msg, STATUS_NOT_MY_VBUCKET, null,
+                Unpooled.copiedBuffer(cluster.config(), CharsetUtil.UTF_8)));
+            return;
+        }
+
+        switch (opcode) {
+            case KeyValueAuthHandler.SASL_LIST_MECHS_OPCODE:
+                respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null,
+                    Unpooled.copiedBuffer("PLAIN", CharsetUtil.UTF_8)));
+                break;
+            case OP_SASL_AUTH:
+            case OP_SASL_STEP:
+                handleAuth(ctx, msg);
+                break;
+            case KeyValueHandler.OP_GET_BUCKET_CONFIG:
+                respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null,
+                    Unpooled.copiedBuffer(cluster.config(), CharsetUtil.UTF_8)));
+                break;
+            case KeyValueHandler.OP_GET:
+            case KeyValueHandler.OP_GET_AND_TOUCH:
+            case KeyValueHandler.OP_GET_REPLICA:
+            case KeyValueHandler.OP_GET_AND_LOCK:
+                handleGet(ctx, msg);
+                break;
+            case KeyValueHandler.OP_UPSERT:
+                handleStore(ctx, msg, MockBucket.StoreMode.SET);
+                break;
+            case KeyValueHandler.OP_INSERT:
+                handleStore(ctx, msg, MockBucket.StoreMode.ADD);
+                break;
+            case KeyValueHandler.OP_REPLACE:
+                handleStore(ctx, msg, MockBucket.StoreMode.REPLACE);
+                break;
+            case KeyValueHandler.OP_APPEND:
+            case KeyValueHandler.OP_PREPEND:
+                handleConcat(ctx, msg);
+                break;
+            case KeyValueHandler.OP_REMOVE:
+                handleRemove(ctx, msg);
+                break;
+            case KeyValueHandler.OP_COUNTER_INCR:
+            case KeyValueHandler.OP_COUNTER_DECR:
+                handleCounter(ctx, msg);
+                break;
+            case KeyValueHandler.OP_TOUCH:
+            case KeyValueHandler.OP_UNLOCK:
+                handleExists(ctx, msg);
+                break;
+            case KeyValueHandler.OP_OBSERVE:
+                handleObserve(ctx, msg);
+                break;
+            case KeyValueHandler.OP_NOOP:
+                respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, null));
+                break;
+            case DCPHandler.OP_OPEN_CONNECTION:
+                respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, null));
+                break;
+            case DCPHandler.OP_STREAM_REQUEST:
+                handleStreamRequest(ctx, msg);
+                break;
+            default:
+                respond(ctx, response(msg, BinaryMemcacheResponseStatus.UNKNOWN_COMMAND, null, null));
+        }
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+        if (needsFlush) {
+            needsFlush = false;
+            ctx.flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        for (MockBucket.MutationListener stream : streams) {
+            bucket.removeListener(stream);
+        }
+        streams.clear();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+        ctx.close();
+    }
+
+    private static boolean isKeyBased(final byte opcode) {
+        switch (opcode) {
+            case KeyValueHandler.OP_GET:
+            case KeyValueHandler.OP_GET_AND_TOUCH:
+            case KeyValueHandler.OP_GET_AND_LOCK:
+            case KeyValueHandler.OP_UPSERT:
+            case KeyValueHandler.OP_INSERT:
+            case KeyValueHandler.OP_REPLACE:
+            case KeyValueHandler.OP_APPEND:
+            case KeyValueHandler.OP_PREPEND:
+            case KeyValueHandler.OP_REMOVE:
+            case KeyValueHandler.OP_COUNTER_INCR:
+            case KeyValueHandler.OP_COUNTER_DECR:
+            case KeyValueHandler.OP_TOUCH:
+            case KeyValueHandler.OP_UNLOCK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if this node is the master of the partition, and applies the injected NOT_MY_VBUCKET rate.
+     */
+    private boolean ownsPartition(final short partition) {
+        if (partition < 0 || partition >= bucket.numPartitions() || bucket.master(partition) != node.index()) {
+            return false;
+        }
+        double rate = cluster.notMyVbucketRate();
+        return rate <= 0 || random.nextDouble() >= rate;
+    }
+
+    private void handleAuth(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        String[] parts = msg.content().toString(CharsetUtil.UTF_8).split("\0", -1);
+        String user = parts.length > 1 ? parts[1] : "";
+        String password = parts.length > 2 ? parts[2] : "";
+        boolean success = bucket.name().equals(user) && bucket.password().equals(password);
+        respond(ctx, response(msg, success ? BinaryMemcacheResponseStatus.SUCCESS : BinaryMemcacheResponseStatus.AUTH_ERROR, null,
+            Unpooled.copiedBuffer(success ? "Authenticated" : "Auth failure", CharsetUtil.UTF_8)));
+    }
+
+    private void handleGet(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        MockBucket.Document doc = bucket.get(msg.getReserved(), msg.getKey());
+        if (doc == null) {
+            respond(ctx, response(msg, BinaryMemcacheResponseStatus.KEY_ENOENT, null,
+                Unpooled.copiedBuffer("Not found", CharsetUtil.UTF_8)));
+            return;
+        }
+        FullBinaryMemcacheResponse response = response(msg, BinaryMemcacheResponseStatus.SUCCESS,
+            ctx.alloc().buffer(4).writeInt(doc.flags()), Unpooled.wrappedBuffer(doc.value()));
+        response.setCAS(doc.cas());
+        respond(ctx, response);
+    }
+
+    private void handleStore(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg,
+        final MockBucket.StoreMode mode) {
+        int flags = msg.getExtrasLength() >= 4 ? msg.getExtras().getInt(msg.getExtras().readerIndex()) : 0;
+        MockBucket.Document doc = bucket.store(msg.getReserved(), msg.getKey(), readBytes(msg.content()), flags,
+            msg.getCAS(), mode);
+        if (doc == null) {
+            short status = mode == MockBucket.StoreMode.REPLACE && msg.getCAS() == 0
+                ? BinaryMemcacheResponseStatus.KEY_ENOENT : BinaryMemcacheResponseStatus.KEY_EEXISTS;
+            respond(ctx, response(msg, status, null, null));
+            return;
+        }
+        FullBinaryMemcacheResponse response = response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, null);
+        response.setCAS(doc.cas());
+        respond(ctx, response);
+    }
+
+    private void handleConcat(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        short partition = msg.getReserved();
+        MockBucket.Document existing = bucket.get(partition, msg.getKey());
+        if (existing == null) {
+            respond(ctx, response(msg, BinaryMemcacheResponseStatus.NOT_STORED, null, null));
+            return;
+        }
+        byte[] addition = readBytes(msg.content());
+        byte[] value = new byte[existing.value().length + addition.length];
+        if (msg.getOpcode() == KeyValueHandler.OP_APPEND) {
+            System.arraycopy(existing.value(), 0, value, 0, existing.value().length);
+            System.arraycopy(addition, 0, value, existing.value().length, addition.length);
+        } else {
+            System.arraycopy(addition, 0, value, 0, addition.length);
+            System.arraycopy(existing.value(), 0, value, addition.length, existing.value().length);
+        }
+        MockBucket.Document doc = bucket.store(partition, msg.getKey(), value, existing.flags(),
+            msg.getCAS() == 0 ? existing.cas() : msg.getCAS(), MockBucket.StoreMode.REPLACE);
+        if (doc == null) {
+            respond(ctx, response(msg, BinaryMemcacheResponseStatus.KEY_EEXISTS, null, null));
+            return;
+        }
+        FullBinaryMemcacheResponse response = response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, null);
+        response.setCAS(doc.cas());
+        respond(ctx, response);
+    }
+
+    private void handleRemove(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        short partition = msg.getReserved();
+        MockBucket.Document removed = bucket.remove(partition, msg.getKey(), msg.getCAS());
+        if (removed == null) {
+            short status = bucket.get(partition, msg.getKey()) == null
+                ? BinaryMemcacheResponseStatus.KEY_ENOENT : BinaryMemcacheResponseStatus.KEY_EEXISTS;
+            respond(ctx, response(msg, status, null, null));
+            return;
+        }
+        respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, null));
+    }
+
+    private void handleCounter(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        ByteBuf extras = msg.getExtras();
+        int index = extras.readerIndex();
+        long delta = extras.getLong(index);
+        long initial = extras.getLong(index + 8);
+        int expiry = extras.getInt(index + 16);
+        if (msg.getOpcode() == KeyValueHandler.OP_COUNTER_DECR) {
+            delta = -delta;
+        }
+
+        MockBucket.Document doc = bucket.counter(msg.getReserved(), msg.getKey(), delta, initial, expiry != -1);
+        if (doc == null) {
+            respond(ctx, response(msg, BinaryMemcacheResponseStatus.KEY_ENOENT, null, null));
+            return;
+        }
+        FullBinaryMemcacheResponse response = response(msg, BinaryMemcacheResponseStatus.SUCCESS, null,
+            ctx.alloc().buffer(8).writeLong(Long.parseLong(new String(doc.value(), CharsetUtil.UTF_8))));
+        response.setCAS(doc.cas());
+        respond(ctx, response);
+    }
+
+    private void handleExists(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        boolean exists = bucket.get(msg.getReserved(), msg.getKey()) != null;
+        respond(ctx, response(msg, exists ? BinaryMemcacheResponseStatus.SUCCESS
+            : BinaryMemcacheResponseStatus.KEY_ENOENT, null, null));
+    }
+
+    private void handleObserve(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        ByteBuf request = msg.content();
+        ByteBuf content = ctx.alloc().buffer();
+        while (request.readableBytes() >= 4) {
+            short partition = request.readShort();
+            short keyLength = request.readShort();
+            String key = request.readSlice(keyLength).toString(CharsetUtil.UTF_8);
+            MockBucket.Document doc = bucket.get(partition, key);
+            content.writeShort(partition);
+            content.writeShort(keyLength);
+            content.writeBytes(key.getBytes(CharsetUtil.UTF_8));
+            content.writeByte(doc == null ? 0x80 : 0x01);
+            content.writeLong(doc == null ? 0 : doc.cas());
+        }
+        respond(ctx, response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, content));
+    }
+
+    /**
+     * Answers the stream request with the failover log, replays the documents of the partition and keeps
+     * the stream open for live mutations unless the requested end has been reached already.
+     */
+    private void handleStreamRequest(final ChannelHandlerContext ctx, final FullBinaryMemcacheRequest msg) {
+        final short partition = msg.getReserved();
+        final int opaque = msg.getOpaque();
+        ByteBuf extras = msg.getExtras();
+        long startSeqno = extras.getLong(extras.readerIndex() + 8);
+        final long endSeqno = extras.getLong(extras.readerIndex() + 16);
+
+        ByteBuf failoverLog = ctx.alloc().buffer(16).writeLong(bucket.partitionUuid(partition)).writeLong(0);
+        ctx.writeAndFlush(response(msg, BinaryMemcacheResponseStatus.SUCCESS, null, failoverLog));
+
+        final Channel channel = ctx.channel();
+        MockBucket.MutationListener stream = new MockBucket.MutationListener() {
+            @Override
+            public void onMutation(short p, String key, MockBucket.Document doc, long seqno) {
+                channel.write(snapshotMarker(partition, opaque, seqno, seqno));
+                channel.write(doc == null ? deletion(partition, opaque, key, seqno)
+                    : mutation(partition, opaque, key, doc));
+                if (endSeqno >= 0 && seqno >= endSeqno) {
+                    channel.write(streamEnd(partition, opaque));
+                    bucket.removeListener(this);
+                }
+                channel.flush();
+            }
+        };
+
+        long current = bucket.seqno(partition);
+        if (current > startSeqno) {
+            ctx.write(snapshotMarker(partition, opaque, startSeqno, current));
+            for (Map.Entry<String, MockBucket.Document> entry : bucket.documents(partition).entrySet()) {
+                if (entry.getValue().seqno() > startSeqno) {
+                    ctx.write(mutation(partition, opaque, entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        if (endSeqno >= 0 && endSeqno <= current) {
+            ctx.write(streamEnd(partition, opaque));
+        } else {
+            streams.add(stream);
+            bucket.addListener(partition, stream);
+        }
+        ctx.flush();
+    }
+
+    private static FullBinaryMemcacheResponse snapshotMarker(short partition, int opaque, long start, long end) {
+        ByteBuf extras = Unpooled.buffer(20).writeLong(start).writeLong(end).writeInt(DCP_SNAPSHOT_FLAG_MEMORY);
+        return dcpMessage(DCPHandler.OP_SNAPSHOT_MARKER, partition, opaque, null, extras, null, 0);
+    }
+
+    private static FullBinaryMemcacheResponse mutation(short partition, int opaque, String key,
+        MockBucket.Document doc) {
+        ByteBuf extras = Unpooled.buffer(31)
+            .writeLong(doc.seqno())
+            .writeLong(1) // rev seqno
+            .writeInt(doc.flags())
+            .writeInt(0) // expiration
+            .writeInt(0) // lock time
+            .writeShort(0) // nmeta
+            .writeByte(0); // nru
+        return dcpMessage(DCPHandler.OP_MUTATION, partition, opaque, key, extras,
+            Unpooled.wrappedBuffer(doc.value()), doc.cas());
+    }
+
+    private static FullBinaryMemcacheResponse deletion(short partition, int opaque, String key, long seqno) {
+        ByteBuf extras = Unpooled.buffer(18).writeLong(seqno).writeLong(1).writeShort(0);
+        return dcpMessage(DCPHandler.OP_REMOVE, partition, opaque, key, extras, null, 0);
+    }
+
+    private static FullBinaryMemcacheResponse streamEnd(short partition, int opaque) {
+        return dcpMessage(OP_DCP_STREAM_END, partition, opaque, null, Unpooled.buffer(4).writeInt(0), null, 0);
+    }
+
+    /**
+     * DCP messages are sent by the server as requests, which carry the partition where responses carry the status.
+     */
+    private static FullBinaryMemcacheResponse dcpMessage(byte opcode, short partition, int opaque, String key,
+        ByteBuf extras, ByteBuf content, long cas) {
+        ByteBuf body = content == null ? Unpooled.EMPTY_BUFFER : content;
+        FullBinaryMemcacheResponse message = new DefaultFullBinaryMemcacheResponse(key, extras, body);
+        short keyLength = key == null ? 0 : (short) key.getBytes(CharsetUtil.UTF_8).length;
+        message.setMagic((byte) 0x80);
+        message.setOpcode(opcode);
+        message.setStatus(partition);
+        message.setOpaque(opaque);
+        message.setCAS(cas);
+        message.setKeyLength(keyLength);
+        message.setExtrasLength((byte) extras.readableBytes());
+        message.setTotalBodyLength(keyLength + extras.readableBytes() + body.readableBytes());
+        return message;
+    }
+
+    private static FullBinaryMemcacheResponse response(final FullBinaryMemcacheRequest request, final short status,
+        final ByteBuf extras, final ByteBuf content) {
+        ByteBuf ext = extras == null ? Unpooled.EMPTY_BUFFER : extras;
+        ByteBuf body = content == null ? Unpooled.EMPTY_BUFFER : content;
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse(null, ext, body);
+        response.setOpcode(request.getOpcode());
+        response.setOpaque(request.getOpaque());
+        response.setStatus(status);
+        response.setExtrasLength((byte) ext.readableBytes());
+        response.setTotalBodyLength(ext.readableBytes() + body.readableBytes());
+        return response;
+    }
+
+    private void respond(final ChannelHandlerContext ctx, final FullBinaryMemcacheResponse response) {
+        long latency = cluster.latency(TimeUnit.NANOSECONDS);
+        if (latency > 0) {
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.writeAndFlush(response);
+                }
+            }, latency, TimeUnit.NANOSECONDS);
+        } else {
+            ctx.write(response);
+            needsFlush = true;
+        }
+    }
+
+    private static byte[] readBytes(final ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+}
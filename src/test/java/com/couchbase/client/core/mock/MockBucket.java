@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-memory state of a bucket in the {@link MockCluster}.
+ *
+ * Documents are grouped by partition, and every mutation bumps the per-partition sequence number so that
+ * DCP streams can be served from the same data. The partition map spreads the masters round-robin across
+ * the nodes and places replicas on the following nodes.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class MockBucket {
+
+    /**
+     * A single stored document.
+     */
+    public static class Document {
+        private final byte[] value;
+        private final int flags;
+        private final long cas;
+        private final long seqno;
+
+        Document(byte[] value, int flags, long cas, long seqno) {
+            this.value = value;
+            this.flags = flags;
+            this.cas = cas;
+            this.seqno = seqno;
+        }
+
+        public byte[] value() {
+            return value;
+        }
+
+        public int flags() {
+            return flags;
+        }
+
+        public long cas() {
+            return cas;
+        }
+
+        public long seqno() {
+            return seqno;
+        }
+    }
+
+    /**
+     * Gets notified of every mutation on a partition (used to feed open DCP streams).
+     */
+    public interface MutationListener {
+
+        /**
+         * Called after a document has been stored or removed.
+         *
+         * @param partition the partition of the document.
+         * @param key the document key.
+         * @param document the new document, or null if it got removed.
+         * @param seqno the sequence number of the mutation.
+         */
+        void onMutation(short partition, String key, Document document, long seqno);
+    }
+
+    private final String name;
+    private final String password;
+    private final int numPartitions;
+    private final int numReplicas;
+    private final Map<String, Document>[] partitions;
+    private final AtomicLong[] seqnos;
+    private final long[] partitionUuids;
+    private final List<MutationListener>[] listeners;
+    private final AtomicLong casCounter;
+    private volatile short[][] partitionMap;
+    private volatile long rev;
+
+    @SuppressWarnings("unchecked")
+    MockBucket(final String name, final String password, final int numPartitions, final int numReplicas,
+        final int numNodes) {
+        if (Integer.bitCount(numPartitions) != 1) {
+            throw new IllegalArgumentException("The number of partitions needs to be a power of two.");
+        }
+        this.name = name;
+        this.password = password;
+        this.numPartitions = numPartitions;
+        this.numReplicas = numReplicas;
+        this.partitions = (Map<String, Document>[]) new Map<?, ?>[numPartitions];
+        this.seqnos = new AtomicLong[numPartitions];
+        this.partitionUuids = new long[numPartitions];
+        this.listeners = (List<MutationListener>[]) new List<?>[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            partitions[i] = new ConcurrentHashMap<String, Document>();
+            seqnos[i] = new AtomicLong();
+            partitionUuids[i] = 0xC0FFEE00L + i;
+            listeners[i] = new CopyOnWriteArrayList<MutationListener>();
+        }
+        this.casCounter = new AtomicLong();
+        this.rev = 1;
+        this.partitionMap = buildPartitionMap(numPartitions, numReplicas, numNodes, 0);
+    }
+
+    private static short[][] buildPartitionMap(int numPartitions, int numReplicas, int numNodes, int shift) {
+        short[][] map = new short[numPartitions][numReplicas + 1];
+        for (int p = 0; p < numPartitions; p++) {
+            for (int r = 0; r <= numReplicas; r++) {
+                map[p][r] = r < numNodes ? (short) ((p + shift + r) % numNodes) : -1;
+            }
+        }
+        return map;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public int numPartitions() {
+        return numPartitions;
+    }
+
+    public int numReplicas() {
+        return numReplicas;
+    }
+
+    public long rev() {
+        return rev;
+    }
+
+    /**
+     * Returns the index of the node which currently owns the active copy of the partition.
+     */
+    public int master(final int partition) {
+        return partitionMap[partition][0];
+    }
+
+    /**
+     * Returns the index of the node which holds the given replica of the partition, or -1 if not assigned.
+     */
+    public int replica(final int partition, final int replica) {
+        return partitionMap[partition][replica + 1];
+    }
+
+    /**
+     * Moves every partition to the next node and bumps the config revision, simulating a rebalance.
+     *
+     * Clients working off the old config will receive NOT_MY_VBUCKET until they pick up the new one.
+     */
+    synchronized void rotatePartitions(final int numNodes) {
+        short[][] current = partitionMap;
+        int shift = numNodes > 0 ? (current[0][0] + 1) % numNodes : 0;
+        partitionMap = buildPartitionMap(numPartitions, numReplicas, numNodes, shift);
+        rev++;
+    }
+
+    public long partitionUuid(final int partition) {
+        return partitionUuids[partition];
+    }
+
+    public long seqno(final int partition) {
+        return seqnos[partition].get();
+    }
+
+    public Document get(final short partition, final String key) {
+        return partitions[partition].get(key);
+    }
+
+    /**
+     * Returns a point-in-time view of all documents in the partition.
+     */
+    public Map<String, Document> documents(final short partition) {
+        return partitions[partition];
+    }
+
+    /**
+     * Stores the document under the given key, honoring the semantics of the memcached store commands.
+     *
+     * @return the stored document or null if the precondition (exists, not exists, cas) failed.
+     */
+    Document store(final short partition, final String key, final byte[] value, final int flags, final long cas,
+        final StoreMode mode) {
+        Map<String, Document> docs = partitions[partition];
+        Document stored;
+        synchronized (docs) {
+            Document existing = docs.get(key);
+            if (mode == StoreMode.ADD && existing != null) {
+                return null;
+            }
+            if (mode == StoreMode.REPLACE && existing == null) {
+                return null;
+            }
+            if (cas != 0 && (existing == null || existing.cas() != cas)) {
+                return null;
+            }
+            stored = new Document(value, flags, casCounter.incrementAndGet(), seqnos[partition].incrementAndGet());
+            docs.put(key, stored);
+        }
+        notifyListeners(partition, key, stored, stored.seqno());
+        return stored;
+    }
+
+    /**
+     * Removes the document.
+     *
+     * @return the removed document or null if it did not exist or the cas did not match.
+     */
+    Document remove(final short partition, final String key, final long cas) {
+        Map<String, Document> docs = partitions[partition];
+        Document removed;
+        long seqno;
+        synchronized (docs) {
+            removed = docs.get(key);
+            if (removed == null || (cas != 0 && removed.cas() != cas)) {
+                return null;
+            }
+            docs.remove(key);
+            seqno = seqnos[partition].incrementAndGet();
+        }
+        notifyListeners(partition, key, null, seqno);
+        return removed;
+    }
+
+    /**
+     * Applies a counter operation, creating the document with the initial value if allowed.
+     *
+     * @return the new document or null if it did not exist and should not be created.
+     */
+    Document counter(final short partition, final String key, final long delta, final long initial,
+        final boolean create) {
+        Map<String, Document> docs = partitions[partition];
+        Document stored;
+        synchronized (docs) {
+            Document existing = docs.get(key);
+            long value;
+            if (existing == null) {
+                if (!create) {
+                    return null;
+                }
+                value = initial;
+            } else {
+                value = Math.max(0, Long.parseLong(new String(existing.value())) + delta);
+            }
+            stored = new Document(Long.toString(value).getBytes(), existing == null ? 0 : existing.flags(),
+                casCounter.incrementAndGet(), seqnos[partition].incrementAndGet());
+            docs.put(key, stored);
+        }
+        notifyListeners(partition, key, stored, stored.seqno());
+        return stored;
+    }
+
+    void addListener(final short partition, final MutationListener listener) {
+        listeners[partition].add(listener);
+    }
+
+    void removeListener(final MutationListener listener) {
+        for (List<MutationListener> list : listeners) {
+            list.remove(listener);
+        }
+    }
+
+    private void notifyListeners(final short partition, final String key, final Document doc, final long seqno) {
+        for (MutationListener listener : listeners[partition]) {
+            listener.onMutation(partition, key, doc, seqno);
+        }
+    }
+
+    /**
+     * Renders the terse bucket configuration as the server would hand it out.
+     *
+     * @param nodes the nodes of the cluster.
+     */
+    String config(final List<MockNode> nodes) {
+        short[][] map = partitionMap;
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"rev\":").append(rev)
+            .append(",\"name\":\"").append(name).append("\",\"nodeLocator\":\"vbucket\"")
+            .append(",\"uri\":\"/pools/default/buckets/").append(name).append("\"")
+            .append(",\"streamingUri\":\"/pools/default/bucketsStreaming/").append(name).append("\"");
+
+        sb.append(",\"nodes\":[");
+        for (int i = 0; i < nodes.size(); i++) {
+            MockNode node = nodes.get(i);
+            sb.append(i == 0 ? "" : ",")
+                .append("{\"hostname\":\"").append(node.hostname()).append(":").append(node.httpPort()).append("\",")
+                .append("\"ports\":{\"direct\":").append(node.kvPort()).append("}}");
+        }
+        sb.append("],\"nodesExt\":[");
+        for (int i = 0; i < nodes.size(); i++) {
+            MockNode node = nodes.get(i);
+            sb.append(i == 0 ? "" : ",")
+                .append("{\"hostname\":\"").append(node.hostname()).append("\",\"services\":{")
+                .append("\"kv\":").append(node.kvPort())
+                .append(",\"mgmt\":").append(node.httpPort())
+                .append(",\"n1ql\":").append(node.httpPort())
+                .append("}}");
+        }
+
+        sb.append("],\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":").append(numReplicas)
+            .append(",\"serverList\":[");
+        for (int i = 0; i < nodes.size(); i++) {
+            MockNode node = nodes.get(i);
+            sb.append(i == 0 ? "" : ",").append("\"").append(node.hostname()).append(":").append(node.kvPort())
+                .append("\"");
+        }
+        sb.append("],\"vBucketMap\":[");
+        for (int p = 0; p < map.length; p++) {
+            sb.append(p == 0 ? "[" : ",[");
+            for (int r = 0; r < map[p].length; r++) {
+                sb.append(r == 0 ? "" : ",").append(map[p][r]);
+            }
+            sb.append("]");
+        }
+        sb.append("]}}");
+        return sb.toString();
+    }
+
+    /**
+     * The different store semantics of the memcached protocol.
+     */
+    enum StoreMode {
+        SET,
+        ADD,
+        REPLACE
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process cluster of mock nodes, to drive the client without a real Couchbase Server.
+ *
+ * Every node binds to its own loopback address (127.0.0.1, 127.0.0.2, ...) so that the client can tell
+ * them apart, and serves the memcached binary protocol (including SASL, DCP and the carrier config) as well
+ * as a HTTP port which answers the terse bucket config and a minimal N1QL query endpoint. Note that binding
+ * to more than 127.0.0.1 works out of the box on Linux, but needs loopback aliases on OS X.
+ *
+ * Latency and NOT_MY_VBUCKET responses can be injected (also while running) to see how the client behaves
+ * under less than ideal conditions.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class MockCluster {
+
+    private final int numNodes;
+    private final MockBucket bucket;
+    private final int queryRows;
+    private final List<MockNode> nodes;
+    private final EventLoopGroup group;
+    private volatile long latencyNanos;
+    private volatile double notMyVbucketRate;
+
+    private MockCluster(final Builder builder) {
+        numNodes = builder.nodes;
+        bucket = new MockBucket(builder.bucket, builder.password, builder.partitions, builder.replicas,
+            builder.nodes);
+        queryRows = builder.queryRows;
+        latencyNanos = builder.latencyNanos;
+        notMyVbucketRate = builder.notMyVbucketRate;
+        nodes = new ArrayList<MockNode>(builder.nodes);
+        group = new NioEventLoopGroup(builder.ioThreads, new DefaultThreadFactory("cb-mock", true));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Binds all nodes, the cluster is usable once this method returns.
+     */
+    public MockCluster start() throws Exception {
+        for (int i = 0; i < numNodes; i++) {
+            MockNode node = new MockNode(this, i, "127.0.0." + (i + 1));
+            node.start(group);
+            nodes.add(node);
+        }
+        return this;
+    }
+
+    /**
+     * Closes all nodes and releases the IO threads.
+     */
+    public void stop() {
+        for (MockNode node : nodes) {
+            node.stop();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    /**
+     * Returns a environment builder which bootstraps against the first node of this cluster.
+     */
+    public DefaultCoreEnvironment.Builder environmentBuilder() {
+        return DefaultCoreEnvironment
+            .builder()
+            .bootstrapCarrierDirectPort(nodes.get(0).kvPort())
+            .bootstrapHttpDirectPort(nodes.get(0).httpPort());
+    }
+
+    /**
+     * The hostname to pass in as the seed node.
+     */
+    public String seedNode() {
+        return nodes.get(0).hostname();
+    }
+
+    public List<MockNode> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public MockBucket bucket() {
+        return bucket;
+    }
+
+    /**
+     * The current terse bucket configuration as handed out by every node.
+     */
+    public String config() {
+        return bucket.config(nodes);
+    }
+
+    /**
+     * Moves all partitions to the next node, see {@link MockBucket#rotatePartitions(int)}.
+     */
+    public void rebalance() {
+        bucket.rotatePartitions(numNodes);
+    }
+
+    public int queryRows() {
+        return queryRows;
+    }
+
+    public long latency(final TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Changes the latency every response gets delayed with.
+     */
+    public MockCluster latency(final long latency, final TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    public double notMyVbucketRate() {
+        return notMyVbucketRate;
+    }
+
+    /**
+     * Changes the probability (0.0 to 1.0) of answering a key based operation with NOT_MY_VBUCKET.
+     */
+    public MockCluster notMyVbucketRate(final double rate) {
+        this.notMyVbucketRate = rate;
+        return this;
+    }
+
+    public static class Builder {
+
+        private int nodes = 1;
+        private int partitions = 1024;
+        private int replicas = 0;
+        private String bucket = "default";
+        private String password = "";
+        private int queryRows = 10;
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+        private long latencyNanos = 0;
+        private double notMyVbucketRate = 0.0;
+
+        protected Builder() {
+        }
+
+        /**
+         * The number of nodes (default value 1).
+         */
+        public Builder nodes(final int nodes) {
+            this.nodes = nodes;
+            return this;
+        }
+
+        /**
+         * The number of partitions, needs to be a power of two (default value 1024).
+         */
+        public Builder partitions(final int partitions) {
+            this.partitions = partitions;
+            return this;
+        }
+
+        /**
+         * The number of replicas (default value 0).
+         */
+        public Builder replicas(final int replicas) {
+            this.replicas = replicas;
+            return this;
+        }
+
+        /**
+         * The name and password of the bucket (default value "default" without password).
+         */
+        public Builder bucket(final String bucket, final String password) {
+            this.bucket = bucket;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * The number of rows every N1QL query returns (default value 10).
+         */
+        public Builder queryRows(final int queryRows) {
+            this.queryRows = queryRows;
+            return this;
+        }
+
+        /**
+         * The number of IO threads shared by all nodes (default value is the number of cores).
+         */
+        public Builder ioThreads(final int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * The latency every response gets delayed with (default value 0).
+         */
+        public Builder latency(final long latency, final TimeUnit unit) {
+            this.latencyNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * The probability of answering a key based operation with NOT_MY_VBUCKET (default value 0.0).
+         */
+        public Builder notMyVbucketRate(final double rate) {
+            this.notMyVbucketRate = rate;
+            return this;
+        }
+
+        public MockCluster build() {
+            return new MockCluster(this);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import com.couchbase.client.core.ClusterFacade;
+import com.couchbase.client.core.CouchbaseCore;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.cluster.DisconnectRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketResponse;
+import com.couchbase.client.core.message.cluster.SeedNodesRequest;
+import com.couchbase.client.core.message.dcp.OpenConnectionRequest;
+import com.couchbase.client.core.message.dcp.OpenConnectionResponse;
+import com.couchbase.client.core.message.dcp.StreamRequestRequest;
+import com.couchbase.client.core.message.dcp.StreamRequestResponse;
+import com.couchbase.client.core.message.kv.CounterRequest;
+import com.couchbase.client.core.message.kv.CounterResponse;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.InsertRequest;
+import com.couchbase.client.core.message.kv.InsertResponse;
+import com.couchbase.client.core.message.kv.ObserveRequest;
+import com.couchbase.client.core.message.kv.ObserveResponse;
+import com.couchbase.client.core.message.kv.RemoveRequest;
+import com.couchbase.client.core.message.kv.RemoveResponse;
+import com.couchbase.client.core.message.kv.ReplaceRequest;
+import com.couchbase.client.core.message.kv.ReplaceResponse;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.message.query.GenericQueryRequest;
+import com.couchbase.client.core.message.query.GenericQueryResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rx.functions.Func1;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link MockCluster} against a real {@link CouchbaseCore}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class MockClusterTest {
+
+    private static MockCluster mock;
+    private static CoreEnvironment env;
+    private static ClusterFacade cluster;
+
+    @BeforeClass
+    public static void connect() throws Exception {
+        mock = MockCluster.builder().nodes(2).partitions(64).replicas(1).queryRows(5).build().start();
+        env = mock.environmentBuilder().dcpEnabled(true).build();
+        cluster = new CouchbaseCore(env);
+        cluster.send(new SeedNodesRequest(mock.seedNode())).toBlocking().single();
+        OpenBucketResponse response = cluster.<OpenBucketResponse>send(new OpenBucketRequest(bucket(), ""))
+            .toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        cluster.send(new DisconnectRequest()).toBlocking().single();
+        env.shutdown().toBlocking().single();
+        mock.stop();
+    }
+
+    private static String bucket() {
+        return mock.bucket().name();
+    }
+
+    @Test
+    public void shouldUpsertAndGetDocument() {
+        UpsertResponse upsert = cluster.<UpsertResponse>send(new UpsertRequest("mock-upsert",
+            Unpooled.copiedBuffer("Hello World!", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, upsert.status());
+        assertTrue(upsert.cas() != 0);
+        ReferenceCountUtil.releaseLater(upsert.content());
+
+        GetResponse get = cluster.<GetResponse>send(new GetRequest("mock-upsert", bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, get.status());
+        assertEquals("Hello World!", get.content().toString(CharsetUtil.UTF_8));
+        assertEquals(upsert.cas(), get.cas());
+        ReferenceCountUtil.releaseLater(get.content());
+    }
+
+    @Test
+    public void shouldHonorStoreSemantics() {
+        ReplaceResponse replace = cluster.<ReplaceResponse>send(new ReplaceRequest("mock-store",
+            Unpooled.copiedBuffer("a", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.NOT_EXISTS, replace.status());
+        ReferenceCountUtil.releaseLater(replace.content());
+
+        InsertResponse insert = cluster.<InsertResponse>send(new InsertRequest("mock-store",
+            Unpooled.copiedBuffer("b", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, insert.status());
+        ReferenceCountUtil.releaseLater(insert.content());
+
+        insert = cluster.<InsertResponse>send(new InsertRequest("mock-store",
+            Unpooled.copiedBuffer("c", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.EXISTS, insert.status());
+        ReferenceCountUtil.releaseLater(insert.content());
+
+        RemoveResponse remove = cluster.<RemoveResponse>send(new RemoveRequest("mock-store", bucket()))
+            .toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, remove.status());
+        ReferenceCountUtil.releaseLater(remove.content());
+
+        GetResponse get = cluster.<GetResponse>send(new GetRequest("mock-store", bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.NOT_EXISTS, get.status());
+        ReferenceCountUtil.releaseLater(get.content());
+    }
+
+    @Test
+    public void shouldIncrementCounter() {
+        CounterResponse counter = cluster.<CounterResponse>send(new CounterRequest("mock-counter", 10, 5, 0,
+            bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, counter.status());
+        assertEquals(10, counter.value());
+
+        counter = cluster.<CounterResponse>send(new CounterRequest("mock-counter", 10, 5, 0, bucket()))
+            .toBlocking().single();
+        assertEquals(15, counter.value());
+    }
+
+    @Test
+    public void shouldObserveDocument() {
+        UpsertResponse upsert = cluster.<UpsertResponse>send(new UpsertRequest("mock-observe",
+            Unpooled.copiedBuffer("{}", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+        ReferenceCountUtil.releaseLater(upsert.content());
+
+        ObserveResponse observe = cluster.<ObserveResponse>send(new ObserveRequest("mock-observe", upsert.cas(),
+            true, (short) 0, bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, observe.status());
+        assertEquals(ObserveResponse.ObserveStatus.FOUND_PERSISTED, observe.observeStatus());
+        ReferenceCountUtil.releaseLater(observe.content());
+    }
+
+    @Test
+    public void shouldRetryOnNotMyVbucket() {
+        mock.notMyVbucketRate(0.5);
+        try {
+            for (int i = 0; i < 20; i++) {
+                UpsertResponse upsert = cluster.<UpsertResponse>send(new UpsertRequest("mock-nmvb-" + i,
+                    Unpooled.copiedBuffer("value", CharsetUtil.UTF_8), bucket())).toBlocking().single();
+                assertEquals(ResponseStatus.SUCCESS, upsert.status());
+                ReferenceCountUtil.releaseLater(upsert.content());
+            }
+        } finally {
+            mock.notMyVbucketRate(0);
+        }
+    }
+
+    @Test
+    public void shouldReturnQueryRows() {
+        List<String> rows = cluster.<GenericQueryResponse>send(GenericQueryRequest.simpleStatement("SELECT 1",
+            bucket(), ""))
+            .flatMap(new Func1<GenericQueryResponse, rx.Observable<ByteBuf>>() {
+                @Override
+                public rx.Observable<ByteBuf> call(GenericQueryResponse response) {
+                    return response.rows();
+                }
+            })
+            .map(new Func1<ByteBuf, String>() {
+                @Override
+                public String call(ByteBuf buf) {
+                    String row = buf.toString(CharsetUtil.UTF_8);
+                    buf.release();
+                    return row;
+                }
+            })
+            .toList()
+            .toBlocking()
+            .single();
+
+        assertEquals(5, rows.size());
+        assertEquals("{\"id\":0,\"name\":\"row-0\"}", rows.get(0));
+    }
+
+    @Test
+    public void shouldOpenDCPStream() {
+        List<OpenConnectionResponse> open = cluster.<OpenConnectionResponse>send(
+            new OpenConnectionRequest("mock", bucket())).toList().toBlocking().single();
+        for (OpenConnectionResponse response : open) {
+            assertEquals(ResponseStatus.SUCCESS, response.status());
+        }
+
+        StreamRequestResponse stream = cluster.<StreamRequestResponse>send(
+            new StreamRequestRequest((short) 0, bucket())).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, stream.status());
+    }
+}
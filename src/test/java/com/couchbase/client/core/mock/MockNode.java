@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.mock;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequestDecoder;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseEncoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A single node of the {@link MockCluster}, serving the binary protocol and HTTP on their own ports.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class MockNode {
+
+    private final MockCluster cluster;
+    private final int index;
+    private final String hostname;
+    private Channel kvChannel;
+    private Channel httpChannel;
+    private int kvPort;
+    private int httpPort;
+
+    MockNode(final MockCluster cluster, final int index, final String hostname) {
+        this.cluster = cluster;
+        this.index = index;
+        this.hostname = hostname;
+    }
+
+    void start(final EventLoopGroup group) throws Exception {
+        kvChannel = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    ch.pipeline()
+                        .addLast(new BinaryMemcacheRequestDecoder())
+                        .addLast(new BinaryMemcacheResponseEncoder())
+                        .addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE))
+                        .addLast(new KeyValueMockHandler(cluster, MockNode.this));
+                }
+            })
+            .bind(hostname, 0)
+            .sync()
+            .channel();
+        kvPort = ((InetSocketAddress) kvChannel.localAddress()).getPort();
+
+        httpChannel = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    ch.pipeline()
+                        .addLast(new HttpServerCodec())
+                        .addLast(new HttpObjectAggregator(Integer.MAX_VALUE))
+                        .addLast(new HttpMockHandler(cluster));
+                }
+            })
+            .bind(hostname, 0)
+            .sync()
+            .channel();
+        httpPort = ((InetSocketAddress) httpChannel.localAddress()).getPort();
+    }
+
+    void stop() {
+        if (kvChannel != null) {
+            kvChannel.close().awaitUninterruptibly();
+        }
+        if (httpChannel != null) {
+            httpChannel.close().awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * The position of this node in the server list of the config.
+     */
+    public int index() {
+        return index;
+    }
+
+    public String hostname() {
+        return hostname;
+    }
+
+    public int kvPort() {
+        return kvPort;
+    }
+
+    public int httpPort() {
+        return httpPort;
+    }
+}
@@ -21,23 +21,33 @@
  */
 package com.couchbase.client.core.node.locate;
 
+import com.couchbase.client.core.config.BucketConfig;
 import com.couchbase.client.core.config.ClusterConfig;
 import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.config.DefaultMemcachedBucketConfig;
 import com.couchbase.client.core.config.DefaultNodeInfo;
+import com.couchbase.client.core.config.MemcachedBucketConfig;
 import com.couchbase.client.core.config.NodeInfo;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
 import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.ReplicaGetRequest;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.state.LifecycleState;
+import io.netty.util.CharsetUtil;
 import org.junit.Test;
 import java.net.InetAddress;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -78,6 +88,98 @@ public class KeyValueLocatorTest {
         assertEquals(node1Mock, foundNodes[0]);
     }
 
+    @Test
+    public void shouldLocateFromPartitionTableForCouchbaseBucket() throws Exception {
+        KeyValueLocator locator = new KeyValueLocator();
+
+        NodeInfo nodeInfo1 = new DefaultNodeInfo("foo", "192.168.56.101:11210", Collections.EMPTY_MAP);
+        NodeInfo nodeInfo2 = new DefaultNodeInfo("foo", "192.168.56.102:11210", Collections.EMPTY_MAP);
+
+        Set<Node> nodes = new HashSet<Node>();
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        Node node2Mock = mock(Node.class);
+        when(node2Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.102"));
+        nodes.addAll(Arrays.asList(node1Mock, node2Mock));
+
+        CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
+        when(bucketMock.name()).thenReturn("bucket");
+        when(bucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
+        when(bucketMock.numberOfPartitions()).thenReturn(1024);
+        when(bucketMock.numberOfReplicas()).thenReturn(1);
+        when(bucketMock.nodeIndexForMaster(656)).thenReturn((short) 1);
+        when(bucketMock.nodeIndexForReplica(656, 0)).thenReturn((short) 0);
+        when(bucketMock.nodeAtIndex(0)).thenReturn(nodeInfo1);
+        when(bucketMock.nodeAtIndex(1)).thenReturn(nodeInfo2);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
+        when(configMock.bucketConfigs()).thenReturn(Collections.<String, BucketConfig>singletonMap("bucket",
+            bucketMock));
+
+        locator.updateRoutingTables(configMock, nodes);
+
+        Set<Node> noNodes = Collections.emptySet();
+        Node[] master = locator.locate(new GetRequest("key", "bucket"), noNodes, configMock);
+        assertEquals(1, master.length);
+        assertEquals(node2Mock, master[0]);
+        assertSame(master, locator.locate(new GetRequest("key", "bucket"), noNodes, configMock));
+
+        Node[] replica = locator.locate(new ReplicaGetRequest("key", "bucket", (short) 1), noNodes, configMock);
+        assertEquals(node1Mock, replica[0]);
+
+        CouchbaseBucketConfig newBucketMock = mock(CouchbaseBucketConfig.class);
+        when(newBucketMock.name()).thenReturn("bucket");
+        when(newBucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
+        when(newBucketMock.numberOfPartitions()).thenReturn(1024);
+        when(newBucketMock.nodeIndexForMaster(656)).thenReturn((short) 0);
+        when(newBucketMock.nodeAtIndex(0)).thenReturn(nodeInfo1);
+        when(configMock.bucketConfig("bucket")).thenReturn(newBucketMock);
+
+        Node[] stale = locator.locate(new GetRequest("key", "bucket"), nodes, configMock);
+        assertEquals(node1Mock, stale[0]);
+    }
+
+    @Test
+    public void shouldLocateFromKetamaTableForMemcachedBucket() throws Exception {
+        KeyValueLocator locator = new KeyValueLocator();
+
+        List<NodeInfo> nodeInfos = new ArrayList<NodeInfo>();
+        Set<Node> nodes = new HashSet<Node>();
+        for (int i = 1; i <= 3; i++) {
+            String address = "192.168.56.10" + i;
+            nodeInfos.add(new DefaultNodeInfo("foo", address + ":11210", Collections.EMPTY_MAP));
+            Node nodeMock = mock(Node.class);
+            when(nodeMock.hostname()).thenReturn(InetAddress.getByName(address));
+            nodes.add(nodeMock);
+        }
+        MemcachedBucketConfig bucketConfig = new DefaultMemcachedBucketConfig(1, "bucket", "ketama", null, null,
+            nodeInfos, null);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketConfig);
+        when(configMock.bucketConfigs()).thenReturn(Collections.<String, BucketConfig>singletonMap("bucket",
+            bucketConfig));
+
+        Node[] slow = locator.locate(new GetRequest("key", "bucket"), nodes, configMock);
+        locator.updateRoutingTables(configMock, nodes);
+        Node[] fast = locator.locate(new GetRequest("key", "bucket"), nodes, configMock);
+        assertSame(slow[0], fast[0]);
+        assertSame(fast, locator.locate(new GetRequest("key", "bucket"), nodes, configMock));
+
+        SortedMap<Long, NodeInfo> continuum = bucketConfig.ketamaNodes();
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            byte[] digest = md5.digest(key.getBytes(CharsetUtil.UTF_8));
+            long hash = (((long) (digest[3] & 0xFF) << 24) | ((digest[2] & 0xFF) << 16)
+                | ((digest[1] & 0xFF) << 8) | (digest[0] & 0xFF)) & 0xffffffffL;
+            SortedMap<Long, NodeInfo> tail = continuum.tailMap(hash);
+            NodeInfo expected = tail.isEmpty() ? continuum.get(continuum.firstKey()) : tail.get(tail.firstKey());
+
+            Node[] found = locator.locate(new GetRequest(key, "bucket"), nodes, configMock);
+            assertEquals(expected.hostname(), found[0].hostname());
+        }
+    }
+
     @Test
     public void shouldPickTheRightNodeForGetBucketConfigRequest() throws Exception {
         Locator locator = new KeyValueLocator();
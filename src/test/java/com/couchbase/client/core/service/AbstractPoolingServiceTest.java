@@ -27,24 +27,29 @@ import com.couchbase.client.core.endpoint.Endpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.internal.SignalFlush;
 import com.couchbase.client.core.retry.FailFastRetryStrategy;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.couchbase.client.core.state.AbstractStateMachine;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.RingBuffer;
+import io.netty.util.Timer;
 import org.junit.Before;
 import org.junit.Test;
 import rx.Observable;
 import rx.subjects.AsyncSubject;
+import rx.subjects.PublishSubject;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -197,6 +202,150 @@ public class AbstractPoolingServiceTest {
         response.toBlocking().single();
     }
 
+    @Test
+    public void shouldGrowWhenSelectedEndpointIsBusy() {
+        Endpoint e1 = mock(Endpoint.class);
+        when(e1.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e1.outstandingRequests()).thenReturn(1);
+        Endpoint e2 = mock(Endpoint.class);
+        when(e2.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e2.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(factory.create(host, bucket, password, port, env, null)).thenReturn(e1, e2);
+        when(env.timer()).thenReturn(mock(Timer.class));
+
+        SelectionStrategy strategy = new SelectionStrategy() {
+            @Override
+            public Endpoint select(CouchbaseRequest request, Endpoint[] endpoints) {
+                return endpoints[0];
+            }
+        };
+        InstrumentedService service = new InstrumentedService(host, bucket, password, port, env, 1, 2, strategy,
+            null, factory);
+        service.connect().toBlocking().single();
+
+        CouchbaseRequest request1 = mock(CouchbaseRequest.class);
+        service.send(request1);
+        verify(e2, times(1)).send(request1);
+        verify(e2, times(1)).send(SignalFlush.INSTANCE);
+        assertEquals(2, service.endpoints().length);
+
+        CouchbaseRequest request2 = mock(CouchbaseRequest.class);
+        service.send(request2);
+        verify(e1, times(1)).send(request2);
+        verify(factory, times(2)).create(host, bucket, password, port, env, null);
+    }
+
+    @Test
+    public void shouldAddGrownEndpointOnlyOnceConnected() {
+        Endpoint e1 = mock(Endpoint.class);
+        when(e1.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e1.outstandingRequests()).thenReturn(1);
+        PublishSubject<LifecycleState> connecting = PublishSubject.create();
+        Endpoint e2 = mock(Endpoint.class);
+        when(e2.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTING).states());
+        when(e2.connect()).thenReturn(connecting);
+        when(factory.create(host, bucket, password, port, env, null)).thenReturn(e1, e2);
+        when(env.timer()).thenReturn(mock(Timer.class));
+
+        SelectionStrategy strategy = new SelectionStrategy() {
+            @Override
+            public Endpoint select(CouchbaseRequest request, Endpoint[] endpoints) {
+                return endpoints[endpoints.length - 1];
+            }
+        };
+        InstrumentedService service = new InstrumentedService(host, bucket, password, port, env, 1, 2, strategy,
+            null, factory);
+        service.connect().toBlocking().single();
+
+        CouchbaseRequest request1 = mock(CouchbaseRequest.class);
+        service.send(request1);
+        assertEquals(1, service.endpoints().length);
+
+        CouchbaseRequest request2 = mock(CouchbaseRequest.class);
+        service.send(request2);
+        verify(e1, times(1)).send(request2);
+
+        connecting.onNext(LifecycleState.CONNECTED);
+        connecting.onCompleted();
+        assertEquals(2, service.endpoints().length);
+        verify(e2, times(1)).send(request1);
+        verify(e2, never()).send(request2);
+    }
+
+    @Test
+    public void shouldCloseIdleEndpointsAboveMinimum() {
+        Endpoint e1 = mock(Endpoint.class);
+        when(e1.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e1.outstandingRequests()).thenReturn(1);
+        Endpoint e2 = mock(Endpoint.class);
+        when(e2.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e2.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e2.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
+        when(factory.create(host, bucket, password, port, env, null)).thenReturn(e1, e2);
+        when(env.timer()).thenReturn(mock(Timer.class));
+        when(env.endpointIdleTime()).thenReturn(1000L);
+
+        SelectionStrategy strategy = new SelectionStrategy() {
+            @Override
+            public Endpoint select(CouchbaseRequest request, Endpoint[] endpoints) {
+                return endpoints[0];
+            }
+        };
+        InstrumentedService service = new InstrumentedService(host, bucket, password, port, env, 1, 2, strategy,
+            null, factory);
+        service.connect().toBlocking().single();
+        service.send(mock(CouchbaseRequest.class));
+        assertEquals(2, service.endpoints().length);
+
+        long now = System.nanoTime();
+        when(e2.lastActivity()).thenReturn(now - TimeUnit.MILLISECONDS.toNanos(500));
+        service.closeIdleEndpoints(now);
+        assertEquals(2, service.endpoints().length);
+
+        when(e2.lastActivity()).thenReturn(now - TimeUnit.MILLISECONDS.toNanos(1000));
+        service.closeIdleEndpoints(now);
+        assertEquals(1, service.endpoints().length);
+        assertEquals(e1, service.endpoints()[0]);
+        verify(e2, times(1)).disconnect();
+        verify(e1, never()).disconnect();
+    }
+
+    @Test
+    public void shouldKeepIdleEndpointWhichReceivedRequestWhileClosing() {
+        Endpoint e1 = mock(Endpoint.class);
+        when(e1.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e1.outstandingRequests()).thenReturn(1);
+        Endpoint e2 = mock(Endpoint.class);
+        when(e2.states()).thenReturn(new EndpointStates(LifecycleState.CONNECTED).states());
+        when(e2.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
+        when(e2.outstandingRequests()).thenReturn(0, 1);
+        when(factory.create(host, bucket, password, port, env, null)).thenReturn(e1, e2);
+        when(env.timer()).thenReturn(mock(Timer.class));
+        when(env.endpointIdleTime()).thenReturn(1000L);
+
+        SelectionStrategy strategy = new SelectionStrategy() {
+            @Override
+            public Endpoint select(CouchbaseRequest request, Endpoint[] endpoints) {
+                return endpoints[0];
+            }
+        };
+        InstrumentedService service = new InstrumentedService(host, bucket, password, port, env, 1, 2, strategy,
+            null, factory);
+        service.connect().toBlocking().single();
+        service.send(mock(CouchbaseRequest.class));
+        assertEquals(2, service.endpoints().length);
+
+        long now = System.nanoTime();
+        when(e2.lastActivity()).thenReturn(now - TimeUnit.MILLISECONDS.toNanos(1000));
+        service.closeIdleEndpoints(now);
+        assertEquals(2, service.endpoints().length);
+        verify(e2, never()).disconnect();
+    }
+
     class InstrumentedService extends AbstractPoolingService {
 
         public InstrumentedService(String hostname, String bucket, String password, int port, CoreEnvironment env,
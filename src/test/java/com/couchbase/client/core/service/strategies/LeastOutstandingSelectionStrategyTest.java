@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.service.strategies;
+
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.state.LifecycleState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link LeastOutstandingSelectionStrategy}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class LeastOutstandingSelectionStrategyTest {
+
+    @Test
+    public void shouldPreferIdleEndpoint() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint endpoint1 = endpoint(true, 3);
+        Endpoint endpoint2 = endpoint(false, 0);
+        Endpoint endpoint3 = endpoint(true, 0);
+        Endpoint[] endpoints = new Endpoint[] {endpoint1, endpoint2, endpoint3};
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(endpoint3, strategy.select(mock(CouchbaseRequest.class), endpoints));
+        }
+    }
+
+    @Test
+    public void shouldSelectLeastLoadedEndpoint() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint endpoint1 = endpoint(true, 3);
+        Endpoint endpoint2 = endpoint(true, 1);
+        Endpoint endpoint3 = endpoint(true, 2);
+        Endpoint[] endpoints = new Endpoint[] {endpoint1, endpoint2, endpoint3};
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(endpoint2, strategy.select(mock(CouchbaseRequest.class), endpoints));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullIfNoneConnected() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint[] endpoints = new Endpoint[] {endpoint(false, 0), endpoint(false, 0)};
+        assertNull(strategy.select(mock(CouchbaseRequest.class), endpoints));
+        assertNull(strategy.select(mock(CouchbaseRequest.class), new Endpoint[] {}));
+    }
+
+    private static Endpoint endpoint(final boolean connected, final int outstanding) {
+        Endpoint endpoint = mock(Endpoint.class);
+        when(endpoint.isState(LifecycleState.CONNECTED)).thenReturn(connected);
+        when(endpoint.outstandingRequests()).thenReturn(outstanding);
+        return endpoint;
+    }
+}
@@ -101,6 +101,27 @@ public class PartitionSelectionStrategyTest {
         }
     }
 
+    @Test
+    public void shouldSelectEndpointOfAffinityOverPartition() throws Exception {
+        SelectionStrategy strategy = new PartitionSelectionStrategy();
+
+        Endpoint endpoint1 = mock(Endpoint.class);
+        when(endpoint1.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        Endpoint endpoint2 = mock(Endpoint.class);
+        when(endpoint2.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        Endpoint endpoint3 = mock(Endpoint.class);
+        when(endpoint3.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        Endpoint[] endpoints = new Endpoint[] {endpoint1, endpoint2, endpoint3};
+
+        GetRequest request = mock(GetRequest.class);
+        when(request.partition()).thenReturn((short) 12);
+        when(request.endpointAffinity()).thenReturn(3);
+        Endpoint selected = strategy.select(request, endpoints);
+
+        assertNotNull(selected);
+        assertTrue(selected.equals(endpoint3));
+    }
+
     @Test
     public void shouldSelectNullIfPinedIsNotConnected() throws Exception {
         SelectionStrategy strategy = new PartitionSelectionStrategy();
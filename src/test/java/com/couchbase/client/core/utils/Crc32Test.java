@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that {@link Crc32} and {@link Utf8} agree with the JDK implementations.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.2
+ */
+public class Crc32Test {
+
+    private static final String[] KEYS = new String[] {
+        "", "a", "user::1234567890", "grüße", "日本語のキー", "emoji-😀-key", "broken-\uD83D-surrogate",
+        "\uDE00-low-first", "trailing-high-\uD83D"
+    };
+
+    @Test
+    public void shouldMatchJdkCrc32() {
+        for (String key : KEYS) {
+            byte[] bytes = key.getBytes(CharsetUtil.UTF_8);
+            CRC32 expected = new CRC32();
+            expected.update(bytes);
+            assertEquals(key, expected.getValue(), Crc32.crc32(key));
+            assertEquals(key, expected.getValue(), Crc32.crc32(bytes));
+        }
+    }
+
+    @Test
+    public void shouldMatchJdkCrc32ForRandomKeys() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            char[] chars = new char[random.nextInt(64)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+            }
+            String key = new String(chars);
+            CRC32 expected = new CRC32();
+            expected.update(key.getBytes(CharsetUtil.UTF_8));
+            assertEquals(expected.getValue(), Crc32.crc32(key));
+        }
+    }
+
+    @Test
+    public void shouldEncodeLikeJdk() {
+        for (String key : KEYS) {
+            byte[] expected = key.getBytes(CharsetUtil.UTF_8);
+            assertEquals(key, expected.length, Utf8.encodedLength(key));
+
+            ByteBuf buf = Unpooled.buffer();
+            Utf8.write(buf, key);
+            byte[] written = new byte[buf.readableBytes()];
+            buf.readBytes(written);
+            assertArrayEquals(key, expected, written);
+
+            byte[] target = new byte[key.length() * 3];
+            int length = Utf8.write(key, target);
+            assertArrayEquals(key, expected, Arrays.copyOf(target, length));
+        }
+    }
+}